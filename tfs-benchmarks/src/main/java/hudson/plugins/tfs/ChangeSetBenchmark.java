@@ -0,0 +1,83 @@
+package hudson.plugins.tfs;
+
+import hudson.plugins.tfs.model.ChangeSet;
+import hudson.plugins.tfs.model.ChangeLogSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing and parsing the change log of a build, as done by {@link ChangeSetWriter}
+ * after each checkout and by {@link ChangeSetReader} whenever the changes page is displayed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChangeSetBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int changesets;
+
+    @Param({"1", "10", "100"})
+    public int itemsPerChangeset;
+
+    private List<ChangeSet> changeSetList;
+    private String changelogXml;
+    private final ChangeSetWriter writer = new ChangeSetWriter();
+    private final ChangeSetReader reader = new ChangeSetReader();
+
+    @Setup
+    public void setUp() {
+        changeSetList = createChangeSets(changesets, itemsPerChangeset);
+        final StringWriter output = new StringWriter();
+        writer.write(changeSetList, output);
+        changelogXml = output.toString();
+    }
+
+    static List<ChangeSet> createChangeSets(final int count, final int itemsPerChangeset) {
+        final Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.set(2017, Calendar.JANUARY, 1, 12, 0, 0);
+        final List<ChangeSet> result = new ArrayList<ChangeSet>(count);
+        for (int i = count; i > 0; i--) {
+            calendar.add(Calendar.MINUTE, -1);
+            final ChangeSet changeSet = new ChangeSet(Integer.toString(i), calendar.getTime(),
+                    "DOMAIN\\user" + (i % 7), "Fixed <bug> #" + i + " & friends");
+            for (int j = 0; j < itemsPerChangeset; j++) {
+                changeSet.add(new ChangeSet.Item("$/Project/src/module" + (j % 10) + "/File" + j + ".java", "edit"));
+            }
+            result.add(changeSet);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public String write() {
+        final StringWriter output = new StringWriter(changelogXml.length());
+        writer.write(changeSetList, output);
+        return output.toString();
+    }
+
+    @Benchmark
+    public ChangeLogSet parse() throws Exception {
+        return reader.parse(null, null, new StringReader(changelogXml));
+    }
+}
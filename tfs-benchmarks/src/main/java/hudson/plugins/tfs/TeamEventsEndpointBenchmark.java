@@ -0,0 +1,59 @@
+package hudson.plugins.tfs;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import hudson.plugins.tfs.model.GitPushEvent;
+import hudson.plugins.tfs.model.servicehooks.Event;
+import hudson.plugins.tfs.util.EndpointHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link TeamEventsEndpoint#deserializeEvent(String)} for git.push payloads
+ * carrying an increasing number of commits.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TeamEventsEndpointBenchmark {
+
+    @Param({"1", "20", "100"})
+    public int commits;
+
+    private String payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        final String sample = new GitPushEvent.Factory().getSampleRequestPayload();
+        final ObjectNode event = (ObjectNode) EndpointHelper.MAPPER.readTree(sample);
+        final ArrayNode sampleCommits = (ArrayNode) event.get("resource").get("commits");
+        final ObjectNode commit = (ObjectNode) sampleCommits.get(0);
+        sampleCommits.removeAll();
+        for (int i = 0; i < commits; i++) {
+            final ObjectNode copy = commit.deepCopy();
+            copy.put("comment", "Commit number " + i);
+            sampleCommits.add(copy);
+        }
+        payload = EndpointHelper.MAPPER.writeValueAsString(event);
+    }
+
+    @Benchmark
+    public Event deserializeEvent() throws IOException {
+        return TeamEventsEndpoint.deserializeEvent(payload);
+    }
+}
@@ -0,0 +1,83 @@
+package hudson.plugins.tfs.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link CloakedPathMatcher} trie with the linear scan it replaced,
+ * checking every path of a large changeset that is fully cloaked,
+ * which is the worst case for the linear scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CloakedPathMatcherBenchmark {
+
+    @Param({"1", "10", "50", "200"})
+    public int cloakedPaths;
+
+    @Param({"1000"})
+    public int pathsPerChangeset;
+
+    private List<String> cloaked;
+    private List<String> paths;
+    private CloakedPathMatcher matcher;
+
+    @Setup
+    public void setUp() {
+        cloaked = new ArrayList<String>(cloakedPaths);
+        for (int i = 0; i < cloakedPaths; i++) {
+            cloaked.add("$/Project/Main/Cloaked" + i + "/");
+        }
+        paths = new ArrayList<String>(pathsPerChangeset);
+        for (int j = 0; j < pathsPerChangeset; j++) {
+            // mixed case, like paths typed into the job configuration by hand
+            final String folder = cloaked.get(cloakedPaths - 1 - (j % cloakedPaths)).toUpperCase();
+            paths.add(folder + "src/Folder" + (j % 10) + "/File" + j + ".cs");
+        }
+        matcher = CloakedPathMatcher.compile(cloaked);
+    }
+
+    @Benchmark
+    public boolean linearScan() {
+        for (final String tfsPath : paths) {
+            boolean isPathCloaked = false;
+            for (final String cloakedPath : cloaked) {
+                if (tfsPath.regionMatches(true, 0, cloakedPath, 0, cloakedPath.length())) {
+                    isPathCloaked = true;
+                    break;
+                }
+            }
+            if (!isPathCloaked) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Benchmark
+    public boolean trie() {
+        return matcher.isFullyCloaked(paths);
+    }
+
+    @Benchmark
+    public boolean compileAndMatch() {
+        return CloakedPathMatcher.compile(cloaked).isFullyCloaked(paths);
+    }
+}
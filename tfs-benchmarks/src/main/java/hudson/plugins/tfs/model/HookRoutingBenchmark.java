@@ -0,0 +1,114 @@
+package hudson.plugins.tfs.model;
+
+import hudson.plugins.tfs.util.UriHelper;
+import org.eclipse.jgit.transport.URIish;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the repository matching done by {@link AbstractHookEvent#pollOrQueueFromEvent}
+ * for every Git remote of every job when a push event arrives.  The surrounding job traversal
+ * needs a running Jenkins, so the jobs are modelled here as a synthetic list of remote URLs,
+ * a few of which point to the pushed repository.
+ * The largest case stays under the number of remote URLs whose keys {@link GitRepositoryCatalog} memoizes
+ * (10,000); beyond that, the memoized keys are cleared and recomputed while matching.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HookRoutingBenchmark {
+
+    private static final String SERVER = "https://fabrikam-fiber-inc.visualstudio.com";
+    private static final int MATCHING_JOB_INTERVAL = 50;
+
+    @Param({"10", "100", "1000", "3000"})
+    public int jobs;
+
+    @Param({"1", "3"})
+    public int remotesPerJob;
+
+    private GitCodePushedEventArgs args;
+    private URI eventUri;
+    private List<List<URIish>> jobRemotes;
+
+    @Setup
+    public void setUp() throws URISyntaxException {
+        args = new GitCodePushedEventArgs();
+        args.collectionUri = URI.create(SERVER + "/");
+        args.repoUri = URI.create(SERVER + "/DefaultCollection/Project/_git/Repo");
+        args.projectId = "Project";
+        args.repoId = "Repo";
+        args.commit = "33b55f7cb7e7e245323987634f960cf4a6e6bc74";
+        eventUri = args.repoUri;
+
+        jobRemotes = new ArrayList<List<URIish>>(jobs);
+        for (int i = 0; i < jobs; i++) {
+            final List<URIish> remotes = new ArrayList<URIish>(remotesPerJob);
+            for (int j = 0; j < remotesPerJob; j++) {
+                if (i % MATCHING_JOB_INTERVAL == 0 && j == remotesPerJob - 1) {
+                    remotes.add(new URIish(SERVER + "/Project/_git/Repo"));
+                }
+                else {
+                    remotes.add(new URIish(SERVER + "/DefaultCollection/Project" + (i % 20) + "/_git/Repo" + i + "_" + j));
+                }
+            }
+            jobRemotes.add(remotes);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        GitRepositoryCatalog.clear();
+    }
+
+    /**
+     * The comparison as it was done before the repository catalogue: every remote against the event's URL.
+     */
+    @Benchmark
+    public int areSameGitRepo() {
+        int matches = 0;
+        for (final List<URIish> remotes : jobRemotes) {
+            for (final URIish remoteUrl : remotes) {
+                if (UriHelper.areSameGitRepo(eventUri, URI.create(remoteUrl.toString()))) {
+                    matches++;
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int repoMatcher() {
+        final GitRepositoryCatalog.RepoMatcher matcher = GitRepositoryCatalog.matcherFor(args);
+        int matches = 0;
+        for (final List<URIish> remotes : jobRemotes) {
+            for (final URIish remoteUrl : remotes) {
+                if (matcher.matches(remoteUrl)) {
+                    matches++;
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,76 @@
+package hudson.plugins.tfs.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how {@link Project} filters history against cloaked paths, over a synthetic
+ * item tree where every changeset but the oldest only touches cloaked folders,
+ * so the whole history has to be scanned.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int changesets;
+
+    @Param({"10", "100"})
+    public int pathsPerChangeset;
+
+    @Param({"1", "10", "100"})
+    public int cloakedPaths;
+
+    private List<String> cloaked;
+    private List<ChangeSet> history;
+    private Collection<String> cloakedChangesetPaths;
+
+    @Setup
+    public void setUp() {
+        cloaked = new ArrayList<String>(cloakedPaths);
+        for (int i = 0; i < cloakedPaths; i++) {
+            cloaked.add("$/Project/Cloaked" + i + "/");
+        }
+
+        history = new ArrayList<ChangeSet>(changesets);
+        final Date date = new Date();
+        for (int version = changesets; version > 0; version--) {
+            final ChangeSet changeSet = new ChangeSet(Integer.toString(version), date, "user", "comment");
+            for (int j = 0; j < pathsPerChangeset; j++) {
+                final String folder = version == 1 ? "$/Project/Visible/" : cloaked.get((version + j) % cloakedPaths);
+                changeSet.add(new ChangeSet.Item(folder + "src/Folder" + (j % 10) + "/File" + j + ".cs", "edit"));
+            }
+            history.add(changeSet);
+        }
+        cloakedChangesetPaths = history.get(0).getAffectedPaths();
+    }
+
+    @Benchmark
+    public boolean isChangesetFullyCloaked() {
+        return Project.isChangesetFullyCloaked(cloakedChangesetPaths, cloaked);
+    }
+
+    @Benchmark
+    public ChangeSet findLatestUncloakedChangeset() {
+        return Project.findLatestUncloakedChangeset(cloaked, history);
+    }
+}
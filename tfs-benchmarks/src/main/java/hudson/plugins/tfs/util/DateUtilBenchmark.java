@@ -0,0 +1,46 @@
+package hudson.plugins.tfs.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link DateUtil#parseDate(String, Locale, TimeZone)} for dates that
+ * {@link Date#parse(String)} understands and for ones that fall back to the locale's formats.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateUtilBenchmark {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    @Param({
+            "12/12/2008 3:45:12 PM",
+            "12/12/2008 3:45:12 p.m.",
+            "Friday, December 12, 2008 3:45:12 PM UTC",
+            "12.12.2008 15:45:12",
+    })
+    public String input;
+
+    @Benchmark
+    public Date parseDate() throws ParseException {
+        return DateUtil.parseDate(input, Locale.GERMANY, UTC);
+    }
+}
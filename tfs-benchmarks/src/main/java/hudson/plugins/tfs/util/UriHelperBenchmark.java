@@ -0,0 +1,51 @@
+package hudson.plugins.tfs.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link UriHelper#areSameGitRepo(URI, URI)} over the URL forms a Team Services
+ * repository can be cloned from.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UriHelperBenchmark {
+
+    @Param({
+            "https://fabrikam-fiber-inc.visualstudio.com/Project/_git/Repo",
+            "https://fabrikam-fiber-inc.visualstudio.com/DefaultCollection/Project/_git/Repo",
+            "ssh://fabrikam-fiber-inc@fabrikam-fiber-inc.visualstudio.com:22/DefaultCollection/Project/_git/Repo",
+            "https://fabrikam-fiber-inc.visualstudio.com/Project/_git/Other",
+    })
+    public String remoteUrl;
+
+    private URI eventUri;
+    private URI remoteUri;
+
+    @Setup
+    public void setUp() {
+        eventUri = URI.create("https://fabrikam-fiber-inc.visualstudio.com/DefaultCollection/Project/_git/Repo");
+        remoteUri = URI.create(remoteUrl);
+    }
+
+    @Benchmark
+    public boolean areSameGitRepo() {
+        return UriHelper.areSameGitRepo(eventUri, remoteUri);
+    }
+}
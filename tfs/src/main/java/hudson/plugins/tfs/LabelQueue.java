@@ -0,0 +1,203 @@
+package hudson.plugins.tfs;
+
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.LabelResult;
+import com.microsoft.tfs.core.clients.versioncontrol.specs.version.ChangesetVersionSpec;
+import hudson.Launcher;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.plugins.tfs.commands.LabelCommand;
+import hudson.plugins.tfs.model.Server;
+import hudson.plugins.tfs.telemetry.TelemetryHelper;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates the labels requested by asynchronous {@link TFSLabeler}s on the controller, in the background,
+ * so that labeling doesn't hold up the end of the builds.
+ * The labels requested while the previous ones were being created are created together,
+ * over one connection per collection and identity, as of the changeset each build got.
+ * The queue is only kept in memory: the outcome of each label is shown on its build's page,
+ * where the labels that were still queued when Jenkins restarted remain marked as waiting.
+ */
+final class LabelQueue {
+
+    private static final Logger LOGGER = Logger.getLogger(LabelQueue.class.getName());
+    private static final LabelQueue INSTANCE = new LabelQueue();
+
+    private final Queue<Request> pending = new ConcurrentLinkedQueue<Request>();
+    private final Object drainLock = new Object();
+    private ExecutorService executor;
+
+    static LabelQueue get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Queues the label; never blocks.
+     */
+    void add(final Request request) {
+        queue(request);
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        });
+    }
+
+    void queue(final Request request) {
+        // shown as waiting until the label is created
+        request.run.addAction(request.action);
+        pending.add(request);
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(
+                    new NamingThreadFactory(new DaemonThreadFactory(), "TFVC label creation"));
+        }
+        return executor;
+    }
+
+    /**
+     * Creates all the queued labels.
+     *
+     * @return the number of labels created
+     */
+    int drain() {
+        synchronized (drainLock) {
+            final List<Request> batch = new ArrayList<Request>();
+            for (Request request = pending.poll(); request != null; request = pending.poll()) {
+                batch.add(request);
+            }
+            int result = 0;
+            for (final List<Request> group : groupByConnection(batch).values()) {
+                result += createLabels(group);
+            }
+            return result;
+        }
+    }
+
+    static Map<String, List<Request>> groupByConnection(final List<Request> requests) {
+        final Map<String, List<Request>> result = new LinkedHashMap<String, List<Request>>();
+        for (final Request request : requests) {
+            List<Request> group = result.get(request.connectionKey);
+            if (group == null) {
+                group = new ArrayList<Request>();
+                result.put(request.connectionKey, group);
+            }
+            group.add(request);
+        }
+        return result;
+    }
+
+    private int createLabels(final List<Request> group) {
+        final Request first = group.get(0);
+        final Server server;
+        try {
+            server = first.createServer();
+        } catch (final IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Unable to connect to " + first.serverUrl + " to create " + group.size() + " labels", e);
+            for (final Request request : group) {
+                request.recordFailure(e);
+            }
+            return 0;
+        }
+        int result = 0;
+        try {
+            for (final Request request : group) {
+                if (createLabel(server, request)) {
+                    result++;
+                }
+            }
+        } finally {
+            server.close();
+        }
+        return result;
+    }
+
+    boolean createLabel(final Server server, final Request request) {
+        final ChangesetVersionSpec versionSpec = new ChangesetVersionSpec(request.changesetVersion);
+        try {
+            final LabelResult[] results = LabelCommand.createLabel(server.getVersionControlClient(), request.labelName, request.projectPaths, versionSpec);
+            LOGGER.log(Level.INFO, "Created label ''{0}'' on ''{1}'' as of changeset {2} for {3} ({4} items)",
+                    new Object[]{request.labelName, StringUtils.join(request.projectPaths, ", "), request.changesetVersion, request.buildName, results.length});
+            TelemetryHelper.sendEvent("team-label", new TelemetryHelper.PropertyMapBuilder()
+                    .serverContext(server.getUrl(), server.getUrl())
+                    .build());
+            request.recordCreated();
+            return true;
+        } catch (final RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Unable to create label '" + request.labelName + "' for " + request.buildName, e);
+            request.recordFailure(e);
+            return false;
+        }
+    }
+
+    /**
+     * A label to create on paths as of the changeset a build got.
+     */
+    static final class Request {
+        private final TeamFoundationServerScm scm;
+        private final Run<?, ?> run;
+        private final String serverUrl;
+        private final String connectionKey;
+        private final String buildName;
+        private final String labelName;
+        private final List<String> projectPaths;
+        private final int changesetVersion;
+        private final TFSLabelAction action;
+
+        Request(final TeamFoundationServerScm scm, final Run<?, ?> run, final String labelName, final List<String> projectPaths, final int changesetVersion) {
+            this.scm = scm;
+            this.run = run;
+            this.serverUrl = scm.getServerUrl(run);
+            this.connectionKey = scm.getConnectionKey(run);
+            this.buildName = run.getFullDisplayName();
+            this.labelName = labelName;
+            this.projectPaths = new ArrayList<String>(projectPaths);
+            this.changesetVersion = changesetVersion;
+            this.action = new TFSLabelAction(labelName, changesetVersion);
+        }
+
+        TFSLabelAction getAction() {
+            return action;
+        }
+
+        Server createServer() throws IOException {
+            final TaskListener listener = TaskListener.NULL;
+            return scm.createServer(new Launcher.LocalLauncher(listener), listener, run);
+        }
+
+        void recordCreated() {
+            action.setCreated();
+            saveRun();
+        }
+
+        void recordFailure(final Exception e) {
+            action.setFailed(StringUtils.defaultIfEmpty(e.getMessage(), e.getClass().getName()));
+            saveRun();
+        }
+
+        private void saveRun() {
+            try {
+                run.save();
+            } catch (final IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to record the outcome of label '" + labelName + "' in " + buildName, e);
+            }
+        }
+    }
+}
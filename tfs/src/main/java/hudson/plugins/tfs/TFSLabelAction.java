@@ -0,0 +1,52 @@
+package hudson.plugins.tfs;
+
+import hudson.model.InvisibleAction;
+
+/**
+ * Shows, on the build's page, the outcome of a label an asynchronous {@link TFSLabeler} queued.
+ */
+public class TFSLabelAction extends InvisibleAction {
+    private final String labelName;
+    private final int changesetVersion;
+    // both null while the label is waiting to be created
+    private Boolean created;
+    private String error;
+
+    public TFSLabelAction(final String labelName, final int changesetVersion) {
+        this.labelName = labelName;
+        this.changesetVersion = changesetVersion;
+    }
+
+    public String getLabelName() {
+        return labelName;
+    }
+
+    public int getChangesetVersion() {
+        return changesetVersion;
+    }
+
+    /**
+     * Determines if the label is still waiting to be created, or was lost when Jenkins restarted.
+     */
+    public synchronized boolean isQueued() {
+        return created == null;
+    }
+
+    public synchronized boolean isCreated() {
+        return created != null && created;
+    }
+
+    public synchronized String getError() {
+        return error;
+    }
+
+    synchronized void setCreated() {
+        this.created = true;
+        this.error = null;
+    }
+
+    synchronized void setFailed(final String error) {
+        this.created = false;
+        this.error = error;
+    }
+}
@@ -19,8 +19,11 @@ import hudson.tasks.Publisher;
 import hudson.util.VariableResolver;
 import hudson.util.VariableResolver.Union;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Logger;
 
 /**
@@ -31,6 +34,8 @@ public class TFSLabeler extends Notifier {
 
     private String whenToLabel;
     private String labelName;
+    private String paths;
+    private boolean asynchronous;
 
     private static final Logger logger = Logger.getLogger(TFSLabeler.class.getName());
 
@@ -57,6 +62,22 @@ public class TFSLabeler extends Notifier {
         this.labelName = labelName;
     }
 
+    /**
+     * Sets the paths to label besides the project path, one per line.
+     */
+    @DataBoundSetter
+    public void setPaths(String paths) {
+        this.paths = Util.fixEmptyAndTrim(paths);
+    }
+
+    /**
+     * Sets whether the label is created on the controller, in the background, instead of by the build.
+     */
+    @DataBoundSetter
+    public void setAsynchronous(boolean asynchronous) {
+        this.asynchronous = asynchronous;
+    }
+
     @Override
     public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
         SCM scm = build.getRootBuild().getProject().getScm();
@@ -72,17 +93,29 @@ public class TFSLabeler extends Notifier {
         String whenCreateLabel = getWhenToLabel();
         if ("always".equals(whenCreateLabel) || ("success".equals(whenCreateLabel) && buildSuccess)) {
 
+            String normalizedLabelName = computeDynamicValue(build, getLabelName());
+            List<String> projectPaths = computeProjectPaths(build, tfsScm);
+
+            if (asynchronous) {
+                TFSRevisionState revisionState = build.getRootBuild().getAction(TFSRevisionState.class);
+                if (revisionState != null) {
+                    // the workspace may be reused by the next build before the label is created
+                    LabelQueue.get().add(new LabelQueue.Request(tfsScm, build.getRootBuild(), normalizedLabelName, projectPaths, revisionState.changesetVersion));
+                    listener.getLogger().println(String.format("Label '%s' on changeset %d will be created in the background; the outcome will be shown on the build's page.", normalizedLabelName, revisionState.changesetVersion));
+                    return true;
+                }
+                listener.getLogger().println("The build didn't record which changeset it got; creating the label now.");
+            }
+
             final Launcher localLauncher = launcher != null ? launcher : new Launcher.LocalLauncher(listener);
             Server server = tfsScm.createServer(localLauncher, listener, build.getRootBuild());
 
             Computer computer = Computer.currentComputer();
-            String normalizedLabelName = computeDynamicValue(build, getLabelName());
             String tfsWorkspace = tfsScm.getWorkspaceName(build.getRootBuild(), computer);
-            String tfsProjectPath = computeDynamicValue(build, tfsScm.getProjectPath());
             
             try {
-                logger.info(String.format("Create label '%s' on workspace '%s' with project path '%s' ", normalizedLabelName, tfsWorkspace, tfsProjectPath));
-                LabelCommand labelCommand = new LabelCommand(server, normalizedLabelName, tfsWorkspace, tfsProjectPath);
+                logger.info(String.format("Create label '%s' on workspace '%s' with project paths '%s' ", normalizedLabelName, tfsWorkspace, projectPaths));
+                LabelCommand labelCommand = new LabelCommand(server, normalizedLabelName, tfsWorkspace, projectPaths);
                 server.execute(labelCommand.getCallable());
 
                 // Send telemetry
@@ -98,6 +131,35 @@ public class TFSLabeler extends Notifier {
         return true;
     }
 
+    /**
+     * Returns the project path followed by the other paths to label, all with their variables replaced.
+     */
+    List<String> computeProjectPaths(AbstractBuild build, TeamFoundationServerScm tfsScm)
+            throws InterruptedException, IOException {
+        List<String> result = new ArrayList<String>();
+        result.add(computeDynamicValue(build, tfsScm.getProjectPath()));
+        for (String path : splitPaths(paths)) {
+            String value = computeDynamicValue(build, path);
+            if (!result.contains(value)) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    static List<String> splitPaths(String paths) {
+        List<String> result = new ArrayList<String>();
+        if (paths != null) {
+            for (String line : paths.split("\\r?\\n")) {
+                String path = line.trim();
+                if (path.length() > 0) {
+                    result.add(path);
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Replace an expression in the form ${name} in the given String
      * by the value of the matching environment variable or build parameter.<Br/>
@@ -122,7 +184,8 @@ public class TFSLabeler extends Notifier {
     }
 
     public BuildStepMonitor getRequiredMonitorService() {
-        return BuildStepMonitor.STEP;
+        // labels created in the background don't depend on the previous build's
+        return asynchronous ? BuildStepMonitor.NONE : BuildStepMonitor.STEP;
     }
 
     public String getWhenToLabel() {
@@ -132,4 +195,12 @@ public class TFSLabeler extends Notifier {
     public String getLabelName() {
         return labelName;
     }
+
+    public String getPaths() {
+        return paths;
+    }
+
+    public boolean isAsynchronous() {
+        return asynchronous;
+    }
 }
@@ -12,6 +12,7 @@ import hudson.plugins.tfs.model.BuildCommand;
 import hudson.plugins.tfs.model.BuildWithParametersCommand;
 import hudson.plugins.tfs.model.PingCommand;
 import hudson.plugins.tfs.model.TeamBuildPayload;
+import hudson.plugins.tfs.telemetry.HookMetrics;
 import hudson.plugins.tfs.telemetry.TelemetryHelper;
 import hudson.plugins.tfs.util.EndpointHelper;
 import hudson.plugins.tfs.util.MediaType;
@@ -163,8 +164,11 @@ public class TeamBuildEndpoint implements UnprotectedRootAction {
     }
 
     void dispatch(final StaplerRequest req, final StaplerResponse rsp, final TimeDuration delay) throws IOException {
+        final long start = HookMetrics.startRequest();
+        String outcome = HookMetrics.FAILED;
         try {
             final JSONObject response = innerDispatch(req, rsp, delay);
+            outcome = HookMetrics.SUCCEEDED;
 
             if (response.containsKey("created")) {
                 rsp.setStatus(SC_CREATED);
@@ -177,6 +181,7 @@ public class TeamBuildEndpoint implements UnprotectedRootAction {
             w.print(responseJsonString);
             w.println();
         } catch (final IllegalArgumentException e) {
+            outcome = HookMetrics.REJECTED;
             LOGGER.log(Level.WARNING, "IllegalArgumentException", e);
             EndpointHelper.error(SC_BAD_REQUEST, e);
         } catch (final ForwardToView e) {
@@ -186,6 +191,10 @@ public class TeamBuildEndpoint implements UnprotectedRootAction {
             final String message = String.format(template, commandName);
             LOGGER.log(Level.SEVERE, message, e);
             EndpointHelper.error(SC_INTERNAL_SERVER_ERROR, e);
+        } finally {
+            // only known command names become metric labels
+            final String metricCommandName = commandName != null && COMMAND_FACTORIES_BY_NAME.containsKey(commandName) ? commandName : null;
+            HookMetrics.endRequest(HookMetrics.TEAM_BUILD, metricCommandName, start, req.getContentLength(), outcome);
         }
     }
 
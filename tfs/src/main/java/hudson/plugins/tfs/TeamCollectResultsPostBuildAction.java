@@ -10,34 +10,45 @@ import hudson.model.TaskListener;
 import hudson.plugins.tfs.model.TeamRequestedResult;
 import hudson.plugins.tfs.model.TeamResultType;
 import hudson.plugins.tfs.telemetry.TelemetryHelper;
+import hudson.plugins.tfs.util.ParallelZipWriter;
+import hudson.remoting.Channel;
+import hudson.remoting.RemoteOutputStream;
+import hudson.remoting.VirtualChannel;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Publisher;
 import hudson.tasks.Recorder;
 import hudson.util.DirScanner;
-import hudson.util.io.Archiver;
-import hudson.util.io.ArchiverFactory;
+import hudson.util.FileVisitor;
+import hudson.util.ListBoxModel;
+import jenkins.MasterToSlaveFileCallable;
 import jenkins.tasks.SimpleBuildStep;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
 
 import javax.annotation.Nonnull;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
-import java.nio.file.Files;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.Deflater;
 
 public class TeamCollectResultsPostBuildAction extends Recorder implements SimpleBuildStep {
 
     private static final String TEAM_RESULTS = "team-results";
     static final String TEAM_RESULTS_ZIP = "team-results.zip";
+    private static final String COMPRESSION_THREADS_PROPERTY = TeamCollectResultsPostBuildAction.class.getName() + ".compressionThreads";
 
     private List<TeamRequestedResult> requestedResults = new ArrayList<TeamRequestedResult>();
+    // null in configurations saved before the compression level could be chosen
+    private Integer compressionLevel;
+    private boolean compressOnAgent;
 
     @DataBoundConstructor
     public TeamCollectResultsPostBuildAction() {
@@ -53,6 +64,31 @@ public class TeamCollectResultsPostBuildAction extends Recorder implements Simpl
         this.requestedResults = requestedResults;
     }
 
+    public int getCompressionLevel() {
+        return compressionLevel == null ? Deflater.DEFAULT_COMPRESSION : compressionLevel;
+    }
+
+    @DataBoundSetter
+    public void setCompressionLevel(final int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public boolean isCompressOnAgent() {
+        return compressOnAgent;
+    }
+
+    @DataBoundSetter
+    public void setCompressOnAgent(final boolean compressOnAgent) {
+        this.compressOnAgent = compressOnAgent;
+    }
+
+    /**
+     * Evaluated on the computer doing the compression, since it's that computer's processors that will be busy.
+     */
+    static int getCompressionThreads() {
+        return Integer.getInteger(COMPRESSION_THREADS_PROPERTY, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    }
+
     @Override
     public void perform(
             @Nonnull final Run<?, ?> run,
@@ -75,40 +111,100 @@ public class TeamCollectResultsPostBuildAction extends Recorder implements Simpl
         final PrintStream logger = listener.getLogger();
         logger.print("Recording results...");
         final File rootDir = run.getRootDir();
-        final File resultsRoot = new File(rootDir, TEAM_RESULTS);
-        for (final TeamRequestedResult requestedResult : requestedResults) {
-            final TeamResultType teamResultType = requestedResult.getTeamResultType();
-            final String folderName = teamResultType.getFolderName();
-            logger.print(" " + teamResultType.getDisplayName());
-            final File resultFolder = new File(resultsRoot, folderName);
-            Files.createDirectories(resultFolder.toPath());
-            final String includes = requestedResult.getIncludes();
-            final FilePath resultPath = new FilePath(resultFolder);
-            final int numCopied = workspace.copyRecursiveTo(includes, resultPath);
-            logger.print(" (" + numCopied + " file" + ((numCopied == 1) ? "" : "s") + ")");
-        }
-        logger.print(". Compressing...");
-        final ArchiverFactory zip = ArchiverFactory.ZIP;
         final File resultsZipFile = new File(rootDir, TEAM_RESULTS_ZIP);
-        final FileOutputStream outputStream = new FileOutputStream(resultsZipFile);
+        boolean archived = false;
         try {
-            final Archiver archiver = zip.create(outputStream);
-            try {
-                final DirScanner scanner = new DirScanner.Glob(TEAM_RESULTS + "/**", null, false);
-                scanner.scan(rootDir, archiver);
+            if (compressOnAgent && workspace.isRemote()) {
+                archiveOnAgent(workspace, resultsZipFile, logger);
             }
-            finally {
-                IOUtils.closeQuietly(archiver);
+            else {
+                archiveOnController(workspace, resultsZipFile, rootDir, logger);
             }
+            archived = true;
         }
         finally {
-            IOUtils.closeQuietly(outputStream);
+            // a truncated archive would be served as the build's results
+            if (!archived && resultsZipFile.exists() && !resultsZipFile.delete()) {
+                listener.error("Unable to delete the incomplete " + resultsZipFile);
+            }
         }
-        FileUtils.deleteDirectory(resultsRoot);
         TeamResultsAction.addToRun(run);
         logger.println(" Done.");
     }
 
+    private void archiveOnController(final FilePath workspace, final File resultsZipFile, final File rootDir, final PrintStream logger) throws IOException, InterruptedException {
+        // files are read straight from the workspace into the ZIP, deflating several at once
+        final ParallelZipWriter writer = new ParallelZipWriter(
+                new FileOutputStream(resultsZipFile), getCompressionLevel(), getCompressionThreads(), rootDir);
+        try {
+            for (final TeamRequestedResult requestedResult : requestedResults) {
+                final TeamResultType teamResultType = requestedResult.getTeamResultType();
+                final String folderName = teamResultType.getFolderName();
+                logger.print(" " + teamResultType.getDisplayName());
+                final String includes = requestedResult.getIncludes();
+                final List<ResultFile> resultFiles = workspace.act(new ListResultFiles(includes));
+                for (final ResultFile resultFile : resultFiles) {
+                    final String entryName = TEAM_RESULTS + "/" + folderName + "/" + resultFile.path;
+                    final FilePath filePath = workspace.child(resultFile.path);
+                    writer.addEntry(entryName, resultFile.lastModified, new ParallelZipWriter.EntrySource() {
+                        @Override
+                        public InputStream open() throws IOException, InterruptedException {
+                            return filePath.read();
+                        }
+                    });
+                }
+                logFileCount(logger, resultFiles.size());
+            }
+            logger.print(". Compressing...");
+            writer.finish();
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    private void archiveOnAgent(final FilePath workspace, final File resultsZipFile, final PrintStream logger) throws IOException, InterruptedException {
+        final ArrayList<RequestedFiles> requestedFiles = new ArrayList<RequestedFiles>();
+        for (final TeamRequestedResult requestedResult : requestedResults) {
+            final String folderName = requestedResult.getTeamResultType().getFolderName();
+            requestedFiles.add(new RequestedFiles(folderName, requestedResult.getIncludes()));
+        }
+        logger.print(" Compressing on the agent...");
+        final FileOutputStream outputStream = new FileOutputStream(resultsZipFile);
+        final List<Integer> counts;
+        try {
+            counts = workspace.act(new ArchiveResults(requestedFiles, getCompressionLevel(), new RemoteOutputStream(outputStream)));
+            // like FilePath#copyTo(OutputStream), wait for the last writes to reach the file
+            final VirtualChannel channel = workspace.getChannel();
+            if (channel instanceof Channel) {
+                ((Channel) channel).syncLocalIO();
+            }
+        }
+        finally {
+            outputStream.close();
+        }
+        for (int i = 0; i < counts.size(); i++) {
+            logger.print(" " + requestedResults.get(i).getTeamResultType().getDisplayName());
+            logFileCount(logger, counts.get(i));
+        }
+        logger.print(".");
+    }
+
+    private static void logFileCount(final PrintStream logger, final int numCopied) {
+        logger.print(" (" + numCopied + " file" + ((numCopied == 1) ? "" : "s") + ")");
+    }
+
+    static List<ResultFile> listResultFiles(final File workspace, final String includes) throws IOException {
+        final List<ResultFile> result = new ArrayList<ResultFile>();
+        new DirScanner.Glob(includes, null).scan(workspace, new FileVisitor() {
+            @Override
+            public void visit(final File f, final String relativePath) throws IOException {
+                result.add(new ResultFile(relativePath.replace('\\', '/'), f.lastModified()));
+            }
+        });
+        return result;
+    }
+
     @Override
     public DescriptorImpl getDescriptor() {
         return (DescriptorImpl) super.getDescriptor();
@@ -119,6 +215,94 @@ public class TeamCollectResultsPostBuildAction extends Recorder implements Simpl
         return BuildStepMonitor.NONE;
     }
 
+    static final class ResultFile implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final String path;
+        final long lastModified;
+
+        ResultFile(final String path, final long lastModified) {
+            this.path = path;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * Lists the files matching the includes, relative to the workspace and with forward slashes.
+     */
+    static final class ListResultFiles extends MasterToSlaveFileCallable<List<ResultFile>> {
+        private static final long serialVersionUID = 1L;
+
+        private final String includes;
+
+        ListResultFiles(final String includes) {
+            this.includes = includes;
+        }
+
+        @Override
+        public List<ResultFile> invoke(final File workspace, final VirtualChannel channel) throws IOException, InterruptedException {
+            return listResultFiles(workspace, includes);
+        }
+    }
+
+    static final class RequestedFiles implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final String folderName;
+        final String includes;
+
+        RequestedFiles(final String folderName, final String includes) {
+            this.folderName = folderName;
+            this.includes = includes;
+        }
+    }
+
+    /**
+     * Builds the whole archive on the agent, so that only the compressed stream crosses the channel.
+     *
+     * @return the number of files collected for each of the requested results
+     */
+    static final class ArchiveResults extends MasterToSlaveFileCallable<List<Integer>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<RequestedFiles> requestedFiles;
+        private final int compressionLevel;
+        private final OutputStream out;
+
+        ArchiveResults(final ArrayList<RequestedFiles> requestedFiles, final int compressionLevel, final OutputStream out) {
+            this.requestedFiles = requestedFiles;
+            this.compressionLevel = compressionLevel;
+            this.out = out;
+        }
+
+        @Override
+        public List<Integer> invoke(final File workspace, final VirtualChannel channel) throws IOException, InterruptedException {
+            final List<Integer> result = new ArrayList<Integer>();
+            final ParallelZipWriter writer = new ParallelZipWriter(out, compressionLevel, getCompressionThreads(), null);
+            try {
+                for (final RequestedFiles requested : requestedFiles) {
+                    final List<ResultFile> resultFiles = listResultFiles(workspace, requested.includes);
+                    for (final ResultFile resultFile : resultFiles) {
+                        final String entryName = TEAM_RESULTS + "/" + requested.folderName + "/" + resultFile.path;
+                        final File file = new File(workspace, resultFile.path);
+                        writer.addEntry(entryName, resultFile.lastModified, new ParallelZipWriter.EntrySource() {
+                            @Override
+                            public InputStream open() throws IOException {
+                                return new FileInputStream(file);
+                            }
+                        });
+                    }
+                    result.add(resultFiles.size());
+                }
+                writer.finish();
+            }
+            finally {
+                writer.close();
+            }
+            return result;
+        }
+    }
+
     @Extension
     public static class DescriptorImpl extends BuildStepDescriptor<Publisher> {
 
@@ -131,5 +315,18 @@ public class TeamCollectResultsPostBuildAction extends Recorder implements Simpl
         public String getDisplayName() {
             return "Collect results for TFS/Team Services";
         }
+
+        @SuppressWarnings("unused" /* called by Stapler */)
+        public ListBoxModel doFillCompressionLevelItems() {
+            final ListBoxModel result = new ListBoxModel();
+            result.add("Default", String.valueOf(Deflater.DEFAULT_COMPRESSION));
+            result.add("None (store the files)", String.valueOf(Deflater.NO_COMPRESSION));
+            result.add("1 (fastest)", String.valueOf(Deflater.BEST_SPEED));
+            for (int level = 2; level < Deflater.BEST_COMPRESSION; level++) {
+                result.add(String.valueOf(level), String.valueOf(level));
+            }
+            result.add("9 (smallest)", String.valueOf(Deflater.BEST_COMPRESSION));
+            return result;
+        }
     }
 }
@@ -22,6 +22,7 @@ import hudson.model.Descriptor;
 import hudson.model.Item;
 import hudson.model.ItemGroup;
 import hudson.plugins.tfs.model.ConnectionParameters;
+import hudson.plugins.tfs.model.GitRepositoryCatalog;
 import hudson.plugins.tfs.model.ListOfGitRepositories;
 import hudson.plugins.tfs.model.MockableVersionControlClient;
 import hudson.plugins.tfs.model.Server;
@@ -213,6 +214,9 @@ public class TeamCollectionConfiguration extends AbstractDescribableImpl<TeamCol
 
         try {
             final ListOfGitRepositories repositories = client.getRepositories();
+            if (repositories.value != null) {
+                GitRepositoryCatalog.forCollection(URI.create(collectionUri)).update(repositories.value);
+            }
             if (repositories.count < 1) {
                 return FormValidation.warning("There does not seem to be any Git repositories");
             }
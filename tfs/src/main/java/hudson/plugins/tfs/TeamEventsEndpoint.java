@@ -12,6 +12,7 @@ import hudson.plugins.tfs.model.GitPullRequestMergedEvent;
 import hudson.plugins.tfs.model.GitPushEvent;
 import hudson.plugins.tfs.model.PingHookEvent;
 import hudson.plugins.tfs.model.servicehooks.Event;
+import hudson.plugins.tfs.telemetry.HookMetrics;
 import hudson.plugins.tfs.telemetry.TelemetryHelper;
 import hudson.plugins.tfs.util.EndpointHelper;
 import hudson.plugins.tfs.util.MediaType;
@@ -34,6 +35,7 @@ import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -132,11 +134,43 @@ public class TeamEventsEndpoint implements UnprotectedRootAction {
         return null;
     }
 
+    /**
+     * Determines the size of the request body as it was received, in bytes, even when
+     * the request didn't declare it (i.e. a chunked request).
+     *
+     * @return the number of bytes or -1 if unknown
+     */
+    static long determinePayloadBytes(final int contentLength, final String characterEncoding, final String body) {
+        if (contentLength >= 0) {
+            return contentLength;
+        }
+        if (body == null) {
+            return -1;
+        }
+        // the body was decoded with the request's encoding; JSON defaults to UTF-8
+        Charset charset = MediaType.UTF_8;
+        if (characterEncoding != null) {
+            try {
+                charset = Charset.forName(characterEncoding);
+            }
+            catch (final IllegalArgumentException ignored) {
+                // the body was decoded with the platform's encoding, the closest being UTF-8
+            }
+        }
+        return body.getBytes(charset).length;
+    }
+
     void dispatch(final StaplerRequest request, final StaplerResponse rsp, final String body) {
+        final long start = HookMetrics.startRequest();
         final String pathInfo = request.getPathInfo();
         final String eventName = pathInfoToEventName(pathInfo);
+        // only known event names become metric labels
+        final String metricEventName = eventName != null && HOOK_EVENT_FACTORIES_BY_NAME.containsKey(eventName) ? eventName : null;
+        final long payloadBytes = determinePayloadBytes(request.getContentLength(), request.getCharacterEncoding(), body);
+        String outcome = HookMetrics.FAILED;
         try {
             final JSONObject response = innerDispatch(body, eventName, HOOK_EVENT_FACTORIES_BY_NAME);
+            outcome = HookMetrics.SUCCEEDED;
 
             rsp.setStatus(SC_OK);
             rsp.setContentType(MediaType.APPLICATION_JSON_UTF_8);
@@ -146,6 +180,7 @@ public class TeamEventsEndpoint implements UnprotectedRootAction {
             w.println();
         }
         catch (final IllegalArgumentException e) {
+            outcome = HookMetrics.REJECTED;
             LOGGER.log(Level.WARNING, "IllegalArgumentException", e);
             EndpointHelper.error(SC_BAD_REQUEST, e);
         }
@@ -155,6 +190,9 @@ public class TeamEventsEndpoint implements UnprotectedRootAction {
             LOGGER.log(Level.SEVERE, message, e);
             EndpointHelper.error(SC_INTERNAL_SERVER_ERROR, e);
         }
+        finally {
+            HookMetrics.endRequest(HookMetrics.TEAM_EVENTS, metricEventName, start, payloadBytes, outcome);
+        }
     }
 
     static JSONObject innerDispatch(final String body, final String eventName, final Map<String, AbstractHookEvent.Factory> factoriesByName) throws IOException {
@@ -162,7 +200,9 @@ public class TeamEventsEndpoint implements UnprotectedRootAction {
             throw new IllegalArgumentException("Invalid event");
         }
         final AbstractHookEvent.Factory factory = factoriesByName.get(eventName);
+        final long deserializationStart = System.nanoTime();
         final Event serviceHookEvent = deserializeEvent(body);
+        HookMetrics.recordDeserialization(eventName, System.nanoTime() - deserializationStart);
         final String message = serviceHookEvent.getMessage() != null ? serviceHookEvent.getMessage().getText() : "";
         final String detailedMessage = serviceHookEvent.getDetailedMessage() != null ? serviceHookEvent.getDetailedMessage().getText() : "";
         final AbstractHookEvent hookEvent = factory.create();
@@ -20,6 +20,8 @@ import hudson.plugins.tfs.actions.CheckoutAction;
 import hudson.plugins.tfs.actions.RemoveWorkspaceAction;
 import hudson.plugins.tfs.browsers.TeamFoundationServerRepositoryBrowser;
 import hudson.plugins.tfs.browsers.TeamSystemWebAccessBrowser;
+import hudson.plugins.tfs.commands.RemoteChangesetVersionCommand;
+import hudson.plugins.tfs.model.BuildHistory;
 import hudson.plugins.tfs.model.ChangeSet;
 import hudson.plugins.tfs.model.CredentialsConfigurer;
 import hudson.plugins.tfs.model.CredentialsConfigurerDescriptor;
@@ -27,6 +29,10 @@ import hudson.plugins.tfs.model.ManualCredentialsConfigurer;
 import hudson.plugins.tfs.model.Project;
 import hudson.plugins.tfs.model.Server;
 import hudson.plugins.tfs.model.WorkspaceConfiguration;
+import hudson.plugins.tfs.model.WorkspaceIndex;
+import hudson.plugins.tfs.model.WorkspaceLocks;
+import hudson.plugins.tfs.model.WorkspaceMapping;
+import hudson.plugins.tfs.model.WorkspacePool;
 import hudson.plugins.tfs.util.BuildVariableResolver;
 import hudson.plugins.tfs.util.BuildWorkspaceConfigurationRetriever;
 import hudson.plugins.tfs.util.BuildWorkspaceConfigurationRetriever.BuildWorkspaceConfiguration;
@@ -44,6 +50,7 @@ import hudson.util.LogTaskListener;
 import hudson.util.Scrambler;
 import hudson.util.Secret;
 import hudson.util.VariableResolver;
+import jenkins.model.Jenkins;
 import net.sf.json.JSONObject;
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
@@ -58,7 +65,10 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -85,6 +95,7 @@ public class TeamFoundationServerScm extends SCM {
     private final String serverUrl;
     private final String projectPath;
     private Collection<String> cloakedPaths;
+    private Collection<String> additionalMappings;
     private String localPath;
     private final String workspaceName;
     @Deprecated private String userPassword;
@@ -93,6 +104,7 @@ public class TeamFoundationServerScm extends SCM {
     private CredentialsConfigurer credentialsConfigurer;
     private boolean useUpdate;
     private boolean useOverwrite;
+    private boolean useWorkspacePool;
     private String versionSpec;
 
     private TeamFoundationServerRepositoryBrowser repositoryBrowser;
@@ -196,6 +208,19 @@ public class TeamFoundationServerScm extends SCM {
         this.useOverwrite = useOverwrite;
     }
 
+    /**
+     * Determines if clean checkouts copy a workspace shared by the jobs mapping the same folders
+     * on the agent, instead of downloading all the files.
+     */
+    public boolean isUseWorkspacePool() {
+        return useWorkspacePool;
+    }
+
+    @DataBoundSetter
+    public void setUseWorkspacePool(final boolean useWorkspacePool) {
+        this.useWorkspacePool = useWorkspacePool;
+    }
+
     public String getUserPassword() {
         return Secret.toString(password);
     }
@@ -233,6 +258,19 @@ public class TeamFoundationServerScm extends SCM {
         this.cloakedPaths = splitCloakedPaths(cloakedPaths);
     }
 
+    /**
+     * Returns the server folders to map in the same workspace as the project path, one per line,
+     * each optionally followed by a colon and the local folder (relative to the local workfolder).
+     */
+    public String getAdditionalMappings() {
+        return serializeCloakedPathCollectionToString(this.additionalMappings);
+    }
+
+    @DataBoundSetter
+    public void setAdditionalMappings(final String additionalMappings) {
+        this.additionalMappings = splitMappings(additionalMappings);
+    }
+
     // Bean properties END
 
     static String serializeCloakedPathCollectionToString(final Collection<String> cloakedPaths) {
@@ -274,6 +312,26 @@ public class TeamFoundationServerScm extends SCM {
         return paths;
     }
 
+    List<WorkspaceMapping> getAdditionalMappings(final Run<?, ?> run) {
+        final List<WorkspaceMapping> mappings = new ArrayList<WorkspaceMapping>();
+        if (additionalMappings != null) {
+            final BuildVariableResolver resolver = new BuildVariableResolver(run.getParent());
+            for (final String additionalMapping : additionalMappings) {
+                final String mapping = substituteBuildParameter(run, additionalMapping);
+                final String enhancedMapping = Util.replaceMacro(mapping, resolver);
+                mappings.add(WorkspaceMapping.parse(enhancedMapping));
+            }
+        }
+        return mappings;
+    }
+
+    /**
+     * Returns the server paths the builds of the run's job get, starting with the project path.
+     */
+    List<String> getProjectPaths(final Run<?, ?> run) {
+        return WorkspaceMapping.toServerPaths(getProjectPath(run), getAdditionalMappings(run));
+    }
+
     private String substituteBuildParameter(final Run<?, ?> run, final String text) {
         if (run instanceof AbstractBuild<?, ?>) {
             AbstractBuild<?, ?> build = (AbstractBuild<?, ?>) run;
@@ -284,6 +342,23 @@ public class TeamFoundationServerScm extends SCM {
         return text;
     }
 
+    /**
+     * Splits the additional mappings into one entry per non-blank line, without parsing them,
+     * since they may still contain build parameters and variables.
+     */
+    static List<String> splitMappings(final String mappings) {
+        final List<String> result = new ArrayList<String>();
+        if (mappings != null) {
+            for (final String line : mappings.split("\r?\n")) {
+                final String mapping = line.trim();
+                if (mapping.length() > 0) {
+                    result.add(mapping);
+                }
+            }
+        }
+        return result;
+    }
+
     static Collection<String> splitCloakedPaths(final String cloakedPaths) {
         final List<String> cloakedPathsList = new ArrayList<String>();
         if (cloakedPaths != null && cloakedPaths.length() > 0) {
@@ -312,13 +387,13 @@ public class TeamFoundationServerScm extends SCM {
     public void checkout(final Run<?, ?> build, final Launcher launcher, final FilePath workspaceFilePath, final TaskListener listener, final File changelogFile, final SCMRevisionState baseline) throws IOException, InterruptedException {
         Server server = createServer(launcher, listener, build);
         try {
-            WorkspaceConfiguration workspaceConfiguration = new WorkspaceConfiguration(server.getUrl(), getWorkspaceName(build, workspaceFilePath.toComputer()), getProjectPath(build), getCloakedPaths(build), getLocalPath());
+            WorkspaceConfiguration workspaceConfiguration = new WorkspaceConfiguration(server.getUrl(), getWorkspaceName(build, workspaceFilePath.toComputer()), getProjectPath(build), getCloakedPaths(build), getAdditionalMappings(build), getLocalPath());
             final Run<?, ?> previousBuild = build.getPreviousBuild();
             // Check if the configuration has changed
             if (previousBuild != null) {
                 Computer computer = workspaceFilePath.toComputer();
                 if (computer != null) {
-                    BuildWorkspaceConfiguration nodeConfiguration = new BuildWorkspaceConfigurationRetriever().getLatestForNode(computer.getNode(), previousBuild);
+                    BuildWorkspaceConfiguration nodeConfiguration = getLatestForNode(build.getParent(), computer.getNode(), previousBuild);
                     if ((nodeConfiguration != null)
                             && nodeConfiguration.workspaceExists()
                             && (!workspaceConfiguration.equals(nodeConfiguration))) {
@@ -331,6 +406,7 @@ public class TeamFoundationServerScm extends SCM {
             }
 
             build.addAction(workspaceConfiguration);
+            recordInWorkspaceIndex(build, workspaceFilePath.toComputer());
             String singleVersionSpec = versionSpec;
 
             if (build instanceof AbstractBuild) {
@@ -339,17 +415,71 @@ public class TeamFoundationServerScm extends SCM {
             }
 
             final String projPath = workspaceConfiguration.getProjectPath();
-            final Project project = server.getProject(projPath);
-            final int changeSet = recordWorkspaceChangesetVersion(build, listener, project, projPath, singleVersionSpec);
+            // a single changeset for all the mapped folders, so they are consistent with each other
+            final Project project = server.getProject(workspaceConfiguration.getProjectPaths());
+            // the history that resolves the changeset also lists the changes since the previous build
+            final BuildHistory history = queryBuildHistory(build, listener, project, singleVersionSpec, previousBuild);
+            final int changeSet;
+            if (history != null) {
+                changeSet = history.getChangesetVersion();
+                recordWorkspaceChangesetVersion(build, projPath, changeSet);
+            } else {
+                changeSet = recordWorkspaceChangesetVersion(build, listener, project, projPath, singleVersionSpec);
+            }
 
-            CheckoutAction action = new CheckoutAction(workspaceConfiguration.getWorkspaceName(), workspaceConfiguration.getProjectPath(), workspaceConfiguration.getCloakedPaths(), workspaceConfiguration.getWorkfolder(), isUseUpdate(), isUseOverwrite());
-            List<ChangeSet> list;
-            if (StringUtils.isNotEmpty(singleVersionSpec)) {
-                list = action.checkoutBySingleVersionSpec(server, workspaceFilePath, singleVersionSpec);
+            final WorkspacePool pool = createWorkspacePool(workspaceFilePath);
+            final WorkspacePool.Lease lease;
+            final ReentrantLock workspaceLock;
+            final CheckoutAction action;
+            final FilePath checkoutPath;
+            if (pool != null) {
+                final String key = WorkspacePool.toKey(workspaceConfiguration.getServerUrl(), workspaceConfiguration.getProjectPath(), workspaceConfiguration.getCloakedPaths(), workspaceConfiguration.getAdditionalMappings());
+                final String poolWorkspaceName = pool.getWorkspaceName(key);
+                listener.getLogger().println("Leasing pooled workspace '" + poolWorkspaceName + "'...");
+                lease = pool.lease(key);
+                workspaceLock = null;
+                // the pooled workspace is only ever updated, the job's workfolder gets a clean copy
+                action = new CheckoutAction(poolWorkspaceName, workspaceConfiguration.getProjectPath(), workspaceConfiguration.getCloakedPaths(), workspaceConfiguration.getAdditionalMappings(), ".", true, true);
+                checkoutPath = lease.getFolder();
             } else {
-                final VersionSpec previousBuildVersionSpec = determineVersionSpecFromBuild(previousBuild, 1, changeSet);
-                final ChangesetVersionSpec currentBuildVersionSpec = new ChangesetVersionSpec(changeSet);
-                list = action.checkout(server, workspaceFilePath, previousBuildVersionSpec, currentBuildVersionSpec);
+                lease = null;
+                // a background prefetch may be getting files into the same workspace
+                workspaceLock = WorkspaceLocks.get(getNodeName(workspaceFilePath.toComputer()), workspaceConfiguration.getWorkspaceName());
+                workspaceLock.lockInterruptibly();
+                action = new CheckoutAction(workspaceConfiguration.getWorkspaceName(), workspaceConfiguration.getProjectPath(), workspaceConfiguration.getCloakedPaths(), workspaceConfiguration.getAdditionalMappings(), workspaceConfiguration.getWorkfolder(), isUseUpdate(), isUseOverwrite());
+                checkoutPath = workspaceFilePath;
+            }
+            List<ChangeSet> list;
+            try {
+                if (lease != null) {
+                    checkoutPath.mkdirs();
+                    lease.recordUse(workspaceConfiguration.getServerUrl());
+                }
+                if (history != null && StringUtils.isNotEmpty(singleVersionSpec)) {
+                    list = action.checkoutWithKnownHistory(server, checkoutPath, singleVersionSpec, history.getChangeSets());
+                } else if (history != null) {
+                    final String currentVersionSpec = RemoteChangesetVersionCommand.toString(new ChangesetVersionSpec(changeSet));
+                    list = action.checkoutWithKnownHistory(server, checkoutPath, currentVersionSpec, history.getChangeSetsWithoutCloakedPaths(workspaceConfiguration.getCloakedPaths()));
+                } else if (StringUtils.isNotEmpty(singleVersionSpec)) {
+                    list = action.checkoutBySingleVersionSpec(server, checkoutPath, singleVersionSpec);
+                } else {
+                    final VersionSpec previousBuildVersionSpec = determineVersionSpecFromBuild(previousBuild, 1, changeSet);
+                    final ChangesetVersionSpec currentBuildVersionSpec = new ChangesetVersionSpec(changeSet);
+                    list = action.checkout(server, checkoutPath, previousBuildVersionSpec, currentBuildVersionSpec);
+                }
+                if (lease != null) {
+                    final int count = lease.copyTo(workspaceFilePath.child(workspaceConfiguration.getWorkfolder()));
+                    listener.getLogger().println("Copied " + count + " files from the pooled workspace.");
+                }
+            } finally {
+                if (lease != null) {
+                    lease.close();
+                } else {
+                    workspaceLock.unlock();
+                }
+            }
+            if (pool != null) {
+                removeIdlePooledWorkspaces(pool, server, workspaceConfiguration.getServerUrl(), listener);
             }
 
             if (changelogFile != null) {
@@ -361,6 +491,47 @@ public class TeamFoundationServerScm extends SCM {
         }
     }
 
+    /**
+     * Returns the pool of the agent hosting the workspace, if clean checkouts should use it.
+     */
+    @CheckForNull
+    WorkspacePool createWorkspacePool(final FilePath workspaceFilePath) {
+        if (!useWorkspacePool || useUpdate) {
+            return null;
+        }
+        final Computer computer = workspaceFilePath.toComputer();
+        final Node node = computer != null ? computer.getNode() : null;
+        final FilePath rootPath = node != null ? node.getRootPath() : null;
+        if (rootPath == null) {
+            return null;
+        }
+        return new WorkspacePool(rootPath, getNodeName(computer));
+    }
+
+    /**
+     * Removes the agent's pooled workspaces of the collection that no build leased for a while.
+     * A failure doesn't fail the build, which got its files; the next build tries again.
+     */
+    static void removeIdlePooledWorkspaces(final WorkspacePool pool, final Server server, final String serverUrl, final TaskListener listener) throws InterruptedException {
+        try {
+            for (final String key : pool.findIdle(serverUrl, WorkspacePool.getMaxIdleMillis())) {
+                final String workspaceName = pool.getWorkspaceName(key);
+                if (pool.remove(key, server.getWorkspaces())) {
+                    listener.getLogger().println("Removed pooled workspace '" + workspaceName + "', which no build used recently.");
+                }
+            }
+        } catch (final IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Unable to remove the idle pooled workspaces of " + serverUrl, e);
+        }
+    }
+
+    /**
+     * Returns the name of the computer's node, like in NODE_NAME, where the built-in node's empty name is "master".
+     */
+    static String getNodeName(@CheckForNull final Computer computer) {
+        return computer == null ? "master" : StringUtils.defaultIfEmpty(computer.getName(), "master");
+    }
+
     static VersionSpec determineVersionSpecFromBuild(final Run<?, ?> build, final int offset, final int maximumChangeSetNumber) {
         final VersionSpec result;
         if (build != null) {
@@ -381,21 +552,56 @@ public class TeamFoundationServerScm extends SCM {
         return result;
     }
 
-    int recordWorkspaceChangesetVersion(final Run<?, ?> build, final TaskListener listener, final Project project, final String projectPath, final String singleVersionSpec) throws IOException, InterruptedException {
+    /**
+     * Queries the history that resolves the changeset the build gets and lists the changes since the previous build,
+     * when there is one to compare with or the changeset is fixed by a version spec.
+     *
+     * @return the history or {@code null} if the changeset must be resolved separately
+     */
+    BuildHistory queryBuildHistory(final Run<?, ?> build, final TaskListener listener, final Project project, final String singleVersionSpec, final Run<?, ?> previousBuild) {
         final VersionSpec workspaceVersion;
-
+        final int previousChangeset;
         if (!StringUtils.isEmpty(singleVersionSpec)) {
             workspaceVersion = VersionSpec.parseSingleVersionFromSpec(singleVersionSpec, null);
+            previousChangeset = 0;
         } else {
+            final TFSRevisionState previousState = previousBuild != null ? previousBuild.getAction(TFSRevisionState.class) : null;
+            if (previousState == null) {
+                return null;
+            }
             workspaceVersion = new DateVersionSpec(build.getTimestamp());
+            previousChangeset = previousState.changesetVersion;
         }
-        int buildChangeset;
+        listener.getLogger().println(String.format("Querying for remote changeset at '%s' as of '%s'...",
+                StringUtils.join(project.getProjectPaths(), "', '"), RemoteChangesetVersionCommand.toString(workspaceVersion)));
         setWorkspaceChangesetVersion(null);
-        buildChangeset = project.getRemoteChangesetVersion(workspaceVersion);
+        final BuildHistory result = project.getHistorySince(previousChangeset, workspaceVersion);
+        if (result != null) {
+            listener.getLogger().println(String.format("Query result is: Changeset #%d, %d changesets since the previous build.",
+                    result.getChangesetVersion(), result.getChangeSets().size()));
+        }
+        return result;
+    }
+
+    void recordWorkspaceChangesetVersion(final Run<?, ?> build, final String projectPath, final int buildChangeset) {
         setWorkspaceChangesetVersion(Integer.toString(buildChangeset, RADIX_10));
 
         // by adding this action, we prevent calcRevisionsFromBuild() from being called
         build.addAction(new TFSRevisionState(buildChangeset, projectPath));
+    }
+
+    int recordWorkspaceChangesetVersion(final Run<?, ?> build, final TaskListener listener, final Project project, final String projectPath, final String singleVersionSpec) throws IOException, InterruptedException {
+        final VersionSpec workspaceVersion;
+
+        if (!StringUtils.isEmpty(singleVersionSpec)) {
+            workspaceVersion = VersionSpec.parseSingleVersionFromSpec(singleVersionSpec, null);
+        } else {
+            workspaceVersion = new DateVersionSpec(build.getTimestamp());
+        }
+        int buildChangeset;
+        setWorkspaceChangesetVersion(null);
+        buildChangeset = project.getRemoteChangesetVersion(workspaceVersion);
+        recordWorkspaceChangesetVersion(build, projectPath, buildChangeset);
 
         return buildChangeset;
     }
@@ -412,7 +618,7 @@ public class TeamFoundationServerScm extends SCM {
         } else {
             Server server = createServer(launcher, listener, lastRun);
             try {
-                return (server.getProject(getProjectPath(lastRun)).getDetailedHistoryWithoutCloakedPaths(
+                return (server.getProject(getProjectPaths(lastRun)).getDetailedHistoryWithoutCloakedPaths(
                             lastRun.getTimestamp(),
                             Calendar.getInstance(),
                             getCloakedPaths(lastRun)
@@ -431,9 +637,22 @@ public class TeamFoundationServerScm extends SCM {
             return true;
         }
 
+        // the index spares walking the builds, when running on a started controller
+        final WorkspaceIndex index = WorkspaceIndex.forJob(project);
+
         // Due to an error in Hudson core (pre 1.321), null was sent in for all invocations of this method
         // Therefore we try to work around the problem, and see if its only built on one node or not.
-        if (nodeIter == null) {
+        if (nodeIter == null && index != null) {
+            final Set<String> nodeNames = index.getNodeNames();
+            if (nodeNames.size() > 1) {
+                logger.warning("Could not wipe out workspace as there is no way of telling what Node the request is for. Please upgrade Hudson to a newer version.");
+                return false;
+            }
+            nodeIter = nodeNames.isEmpty() ? null : getNode(nodeNames.iterator().next());
+            if (nodeIter == null) {
+                return true;
+            }
+        } else if (nodeIter == null) {
             while (lastRun != null) {
                 if (!(lastRun instanceof AbstractBuild<?, ?>)) {
                     return false;
@@ -456,8 +675,14 @@ public class TeamFoundationServerScm extends SCM {
             lastRun = project.getLastBuild();
         }
 
-        BuildWorkspaceConfiguration configuration = new BuildWorkspaceConfigurationRetriever().getLatestForNode(nodeIter, lastRun);
+        BuildWorkspaceConfiguration configuration = index != null
+                ? index.getLatestForNode(project, nodeIter)
+                : new BuildWorkspaceConfigurationRetriever().getLatestForNode(nodeIter, lastRun);
         if ((configuration != null) && configuration.workspaceExists()) {
+            if (TeamPluginGlobalConfig.get().isBulkWorkspaceRemoval()) {
+                WorkspaceRemovalQueue.get().add(new WorkspaceRemovalQueue.Request(this, lastRun, nodeIter, configuration));
+                return true;
+            }
             LogTaskListener listener = new LogTaskListener(logger, Level.INFO);
             Launcher launcher = nodeIter.createLauncher(listener);
             Server server = createServer(launcher, listener, lastRun);
@@ -473,6 +698,38 @@ public class TeamFoundationServerScm extends SCM {
         return true;
     }
 
+    private static Node getNode(final String nodeName) {
+        final Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return null;
+        }
+        // the master's name is empty
+        return nodeName.isEmpty() ? jenkins : jenkins.getNode(nodeName);
+    }
+
+    /**
+     * Returns the configuration of the latest build on the node, from the job's index when possible.
+     */
+    BuildWorkspaceConfiguration getLatestForNode(final Job<?, ?> job, final Node node, final Run<?, ?> latestRun) {
+        final WorkspaceIndex index = WorkspaceIndex.forJob(job);
+        if (index == null || node == null) {
+            return new BuildWorkspaceConfigurationRetriever().getLatestForNode(node, latestRun);
+        }
+        return index.getLatestForNode(job, node);
+    }
+
+    private static void recordInWorkspaceIndex(final Run<?, ?> build, final Computer computer) {
+        final Node node = computer != null ? computer.getNode() : null;
+        if (!(build instanceof AbstractBuild<?, ?>) || node == null) {
+            // like BuildWorkspaceConfigurationRetriever, only builds of AbstractProjects are considered
+            return;
+        }
+        final WorkspaceIndex index = WorkspaceIndex.forJob(build.getParent());
+        if (index != null) {
+            index.record(node.getNodeName(), build.getNumber());
+        }
+    }
+
     protected Server createServer(final Launcher launcher, final TaskListener taskListener, final Run<?, ?> run) throws IOException {
         final CredentialsConfigurer credentialsConfig = getCredentialsConfigurer();
         final String collectionUri = getServerUrl(run);
@@ -480,6 +737,20 @@ public class TeamFoundationServerScm extends SCM {
         return Server.create(launcher, taskListener, collectionUri, credentials, null, null);
     }
 
+    /**
+     * Identifies the connections that builds can share: those to the same collection as the same user.
+     */
+    String getConnectionKey(final Run<?, ?> run) {
+        final String collectionUri = getServerUrl(run);
+        final StandardUsernamePasswordCredentials credentials = getCredentialsConfigurer().getCredentials(collectionUri);
+        return toConnectionKey(collectionUri, credentials != null ? credentials.getUsername() : null);
+    }
+
+    static String toConnectionKey(final String collectionUri, final String userName) {
+        return StringUtils.removeEnd(StringUtils.defaultString(collectionUri), "/").toLowerCase(Locale.ENGLISH)
+                + '\n' + StringUtils.defaultString(userName);
+    }
+
     @Override
     public boolean requiresWorkspaceForPolling() {
         return false;
@@ -650,6 +921,16 @@ public class TeamFoundationServerScm extends SCM {
                     "Workspace name is mandatory", value);
         }
 
+        /** Validates Additional mappings form field. */
+        public FormValidation doAdditionalMappingsCheck(@QueryParameter final String value) {
+            try {
+                WorkspaceMapping.parse(splitMappings(value));
+            } catch (final IllegalArgumentException e) {
+                return FormValidation.error(e.getMessage());
+            }
+            return FormValidation.ok();
+        }
+
         /** Validates Cloaked Paths form field. */
         public FormValidation doCloakedPathsCheck(@QueryParameter final String value) {
             return doRegexCheck(new Pattern[]{CLOAKED_PATHS_REGEX},
@@ -711,7 +992,7 @@ public class TeamFoundationServerScm extends SCM {
                     return PollingResult.BUILD_NOW;
                 } else {
                     try {
-                        return (server.getProject(getProjectPath(build)).getDetailedHistoryWithoutCloakedPaths(
+                        return (server.getProject(getProjectPaths(build)).getDetailedHistoryWithoutCloakedPaths(
                                 build.getTimestamp(),
                                 Calendar.getInstance(),
                                 getCloakedPaths(build)
@@ -727,8 +1008,13 @@ public class TeamFoundationServerScm extends SCM {
             // There's no PollingResult.INCOMPARABLE, so we use the next closest thing
             return PollingResult.BUILD_NOW;
         }
-        final Project tfsProject = server.getProject(projectPath);
+        if (build == null) {
+            return PollingResult.BUILD_NOW;
+        }
         try {
+            // expanded like checkout does, since they may refer to build parameters and variables
+            final List<WorkspaceMapping> mappings = getAdditionalMappings(build);
+            final Project tfsProject = server.getProject(WorkspaceMapping.toServerPaths(projectPath, mappings));
             final ChangeSet latest = tfsProject.getLatestUncloakedChangeset(tfsBaseline.changesetVersion, cloakedPaths);
             final TFSRevisionState tfsRemote =
                     (latest != null)
@@ -0,0 +1,220 @@
+package hudson.plugins.tfs;
+
+import hudson.Extension;
+import hudson.model.ManagementLink;
+import hudson.plugins.tfs.telemetry.MetricFamily;
+import hudson.plugins.tfs.telemetry.MetricSeries;
+import hudson.plugins.tfs.telemetry.MetricsRegistry;
+import hudson.plugins.tfs.util.MediaType;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A page under "Manage Jenkins" summarizing how service hook requests from TFS/Team Services
+ * are being handled, along with the same data as JSON at {@code json}.
+ */
+@Extension
+public class TeamHookMetricsLink extends ManagementLink {
+
+    public static final String URL_NAME = "tfs-hook-metrics";
+    static final String METRIC_PREFIX = "tfs_hook_";
+    private static final double MEDIAN = 0.5;
+    private static final double NINETY_FIFTH_PERCENTILE = 0.95;
+
+    @Override
+    public String getIconFileName() {
+        return "graph.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "TFS/Team Services hook metrics";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Request rates, payload sizes and where the time goes when TFS/Team Services service hooks are handled.";
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    /**
+     * Returns one row per series of the hook metrics, for the page.
+     */
+    public List<Row> getRows() {
+        final List<Row> result = new ArrayList<Row>();
+        for (final MetricFamily family : getHookFamilies()) {
+            for (final Map.Entry<List<String>, MetricSeries> entry : family.getSeries().entrySet()) {
+                result.add(new Row(family, entry.getKey(), entry.getValue()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Renders the hook metrics as JSON, for scripts and dashboards.
+     */
+    public void doJson(final StaplerRequest request, final StaplerResponse response) throws IOException {
+        Jenkins.getActiveInstance().checkPermission(Jenkins.ADMINISTER);
+        final JSONArray metrics = new JSONArray();
+        for (final MetricFamily family : getHookFamilies()) {
+            final JSONArray series = new JSONArray();
+            for (final Map.Entry<List<String>, MetricSeries> entry : family.getSeries().entrySet()) {
+                final Row row = new Row(family, entry.getKey(), entry.getValue());
+                final JSONObject labels = new JSONObject();
+                final List<String> labelNames = family.getLabelNames();
+                for (int i = 0; i < labelNames.size(); i++) {
+                    labels.put(labelNames.get(i), entry.getKey().get(i));
+                }
+                final JSONObject item = new JSONObject();
+                item.put("labels", labels);
+                item.put("count", row.getCount());
+                if (family.getType() == MetricFamily.Type.HISTOGRAM) {
+                    item.put("sum", row.getSum());
+                    item.put("mean", row.getMean());
+                    item.put("p50", row.getMedian());
+                    item.put("p95", row.getNinetyFifthPercentile());
+                } else {
+                    item.put("total", entry.getValue().getSum());
+                }
+                series.add(item);
+            }
+            final JSONObject metric = new JSONObject();
+            metric.put("name", family.getName());
+            metric.put("help", family.getHelp());
+            metric.put("type", family.getType().name().toLowerCase(Locale.ENGLISH));
+            metric.put("series", series);
+            metrics.add(metric);
+        }
+        final JSONObject result = new JSONObject();
+        result.put("metrics", metrics);
+
+        response.setContentType(MediaType.APPLICATION_JSON_UTF_8);
+        response.setHeader("Cache-Control", "no-cache");
+        final PrintWriter writer = response.getWriter();
+        writer.print(result.toString());
+        writer.println();
+    }
+
+    static List<MetricFamily> getHookFamilies() {
+        final List<MetricFamily> result = new ArrayList<MetricFamily>();
+        for (final MetricFamily family : MetricsRegistry.getDefault().getFamilies()) {
+            if (family.getName().startsWith(METRIC_PREFIX)) {
+                result.add(family);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A summary of one series, in the metric's exported unit.
+     */
+    public static final class Row {
+        private final MetricFamily family;
+        private final List<String> labelValues;
+        private final MetricSeries series;
+
+        Row(final MetricFamily family, final List<String> labelValues, final MetricSeries series) {
+            this.family = family;
+            this.labelValues = labelValues;
+            this.series = series;
+        }
+
+        /**
+         * Returns the name of the metric.
+         */
+        public String getName() {
+            return family.getName();
+        }
+
+        /**
+         * Returns the description of the metric.
+         */
+        public String getHelp() {
+            return family.getHelp();
+        }
+
+        /**
+         * Returns the label values as {@code name=value} pairs.
+         */
+        public String getLabels() {
+            final StringBuilder sb = new StringBuilder();
+            final List<String> labelNames = family.getLabelNames();
+            for (int i = 0; i < labelNames.size(); i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(labelNames.get(i)).append('=').append(labelValues.get(i));
+            }
+            return sb.toString();
+        }
+
+        /**
+         * Returns whether the metric is a histogram, which has a mean and quantiles.
+         */
+        public boolean isHistogram() {
+            return family.getType() == MetricFamily.Type.HISTOGRAM;
+        }
+
+        /**
+         * Returns the number of observations, or the value of a counter.
+         */
+        public long getCount() {
+            return series.getCount();
+        }
+
+        /**
+         * Returns the sum of the observations.
+         */
+        public double getSum() {
+            return series.getSum() * family.getScale();
+        }
+
+        /**
+         * Returns the mean of the observations, or 0 if there are none.
+         */
+        public double getMean() {
+            final long count = series.getCount();
+            return count == 0 ? 0 : getSum() / count;
+        }
+
+        /**
+         * Returns the estimated median, as the bound of its bucket.
+         */
+        public String getMedian() {
+            return formatQuantile(MEDIAN);
+        }
+
+        /**
+         * Returns the estimated 95th percentile, as the bound of its bucket.
+         */
+        public String getNinetyFifthPercentile() {
+            return formatQuantile(NINETY_FIFTH_PERCENTILE);
+        }
+
+        private String formatQuantile(final double quantile) {
+            final long estimate = series.estimateQuantile(quantile);
+            if (estimate < 0) {
+                return "";
+            }
+            if (estimate == Long.MAX_VALUE) {
+                final long[] bounds = family.getBucketBounds();
+                return "> " + bounds[bounds.length - 1] * family.getScale();
+            }
+            return "<= " + estimate * family.getScale();
+        }
+    }
+}
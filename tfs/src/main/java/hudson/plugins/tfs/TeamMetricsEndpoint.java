@@ -0,0 +1,48 @@
+package hudson.plugins.tfs;
+
+import hudson.Extension;
+import hudson.model.RootAction;
+import hudson.plugins.tfs.telemetry.MetricsRegistry;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Exposes the plugin's {@link MetricsRegistry} in the Prometheus text format at {@code /tfs-metrics},
+ * for administrators (or scrapers authenticating with an administrator's API token).
+ */
+@Extension
+public class TeamMetricsEndpoint implements RootAction {
+
+    public static final String URL_NAME = "tfs-metrics";
+    static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return null;
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    /**
+     * Renders every metric recorded so far.
+     */
+    public void doIndex(final StaplerRequest request, final StaplerResponse response) throws IOException {
+        Jenkins.getActiveInstance().checkPermission(Jenkins.ADMINISTER);
+        response.setContentType(PROMETHEUS_CONTENT_TYPE);
+        response.setHeader("Cache-Control", "no-cache");
+        final PrintWriter writer = response.getWriter();
+        MetricsRegistry.getDefault().writePrometheus(writer);
+    }
+}
@@ -29,6 +29,10 @@ public class TeamPluginGlobalConfig extends GlobalConfiguration {
     private List<TeamCollectionConfiguration> collectionConfigurations = new ArrayList<TeamCollectionConfiguration>();
 
     private boolean configFolderPerNode;
+    private boolean prefetchOnIdleNodes;
+    private boolean bulkWorkspaceRemoval;
+    private int contentStoreMegabytes;
+    private int sharedContentStoreMegabytes;
     private boolean enableTeamPushTriggerForAllJobs;
     private boolean enableTeamStatusForAllJobs;
     private UserAccountMapper userAccountMapper;
@@ -73,6 +77,38 @@ public class TeamPluginGlobalConfig extends GlobalConfiguration {
         this.configFolderPerNode = configFolderPerNode;
     }
 
+    public boolean isPrefetchOnIdleNodes() {
+        return prefetchOnIdleNodes;
+    }
+
+    public void setPrefetchOnIdleNodes(final boolean prefetchOnIdleNodes) {
+        this.prefetchOnIdleNodes = prefetchOnIdleNodes;
+    }
+
+    public boolean isBulkWorkspaceRemoval() {
+        return bulkWorkspaceRemoval;
+    }
+
+    public void setBulkWorkspaceRemoval(final boolean bulkWorkspaceRemoval) {
+        this.bulkWorkspaceRemoval = bulkWorkspaceRemoval;
+    }
+
+    public int getContentStoreMegabytes() {
+        return contentStoreMegabytes;
+    }
+
+    public void setContentStoreMegabytes(final int contentStoreMegabytes) {
+        this.contentStoreMegabytes = Math.max(0, contentStoreMegabytes);
+    }
+
+    public int getSharedContentStoreMegabytes() {
+        return sharedContentStoreMegabytes;
+    }
+
+    public void setSharedContentStoreMegabytes(final int sharedContentStoreMegabytes) {
+        this.sharedContentStoreMegabytes = Math.max(0, sharedContentStoreMegabytes);
+    }
+
     public boolean isEnableTeamPushTriggerForAllJobs() {
         return enableTeamPushTriggerForAllJobs;
     }
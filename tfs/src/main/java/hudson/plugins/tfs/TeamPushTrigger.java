@@ -9,6 +9,7 @@ import hudson.model.Item;
 import hudson.model.Job;
 import hudson.model.queue.QueueTaskFuture;
 import hudson.plugins.tfs.model.GitCodePushedEventArgs;
+import hudson.plugins.tfs.telemetry.HookMetrics;
 import hudson.plugins.tfs.util.ActionHelper;
 import hudson.plugins.tfs.util.MediaType;
 import hudson.triggers.Trigger;
@@ -106,7 +107,9 @@ public class TeamPushTrigger extends Trigger<Job<?, ?>> {
                     final long startTimeMillis = System.currentTimeMillis();
                     final Date date = new Date(startTimeMillis);
                     logger.println("Started on " + DateFormat.getDateTimeInstance().format(date));
+                    final long startNanos = System.nanoTime();
                     final boolean result = job().poll(listener).hasChanges();
+                    HookMetrics.recordPolling(System.nanoTime() - startNanos, result);
                     final long endTimeMillis = System.currentTimeMillis();
                     logger.println("Done. Took " + Util.getTimeSpanString(endTimeMillis - startTimeMillis));
                     if (result) {
@@ -168,6 +171,7 @@ public class TeamPushTrigger extends Trigger<Job<?, ?>> {
                 final Action[] actionArray = ActionHelper.create(actions, causeAction);
                 final QueueTaskFuture<?> queueTaskFuture = p.scheduleBuild2(quietPeriod, actionArray);
                 if (queueTaskFuture != null) {
+                    HookMetrics.recordScheduled(HookMetrics.PUSH_TRIGGER);
                     LOGGER.info(changesDetected + "Triggering " + name);
                 } else {
                     LOGGER.info(changesDetected + "Job is already in the queue");
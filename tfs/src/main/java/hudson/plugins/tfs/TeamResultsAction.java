@@ -4,7 +4,10 @@ package hudson.plugins.tfs;
 import hudson.model.Run;
 import hudson.plugins.tfs.util.EndpointHelper;
 import hudson.plugins.tfs.util.MediaType;
+import hudson.plugins.tfs.util.RangeRequestHelper;
 import jenkins.model.RunAction2;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
 import org.apache.commons.io.IOUtils;
 import org.kohsuke.stapler.ForwardToView;
 import org.kohsuke.stapler.StaplerRequest;
@@ -12,9 +15,13 @@ import org.kohsuke.stapler.StaplerResponse;
 import org.kohsuke.stapler.export.ExportedBean;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
 import java.io.Serializable;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -23,7 +30,7 @@ import static javax.servlet.http.HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
 
 /**
  * Added by {@link TeamCollectResultsPostBuildAction} to enable the download of the ZIP
- * file containing the collected results from the build.
+ * file containing the collected results from the build, in whole, in parts or entry by entry.
  */
 @ExportedBean(defaultVisibility = 999)
 public class TeamResultsAction implements RunAction2, Serializable {
@@ -63,27 +70,138 @@ public class TeamResultsAction implements RunAction2, Serializable {
         run.addAction(action);
     }
 
+    File getResultsZipFile() {
+        if (run == null) {
+            throw new IllegalArgumentException("There is no associated Run<?,?>");
+        }
+        final File rootDir = run.getRootDir();
+        final File resultsZipFile = new File(rootDir, TeamCollectResultsPostBuildAction.TEAM_RESULTS_ZIP);
+        if (!resultsZipFile.isFile()) {
+            throw new IllegalArgumentException("There is no results file in this build");
+        }
+        return resultsZipFile;
+    }
+
+    /**
+     * Extracts the result type (such as "junit") from the name of an entry in the ZIP file.
+     */
+    static String toResultType(final String entryName) {
+        final String[] parts = entryName.split("/", 3);
+        return parts.length == 3 ? parts[1] : null;
+    }
+
+    static JSONObject toJson(final ZipFile zipFile, final String type) {
+        final JSONArray entries = new JSONArray();
+        final Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+        while (zipEntries.hasMoreElements()) {
+            final ZipEntry zipEntry = zipEntries.nextElement();
+            if (zipEntry.isDirectory()) {
+                continue;
+            }
+            final String name = zipEntry.getName();
+            final String entryType = toResultType(name);
+            if (type != null && !type.equals(entryType)) {
+                continue;
+            }
+            final JSONObject entry = new JSONObject();
+            entry.put("name", name);
+            entry.put("type", entryType);
+            entry.put("size", zipEntry.getSize());
+            entry.put("compressedSize", zipEntry.getCompressedSize());
+            entry.put("lastModified", zipEntry.getTime());
+            entries.add(entry);
+        }
+        final JSONObject result = new JSONObject();
+        result.put("entries", entries);
+        return result;
+    }
+
+    /**
+     * Serves the ZIP file, honouring Range, If-Range and conditional requests so that
+     * interrupted downloads can be resumed and unchanged files aren't downloaded again.
+     */
     @SuppressWarnings("unused" /* API method */)
     public void doZip(final StaplerRequest req, final StaplerResponse rsp) throws IOException {
         try {
-            if (run == null) {
-                throw new IllegalArgumentException("There is no associated Run<?,?>");
+            final File resultsZipFile = getResultsZipFile();
+            RangeRequestHelper.serveFile(req, rsp, resultsZipFile, MediaType.APPLICATION_ZIP);
+        }
+        catch (final IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "IllegalArgumentException", e);
+            EndpointHelper.error(SC_BAD_REQUEST, e);
+        }
+        catch (final ForwardToView e) {
+            throw e;
+        }
+        catch (final Exception e) {
+            LOGGER.log(Level.SEVERE, "Unknown error", e);
+            EndpointHelper.error(SC_INTERNAL_SERVER_ERROR, e);
+        }
+    }
+
+    /**
+     * Lists the entries of the ZIP file as JSON, optionally only those of the result type
+     * provided in the {@code type} parameter, so they can be downloaded with {@link #doEntry}.
+     */
+    @SuppressWarnings("unused" /* API method */)
+    public void doEntries(final StaplerRequest req, final StaplerResponse rsp) throws IOException {
+        try {
+            final File resultsZipFile = getResultsZipFile();
+            final String type = req.getParameter("type");
+            final ZipFile zipFile = new ZipFile(resultsZipFile);
+            final JSONObject result;
+            try {
+                result = toJson(zipFile, type);
+            }
+            finally {
+                zipFile.close();
             }
-            final File rootDir = run.getRootDir();
-            final File resultsZipFile = new File(rootDir, TeamCollectResultsPostBuildAction.TEAM_RESULTS_ZIP);
-            if (!resultsZipFile.isFile()) {
-                throw new IllegalArgumentException("There is no results file in this build");
+            rsp.setContentType(MediaType.APPLICATION_JSON_UTF_8);
+            final PrintWriter writer = rsp.getWriter();
+            writer.write(result.toString());
+            writer.flush();
+        }
+        catch (final IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "IllegalArgumentException", e);
+            EndpointHelper.error(SC_BAD_REQUEST, e);
+        }
+        catch (final ForwardToView e) {
+            throw e;
+        }
+        catch (final Exception e) {
+            LOGGER.log(Level.SEVERE, "Unknown error", e);
+            EndpointHelper.error(SC_INTERNAL_SERVER_ERROR, e);
+        }
+    }
+
+    /**
+     * Serves the uncompressed content of the entry named by the {@code name} parameter.
+     */
+    @SuppressWarnings("unused" /* API method */)
+    public void doEntry(final StaplerRequest req, final StaplerResponse rsp) throws IOException {
+        try {
+            final File resultsZipFile = getResultsZipFile();
+            final String name = req.getParameter("name");
+            if (name == null) {
+                throw new IllegalArgumentException("The 'name' parameter is required");
             }
-            final FileInputStream resultsZipStream = new FileInputStream(resultsZipFile);
-            rsp.setContentType(MediaType.APPLICATION_ZIP);
-            final long lastModified = resultsZipFile.lastModified();
-            final long contentLength = resultsZipFile.length();
-            final String fileName = resultsZipFile.getName();
+            final ZipFile zipFile = new ZipFile(resultsZipFile);
             try {
-                rsp.serveFile(req, resultsZipStream, lastModified, contentLength, fileName);
+                final ZipEntry zipEntry = zipFile.getEntry(name);
+                if (zipEntry == null || zipEntry.isDirectory()) {
+                    throw new IllegalArgumentException("There is no entry named '" + name + "' in the results file");
+                }
+                final InputStream entryStream = zipFile.getInputStream(zipEntry);
+                try {
+                    final String fileName = name.substring(name.lastIndexOf('/') + 1);
+                    rsp.serveFile(req, entryStream, zipEntry.getTime(), zipEntry.getSize(), fileName);
+                }
+                finally {
+                    IOUtils.closeQuietly(entryStream);
+                }
             }
             finally {
-                IOUtils.closeQuietly(resultsZipStream);
+                zipFile.close();
             }
         }
         catch (final IllegalArgumentException e) {
@@ -0,0 +1,179 @@
+package hudson.plugins.tfs;
+
+import com.microsoft.tfs.core.clients.versioncontrol.specs.version.LatestVersionSpec;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.plugins.tfs.model.Server;
+import hudson.plugins.tfs.model.WorkspaceIndex;
+import hudson.plugins.tfs.model.WorkspaceLocks;
+import hudson.plugins.tfs.model.WorkspacePool;
+import hudson.plugins.tfs.util.BuildWorkspaceConfigurationRetriever;
+import hudson.plugins.tfs.util.BuildWorkspaceConfigurationRetriever.BuildWorkspaceConfiguration;
+import jenkins.model.Jenkins;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Periodically gets the latest version into the TFVC workspaces of recently-built jobs
+ * while their nodes are idle, so that the get at the start of the next build has little left to download.
+ * Only the workspaces the next build will reuse are pre-fetched: those of jobs using "Use update"
+ * and the pooled workspaces of jobs using "Use workspace pool".
+ */
+@Extension
+public class TfvcPrefetchWork extends AsyncPeriodicWork {
+
+    private static final Logger LOGGER = Logger.getLogger(TfvcPrefetchWork.class.getName());
+    private static final long DEFAULT_INTERVAL_MINUTES = 15;
+    private static final long DEFAULT_RECENT_DAYS = 7;
+    private static final String LATEST_VERSION = LatestVersionSpec.INSTANCE.toString();
+
+    // the nodes whose last pre-fetch failed, so that a failure is reported once rather than every period
+    private final Set<String> failingNodeNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    public TfvcPrefetchWork() {
+        super("TFVC pre-fetch on idle nodes");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        final long minutes = Long.getLong(TfvcPrefetchWork.class.getName() + ".intervalMinutes", DEFAULT_INTERVAL_MINUTES);
+        return TimeUnit.MINUTES.toMillis(minutes);
+    }
+
+    @Override
+    protected void execute(final TaskListener listener) throws IOException, InterruptedException {
+        final Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null || !TeamPluginGlobalConfig.get().isPrefetchOnIdleNodes()) {
+            return;
+        }
+        final long recentDays = Long.getLong(TfvcPrefetchWork.class.getName() + ".recentDays", DEFAULT_RECENT_DAYS);
+        final long since = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(recentDays);
+        final Map<String, Computer> computersByNodeName = new HashMap<String, Computer>();
+        for (final Computer computer : jenkins.getComputers()) {
+            final Node node = computer.getNode();
+            if (node != null) {
+                computersByNodeName.put(node.getNodeName(), computer);
+            }
+        }
+
+        final Thread thread = Thread.currentThread();
+        final int priority = thread.getPriority();
+        // builds come first
+        thread.setPriority(Thread.MIN_PRIORITY);
+        try {
+            final BuildWorkspaceConfigurationRetriever retriever = new BuildWorkspaceConfigurationRetriever();
+            for (final AbstractProject<?, ?> job : jenkins.getAllItems(AbstractProject.class)) {
+                if (!(job.getScm() instanceof TeamFoundationServerScm) || job.isDisabled() || job.isBuilding() || job.isInQueue()) {
+                    continue;
+                }
+                final TeamFoundationServerScm scm = (TeamFoundationServerScm) job.getScm();
+                if (!scm.isUseUpdate() && !scm.isUseWorkspacePool()) {
+                    // the workspace will be re-created by the next build anyway
+                    continue;
+                }
+                final Map<String, BuildWorkspaceConfiguration> configurations = retriever.getLatestPerNodeSince(job.getLastBuild(), since);
+                for (final Map.Entry<String, BuildWorkspaceConfiguration> entry : configurations.entrySet()) {
+                    final Computer computer = computersByNodeName.get(entry.getKey());
+                    if (computer == null || !computer.isOnline() || !computer.isIdle()) {
+                        continue;
+                    }
+                    try {
+                        prefetch(scm, computer, entry.getValue(), listener);
+                        failingNodeNames.remove(entry.getKey());
+                    } catch (final IOException | RuntimeException e) {
+                        final Level level = failingNodeNames.add(entry.getKey()) ? Level.WARNING : Level.FINE;
+                        LOGGER.log(level, "Unable to pre-fetch " + job.getFullName() + " on " + computer.getDisplayName(), e);
+                    }
+                }
+            }
+        } finally {
+            thread.setPriority(priority);
+        }
+    }
+
+    static void prefetch(final TeamFoundationServerScm scm, final Computer computer, final BuildWorkspaceConfiguration configuration, final TaskListener listener) throws IOException, InterruptedException {
+        final Node node = computer.getNode();
+        if (node == null || !configuration.workspaceExists()) {
+            return;
+        }
+        final AbstractBuild<?, ?> build = configuration.getBuild();
+        final String nodeName = TeamFoundationServerScm.getNodeName(computer);
+        final String workspaceName;
+        final FilePath localPath;
+        final boolean useOverwrite;
+        if (scm.isUseUpdate()) {
+            final FilePath buildWorkspace = build.getWorkspace();
+            if (buildWorkspace == null) {
+                return;
+            }
+            workspaceName = configuration.getWorkspaceName();
+            localPath = buildWorkspace.child(configuration.getWorkfolder());
+            useOverwrite = scm.isUseOverwrite();
+        } else {
+            final FilePath rootPath = node.getRootPath();
+            if (rootPath == null) {
+                return;
+            }
+            final WorkspacePool pool = new WorkspacePool(rootPath, nodeName);
+            final String key = WorkspacePool.toKey(configuration.getServerUrl(), configuration.getProjectPath(), configuration.getCloakedPaths(), configuration.getAdditionalMappings());
+            workspaceName = pool.getWorkspaceName(key);
+            localPath = pool.getFolder(key);
+            // like the checkouts into the pooled workspaces
+            useOverwrite = true;
+        }
+        if (!localPath.exists()) {
+            return;
+        }
+
+        final ReentrantLock lock = WorkspaceLocks.get(nodeName, workspaceName);
+        if (!lock.tryLock()) {
+            // a build is getting files into it
+            return;
+        }
+        try {
+            if (!isStillIdle(build, computer, node)) {
+                return;
+            }
+            final Server server = scm.createServer(node.createLauncher(listener), listener, build);
+            try {
+                if (server.getWorkspaces().exists(workspaceName)) {
+                    LOGGER.log(Level.FINE, "Pre-fetching workspace {0} on {1}", new Object[]{workspaceName, nodeName});
+                    server.getProject(configuration.getProjectPaths()).getFiles(localPath.getRemote(), LATEST_VERSION, useOverwrite);
+                }
+            } finally {
+                server.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Determines, once the workspace's lock is held, that no build started since the job and the node
+     * were found idle: one that already got its files would otherwise see them change under it.
+     */
+    static boolean isStillIdle(final AbstractBuild<?, ?> build, final Computer computer, final Node node) {
+        final AbstractProject<?, ?> job = build.getProject();
+        if (job.isBuilding() || !computer.isIdle()) {
+            return false;
+        }
+        final WorkspaceIndex index = WorkspaceIndex.forJob(job);
+        final Integer latest = index != null ? index.getBuildNumber(node.getNodeName()) : null;
+        return latest == null || latest == build.getNumber();
+    }
+}
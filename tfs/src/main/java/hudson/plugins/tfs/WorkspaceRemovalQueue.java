@@ -0,0 +1,219 @@
+package hudson.plugins.tfs;
+
+import hudson.Launcher;
+import hudson.model.Job;
+import hudson.model.Node;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.plugins.tfs.commands.DeleteWorkspacesCommand;
+import hudson.plugins.tfs.model.Server;
+import hudson.plugins.tfs.model.WorkspaceLocks;
+import hudson.plugins.tfs.util.BuildWorkspaceConfigurationRetriever.BuildWorkspaceConfiguration;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.LogTaskListener;
+import hudson.util.NamingThreadFactory;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Removes, in the background, the TFVC workspaces of the Jenkins workspaces being deleted,
+ * when the removal is done in bulk.
+ * The removals requested within a few seconds of each other, typically by one workspace cleanup sweep,
+ * are grouped by node and connection, so that each group is removed by a single command on the node,
+ * over one connection, several workspaces at a time.
+ * Since the removal happens later, a workspace a build is getting files into, or that a build
+ * newer than the one the removal was requested for uses, is left alone.
+ */
+final class WorkspaceRemovalQueue {
+
+    private static final Logger LOGGER = Logger.getLogger(WorkspaceRemovalQueue.class.getName());
+    private static final WorkspaceRemovalQueue INSTANCE = new WorkspaceRemovalQueue();
+    private static final long DEFAULT_DELAY_SECONDS = 10;
+    private static final int DEFAULT_CONCURRENCY = 4;
+
+    private final Queue<Request> pending = new ConcurrentLinkedQueue<Request>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private ScheduledExecutorService executor;
+
+    static WorkspaceRemovalQueue get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Queues the removal; never blocks.
+     */
+    void add(final Request request) {
+        pending.add(request);
+        if (scheduled.compareAndSet(false, true)) {
+            final long delay = Long.getLong(WorkspaceRemovalQueue.class.getName() + ".delaySeconds", DEFAULT_DELAY_SECONDS);
+            getExecutor().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    scheduled.set(false);
+                    drain();
+                }
+            }, delay, TimeUnit.SECONDS);
+        }
+    }
+
+    private synchronized ScheduledExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(
+                    new NamingThreadFactory(new DaemonThreadFactory(), "TFVC workspace removal"));
+        }
+        return executor;
+    }
+
+    /**
+     * Removes all the queued workspaces.
+     *
+     * @return the number of workspaces removed
+     */
+    int drain() {
+        final List<Request> batch = new ArrayList<Request>();
+        for (Request request = pending.poll(); request != null; request = pending.poll()) {
+            batch.add(request);
+        }
+        final int concurrency = Integer.getInteger(WorkspaceRemovalQueue.class.getName() + ".concurrency", DEFAULT_CONCURRENCY);
+        int result = 0;
+        for (final List<Request> group : groupByNodeAndConnection(batch).values()) {
+            result += remove(group, concurrency);
+        }
+        return result;
+    }
+
+    static Map<String, List<Request>> groupByNodeAndConnection(final List<Request> requests) {
+        final Map<String, List<Request>> result = new LinkedHashMap<String, List<Request>>();
+        for (final Request request : requests) {
+            final String key = request.node.getNodeName() + '\n' + request.connectionKey;
+            List<Request> group = result.get(key);
+            if (group == null) {
+                group = new ArrayList<Request>();
+                result.put(key, group);
+            }
+            group.add(request);
+        }
+        return result;
+    }
+
+    /**
+     * Removes the group's workspaces with a single command, holding their locks so that no build gets files into them meanwhile.
+     *
+     * @return the number of workspaces removed
+     */
+    int remove(final List<Request> group, final int concurrency) {
+        final List<Request> toRemove = new ArrayList<Request>(group.size());
+        final List<ReentrantLock> locks = new ArrayList<ReentrantLock>(group.size());
+        try {
+            for (final Request request : group) {
+                final String workspaceName = request.configuration.getWorkspaceName();
+                final ReentrantLock lock = WorkspaceLocks.get(request.getNodeName(), workspaceName);
+                if (!lock.tryLock()) {
+                    LOGGER.log(Level.FINE, "Not removing workspace {0} from {1}: a build is using it", new Object[]{workspaceName, request.getNodeName()});
+                    continue;
+                }
+                locks.add(lock);
+                if (!request.isLatestForNode()) {
+                    LOGGER.log(Level.FINE, "Not removing workspace {0} from {1}: a newer build owns it", new Object[]{workspaceName, request.getNodeName()});
+                    continue;
+                }
+                toRemove.add(request);
+            }
+            return toRemove.isEmpty() ? 0 : removeLocked(toRemove, concurrency);
+        } finally {
+            for (final ReentrantLock lock : locks) {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static int removeLocked(final List<Request> group, final int concurrency) {
+        final Request first = group.get(0);
+        final List<String> workspaceNames = new ArrayList<String>(group.size());
+        for (final Request request : group) {
+            workspaceNames.add(request.configuration.getWorkspaceName());
+        }
+        final List<String> removed;
+        try {
+            final TaskListener listener = new LogTaskListener(LOGGER, Level.INFO);
+            final Launcher launcher = first.node.createLauncher(listener);
+            final Server server = first.scm.createServer(launcher, listener, first.run);
+            try {
+                removed = server.execute(new DeleteWorkspacesCommand(server, workspaceNames, concurrency).getCallable());
+            } finally {
+                server.close();
+            }
+        } catch (final IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Unable to remove " + group.size() + " workspaces from " + first.node.getNodeName(), e);
+            return 0;
+        }
+        // workspace names are case-insensitive
+        final Set<String> removedNames = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+        removedNames.addAll(removed);
+        for (final Request request : group) {
+            final BuildWorkspaceConfiguration configuration = request.configuration;
+            if (removedNames.contains(configuration.getWorkspaceName())) {
+                configuration.setWorkspaceWasRemoved();
+                try {
+                    configuration.save();
+                } catch (final IOException e) {
+                    LOGGER.log(Level.WARNING, "Unable to record the removal of workspace " + configuration.getWorkspaceName(), e);
+                }
+            }
+        }
+        return removed.size();
+    }
+
+    /**
+     * A TFVC workspace to remove from a node.
+     */
+    static final class Request {
+        private final TeamFoundationServerScm scm;
+        private final Run<?, ?> run;
+        private final Node node;
+        private final BuildWorkspaceConfiguration configuration;
+        private final String connectionKey;
+
+        Request(final TeamFoundationServerScm scm, final Run<?, ?> run, final Node node, final BuildWorkspaceConfiguration configuration) {
+            this.scm = scm;
+            this.run = run;
+            this.node = node;
+            this.configuration = configuration;
+            this.connectionKey = scm.getConnectionKey(run);
+        }
+
+        /**
+         * Returns the name the node's workspace locks are kept under, like {@link TeamFoundationServerScm#getNodeName}.
+         */
+        String getNodeName() {
+            return StringUtils.defaultIfEmpty(node.getNodeName(), "master");
+        }
+
+        /**
+         * Determines if the build the removal was requested for is still the latest to use the node,
+         * since a build that ran after the request may have re-created the workspace.
+         */
+        boolean isLatestForNode() {
+            final Job<?, ?> job = run.getParent();
+            final BuildWorkspaceConfiguration latest = scm.getLatestForNode(job, node, job.getLastBuild());
+            return latest != null && latest.getBuild() != null && configuration.getBuild() != null
+                    && latest.getBuild().getNumber() == configuration.getBuild().getNumber();
+        }
+    }
+}
@@ -10,6 +10,7 @@ import hudson.plugins.tfs.model.ChangeSet;
 import hudson.plugins.tfs.model.Project;
 import hudson.plugins.tfs.model.Server;
 import hudson.plugins.tfs.model.Workspace;
+import hudson.plugins.tfs.model.WorkspaceMapping;
 import hudson.plugins.tfs.model.Workspaces;
 
 import java.io.IOException;
@@ -18,6 +19,7 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 
@@ -26,14 +28,24 @@ public class CheckoutAction {
     private final String workspaceName;
     private final String projectPath;
     private final Collection<String> cloakedPaths;
+    private final List<WorkspaceMapping> additionalMappings;
     private final String localFolder;
     private final boolean useUpdate;
     private final boolean useOverwrite;
 
     public CheckoutAction(String workspaceName, String projectPath, Collection<String> cloakedPaths, String localFolder, boolean useUpdate, boolean useOverwrite) {
+        this(workspaceName, projectPath, cloakedPaths, Collections.<WorkspaceMapping>emptyList(), localFolder, useUpdate, useOverwrite);
+    }
+
+    /**
+     * Creates an action that checks out several server folders with a single workspace:
+     * they are downloaded with one get and their histories are merged into one list of changesets.
+     */
+    public CheckoutAction(String workspaceName, String projectPath, Collection<String> cloakedPaths, List<WorkspaceMapping> additionalMappings, String localFolder, boolean useUpdate, boolean useOverwrite) {
         this.workspaceName = workspaceName;
         this.projectPath = projectPath;
         this.cloakedPaths = cloakedPaths;
+        this.additionalMappings = additionalMappings;
         this.localFolder = localFolder;
         this.useUpdate = useUpdate;
         this.useOverwrite = useOverwrite;
@@ -69,6 +81,18 @@ public class CheckoutAction {
         return new ArrayList<ChangeSet>();
     }
 
+    /**
+     * Checks out the files at the version, when the changesets leading to it are already known,
+     * like when they were found while resolving the changeset, so the history isn't queried again.
+     */
+    public List<ChangeSet> checkoutWithKnownHistory(final Server server, final FilePath workspacePath, final String versionSpec, final List<ChangeSet> changeSets) throws IOException, InterruptedException {
+        Project project = getProject(server, workspacePath);
+        final String normalizedFolder = determineCheckoutPath(workspacePath, localFolder);
+        project.getFiles(normalizedFolder, versionSpec, useOverwrite);
+
+        return changeSets;
+    }
+
     public List<ChangeSet> checkoutBySingleVersionSpec(Server server, FilePath workspacePath, String singleVersionSpec) throws IOException, InterruptedException {
         Project project = getProject(server, workspacePath);
         final String normalizedFolder = determineCheckoutPath(workspacePath, localFolder);
@@ -86,7 +110,10 @@ public class CheckoutAction {
     private Project getProject(final Server server, final FilePath workspacePath)
             throws IOException, InterruptedException {
         final Workspaces workspaces = server.getWorkspaces();
-        final Project project = server.getProject(projectPath);
+        final boolean singleMapping = additionalMappings.isEmpty();
+        final Project project = singleMapping
+                ? server.getProject(projectPath)
+                : server.getProject(WorkspaceMapping.toServerPaths(projectPath, additionalMappings));
         final FilePath localFolderPath = workspacePath.child(localFolder);
         final String localPath = localFolderPath.getRemote();
         final TaskListener listener = server.getListener();
@@ -141,7 +168,12 @@ public class CheckoutAction {
                 localFolderPath.deleteContents();
             }
             final String serverPath = project.getProjectPath();
-            workspace = workspaces.newWorkspace(workspaceName, serverPath, cloakedPaths, localPath);
+            if (singleMapping) {
+                workspace = workspaces.newWorkspace(workspaceName, serverPath, cloakedPaths, localPath);
+            }
+            else {
+                workspace = workspaces.newWorkspace(workspaceName, serverPath, cloakedPaths, additionalMappings, localPath);
+            }
         } else {
             workspace = workspaces.getWorkspace(workspaceName);
         }
@@ -42,9 +42,16 @@ public abstract class AbstractCallableCommand<V, T extends Throwable> extends Ma
     }
 
     public Server createServer() throws IOException {
+        final long start = System.nanoTime();
         final Server server = new Server(null, listener, url, userName, userPassword, webProxySettings, extraSettings);
+        CommandMetrics.current().setConnectNanos(System.nanoTime() - start);
         return server;
     }
 
     public abstract <V, E extends Throwable> Callable<V, E> getCallable();
+
+    /**
+     * The name under which the command's timings are recorded, i.e. "get" or "label".
+     */
+    public abstract String getOperationName();
 }
@@ -0,0 +1,212 @@
+package hudson.plugins.tfs.commands;
+
+import hudson.plugins.tfs.telemetry.MetricFamily;
+import hudson.plugins.tfs.telemetry.MetricsRegistry;
+import hudson.remoting.Channel;
+import hudson.remoting.VirtualChannel;
+import jenkins.security.MasterToSlaveCallable;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What a single {@link AbstractCallableCommand} did on the agent (how long connecting took,
+ * how many items it processed and how many bytes it fetched), brought back to the controller
+ * with the command's result and recorded in the {@link MetricsRegistry} by collection and agent.
+ */
+public final class CommandMetrics implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    static final String CONNECT_OPERATION = "connect";
+    static final String CONTROLLER = "master";
+    private static final double NANOS_TO_SECONDS = 1e-9;
+    private static final String[] LABEL_NAMES = {"operation", "collection", "agent"};
+    private static final long[] DURATION_BUCKETS = {
+            TimeUnit.MILLISECONDS.toNanos(5),
+            TimeUnit.MILLISECONDS.toNanos(25),
+            TimeUnit.MILLISECONDS.toNanos(100),
+            TimeUnit.MILLISECONDS.toNanos(250),
+            TimeUnit.MILLISECONDS.toNanos(500),
+            TimeUnit.SECONDS.toNanos(1),
+            TimeUnit.SECONDS.toNanos(2),
+            TimeUnit.SECONDS.toNanos(5),
+            TimeUnit.SECONDS.toNanos(10),
+            TimeUnit.SECONDS.toNanos(30),
+            TimeUnit.MINUTES.toNanos(1),
+            TimeUnit.MINUTES.toNanos(5),
+            TimeUnit.MINUTES.toNanos(15),
+    };
+    private static final long[] ITEM_BUCKETS = {0, 1, 10, 100, 1000, 10000, 100000};
+    private static final long KIB = 1024;
+    private static final long MIB = 1024 * KIB;
+    private static final long GIB = 1024 * MIB;
+    private static final long[] BYTE_BUCKETS = {
+            KIB,
+            16 * KIB,
+            256 * KIB,
+            4 * MIB,
+            64 * MIB,
+            GIB,
+            16 * GIB,
+    };
+
+    static final MetricFamily DURATION = MetricsRegistry.getDefault().histogram(
+            "tfs_command_duration_seconds",
+            "Time taken by TFVC commands, including the round trip to the agent; 'connect' is the agent-side connection set-up.",
+            NANOS_TO_SECONDS, DURATION_BUCKETS, LABEL_NAMES);
+    static final MetricFamily ITEMS = MetricsRegistry.getDefault().histogram(
+            "tfs_command_items",
+            "Items processed by TFVC commands, i.e. files retrieved or workspaces listed.",
+            1, ITEM_BUCKETS, LABEL_NAMES);
+    static final MetricFamily BYTES = MetricsRegistry.getDefault().histogram(
+            "tfs_command_bytes",
+            "Bytes written to the agent by TFVC commands that download files.",
+            1, BYTE_BUCKETS, LABEL_NAMES);
+    static final MetricFamily FAILURES = MetricsRegistry.getDefault().counter(
+            "tfs_command_failures_total",
+            "TFVC commands that threw an exception.",
+            LABEL_NAMES);
+
+    private static final ThreadLocal<CommandMetrics> CURRENT = new ThreadLocal<CommandMetrics>();
+
+    private long connectNanos = -1;
+    private long items = -1;
+    private long bytes = -1;
+
+    /**
+     * Returns the metrics of the command running on this thread; when a command is called directly
+     * rather than through {@link #call(VirtualChannel, AbstractCallableCommand, String)},
+     * the returned instance is simply discarded.
+     */
+    static CommandMetrics current() {
+        final CommandMetrics result = CURRENT.get();
+        return result != null ? result : new CommandMetrics();
+    }
+
+    void setConnectNanos(final long connectNanos) {
+        this.connectNanos = connectNanos;
+    }
+
+    void setItems(final long items) {
+        this.items = items;
+    }
+
+    void setBytes(final long bytes) {
+        this.bytes = bytes;
+    }
+
+    long getConnectNanos() {
+        return connectNanos;
+    }
+
+    long getItems() {
+        return items;
+    }
+
+    long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Calls the command on the channel, timing it and recording what it reported.
+     *
+     * @param collectionUrl the URL of the team project collection the command talks to
+     */
+    public static <V, T extends Throwable> V call(final VirtualChannel channel, final AbstractCallableCommand<V, T> command, final String collectionUrl)
+            throws IOException, InterruptedException, T {
+        final String operation = command.getOperationName();
+        final String collection = normalizeCollection(collectionUrl);
+        final String agent = determineAgentName(channel);
+        final long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            final Metered<V> metered = channel.call(new MeteredCallable<V, T>(command));
+            metered.metrics.record(operation, collection, agent);
+            succeeded = true;
+            return metered.result;
+        } finally {
+            DURATION.labels(operation, collection, agent).observe(System.nanoTime() - start);
+            if (!succeeded) {
+                FAILURES.labels(operation, collection, agent).inc();
+            }
+        }
+    }
+
+    void record(final String operation, final String collection, final String agent) {
+        if (connectNanos >= 0) {
+            DURATION.labels(CONNECT_OPERATION, collection, agent).observe(connectNanos);
+        }
+        if (items >= 0) {
+            ITEMS.labels(operation, collection, agent).observe(items);
+        }
+        if (bytes >= 0) {
+            BYTES.labels(operation, collection, agent).observe(bytes);
+        }
+    }
+
+    static String determineAgentName(final VirtualChannel channel) {
+        if (channel instanceof Channel) {
+            return ((Channel) channel).getName();
+        }
+        return CONTROLLER;
+    }
+
+    static String normalizeCollection(final String collectionUrl) {
+        if (collectionUrl == null) {
+            return "";
+        }
+        String result = collectionUrl.toLowerCase(Locale.ENGLISH);
+        while (result.endsWith("/")) {
+            result = result.substring(0, result.length() - 1);
+        }
+        return result;
+    }
+
+    /**
+     * A command's result along with its metrics.
+     *
+     * @param <V> the type of the command's result
+     */
+    static final class Metered<V> implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final V result;
+        private final CommandMetrics metrics;
+
+        Metered(final V result, final CommandMetrics metrics) {
+            this.result = result;
+            this.metrics = metrics;
+        }
+    }
+
+    /**
+     * Runs a command on the agent with a {@link CommandMetrics} instance for it to fill in.
+     *
+     * @param <V> the type of the command's result
+     * @param <T> the type of exception the command throws
+     */
+    static final class MeteredCallable<V, T extends Throwable> extends MasterToSlaveCallable<Metered<V>, T> {
+        private static final long serialVersionUID = 1L;
+
+        private final AbstractCallableCommand<V, T> command;
+
+        MeteredCallable(final AbstractCallableCommand<V, T> command) {
+            this.command = command;
+        }
+
+        @Override
+        public Metered<V> call() throws T {
+            final CommandMetrics metrics = new CommandMetrics();
+            CURRENT.set(metrics);
+            try {
+                final V result = command.call();
+                return new Metered<V>(result, metrics);
+            } finally {
+                CURRENT.remove();
+            }
+        }
+    }
+}
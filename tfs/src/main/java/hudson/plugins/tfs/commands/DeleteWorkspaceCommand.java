@@ -16,6 +16,8 @@ import hudson.remoting.Callable;
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.Collection;
+import java.util.Collections;
 
 public class DeleteWorkspaceCommand extends AbstractCallableCommand<Void, IOException> {
 
@@ -39,6 +41,11 @@ public class DeleteWorkspaceCommand extends AbstractCallableCommand<Void, IOExce
         return this;
     }
 
+    @Override
+    public String getOperationName() {
+        return "workspace_delete";
+    }
+
     public Void call() throws IOException {
         final Server server = createServer();
         final MockableVersionControlClient vcc = server.getVersionControlClient();
@@ -56,23 +63,34 @@ public class DeleteWorkspaceCommand extends AbstractCallableCommand<Void, IOExce
         int numDeletions = 0;
         for (final Workspace innerWorkspace : workspaces) {
             vcc.deleteWorkspace(innerWorkspace);
-
-            // work around a defect in the TFS SDK for Java
-            // TODO: check if this workaround is still necessary after upgrading
-            final WorkspaceInfo workspaceInfo = vcc.removeCachedWorkspace(workspaceName, VersionControlConstants.AUTHENTICATED_USER);
-            if (workspaceInfo != null) {
-                final TFSTeamProjectCollection tpc = vcc.getConnection();
-                final PersistenceStoreProvider provider = tpc.getPersistenceStoreProvider();
-                final Workstation currentWorkstation = Workstation.getCurrent(provider);
-                currentWorkstation.saveConfigIfDirty();
-            }
-
+            removeCachedWorkspaces(vcc, Collections.singletonList(workspaceName));
             numDeletions++;
         }
+        CommandMetrics.current().setItems(numDeletions);
 
         final String deletedMessage = String.format(DeletedTemplate, numDeletions, workspaceName);
         logger.println(deletedMessage);
 
         return null;
     }
+
+    /**
+     * Removes the deleted workspaces from the {@link Workstation}'s cache and saves it once.
+     * Not safe to call from several threads at once.
+     */
+    static void removeCachedWorkspaces(final MockableVersionControlClient vcc, final Collection<String> workspaceNames) {
+        // work around a defect in the TFS SDK for Java
+        // TODO: check if this workaround is still necessary after upgrading
+        boolean removedCachedWorkspace = false;
+        for (final String workspaceName : workspaceNames) {
+            final WorkspaceInfo workspaceInfo = vcc.removeCachedWorkspace(workspaceName, VersionControlConstants.AUTHENTICATED_USER);
+            removedCachedWorkspace |= workspaceInfo != null;
+        }
+        if (removedCachedWorkspace) {
+            final TFSTeamProjectCollection tpc = vcc.getConnection();
+            final PersistenceStoreProvider provider = tpc.getPersistenceStoreProvider();
+            final Workstation currentWorkstation = Workstation.getCurrent(provider);
+            currentWorkstation.saveConfigIfDirty();
+        }
+    }
 }
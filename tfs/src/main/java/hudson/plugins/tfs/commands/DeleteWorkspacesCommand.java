@@ -0,0 +1,128 @@
+//CHECKSTYLE:OFF
+package hudson.plugins.tfs.commands;
+
+import com.microsoft.tfs.core.clients.versioncontrol.WorkspacePermissions;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Workspace;
+import com.microsoft.tfs.jni.helpers.LocalHost;
+import hudson.model.TaskListener;
+import hudson.plugins.tfs.model.MockableVersionControlClient;
+import hudson.plugins.tfs.model.Server;
+import hudson.remoting.Callable;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Deletes many workspaces of a computer with one connection, several at a time,
+ * instead of connecting once per workspace like {@link DeleteWorkspaceCommand}.
+ * Only the calls to the server run concurrently; the workstation's cache of workspaces
+ * is then updated once, on the calling thread.
+ */
+public class DeleteWorkspacesCommand extends AbstractCallableCommand<List<String>, Exception> {
+
+    private static final String DeletingTemplate = "Deleting %d workspace(s) from computer '%s'...";
+    private static final String DeletedTemplate = "Deleted %d workspace(s).";
+    private static final Logger LOGGER = Logger.getLogger(DeleteWorkspacesCommand.class.getName());
+
+    private final List<String> workspaceNames;
+    private final int concurrency;
+    private final String computerName;
+
+    public DeleteWorkspacesCommand(final ServerConfigurationProvider server, final List<String> workspaceNames, final int concurrency) {
+        this(server, workspaceNames, concurrency, null);
+    }
+
+    public DeleteWorkspacesCommand(final ServerConfigurationProvider server, final List<String> workspaceNames, final int concurrency, final String computerName) {
+        super(server);
+        this.workspaceNames = new ArrayList<String>(workspaceNames);
+        this.concurrency = Math.max(1, concurrency);
+        this.computerName = computerName;
+    }
+
+    public Callable<List<String>, Exception> getCallable() {
+        return this;
+    }
+
+    @Override
+    public String getOperationName() {
+        return "workspace_delete";
+    }
+
+    /**
+     * @return the names of the workspaces that were deleted; those that didn't exist are left out
+     */
+    public List<String> call() throws Exception {
+        final Server server = createServer();
+        final MockableVersionControlClient vcc = server.getVersionControlClient();
+        final TaskListener listener = server.getListener();
+        final PrintStream logger = listener.getLogger();
+
+        final String computerName = (DeleteWorkspacesCommand.this.computerName == null)
+                ? LocalHost.getShortName()
+                : DeleteWorkspacesCommand.this.computerName;
+        final String deletingMessage = String.format(DeletingTemplate, workspaceNames.size(), computerName);
+        logger.println(deletingMessage);
+
+        // one query for all of them; workspace names are case-insensitive
+        final Set<String> wanted = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+        wanted.addAll(workspaceNames);
+        final WorkspacePermissions filter = WorkspacePermissions.NONE_OR_NOT_SUPPORTED;
+        final List<Workspace> toDelete = new ArrayList<Workspace>();
+        for (final Workspace workspace : vcc.queryWorkspaces(null, null, computerName, filter)) {
+            if (wanted.contains(workspace.getName())) {
+                toDelete.add(workspace);
+            }
+        }
+
+        final Queue<String> deleted = new ConcurrentLinkedQueue<String>();
+        if (!toDelete.isEmpty()) {
+            final ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, toDelete.size()),
+                    new NamingThreadFactory(new DaemonThreadFactory(), "TFVC workspace deletion"));
+            try {
+                final List<Future<?>> futures = new ArrayList<Future<?>>(toDelete.size());
+                for (final Workspace workspace : toDelete) {
+                    futures.add(executor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            vcc.deleteServerWorkspace(workspace);
+                            deleted.add(workspace.getName());
+                        }
+                    }));
+                }
+                for (int i = 0; i < futures.size(); i++) {
+                    try {
+                        futures.get(i).get();
+                    }
+                    catch (final ExecutionException e) {
+                        // the others may still be deleted
+                        LOGGER.log(Level.WARNING, "Unable to delete workspace " + toDelete.get(i).getName(), e.getCause());
+                    }
+                }
+            }
+            finally {
+                executor.shutdownNow();
+            }
+        }
+
+        DeleteWorkspaceCommand.removeCachedWorkspaces(vcc, deleted);
+        CommandMetrics.current().setItems(deleted.size());
+
+        final String deletedMessage = String.format(DeletedTemplate, deleted.size());
+        logger.println(deletedMessage);
+
+        return new ArrayList<String>(deleted);
+    }
+}
@@ -1,31 +1,63 @@
 //CHECKSTYLE:OFF
 package hudson.plugins.tfs.commands;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import com.microsoft.tfs.core.clients.versioncontrol.GetOptions;
 import com.microsoft.tfs.core.clients.versioncontrol.events.GetEvent;
 import com.microsoft.tfs.core.clients.versioncontrol.events.GetListener;
 import com.microsoft.tfs.core.clients.versioncontrol.events.VersionControlEventEngine;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.GetOperation;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.GetRequest;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.ItemType;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.RecursionType;
 import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Workspace;
+import com.microsoft.tfs.core.clients.versioncontrol.specs.ItemSpec;
+import com.microsoft.tfs.core.clients.versioncontrol.specs.version.ChangesetVersionSpec;
 import com.microsoft.tfs.core.clients.versioncontrol.specs.version.LatestVersionSpec;
 import com.microsoft.tfs.core.clients.versioncontrol.specs.version.VersionSpec;
+import hudson.Util;
 import hudson.model.TaskListener;
+import hudson.plugins.tfs.model.ContentStore;
 import hudson.plugins.tfs.model.MockableVersionControlClient;
 import hudson.plugins.tfs.model.Server;
+import hudson.plugins.tfs.model.SharedContentStore;
 import hudson.remoting.Callable;
 
 public class GetFilesToWorkFolderCommand extends AbstractCallableCommand<Void, Exception> implements GetListener {
 
     private static final String GettingTemplate = "Getting version '%s' to '%s'...";
     private static final String GotTemplate = "Finished getting version '%s'. Retrieved %d resources.";
+    private static final String CopiedTemplate = "Copied %d files from the content store at '%s'.";
+    private static final String FetchedTemplate = "Copied %d files from the controller's content store.";
+    private static final String UploadedTemplate = "Uploaded %d files to the controller's content store.";
+    private static final Logger LOGGER = Logger.getLogger(GetFilesToWorkFolderCommand.class.getName());
 
     private final String workFolder;
     private final String versionSpec;
     private final boolean useOverwrite;
     private final boolean shouldLogEachGet;
     private PrintStream logger;
-    private int getCount = 0;
+    // the SDK may raise get events from its download threads
+    private final AtomicInteger getCount = new AtomicInteger();
+    private final AtomicLong getBytes = new AtomicLong();
+    private transient ContentStore contentStore;
+    private transient SharedContentStore sharedContentStore;
+    // the files to upload to the controller's store once downloaded; only used on the agent
+    private transient List<byte[]> toShare = new ArrayList<byte[]>();
+    // non-null while previewing which files the get would download
+    private transient volatile Queue<GetOperation> previewed;
 
     public GetFilesToWorkFolderCommand(final ServerConfigurationProvider server, final String workFolder, final String versionSpec, boolean useOverwrite) {
         this(server, workFolder, versionSpec, useOverwrite, false);
@@ -46,10 +78,19 @@ public class GetFilesToWorkFolderCommand extends AbstractCallableCommand<Void, E
         return this;
     }
 
+    @Override
+    public String getOperationName() {
+        return "get";
+    }
+
     void setLogger(final PrintStream logger) {
         this.logger = logger;
     }
 
+    void setContentStore(final ContentStore contentStore) {
+        this.contentStore = contentStore;
+    }
+
     public Void call() throws Exception {
         final Server server = createServer();
         final MockableVersionControlClient vcc = server.getVersionControlClient();
@@ -68,20 +109,216 @@ public class GetFilesToWorkFolderCommand extends AbstractCallableCommand<Void, E
 
         final Workspace workspace = vcc.getWorkspace(workFolder);
         final VersionControlEventEngine eventEngine = vcc.getEventEngine();
+        final GetOptions getOptions = useOverwrite ? GetOptions.OVERWRITE : GetOptions.NONE;
+        contentStore = ContentStore.create(server.getExtraSettings());
+        toShare = new ArrayList<byte[]>();
+        if (contentStore != null) {
+            sharedContentStore = SharedContentStore.create(server.getExtraSettings());
+        }
         eventEngine.addGetListener(this);
-        workspace.get(getVersionSpec, useOverwrite ? GetOptions.OVERWRITE : GetOptions.NONE);
-        eventEngine.removeGetListener(this);
+        try {
+            if (contentStore != null) {
+                final int copied = getFromContentStore(workspace, getVersionSpec, getOptions);
+                if (copied > 0) {
+                    logger.println(String.format(CopiedTemplate, copied, contentStore.getRoot()));
+                }
+            }
+            workspace.get(getVersionSpec, getOptions);
+        }
+        finally {
+            eventEngine.removeGetListener(this);
+        }
+        if (sharedContentStore != null && !toShare.isEmpty()) {
+            shareDownloadedFiles();
+        }
+        if (contentStore != null) {
+            try {
+                contentStore.evict();
+            }
+            catch (final IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to trim the content store at " + contentStore.getRoot(), e);
+            }
+        }
+
+        final CommandMetrics metrics = CommandMetrics.current();
+        metrics.setItems(getCount.get());
+        metrics.setBytes(getBytes.get());
 
-        final String gotMessage = String.format(GotTemplate, versionSpecString, getCount);
+        final String gotMessage = String.format(GotTemplate, versionSpecString, getCount.get());
         logger.println(gotMessage);
 
         return null;
     }
 
+    /**
+     * Previews the get to learn which files it would download, copies those the content store has
+     * into the workspace and then tells the server the workspace has them, without touching the disk,
+     * so that the get that follows only downloads the rest.
+     * The SDK downloads files itself, so this is the only way to avoid downloading what the store has.
+     * Files the agent's store doesn't have are looked for in the controller's store, if it is turned on.
+     *
+     * @return the number of files copied from the content store
+     */
+    int getFromContentStore(final Workspace workspace, final VersionSpec getVersionSpec, final GetOptions getOptions) throws IOException, InterruptedException {
+        final Queue<GetOperation> operations = new ConcurrentLinkedQueue<GetOperation>();
+        previewed = operations;
+        try {
+            workspace.get(getVersionSpec, getOptions.combine(GetOptions.PREVIEW));
+        }
+        finally {
+            previewed = null;
+        }
+
+        final List<GetRequest> copied = new ArrayList<GetRequest>();
+        final List<GetOperation> missed = new ArrayList<GetOperation>();
+        for (final GetOperation operation : operations) {
+            final byte[] hash = operation.getHashValue();
+            final String targetLocalItem = operation.getTargetLocalItem();
+            if (operation.getItemType() != ItemType.FILE || hash == null || hash.length == 0 || targetLocalItem == null) {
+                continue;
+            }
+            final File target = new File(targetLocalItem);
+            if (!useOverwrite && target.canWrite()) {
+                // leave it to the get to report the writable file
+                continue;
+            }
+            if (copyFromContentStore(hash, target)) {
+                deleteSource(operation);
+                copied.add(toGetRequest(operation));
+            }
+            else {
+                missed.add(operation);
+            }
+        }
+        if (sharedContentStore != null && !missed.isEmpty()) {
+            try {
+                final int fetched = getFromSharedContentStore(missed, copied);
+                if (fetched > 0) {
+                    logger.println(String.format(FetchedTemplate, fetched));
+                }
+            }
+            catch (final IOException e) {
+                // the get will download them
+                LOGGER.log(Level.WARNING, "Unable to copy files from the controller's content store", e);
+            }
+        }
+        if (!copied.isEmpty()) {
+            workspace.get(copied.toArray(new GetRequest[copied.size()]), GetOptions.NO_DISK_UPDATE);
+        }
+        return copied.size();
+    }
+
+    private int getFromSharedContentStore(final List<GetOperation> missed, final List<GetRequest> copied) throws IOException, InterruptedException {
+        final List<byte[]> hashes = new ArrayList<byte[]>(missed.size());
+        for (final GetOperation operation : missed) {
+            hashes.add(operation.getHashValue());
+        }
+        final Set<String> available = sharedContentStore.query(hashes);
+        int result = 0;
+        for (final GetOperation operation : missed) {
+            final byte[] hash = operation.getHashValue();
+            final File target = new File(operation.getTargetLocalItem());
+            if (!available.contains(Util.toHexString(hash))) {
+                toShare.add(hash);
+            }
+            else if (sharedContentStore.fetch(hash, contentStore) && copyFromContentStore(hash, target)) {
+                deleteSource(operation);
+                copied.add(toGetRequest(operation));
+                result++;
+            }
+        }
+        return result;
+    }
+
+    private boolean copyFromContentStore(final byte[] hash, final File target) throws IOException {
+        if (target.exists()) {
+            // files are read-only in server workspaces
+            target.setWritable(true);
+        }
+        if (contentStore.copyTo(hash, target)) {
+            target.setReadOnly();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Deletes the old copy of a file that is renamed or moved, since the get that tells the server
+     * the workspace has the file at its target doesn't touch the disk.
+     */
+    private static void deleteSource(final GetOperation operation) {
+        final String sourceLocalItem = operation.getSourceLocalItem();
+        if (sourceLocalItem == null) {
+            return;
+        }
+        final File source = new File(sourceLocalItem);
+        if (source.equals(new File(operation.getTargetLocalItem())) || !source.exists()) {
+            return;
+        }
+        source.setWritable(true);
+        if (!source.delete()) {
+            LOGGER.log(Level.WARNING, "Unable to delete {0}, which was renamed or moved", source);
+        }
+    }
+
+    private static GetRequest toGetRequest(final GetOperation operation) {
+        final ItemSpec itemSpec = new ItemSpec(operation.getTargetServerItem(), RecursionType.NONE);
+        return new GetRequest(itemSpec, new ChangesetVersionSpec(operation.getVersionServer()));
+    }
+
+    /**
+     * Uploads the files the controller's store didn't have, now that the get downloaded them,
+     * so that the other agents don't have to download them from the server.
+     */
+    void shareDownloadedFiles() throws InterruptedException {
+        int uploaded = 0;
+        try {
+            for (final byte[] hash : toShare) {
+                if (contentStore.contains(hash) && sharedContentStore.upload(hash, contentStore)) {
+                    uploaded++;
+                }
+            }
+        }
+        catch (final IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to upload files to the controller's content store", e);
+        }
+        if (uploaded > 0) {
+            logger.println(String.format(UploadedTemplate, uploaded));
+        }
+    }
+
     public void onGet(final GetEvent getEvent) {
-        getCount++;
+        final Queue<GetOperation> operations = previewed;
+        if (operations != null) {
+            operations.add(getEvent.getOperation());
+            return;
+        }
+        getCount.incrementAndGet();
+        final String targetLocalItem = getEvent.getTargetLocalItem();
+        if (targetLocalItem != null) {
+            // deletions have no target; File.length() is 0 for folders and missing files
+            final File file = new File(targetLocalItem);
+            getBytes.addAndGet(file.length());
+            if (contentStore != null) {
+                addToContentStore(getEvent.getOperation(), file);
+            }
+        }
         if (shouldLogEachGet) {
-            logger.println(getEvent.getTargetLocalItem());
+            logger.println(targetLocalItem);
+        }
+    }
+
+    void addToContentStore(final GetOperation operation, final File file) {
+        final byte[] hash = operation != null ? operation.getHashValue() : null;
+        if (hash == null || hash.length == 0) {
+            return;
+        }
+        try {
+            contentStore.add(hash, file);
+        }
+        catch (final IOException e) {
+            // the store is only an optimization
+            LOGGER.log(Level.FINE, "Unable to add " + file + " to the content store", e);
         }
     }
 
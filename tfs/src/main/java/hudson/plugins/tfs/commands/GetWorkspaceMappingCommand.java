@@ -27,6 +27,11 @@ public class GetWorkspaceMappingCommand extends AbstractCallableCommand<String,
         return this;
     }
 
+    @Override
+    public String getOperationName() {
+        return "workspace_mapping";
+    }
+
     @Override
     public String call() throws Exception {
         final Server server = createServer();
@@ -41,6 +46,7 @@ public class GetWorkspaceMappingCommand extends AbstractCallableCommand<String,
 
         final Workspace workspace = vcc.tryGetWorkspace(localPath);
         final boolean existsMapping = workspace != null;
+        CommandMetrics.current().setItems(existsMapping ? 1 : 0);
         final String result = existsMapping ? workspace.getName() : null;
 
         final String resultMessage = existsMapping ? String.format(FoundResultTemplate, result) : "no.";
@@ -8,13 +8,18 @@ import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.RecursionTyp
 import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.VersionControlLabel;
 import com.microsoft.tfs.core.clients.versioncontrol.specs.ItemSpec;
 import com.microsoft.tfs.core.clients.versioncontrol.specs.LabelItemSpec;
+import com.microsoft.tfs.core.clients.versioncontrol.specs.version.VersionSpec;
 import com.microsoft.tfs.core.clients.versioncontrol.specs.version.WorkspaceVersionSpec;
 import hudson.model.TaskListener;
 import hudson.plugins.tfs.model.MockableVersionControlClient;
 import hudson.plugins.tfs.model.Server;
 import hudson.remoting.Callable;
+import org.apache.commons.lang.StringUtils;
 
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Command to create a label on TFS.
@@ -27,19 +32,29 @@ public class LabelCommand extends AbstractCallableCommand<Void, Exception> {
 
     private final String labelName;
     private final String workspaceName;
-    private final String projectPath;
+    private final List<String> projectPaths;
 
     public LabelCommand(final ServerConfigurationProvider configurationProvider,
                         final String labelName,
                         final String workspaceName,
                         final String projectPath) {
+        this(configurationProvider, labelName, workspaceName, Collections.singletonList(projectPath));
+    }
+
+    /**
+     * Labels several paths, recursively, in a single call to the server.
+     */
+    public LabelCommand(final ServerConfigurationProvider configurationProvider,
+                        final String labelName,
+                        final String workspaceName,
+                        final List<String> projectPaths) {
         super(configurationProvider);
         this.labelName = labelName;
         this.workspaceName = workspaceName;
-        this.projectPath = projectPath;
+        this.projectPaths = new ArrayList<String>(projectPaths);
     }
 
-    private String getLabelComment() {
+    private static String getLabelComment() {
         // TODO 1. Solve issue with quotes and spaces
         // TODO 2. Include build information in the comment.
         return "Automatically_applied_by_Jenkins_TFS_plugin";
@@ -50,6 +65,11 @@ public class LabelCommand extends AbstractCallableCommand<Void, Exception> {
         return this;
     }
 
+    @Override
+    public String getOperationName() {
+        return "label";
+    }
+
     public Void call() throws Exception {
         final Server server = createServer();
         final MockableVersionControlClient vcc = server.getVersionControlClient();
@@ -57,23 +77,37 @@ public class LabelCommand extends AbstractCallableCommand<Void, Exception> {
         final PrintStream logger = listener.getLogger();
         final String userName = VersionControlConstants.AUTHENTICATED_USER;
 
-        final String creatingMessage = String.format(CreatingTemplate, labelName, projectPath, workspaceName);
+        final String creatingMessage = String.format(CreatingTemplate, labelName, StringUtils.join(projectPaths, ", "), workspaceName);
         logger.println(creatingMessage);
 
-        final VersionControlLabel versionControlLabel = new VersionControlLabel(labelName, userName, userName, null, getLabelComment());
-        final ItemSpec itemSpec = new ItemSpec(projectPath, RecursionType.FULL);
         final WorkspaceVersionSpec workspaceVersionSpec = new WorkspaceVersionSpec(workspaceName, userName, userName);
-        final LabelItemSpec labelItemSpec = new LabelItemSpec(itemSpec, workspaceVersionSpec, false);
-        final LabelItemSpec[] items = {labelItemSpec};
+        final LabelResult[] labelResults = createLabel(vcc, labelName, projectPaths, workspaceVersionSpec);
+
+        CommandMetrics.current().setItems(labelResults.length);
+        final String createdMessage = String.format(CreatedTemplate, labelName);
+        logger.println(createdMessage);
+
+        return null;
+    }
+
+    /**
+     * Creates or updates a label on the paths, recursively, as of the version, with one call to the server.
+     *
+     * @return the results of the label creation, never empty
+     */
+    public static LabelResult[] createLabel(final MockableVersionControlClient vcc, final String labelName, final List<String> projectPaths, final VersionSpec versionSpec) {
+        final String userName = VersionControlConstants.AUTHENTICATED_USER;
+        final VersionControlLabel versionControlLabel = new VersionControlLabel(labelName, userName, userName, null, getLabelComment());
+        final LabelItemSpec[] items = new LabelItemSpec[projectPaths.size()];
+        for (int i = 0; i < items.length; i++) {
+            final ItemSpec itemSpec = new ItemSpec(projectPaths.get(i), RecursionType.FULL);
+            items[i] = new LabelItemSpec(itemSpec, versionSpec, false);
+        }
         final LabelResult[] labelResults = vcc.createLabel(versionControlLabel, items, LabelChildOption.FAIL);
 
         if (labelResults == null || labelResults.length == 0) {
             throw new RuntimeException("Label creation failed.");
-        } else {
-            final String createdMessage = String.format(CreatedTemplate, labelName);
-            logger.println(createdMessage);
         }
-
-        return null;
+        return labelResults;
     }
 }
@@ -45,6 +45,11 @@ public class ListWorkspacesCommand extends AbstractCallableCommand<List<Workspac
         return this;
     }
 
+    @Override
+    public String getOperationName() {
+        return "workspace_list";
+    }
+
     public List<Workspace> call() throws Exception {
         final Server server = createServer();
         final MockableVersionControlClient vcc = server.getVersionControlClient();
@@ -78,6 +83,7 @@ public class ListWorkspacesCommand extends AbstractCallableCommand<List<Workspac
             result.add(workspace);
         }
 
+        CommandMetrics.current().setItems(result.size());
         if (shouldLogWorkspaces) {
             log(result, logger);
         }
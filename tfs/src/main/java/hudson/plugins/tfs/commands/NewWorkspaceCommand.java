@@ -12,12 +12,15 @@ import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.WorkingFolde
 import hudson.model.TaskListener;
 import hudson.plugins.tfs.model.MockableVersionControlClient;
 import hudson.plugins.tfs.model.Server;
+import hudson.plugins.tfs.model.WorkspaceMapping;
 import hudson.remoting.Callable;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 
@@ -32,13 +35,24 @@ public class NewWorkspaceCommand extends AbstractCallableCommand<Void, Exception
     private final String workspaceName;
     private final String serverPath;
     private final Collection<String> cloakedPaths;
+    private final List<WorkspaceMapping> additionalMappings;
     private final String localPath;
 
     public NewWorkspaceCommand(final ServerConfigurationProvider server, final String workspaceName, final String serverPath, Collection<String> cloakedPaths, final String localPath) {
+        this(server, workspaceName, serverPath, cloakedPaths, Collections.<WorkspaceMapping>emptyList(), localPath);
+    }
+
+    /**
+     * Creates a command that maps several server folders in the same workspace.
+     *
+     * @param additionalMappings server folders to map under {@code localPath}, in addition to {@code serverPath}
+     */
+    public NewWorkspaceCommand(final ServerConfigurationProvider server, final String workspaceName, final String serverPath, Collection<String> cloakedPaths, final List<WorkspaceMapping> additionalMappings, final String localPath) {
         super(server);
         this.workspaceName = workspaceName;
         this.serverPath = serverPath;
         this.cloakedPaths = cloakedPaths;
+        this.additionalMappings = additionalMappings;
         this.localPath = localPath;
     }
 
@@ -46,6 +60,11 @@ public class NewWorkspaceCommand extends AbstractCallableCommand<Void, Exception
         return this;
     }
 
+    @Override
+    public String getOperationName() {
+        return "workspace_create";
+    }
+
     public Void call() throws IOException {
         final Server server = createServer();
         final MockableVersionControlClient vcc = server.getVersionControlClient();
@@ -66,6 +85,15 @@ public class NewWorkspaceCommand extends AbstractCallableCommand<Void, Exception
 
             folderList.add(new WorkingFolder(serverPath, LocalPath.canonicalize(localPath), WorkingFolderType.MAP, RecursionType.FULL));
 
+            for (final WorkspaceMapping mapping : additionalMappings) {
+                // resolved here, on the computer hosting the workspace, for its path separators
+                final String relativeFolder = mapping.getLocalPath().replace('/', File.separatorChar);
+                final String mappedPath = LocalPath.canonicalize(new File(localPath, relativeFolder).getPath());
+                final String additionalMappingMessage = String.format(MappingTemplate, mapping.getProjectPath(), mappedPath, workspaceName);
+                logger.println(additionalMappingMessage);
+
+                folderList.add(new WorkingFolder(mapping.getProjectPath(), mappedPath, WorkingFolderType.MAP, RecursionType.FULL));
+            }
 
             for (final String cloakedPath : cloakedPaths) {
                 final String cloakingMessage = String.format(CloakingTemplate, cloakedPath, workspaceName);
@@ -88,6 +116,7 @@ public class NewWorkspaceCommand extends AbstractCallableCommand<Void, Exception
                 WorkspaceOptions.NONE
         );
 
+        CommandMetrics.current().setItems(foldersToMap == null ? 0 : foldersToMap.length);
         final String createdMessage = String.format(CreatedTemplate, workspaceName);
         logger.println(createdMessage);
 
@@ -52,6 +52,11 @@ public class RemoteChangesetVersionCommand extends AbstractCallableCommand<Integ
         return this;
     }
 
+    @Override
+    public String getOperationName() {
+        return "query";
+    }
+
     public Integer call() throws Exception {
         final Server server = createServer();
         final MockableVersionControlClient vcc = server.getVersionControlClient();
@@ -77,6 +82,7 @@ public class RemoteChangesetVersionCommand extends AbstractCallableCommand<Integ
                 false /* includeDownloadInfo */,
                 false /* sortAscending */
         );
+        CommandMetrics.current().setItems(serverChangeSets == null ? 0 : serverChangeSets.length);
         Integer changeSetNumber = null;
         final String resultMessage;
         if (serverChangeSets != null && serverChangeSets.length >= 1) {
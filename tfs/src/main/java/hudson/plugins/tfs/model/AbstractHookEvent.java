@@ -25,8 +25,8 @@ import hudson.plugins.tfs.TeamPRPushTrigger;
 import hudson.plugins.tfs.TeamPluginGlobalConfig;
 import hudson.plugins.tfs.TeamPushTrigger;
 import hudson.plugins.tfs.model.servicehooks.Event;
+import hudson.plugins.tfs.telemetry.HookMetrics;
 import hudson.plugins.tfs.util.ActionHelper;
-import hudson.plugins.tfs.util.UriHelper;
 import hudson.scm.SCM;
 import hudson.security.ACL;
 import hudson.triggers.SCMTrigger;
@@ -143,7 +143,9 @@ public abstract class AbstractHookEvent {
                     final Cause cause = new TeamHookCause(gitCodePushedEventArgs.commit);
                     final CauseAction causeAction = new CauseAction(cause);
                     final Action[] actionArray = ActionHelper.create(actionsWithSafeParams, causeAction);
-                    scmTriggerItem.scheduleBuild2(quietPeriod, actionArray);
+                    if (scmTriggerItem.scheduleBuild2(quietPeriod, actionArray) != null) {
+                        HookMetrics.recordScheduled(HookMetrics.POST_COMMIT_HOOK);
+                    }
                     if (gitCodePushedEventArgs instanceof PullRequestMergeCommitCreatedEventArgs) {
                         JenkinsEventNotifier.sendPullRequestBuildStatusEvent((PullRequestMergeCommitCreatedEventArgs) gitCodePushedEventArgs, GitStatusState.Pending, "Jenkins PR build queued", targetUrl, job.getAbsoluteUrl());
                     }
@@ -181,6 +183,19 @@ public abstract class AbstractHookEvent {
         return null;
     }
 
+    private GitStatus.ResponseContributor triggerJob(final ScanStats scanStats, final GitCodePushedEventArgs gitCodePushedEventArgs, final List<Action> actions, final boolean bypassPolling, final Item project, final SCMTriggerItem scmTriggerItem, final Boolean repoMatches, final Boolean branchMatches) {
+        final long start = System.nanoTime();
+        try {
+            final GitStatus.ResponseContributor result = triggerJob(gitCodePushedEventArgs, actions, bypassPolling, project, scmTriggerItem, repoMatches, branchMatches);
+            if (result != null) {
+                scanStats.itemsMatched++;
+            }
+            return result;
+        } finally {
+            scanStats.triggerNanos += System.nanoTime() - start;
+        }
+    }
+
     private Boolean repoMatches(final GitCodePushedEventArgs gitCodePushedEventArgs, final Job job) {
         if (job instanceof WorkflowJob) {
             final FlowDefinition jobDef = ((WorkflowJob) job).getDefinition();
@@ -251,7 +266,9 @@ public abstract class AbstractHookEvent {
             result.add(new GitStatus.MessageResponseContributor("No commits were pushed, skipping further event processing."));
             return result;
         }
+        final ScanStats scanStats = new ScanStats();
         final URIish uri = gitCodePushedEventArgs.getRepoURIish();
+        final GitRepositoryCatalog.RepoMatcher repoMatcher = GitRepositoryCatalog.matcherFor(gitCodePushedEventArgs);
 
         TeamGlobalStatusAction.addIfApplicable(actions);
 
@@ -269,6 +286,7 @@ public abstract class AbstractHookEvent {
             }
             int totalBranchMatches = 0;
             for (final Item project : Jenkins.getActiveInstance().getAllItems()) {
+                scanStats.itemsScanned++;
                 final SCMTriggerItem scmTriggerItem = SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(project);
 
                 if (scmTriggerItem == null || scmTriggerItem.getSCMs() == null) {
@@ -277,7 +295,7 @@ public abstract class AbstractHookEvent {
 
                 // Pipeline job
                 if (scmTriggerItem.getSCMs().isEmpty()) {
-                    GitStatus.ResponseContributor triggerResult = triggerJob(gitCodePushedEventArgs, actions, bypassPolling, project, scmTriggerItem, false, false);
+                    GitStatus.ResponseContributor triggerResult = triggerJob(scanStats, gitCodePushedEventArgs, actions, bypassPolling, project, scmTriggerItem, false, false);
                     if (triggerResult != null) {
                         result.add(triggerResult);
                     }
@@ -294,7 +312,7 @@ public abstract class AbstractHookEvent {
                     for (final RemoteConfig repository : git.getRepositories()) {
                         boolean repositoryMatches = false;
                         for (final URIish remoteURL : repository.getURIs()) {
-                            if (UriHelper.areSameGitRepo(uri, remoteURL)) {
+                            if (repoMatcher.matches(remoteURL)) {
                                 repositoryMatches = true;
                                 break;
                             }
@@ -302,7 +320,7 @@ public abstract class AbstractHookEvent {
 
                         // Jobs triggered by PR merge need to check whether its target branch matches the one specified in the parameter of PR trigger UI
                         if (repositoryMatches && gitCodePushedEventArgs instanceof PullRequestMergeCommitCreatedEventArgs) {
-                            GitStatus.ResponseContributor triggerResult = triggerJob(gitCodePushedEventArgs, actions, bypassPolling, project, scmTriggerItem, true, false);
+                            GitStatus.ResponseContributor triggerResult = triggerJob(scanStats, gitCodePushedEventArgs, actions, bypassPolling, project, scmTriggerItem, true, false);
                             if (triggerResult != null) {
                                 result.add(triggerResult);
                             }
@@ -327,7 +345,7 @@ public abstract class AbstractHookEvent {
                             continue;
                         }
 
-                        GitStatus.ResponseContributor triggerResult = triggerJob(gitCodePushedEventArgs, actions, bypassPolling, project, scmTriggerItem, true, true);
+                        GitStatus.ResponseContributor triggerResult = triggerJob(scanStats, gitCodePushedEventArgs, actions, bypassPolling, project, scmTriggerItem, true, true);
                         if (triggerResult != null) {
                             result.add(triggerResult);
                             break;
@@ -335,6 +353,10 @@ public abstract class AbstractHookEvent {
                     }
                 }
             }
+            if (scanStats.itemsMatched > 0 && gitCodePushedEventArgs.collectionUri != null) {
+                // a job uses a repository of the collection; let its catalogue recognize the repository's URLs
+                GitRepositoryCatalog.forCollection(gitCodePushedEventArgs.collectionUri);
+            }
             if (!scmFound) {
                 result.add(new GitStatus.MessageResponseContributor("No Git jobs found"));
             } else if (totalBranchMatches == 0) {
@@ -346,9 +368,23 @@ public abstract class AbstractHookEvent {
             return result;
         } finally {
             SecurityContextHolder.setContext(old);
+            final String eventName = gitCodePushedEventArgs instanceof PullRequestMergeCommitCreatedEventArgs ? "gitPullRequestMerged" : "gitPush";
+            final long matchingNanos = System.nanoTime() - scanStats.start - scanStats.triggerNanos;
+            HookMetrics.recordMatching(eventName, matchingNanos, scanStats.itemsScanned, scanStats.itemsMatched);
         }
     }
 
+    /**
+     * Tallies one scan of the items for an event, to tell the time spent matching
+     * apart from the time spent polling and scheduling the matches.
+     */
+    private static final class ScanStats {
+        private final long start = System.nanoTime();
+        private long triggerNanos;
+        private int itemsScanned;
+        private int itemsMatched;
+    }
+
     private ArrayList<ParameterValue> getDefaultParameters(final Job<?, ?> job) {
         ArrayList<ParameterValue> values = new ArrayList<ParameterValue>();
         ParametersDefinitionProperty pdp = job.getProperty(ParametersDefinitionProperty.class);
@@ -23,6 +23,7 @@ import hudson.plugins.tfs.TeamGlobalStatusAction;
 import hudson.plugins.tfs.TeamPullRequestMergedDetailsAction;
 import hudson.plugins.tfs.UnsupportedIntegrationAction;
 import hudson.plugins.tfs.model.servicehooks.Event;
+import hudson.plugins.tfs.telemetry.HookMetrics;
 import hudson.plugins.tfs.util.ActionHelper;
 import hudson.plugins.tfs.util.MediaType;
 import jenkins.model.Jenkins;
@@ -92,6 +93,10 @@ public class BuildCommand extends AbstractCommand {
         final CauseAction causeAction = new CauseAction(cause);
         final Action[] actionArray = ActionHelper.create(extraActions, causeAction);
         final ScheduleResult scheduleResult = queue.schedule2(buildableItem, delay.getTime(), actionArray);
+        if (scheduleResult.isCreated()) {
+            // not when the build was already in the queue, or refused
+            HookMetrics.recordScheduled(HookMetrics.TEAM_BUILD);
+        }
         final Queue.Item item = scheduleResult.getItem();
         if (item != null) {
             result.put("created", jenkins.getRootUrl() + item.getUrl());
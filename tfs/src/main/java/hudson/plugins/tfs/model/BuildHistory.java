@@ -0,0 +1,53 @@
+package hudson.plugins.tfs.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The changeset a build gets, resolved from its version spec, along with the changesets
+ * committed since the previous build, both obtained from the same history.
+ */
+public final class BuildHistory {
+
+    private final int changesetVersion;
+    private final List<ChangeSet> changeSets;
+
+    /**
+     * Creates the history of a build.
+     *
+     * @param changesetVersion the changeset the build gets
+     * @param changeSets the changesets since the previous build, up to and including {@code changesetVersion},
+     *                   sorted by decreasing changeset number
+     */
+    public BuildHistory(final int changesetVersion, final List<ChangeSet> changeSets) {
+        this.changesetVersion = changesetVersion;
+        this.changeSets = Collections.unmodifiableList(changeSets);
+    }
+
+    public int getChangesetVersion() {
+        return changesetVersion;
+    }
+
+    public List<ChangeSet> getChangeSets() {
+        return changeSets;
+    }
+
+    /**
+     * Returns the changesets, without those only touching cloaked paths.
+     */
+    public List<ChangeSet> getChangeSetsWithoutCloakedPaths(final Collection<String> cloakedPaths) {
+        final CloakedPathMatcher matcher = CloakedPathMatcher.compile(cloakedPaths);
+        if (matcher == null) {
+            return changeSets;
+        }
+        final List<ChangeSet> result = new ArrayList<ChangeSet>(changeSets.size());
+        for (final ChangeSet changeSet : changeSets) {
+            if (!matcher.isFullyCloaked(changeSet)) {
+                result.add(changeSet);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,155 @@
+package hudson.plugins.tfs.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Determines if server paths are cloaked, that is if they start with one of the cloaked paths,
+ * ignoring case like {@link String#regionMatches(boolean, int, String, int, int)}.
+ * The cloaked paths are compiled into a trie of case-folded characters,
+ * so each path is checked in time proportional to its length, however many cloaked paths there are.
+ */
+public final class CloakedPathMatcher {
+
+    private static final int MAX_CACHED = 100;
+    private static final ConcurrentMap<List<String>, CloakedPathMatcher> CACHE
+            = new ConcurrentHashMap<List<String>, CloakedPathMatcher>();
+
+    private final Node root = new Node();
+
+    private CloakedPathMatcher(final Collection<String> cloakedPaths) {
+        for (final String cloakedPath : cloakedPaths) {
+            Node node = root;
+            for (int i = 0; i < cloakedPath.length(); i++) {
+                node = node.getOrAddChild(fold(cloakedPath.charAt(i)));
+            }
+            node.terminal = true;
+        }
+    }
+
+    /**
+     * Returns the matcher for the cloaked paths, compiled the first time
+     * a job configuration's set of cloaked paths is seen and then reused.
+     *
+     * @return the matcher or {@code null} if {@code cloakedPaths} is {@code null}
+     */
+    public static CloakedPathMatcher compile(final Collection<String> cloakedPaths) {
+        if (cloakedPaths == null) {
+            return null;
+        }
+        final List<String> key = new ArrayList<String>(cloakedPaths);
+        CloakedPathMatcher result = CACHE.get(key);
+        if (result == null) {
+            if (CACHE.size() >= MAX_CACHED) {
+                // many jobs or many configuration changes; start over
+                CACHE.clear();
+            }
+            final CloakedPathMatcher candidate = new CloakedPathMatcher(key);
+            result = CACHE.putIfAbsent(key, candidate);
+            if (result == null) {
+                result = candidate;
+            }
+        }
+        return result;
+    }
+
+    static void clear() {
+        CACHE.clear();
+    }
+
+    /**
+     * Same folding as {@link String#regionMatches(boolean, int, String, int, int)}.
+     */
+    static char fold(final char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * Determines if the server path is under (or is) one of the cloaked paths.
+     */
+    public boolean isCloaked(final String serverPath) {
+        Node node = root;
+        if (node.terminal) {
+            return true;
+        }
+        for (int i = 0; i < serverPath.length(); i++) {
+            node = node.getChild(fold(serverPath.charAt(i)));
+            if (node == null) {
+                return false;
+            }
+            if (node.terminal) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines if all the items of the changeset are cloaked.
+     */
+    public boolean isFullyCloaked(final ChangeSet changeSet) {
+        for (final ChangeSet.Item item : changeSet.getItems()) {
+            if (!isCloaked(item.getPath())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines if all the server paths are cloaked.
+     */
+    public boolean isFullyCloaked(final Collection<String> serverPaths) {
+        for (final String serverPath : serverPaths) {
+            if (!isCloaked(serverPath)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A node of the trie; its children are kept in arrays sorted by character,
+     * since most nodes have a single child and the rest only a few.
+     */
+    private static final class Node {
+        private static final char[] NO_LABELS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        private char[] labels = NO_LABELS;
+        private Node[] children = NO_CHILDREN;
+        private boolean terminal;
+
+        Node getChild(final char label) {
+            if (labels.length == 1) {
+                return labels[0] == label ? children[0] : null;
+            }
+            final int index = Arrays.binarySearch(labels, label);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node getOrAddChild(final char label) {
+            final int index = Arrays.binarySearch(labels, label);
+            if (index >= 0) {
+                return children[index];
+            }
+            final int insertionPoint = -(index + 1);
+            final char[] newLabels = new char[labels.length + 1];
+            final Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, insertionPoint);
+            System.arraycopy(children, 0, newChildren, 0, insertionPoint);
+            final Node result = new Node();
+            newLabels[insertionPoint] = label;
+            newChildren[insertionPoint] = result;
+            System.arraycopy(labels, insertionPoint, newLabels, insertionPoint + 1, labels.length - insertionPoint);
+            System.arraycopy(children, insertionPoint, newChildren, insertionPoint + 1, children.length - insertionPoint);
+            labels = newLabels;
+            children = newChildren;
+            return result;
+        }
+    }
+}
@@ -7,9 +7,22 @@ import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+/**
+ * Gives each node its own copy of the SDK's cache and configuration stores, so that
+ * workspace information recorded on one node doesn't confuse another node sharing the same home folder.
+ */
 public class ClonePersistenceStoreProvider implements PersistenceStoreProvider {
 
+    private static final Logger LOGGER = Logger.getLogger(ClonePersistenceStoreProvider.class.getName());
+    private static final ConcurrentMap<String, ClonePersistenceStoreProvider> PROVIDERS_BY_HOST = new ConcurrentHashMap<String, ClonePersistenceStoreProvider>();
+    private static final ConcurrentMap<String, Object> LOCKS_BY_HOST = new ConcurrentHashMap<String, Object>();
+
     private final FilesystemPersistenceStore cacheStore;
     private final FilesystemPersistenceStore configurationStore;
     private final FilesystemPersistenceStore logStore;
@@ -26,24 +39,73 @@ public class ClonePersistenceStoreProvider implements PersistenceStoreProvider {
         final File configurationFolder = createAndCopy(sourceConfiguration, hostName);
         this.configurationStore = new FilesystemPersistenceStore(configurationFolder);
 
+        // the log files of other processes are of no use to this node, so they aren't copied
         final FilesystemPersistenceStore sourceLog = sourcePersistenceStoreProvider.getLogPersistenceStore();
-        final File logFolder = createAndCopy(sourceLog, hostName);
+        final File logFolder = toDestination(sourceLog, hostName);
         this.logStore = new FilesystemPersistenceStore(logFolder);
     }
 
-    static File createAndCopy(final FilesystemPersistenceStore sourceStore, final String nodeName) {
+    /**
+     * Returns the provider for the host, cloning the source stores the first time the host is seen.
+     * Concurrent callers for the same host wait for a single clone; other hosts aren't held up.
+     */
+    public static ClonePersistenceStoreProvider forHost(final PersistenceStoreProvider sourcePersistenceStoreProvider, final String hostName) {
+        ClonePersistenceStoreProvider result = PROVIDERS_BY_HOST.get(hostName);
+        if (result != null) {
+            return result;
+        }
+        final Object candidateLock = new Object();
+        final Object existingLock = LOCKS_BY_HOST.putIfAbsent(hostName, candidateLock);
+        final Object lock = existingLock != null ? existingLock : candidateLock;
+        synchronized (lock) {
+            result = PROVIDERS_BY_HOST.get(hostName);
+            if (result == null) {
+                result = new ClonePersistenceStoreProvider(sourcePersistenceStoreProvider, hostName);
+                PROVIDERS_BY_HOST.put(hostName, result);
+            }
+        }
+        return result;
+    }
+
+    static void clear() {
+        PROVIDERS_BY_HOST.clear();
+        LOCKS_BY_HOST.clear();
+    }
+
+    static File toDestination(final FilesystemPersistenceStore sourceStore, final String nodeName) {
         final File sourceBase = sourceStore.getStoreFile();
         final String childName = sourceBase.getName();
         final File sourceParent = sourceBase.getParentFile();
         final File destinationBase = new File(sourceParent, nodeName);
-        final File destination = new File(destinationBase, childName);
+        return new File(destinationBase, childName);
+    }
+
+    /**
+     * Copies the store to a folder for the node, unless that was already done.
+     * The copy is made in a temporary sibling folder which is then renamed into place,
+     * so that another process (i.e. an agent sharing the home folder) never sees a partial copy
+     * and at most one copy wins.
+     */
+    static File createAndCopy(final FilesystemPersistenceStore sourceStore, final String nodeName) {
+        final File sourceBase = sourceStore.getStoreFile();
+        final File destination = toDestination(sourceStore, nodeName);
         if (!destination.isDirectory() && sourceBase.isDirectory()) {
+            final File temporary = new File(destination.getParentFile(), destination.getName() + ".tmp-" + UUID.randomUUID());
             try {
-                FileUtils.copyDirectory(sourceBase, destination);
+                FileUtils.copyDirectory(sourceBase, temporary);
+                if (!temporary.renameTo(destination) && !destination.isDirectory()) {
+                    throw new IOException("Unable to rename " + temporary + " to " + destination);
+                }
             }
             catch (final IOException e) {
                 throw new Error(e);
             }
+            finally {
+                if (temporary.exists()) {
+                    LOGGER.log(Level.FINE, "Discarding {0}, another process copied {1} first", new Object[]{temporary, sourceBase});
+                    FileUtils.deleteQuietly(temporary);
+                }
+            }
         }
         return destination;
     }
@@ -0,0 +1,328 @@
+package hudson.plugins.tfs.model;
+
+import hudson.Util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A store of TFVC file contents on an agent, shared by all its workspaces.
+ * Contents are addressed by the MD5 hash the server reports for each file version,
+ * so a file already downloaded for one branch or job can be copied into another workspace
+ * instead of being downloaded again.
+ * The store is capped in size: once it grows past the cap, the least recently used contents are removed.
+ * Its size is measured once per JVM and then kept up to date as contents are added and removed,
+ * so that a get that leaves the store under its cap doesn't have to go through the whole store.
+ */
+public final class ContentStore {
+
+    /** The system property, on the agent, overriding where the store is kept. */
+    public static final String FOLDER_PROPERTY = ContentStore.class.getName() + ".folder";
+    static final String DEFAULT_FOLDER_NAME = ".tfs-content-store";
+
+    private static final Logger LOGGER = Logger.getLogger(ContentStore.class.getName());
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+    private static final int EVICTION_TARGET_PERCENT = 90;
+    private static final int PERCENT = 100;
+    private static final int FAN_OUT_LENGTH = 2;
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // by root folder, shared by the stores created for each get on this computer
+    private static final ConcurrentMap<String, AtomicLong> SIZES = new ConcurrentHashMap<String, AtomicLong>();
+
+    private final File root;
+    private final long maxBytes;
+
+    /**
+     * Creates a store.
+     *
+     * @param root the folder holding the contents
+     * @param maxBytes the size above which the least recently used contents are removed
+     */
+    public ContentStore(final File root, final long maxBytes) {
+        this.root = root;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the store of the computer this runs on, as configured in the global settings.
+     *
+     * @return the store or {@code null} if it is turned off
+     */
+    public static ContentStore create(final ExtraSettings extraSettings) {
+        if (extraSettings == null || extraSettings.getContentStoreMegabytes() <= 0) {
+            return null;
+        }
+        final String folder = System.getProperty(FOLDER_PROPERTY);
+        final File root = folder != null
+                ? new File(folder)
+                : new File(System.getProperty("user.home"), DEFAULT_FOLDER_NAME);
+        return new ContentStore(root, extraSettings.getContentStoreMegabytes() * BYTES_PER_MEGABYTE);
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    File getFile(final byte[] hash) {
+        final String key = Util.toHexString(hash);
+        return new File(new File(root, key.substring(0, FAN_OUT_LENGTH)), key);
+    }
+
+    /**
+     * Copies the contents with the hash to the target file, replacing it.
+     *
+     * @return {@code true} if the store had the contents, {@code false} otherwise
+     */
+    public boolean copyTo(final byte[] hash, final File target) throws IOException {
+        final File file = getFile(hash);
+        if (!file.isFile()) {
+            return false;
+        }
+        final File parent = target.getParentFile();
+        if (parent != null) {
+            Files.createDirectories(parent.toPath());
+        }
+        try {
+            Files.copy(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (final NoSuchFileException e) {
+            // evicted in the meantime, by another build on the same agent
+            return false;
+        }
+        touch(file);
+        return true;
+    }
+
+    private static void touch(final File file) {
+        // the modification time tracks the last use
+        if (!file.setLastModified(System.currentTimeMillis())) {
+            LOGGER.log(Level.FINE, "Unable to mark {0} as used", file);
+        }
+    }
+
+    /**
+     * Writes the contents with the hash to the stream.
+     *
+     * @return {@code true} if the store had the contents, {@code false} otherwise
+     */
+    public boolean copyTo(final byte[] hash, final OutputStream target) throws IOException {
+        final File file = getFile(hash);
+        try {
+            Files.copy(file.toPath(), target);
+        } catch (final NoSuchFileException e) {
+            return false;
+        }
+        touch(file);
+        return true;
+    }
+
+    /**
+     * Adds a copy of the downloaded file to the store, unless it already has it
+     * or the file doesn't match the hash, like when it was modified since it was downloaded.
+     *
+     * @return {@code true} if the file was added
+     */
+    public boolean add(final byte[] hash, final File source) throws IOException {
+        if (contains(hash) || !source.isFile()) {
+            return false;
+        }
+        try (InputStream stream = Files.newInputStream(source.toPath())) {
+            return add(hash, stream);
+        }
+    }
+
+    /**
+     * Adds the contents read from the stream to the store, unless it already has them
+     * or they don't match the hash.
+     *
+     * @return {@code true} if the contents were added
+     */
+    public boolean add(final byte[] hash, final InputStream source) throws IOException {
+        final File file = getFile(hash);
+        if (file.isFile()) {
+            return false;
+        }
+        final File folder = file.getParentFile();
+        Files.createDirectories(folder.toPath());
+        // written under a unique name first, so no other build ever sees a partial file
+        final Path temp = new File(folder, file.getName() + "." + UUID.randomUUID() + TEMP_SUFFIX).toPath();
+        try {
+            final MessageDigest md5 = newDigest();
+            try (OutputStream stream = Files.newOutputStream(temp)) {
+                copy(source, stream, md5);
+            }
+            if (!Arrays.equals(hash, md5.digest())) {
+                return false;
+            }
+            Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        // counted twice if another build added the same contents meanwhile, until the next eviction measures it
+        getSize().addAndGet(file.length());
+        return true;
+    }
+
+    /**
+     * Determines if the store has the contents with the hash.
+     */
+    public boolean contains(final byte[] hash) {
+        return getFile(hash).isFile();
+    }
+
+    static byte[] digest(final File file) throws IOException {
+        final MessageDigest md5 = newDigest();
+        try (InputStream stream = Files.newInputStream(file.toPath())) {
+            copy(stream, null, md5);
+        }
+        return md5.digest();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void copy(final InputStream source, final OutputStream target, final MessageDigest md5) throws IOException {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = source.read(buffer)) != -1) {
+            md5.update(buffer, 0, read);
+            if (target != null) {
+                target.write(buffer, 0, read);
+            }
+        }
+    }
+
+    /**
+     * Returns the size of the contents, as last measured or kept up to date since.
+     */
+    long getSize() throws IOException {
+        return getSizeCounter().get();
+    }
+
+    private AtomicLong getSizeCounter() throws IOException {
+        final String key = root.getAbsolutePath();
+        AtomicLong result = SIZES.get(key);
+        if (result == null) {
+            long total = 0;
+            for (final Entry entry : listEntries()) {
+                total += entry.size;
+            }
+            final AtomicLong candidate = new AtomicLong(total);
+            result = SIZES.putIfAbsent(key, candidate);
+            if (result == null) {
+                result = candidate;
+            }
+        }
+        return result;
+    }
+
+    private List<Entry> listEntries() throws IOException {
+        final List<Entry> result = new ArrayList<Entry>();
+        if (!root.isDirectory()) {
+            return result;
+        }
+        Files.walkFileTree(root.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                if (!file.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+                    result.add(new Entry(file, attrs.size(), attrs.lastModifiedTime().toMillis()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(final Path file, final IOException exc) {
+                // removed in the meantime
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Removes the least recently used contents, if the store is larger than its cap,
+     * until it is back to 90% of the cap so that it isn't trimmed again after every get.
+     * Only goes through the store when the contents added since it was last measured took it over its cap.
+     *
+     * @return the number of bytes removed
+     */
+    public long evict() throws IOException {
+        final AtomicLong size = getSizeCounter();
+        if (size.get() <= maxBytes) {
+            return 0;
+        }
+        synchronized (size) {
+            final long counted = size.get();
+            final List<Entry> entries = listEntries();
+            long total = 0;
+            for (final Entry entry : entries) {
+                total += entry.size;
+            }
+            final long target = maxBytes * EVICTION_TARGET_PERCENT / PERCENT;
+            long removed = 0;
+            if (total > maxBytes) {
+                Collections.sort(entries, Entry.BY_LAST_USE);
+                for (final Entry entry : entries) {
+                    if (total - removed <= target) {
+                        break;
+                    }
+                    if (Files.deleteIfExists(entry.path)) {
+                        removed += entry.size;
+                    }
+                }
+            }
+            // measured afresh, which also corrects for contents counted twice, keeping what was added meanwhile
+            size.addAndGet(total - removed - counted);
+            return removed;
+        }
+    }
+
+    /**
+     * A file of the store, as seen when choosing which ones to evict.
+     */
+    private static final class Entry {
+        static final Comparator<Entry> BY_LAST_USE = new Comparator<Entry>() {
+            @Override
+            public int compare(final Entry a, final Entry b) {
+                return Long.compare(a.lastUsed, b.lastUsed);
+            }
+        };
+
+        private final Path path;
+        private final long size;
+        private final long lastUsed;
+
+        Entry(final Path path, final long size, final long lastUsed) {
+            this.path = path;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
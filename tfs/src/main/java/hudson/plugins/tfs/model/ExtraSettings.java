@@ -17,6 +17,8 @@ public class ExtraSettings implements Serializable {
 
     private boolean configFolderPerNode;
     private String nodeComputerName;
+    private int contentStoreMegabytes;
+    private boolean useSharedContentStore;
 
     public static final ExtraSettings DEFAULT = new ExtraSettings();
 
@@ -31,6 +33,8 @@ public class ExtraSettings implements Serializable {
     public ExtraSettings(final TeamPluginGlobalConfig teamPluginGlobalConfig) {
         if (teamPluginGlobalConfig != null) {
             this.configFolderPerNode = teamPluginGlobalConfig.isConfigFolderPerNode();
+            this.contentStoreMegabytes = teamPluginGlobalConfig.getContentStoreMegabytes();
+            this.useSharedContentStore = teamPluginGlobalConfig.getSharedContentStoreMegabytes() > 0;
             final Jenkins instance = Jenkins.getInstance();
             this.nodeComputerName = "";
             if (instance != null) {
@@ -53,6 +57,28 @@ public class ExtraSettings implements Serializable {
         this.configFolderPerNode = configFolderPerNode;
     }
 
+    /**
+     * The size cap of the agent-local store of TFVC file contents, in megabytes; 0 turns the store off.
+     */
+    public int getContentStoreMegabytes() {
+        return contentStoreMegabytes;
+    }
+
+    public void setContentStoreMegabytes(final int contentStoreMegabytes) {
+        this.contentStoreMegabytes = contentStoreMegabytes;
+    }
+
+    /**
+     * Whether agents also look for TFVC file contents in the controller's store, shared by all agents.
+     */
+    public boolean isUseSharedContentStore() {
+        return useSharedContentStore;
+    }
+
+    public void setUseSharedContentStore(final boolean useSharedContentStore) {
+        this.useSharedContentStore = useSharedContentStore;
+    }
+
     public String getNodeComputerName() {
         return nodeComputerName;
     }
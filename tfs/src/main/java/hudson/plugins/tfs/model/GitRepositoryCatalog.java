@@ -0,0 +1,339 @@
+package hudson.plugins.tfs.model;
+
+import com.microsoft.teamfoundation.sourcecontrol.webapi.model.GitRepository;
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+import hudson.plugins.tfs.TeamCollectionConfiguration;
+import hudson.plugins.tfs.TeamPluginGlobalConfig;
+import hudson.plugins.tfs.util.TeamRestClient;
+import hudson.plugins.tfs.util.UriHelper;
+import org.eclipse.jgit.transport.URIish;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A collection-scoped catalogue of Git repositories, mapping repository id, name and remote URL
+ * to one another so that hook routing and validation can identify a repository without
+ * re-parsing URLs or calling the REST API each time.
+ * Catalogues are filled and kept current by {@link RefreshWork}, never on a request thread.
+ * Only the collections of the global configuration and those of the jobs triggered by an event
+ * get a catalogue, so that events can't make the controller list the repositories of arbitrary servers.
+ */
+public final class GitRepositoryCatalog {
+
+    private static final Logger LOGGER = Logger.getLogger(GitRepositoryCatalog.class.getName());
+    private static final long DEFAULT_REFRESH_MINUTES = 15;
+    private static final int MAX_MEMOIZED_KEYS = 10000;
+    private static final int MAX_CATALOGS = 100;
+
+    private static final ConcurrentMap<String, GitRepositoryCatalog> CATALOGS
+            = new ConcurrentHashMap<String, GitRepositoryCatalog>();
+    private static final ConcurrentMap<String, String> REMOTE_URL_KEYS = new ConcurrentHashMap<String, String>();
+
+    private final URI collectionUri;
+    private volatile Snapshot snapshot = new Snapshot(Collections.<GitRepository>emptyList());
+    private volatile long lastUpdated;
+
+    private GitRepositoryCatalog(final URI collectionUri) {
+        this.collectionUri = collectionUri;
+    }
+
+    /**
+     * Returns the catalogue for a collection the plug-in is configured or used with, creating an empty one
+     * if needed; it will be populated by the next background refresh.
+     * Once {@value #MAX_CATALOGS} collections have a catalogue, the catalogue returned for a new one
+     * is not kept nor refreshed.
+     */
+    public static GitRepositoryCatalog forCollection(final URI collectionUri) {
+        final String key = toCollectionKey(collectionUri);
+        GitRepositoryCatalog result = CATALOGS.get(key);
+        if (result == null) {
+            final GitRepositoryCatalog candidate = new GitRepositoryCatalog(collectionUri);
+            if (CATALOGS.size() >= MAX_CATALOGS) {
+                LOGGER.log(Level.FINE, "Not keeping a Git repository catalogue for {0}: there are already {1}",
+                        new Object[]{collectionUri, MAX_CATALOGS});
+                return candidate;
+            }
+            result = CATALOGS.putIfAbsent(key, candidate);
+            if (result == null) {
+                result = candidate;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the catalogue for the collection, if it has one.
+     *
+     * @return the catalogue or {@code null}
+     */
+    public static GitRepositoryCatalog find(final URI collectionUri) {
+        return CATALOGS.get(toCollectionKey(collectionUri));
+    }
+
+    static Collection<GitRepositoryCatalog> all() {
+        return CATALOGS.values();
+    }
+
+    static void clear() {
+        CATALOGS.clear();
+        REMOTE_URL_KEYS.clear();
+    }
+
+    static String toCollectionKey(final URI collectionUri) {
+        String result = collectionUri.toString().toLowerCase(Locale.ENGLISH);
+        while (result.endsWith("/")) {
+            result = result.substring(0, result.length() - 1);
+        }
+        return result;
+    }
+
+    /**
+     * Computes {@link UriHelper#toGitRepoKey(URI)} for a job's remote URL, remembering the result
+     * since the same few remote URLs are checked against every incoming event.
+     *
+     * @return the key, or {@code null} if the remote URL is not a hierarchical URI (i.e. scp-like)
+     */
+    public static String toGitRepoKey(final URIish remoteUrl) {
+        final String remoteUrlString = remoteUrl.toString();
+        String result = REMOTE_URL_KEYS.get(remoteUrlString);
+        if (result == null) {
+            try {
+                result = UriHelper.toGitRepoKey(URI.create(remoteUrlString));
+            } catch (final IllegalArgumentException e) {
+                LOGGER.log(Level.FINE, "Unable to compute a key for " + remoteUrlString, e);
+                return null;
+            }
+            if (REMOTE_URL_KEYS.size() >= MAX_MEMOIZED_KEYS) {
+                REMOTE_URL_KEYS.clear();
+            }
+            REMOTE_URL_KEYS.put(remoteUrlString, result);
+        }
+        return result;
+    }
+
+    /**
+     * Creates a {@link RepoMatcher} for the repository an event was raised for, which also
+     * recognizes the repository's other remote URL forms known to the catalogue.
+     */
+    public static RepoMatcher matcherFor(final GitCodePushedEventArgs args) {
+        final Map<String, URI> candidates = new HashMap<String, URI>();
+        candidates.put(UriHelper.toGitRepoKey(args.repoUri), args.repoUri);
+        final GitRepositoryCatalog catalog = args.collectionUri == null ? null : find(args.collectionUri);
+        if (catalog != null) {
+            final GitRepository repository = catalog.findForEvent(args);
+            if (repository != null && repository.getRemoteUrl() != null) {
+                final URI remoteUri = URI.create(repository.getRemoteUrl());
+                final String key = UriHelper.toGitRepoKey(remoteUri);
+                if (!candidates.containsKey(key)) {
+                    candidates.put(key, remoteUri);
+                }
+            }
+        }
+        return new RepoMatcher(candidates);
+    }
+
+    public URI getCollectionUri() {
+        return collectionUri;
+    }
+
+    public long getLastUpdated() {
+        return lastUpdated;
+    }
+
+    /**
+     * Returns the number of repositories currently in the catalogue.
+     */
+    public int size() {
+        return snapshot.byId.size();
+    }
+
+    /**
+     * Finds the repository an event was raised for, by its URL or else by its name
+     * (which is what the events put in {@link GitCodePushedEventArgs#repoId}) and team project.
+     *
+     * @return the repository or {@code null} if it isn't in the catalogue or the name is ambiguous
+     */
+    GitRepository findForEvent(final GitCodePushedEventArgs args) {
+        final GitRepository byUrl = findByUrl(args.repoUri);
+        if (byUrl != null || args.repoId == null) {
+            return byUrl;
+        }
+        final List<GitRepository> byName = findByName(args.repoId);
+        if (byName.size() == 1) {
+            return byName.get(0);
+        }
+        GitRepository result = null;
+        for (final GitRepository candidate : byName) {
+            if (candidate.getProject() != null && args.projectId != null
+                    && args.projectId.equalsIgnoreCase(candidate.getProject().getName())) {
+                if (result != null) {
+                    return null;
+                }
+                result = candidate;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds a repository by its id.
+     */
+    public GitRepository findById(final String repositoryId) {
+        return snapshot.byId.get(repositoryId.toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * Finds the repositories with the given name, which may exist in more than one team project.
+     */
+    public List<GitRepository> findByName(final String name) {
+        final List<GitRepository> result = snapshot.byName.get(name.toLowerCase(Locale.ENGLISH));
+        return result == null ? Collections.<GitRepository>emptyList() : result;
+    }
+
+    /**
+     * Finds a repository by one of its URLs.
+     */
+    public GitRepository findByUrl(final URI repositoryUri) {
+        final GitRepository candidate = snapshot.byKey.get(UriHelper.toGitRepoKey(repositoryUri));
+        if (candidate != null && UriHelper.areSameGitRepo(URI.create(candidate.getRemoteUrl()), repositoryUri)) {
+            return candidate;
+        }
+        return null;
+    }
+
+    /**
+     * Replaces the contents of the catalogue with a fresh listing, keeping the current snapshot
+     * when nothing changed.
+     */
+    public void update(final List<GitRepository> repositories) {
+        final Snapshot previous = snapshot;
+        final Snapshot next = new Snapshot(repositories);
+        lastUpdated = System.currentTimeMillis();
+        if (!next.signature.equals(previous.signature)) {
+            snapshot = next;
+            LOGGER.log(Level.FINE, "Git repository catalogue for {0} now has {1} repositories (was {2})",
+                    new Object[]{collectionUri, next.byId.size(), previous.byId.size()});
+        }
+    }
+
+    /**
+     * Lists all the collection's repositories and updates the catalogue with them.
+     * This is a full refresh: the REST API can't list only the repositories changed since the last one.
+     */
+    public void refresh() throws IOException {
+        final TeamRestClient client = new TeamRestClient(collectionUri);
+        final ListOfGitRepositories repositories = client.getRepositories();
+        if (repositories != null && repositories.value != null) {
+            update(repositories.value);
+        }
+    }
+
+    /**
+     * Decides whether a job's remote URL points to the repository of an event.
+     */
+    public static final class RepoMatcher {
+        private final Map<String, URI> candidates;
+
+        RepoMatcher(final Map<String, URI> candidates) {
+            this.candidates = candidates;
+        }
+
+        /**
+         * Determines if the remote URL refers to the event's repository.
+         */
+        public boolean matches(final URIish remoteUrl) {
+            final String key = toGitRepoKey(remoteUrl);
+            if (key == null) {
+                return false;
+            }
+            final URI candidate = candidates.get(key);
+            // the key ignores the port, which still matters when the schemes are the same
+            return candidate != null && UriHelper.areSameGitRepo(candidate, URI.create(remoteUrl.toString()));
+        }
+    }
+
+    /**
+     * An immutable view of the catalogue, swapped atomically on update.
+     */
+    private static final class Snapshot {
+        private final Map<String, GitRepository> byId = new HashMap<String, GitRepository>();
+        private final Map<String, List<GitRepository>> byName = new HashMap<String, List<GitRepository>>();
+        private final Map<String, GitRepository> byKey = new HashMap<String, GitRepository>();
+        private final Map<String, String> signature = new LinkedHashMap<String, String>();
+
+        Snapshot(final List<GitRepository> repositories) {
+            for (final GitRepository repository : repositories) {
+                if (repository.getId() == null) {
+                    continue;
+                }
+                final String id = repository.getId().toString().toLowerCase(Locale.ENGLISH);
+                byId.put(id, repository);
+                signature.put(id, repository.getName() + "|" + repository.getRemoteUrl());
+                if (repository.getName() != null) {
+                    final String name = repository.getName().toLowerCase(Locale.ENGLISH);
+                    List<GitRepository> sameName = byName.get(name);
+                    if (sameName == null) {
+                        sameName = new ArrayList<GitRepository>(1);
+                        byName.put(name, sameName);
+                    }
+                    sameName.add(repository);
+                }
+                if (repository.getRemoteUrl() != null) {
+                    byKey.put(UriHelper.toGitRepoKey(URI.create(repository.getRemoteUrl())), repository);
+                }
+            }
+        }
+    }
+
+    /**
+     * Periodically refreshes, in full, the catalogues of the configured collections and of those
+     * the jobs triggered by events so far are in.
+     */
+    @Extension
+    public static class RefreshWork extends AsyncPeriodicWork {
+
+        public RefreshWork() {
+            super("Team Services Git repository catalogue refresh");
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            final long minutes = Long.getLong(GitRepositoryCatalog.class.getName() + ".refreshMinutes", DEFAULT_REFRESH_MINUTES);
+            return TimeUnit.MINUTES.toMillis(minutes);
+        }
+
+        @Override
+        protected void execute(final TaskListener listener) throws IOException, InterruptedException {
+            for (final TeamCollectionConfiguration collection : TeamPluginGlobalConfig.get().getCollectionConfigurations()) {
+                try {
+                    forCollection(URI.create(collection.getCollectionUrl()));
+                } catch (final IllegalArgumentException e) {
+                    LOGGER.log(Level.FINE, "Ignoring the invalid collection URL " + collection.getCollectionUrl(), e);
+                }
+            }
+            for (final GitRepositoryCatalog catalog : all()) {
+                try {
+                    catalog.refresh();
+                } catch (final Exception e) {
+                    LOGGER.log(Level.FINE, "Unable to refresh the Git repository catalogue for " + catalog.collectionUri, e);
+                }
+            }
+        }
+    }
+}
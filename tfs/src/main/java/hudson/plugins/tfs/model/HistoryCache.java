@@ -0,0 +1,86 @@
+package hudson.plugins.tfs.model;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers, for a few minutes, the history polling found since the changeset of a job's last build,
+ * so that the checkout of the build the poll triggers only needs to query the changesets committed since the poll.
+ */
+final class HistoryCache {
+
+    /** The system property setting how long, in seconds, a poll's history is remembered. */
+    static final String TTL_PROPERTY = HistoryCache.class.getName() + ".ttlSeconds";
+
+    private static final long DEFAULT_TTL_SECONDS = TimeUnit.MINUTES.toSeconds(5);
+    private static final int MAX_CACHED = 100;
+    private static final ConcurrentMap<String, Entry> CACHE = new ConcurrentHashMap<String, Entry>();
+
+    private HistoryCache() {
+    }
+
+    static String toKey(final String serverUrl, final List<String> projectPaths, final int fromChangeset) {
+        // TFVC paths are case-insensitive
+        final String paths = StringUtils.join(projectPaths, '\n').toLowerCase(Locale.ENGLISH);
+        return StringUtils.removeEnd(StringUtils.defaultString(serverUrl), "/").toLowerCase(Locale.ENGLISH)
+                + '\n' + fromChangeset + '\n' + paths;
+    }
+
+    /**
+     * Remembers the history since a changeset.
+     *
+     * @param changeSets the changesets from {@code fromChangeset} to the latest one, inclusive,
+     *                   sorted by decreasing changeset number
+     */
+    static void put(final String serverUrl, final List<String> projectPaths, final int fromChangeset, final List<ChangeSet> changeSets) {
+        if (CACHE.size() >= MAX_CACHED) {
+            // many jobs polling; start over
+            CACHE.clear();
+        }
+        final long ttl = TimeUnit.SECONDS.toMillis(Long.getLong(TTL_PROPERTY, DEFAULT_TTL_SECONDS));
+        final List<ChangeSet> copy = Collections.unmodifiableList(new ArrayList<ChangeSet>(changeSets));
+        CACHE.put(toKey(serverUrl, projectPaths, fromChangeset), new Entry(copy, System.currentTimeMillis() + ttl));
+    }
+
+    /**
+     * Returns the history since a changeset, if it was recently remembered.
+     *
+     * @return the changesets, sorted by decreasing changeset number, or {@code null}
+     */
+    static List<ChangeSet> get(final String serverUrl, final List<String> projectPaths, final int fromChangeset) {
+        final String key = toKey(serverUrl, projectPaths, fromChangeset);
+        final Entry entry = CACHE.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() > entry.expiresAt) {
+            CACHE.remove(key, entry);
+            return null;
+        }
+        return entry.changeSets;
+    }
+
+    static void clear() {
+        CACHE.clear();
+    }
+
+    /**
+     * The changesets of one query and when they stop being reused.
+     */
+    private static final class Entry {
+        private final List<ChangeSet> changeSets;
+        private final long expiresAt;
+
+        Entry(final List<ChangeSet> changeSets, final long expiresAt) {
+            this.changeSets = changeSets;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
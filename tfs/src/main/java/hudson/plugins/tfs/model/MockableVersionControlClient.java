@@ -140,6 +140,21 @@ public class MockableVersionControlClient implements Closable {
         vcc.deleteWorkspace(workspace);
     }
 
+    /**
+     * Deletes a server workspace with a single call to the server, without the client-side bookkeeping
+     * of {@link #deleteWorkspace(Workspace)}: the {@link Workstation}'s cache, which is a server workspace's
+     * only local trace, is left to the caller.
+     * Each call is an independent request over the connection, so several workspaces can be
+     * deleted at once from different threads.
+     *
+     * @param workspace
+     *        the workspace to delete.
+     */
+    public void deleteServerWorkspace(final Workspace workspace) {
+        makeSureNotClosed();
+        vcc.getWebServiceLayer().deleteWorkspace(workspace.getName(), workspace.getOwnerName());
+    }
+
     public TFSTeamProjectCollection getConnection() {
         makeSureNotClosed();
         return vcc.getConnection();
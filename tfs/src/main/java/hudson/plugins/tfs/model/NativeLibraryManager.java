@@ -4,24 +4,56 @@ package hudson.plugins.tfs.model;
 import com.microsoft.tfs.core.persistence.FilesystemPersistenceStore;
 import com.microsoft.tfs.core.persistence.PersistenceStore;
 import com.microsoft.tfs.core.persistence.VersionedVendorFilesystemPersistenceStore;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+/**
+ * Extracts the TFS SDK's native libraries to the user's home directory and points the SDK at them.
+ * The libraries for the current platform are extracted once into a folder named after a digest
+ * of their contents, so that different SDK builds never share files, a folder is only ever
+ * used once complete and verified, and subsequent connections only pay for a volatile read.
+ */
 public class NativeLibraryManager implements NativeLibraryExtractor {
+    private static final Logger LOGGER = Logger.getLogger(NativeLibraryManager.class.getName());
     private static final String VENDOR_NAME = "Microsoft";
     private static final String TFS_SDK = "TFS_SDK";
     private static final String VERSION = "14.0.1";
     private static final String nativeFolderPropertyName = "com.microsoft.tfs.jni.native.base-directory";
     private static final String NATIVE = "native";
+    private static final String MANIFEST_NAME = "checksums.sha256";
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final int DIGEST_PREFIX_LENGTH = 16;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Map<String, String> OPERATING_SYSTEMS = new LinkedHashMap<String, String>();
+    private static final Map<String, String> ARCHITECTURES = new LinkedHashMap<String, String>();
+    private static volatile boolean initialized;
     private static final Class<NativeLibraryManager> metaClass = NativeLibraryManager.class;
     private static final TreeMap<String, TreeMap<String, List<String>>> NATIVE_LIBRARIES =
             new TreeMap<String, TreeMap<String, List<String>>>();
@@ -178,6 +210,31 @@ public class NativeLibraryManager implements NativeLibraryExtractor {
         );
         win32.put("x86_64", win32_x86_64);
         NATIVE_LIBRARIES.put("win32", win32);
+
+        // prefixes of the os.name and values of os.arch system properties, mapped to the SDK's folder names
+        OPERATING_SYSTEMS.put("windows", "win32");
+        OPERATING_SYSTEMS.put("mac os x", "macosx");
+        OPERATING_SYSTEMS.put("linux", "linux");
+        OPERATING_SYSTEMS.put("sunos", "solaris");
+        OPERATING_SYSTEMS.put("solaris", "solaris");
+        OPERATING_SYSTEMS.put("freebsd", "freebsd");
+        OPERATING_SYSTEMS.put("aix", "aix");
+        OPERATING_SYSTEMS.put("hp-ux", "hpux");
+
+        ARCHITECTURES.put("x86", "x86");
+        ARCHITECTURES.put("i386", "x86");
+        ARCHITECTURES.put("i486", "x86");
+        ARCHITECTURES.put("i586", "x86");
+        ARCHITECTURES.put("i686", "x86");
+        ARCHITECTURES.put("amd64", "x86_64");
+        ARCHITECTURES.put("x86_64", "x86_64");
+        ARCHITECTURES.put("ppc", "ppc");
+        ARCHITECTURES.put("powerpc", "ppc");
+        ARCHITECTURES.put("arm", "arm");
+        ARCHITECTURES.put("sparc", "sparc");
+        ARCHITECTURES.put("ia64_32", "ia64_32");
+        ARCHITECTURES.put("pa_risc", "PA_RISC");
+        ARCHITECTURES.put("pa-risc", "PA_RISC");
     }
 
     private final PersistenceStore store;
@@ -233,21 +290,256 @@ public class NativeLibraryManager implements NativeLibraryExtractor {
         return result;
     }
 
-    public static synchronized void initialize() throws IOException {
-        final String nativeFolder = System.getProperty(nativeFolderPropertyName);
-        if (nativeFolder == null) {
-            final File vendor = new File(VENDOR_NAME);
-            final File vendor_sdk = new File(vendor, TFS_SDK);
-            final File vendor_sdk_version = new File(vendor_sdk, VERSION);
-            final FilesystemPersistenceStore store = new UserHomePersistenceStore(vendor_sdk_version);
-            final NativeLibraryManager manager = new NativeLibraryManager(store);
-            manager.extractFiles();
+    /**
+     * Makes sure the native libraries are available to the SDK; called for every connection,
+     * so only the first call in a JVM does any work.
+     */
+    public static void initialize() throws IOException {
+        if (initialized) {
+            return;
+        }
+        synchronized (NativeLibraryManager.class) {
+            if (initialized) {
+                return;
+            }
+            final String nativeFolder = System.getProperty(nativeFolderPropertyName);
+            if (nativeFolder == null) {
+                final File vendor = new File(VENDOR_NAME);
+                final File vendor_sdk = new File(vendor, TFS_SDK);
+                final File vendor_sdk_version = new File(vendor_sdk, VERSION);
+                final FilesystemPersistenceStore store = new UserHomePersistenceStore(vendor_sdk_version);
+                final List<String> paths = selectNativeFiles(System.getProperty("os.name"), System.getProperty("os.arch"));
+
+                final File nativeFile = extractToCache(store.getStoreFile(), paths);
+                final String absolutePath = nativeFile.getAbsolutePath();
+                System.setProperty(nativeFolderPropertyName, absolutePath);
+            }
+            initialized = true;
+        }
+    }
+
+    /**
+     * Lists the resources (as returned by {@link #buildPathToNativeFile(String, String, String)})
+     * needed on the provided platform, or all of them if the platform isn't recognized.
+     */
+    static List<String> selectNativeFiles(final String osName, final String osArch) {
+        final String operatingSystem = findOperatingSystem(osName);
+        final TreeMap<String, List<String>> architecturesToFileNames = operatingSystem == null ? null : NATIVE_LIBRARIES.get(operatingSystem);
+        if (architecturesToFileNames != null) {
+            final String architecture = osArch == null ? null : ARCHITECTURES.get(osArch.toLowerCase(Locale.ENGLISH));
+            // macosx ships universal binaries and ignores the architecture
+            final boolean universal = "macosx".equals(operatingSystem);
+            if (universal || architecture != null) {
+                final String key = universal ? null : architecture;
+                final List<String> fileNames = architecturesToFileNames.get(key);
+                if (fileNames != null) {
+                    final List<String> result = new ArrayList<String>(fileNames.size());
+                    for (final String fileName : fileNames) {
+                        result.add(buildPathToNativeFile(operatingSystem, key, fileName));
+                    }
+                    return result;
+                }
+            }
+        }
+        LOGGER.log(Level.FINE, "Unrecognized platform {0}/{1}; extracting the native libraries for every platform", new Object[]{osName, osArch});
+        final List<String> result = new ArrayList<String>();
+        try {
+            extractFiles(new NativeLibraryExtractor() {
+                public void extractFile(final String operatingSystem, final String architecture, final String fileName) {
+                    result.add(buildPathToNativeFile(operatingSystem, architecture, fileName));
+                }
+            });
+        }
+        catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return result;
+    }
 
-            final File storeFile = store.getStoreFile();
-            final File nativeFile = new File(storeFile, NATIVE);
-            final String absolutePath = nativeFile.getAbsolutePath();
-            System.setProperty(nativeFolderPropertyName, absolutePath);
+    private static String findOperatingSystem(final String osName) {
+        if (osName != null) {
+            final String lowerCaseOsName = osName.toLowerCase(Locale.ENGLISH);
+            for (final Map.Entry<String, String> entry : OPERATING_SYSTEMS.entrySet()) {
+                if (lowerCaseOsName.startsWith(entry.getKey())) {
+                    return entry.getValue();
+                }
+            }
         }
+        return null;
+    }
+
+    /**
+     * Extracts the resources under {@code root}, in a folder named after the SHA-256 of their contents,
+     * unless a complete copy with matching checksums is already there.
+     * The files are first written to a temporary folder which is then renamed,
+     * so that other processes sharing the home directory never see a partial copy.
+     *
+     * @return the folder to use as the SDK's native base directory
+     */
+    static File extractToCache(final File root, final List<String> paths) throws IOException {
+        final Map<String, String> checksums = new LinkedHashMap<String, String>();
+        final MessageDigest overall = newDigest();
+        for (final String path : paths) {
+            final String checksum = computeChecksum(openResource(path));
+            checksums.put(path, checksum);
+            overall.update(path.getBytes(UTF_8));
+            overall.update(checksum.getBytes(UTF_8));
+        }
+        final String digest = toHex(overall.digest()).substring(0, DIGEST_PREFIX_LENGTH);
+        final File cacheFolder = new File(root, NATIVE + "-" + digest);
+        if (isValid(cacheFolder, checksums)) {
+            return cacheFolder;
+        }
+
+        final File tempFolder = new File(root, NATIVE + "-" + digest + ".tmp-" + UUID.randomUUID());
+        try {
+            for (final String path : paths) {
+                final File target = new File(tempFolder, stripNativePrefix(path));
+                copy(openResource(path), target);
+            }
+            writeManifest(new File(tempFolder, MANIFEST_NAME), checksums);
+            if (!isValid(tempFolder, checksums)) {
+                throw new IOException("The native libraries extracted to " + tempFolder + " do not match their checksums");
+            }
+            if (cacheFolder.exists() && !isValid(cacheFolder, checksums)) {
+                LOGGER.log(Level.WARNING, "Replacing the corrupt native library folder {0}", cacheFolder);
+                FileUtils.deleteQuietly(cacheFolder);
+            }
+            if (tempFolder.renameTo(cacheFolder)) {
+                return cacheFolder;
+            }
+            if (isValid(cacheFolder, checksums)) {
+                // another process got there first
+                return cacheFolder;
+            }
+            throw new IOException("Unable to rename " + tempFolder + " to " + cacheFolder);
+        }
+        finally {
+            if (tempFolder.exists()) {
+                FileUtils.deleteQuietly(tempFolder);
+            }
+        }
+    }
+
+    static boolean isValid(final File folder, final Map<String, String> expectedChecksums) throws IOException {
+        final File manifest = new File(folder, MANIFEST_NAME);
+        if (!manifest.isFile()) {
+            return false;
+        }
+        if (!expectedChecksums.equals(readManifest(manifest))) {
+            return false;
+        }
+        for (final Map.Entry<String, String> entry : expectedChecksums.entrySet()) {
+            final File file = new File(folder, stripNativePrefix(entry.getKey()));
+            if (!file.isFile()) {
+                return false;
+            }
+            final String actual;
+            try {
+                actual = computeChecksum(new FileInputStream(file));
+            }
+            catch (final FileNotFoundException e) {
+                return false;
+            }
+            if (!entry.getValue().equals(actual)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String stripNativePrefix(final String path) {
+        return path.substring(NATIVE.length() + 1);
+    }
+
+    private static InputStream openResource(final String path) throws IOException {
+        final InputStream result = metaClass.getResourceAsStream(path);
+        if (result == null) {
+            throw new FileNotFoundException("Resource not found: " + path);
+        }
+        return result;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        }
+        catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String computeChecksum(final InputStream inputStream) throws IOException {
+        final DigestInputStream digestInputStream = new DigestInputStream(inputStream, newDigest());
+        try {
+            final byte[] buffer = new byte[8192];
+            while (digestInputStream.read(buffer) != -1) {
+                // the digest is updated as the stream is read
+            }
+        }
+        finally {
+            IOUtils.closeQuietly(digestInputStream);
+        }
+        return toHex(digestInputStream.getMessageDigest().digest());
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static void copy(final InputStream inputStream, final File target) throws IOException {
+        final File folder = target.getParentFile();
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            IOUtils.closeQuietly(inputStream);
+            throw new IOException("Unable to create folder structure for " + folder.getAbsolutePath());
+        }
+        OutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(target);
+            IOUtils.copy(inputStream, outputStream);
+        }
+        finally {
+            IOUtils.closeQuietly(inputStream);
+            IOUtils.closeQuietly(outputStream);
+        }
+    }
+
+    private static void writeManifest(final File manifest, final Map<String, String> checksums) throws IOException {
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(manifest), UTF_8);
+        try {
+            for (final Map.Entry<String, String> entry : checksums.entrySet()) {
+                writer.write(entry.getValue());
+                writer.write("  ");
+                writer.write(entry.getKey());
+                writer.write('\n');
+            }
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    private static Map<String, String> readManifest(final File manifest) throws IOException {
+        final Map<String, String> result = new LinkedHashMap<String, String>();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifest), UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final int separator = line.indexOf("  ");
+                if (separator > 0) {
+                    result.put(line.substring(separator + 2), line.substring(0, separator));
+                }
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return result;
     }
 
 }
@@ -12,8 +12,11 @@ import hudson.plugins.tfs.model.ChangeSet.Item;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.PriorityQueue;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.builder.EqualsBuilder;
@@ -32,18 +35,70 @@ import com.microsoft.tfs.core.clients.webservices.IIdentityManagementService;
 public class Project {
 
     private final String projectPath;
+    private final List<String> projectPaths;
     private final Server server;
     private UserLookup userLookup;
 
     public Project(Server server, String projectPath) {
+        this(server, Collections.singletonList(projectPath));
+    }
+
+    /**
+     * Creates a project spanning several server folders, such as those mapped by a workspace;
+     * its history only contains the changesets that touched at least one of them.
+     * @param server the server hosting the folders
+     * @param projectPaths the server paths, the first of which is considered the main one
+     */
+    public Project(Server server, List<String> projectPaths) {
+        if (projectPaths == null || projectPaths.isEmpty()) {
+            throw new IllegalArgumentException("At least one project path is required");
+        }
         this.server = server;
-        this.projectPath = projectPath;
+        this.projectPath = projectPaths.get(0);
+        this.projectPaths = Collections.unmodifiableList(removeNestedPaths(projectPaths));
     }
 
     public String getProjectPath() {
         return projectPath;
     }
 
+    public List<String> getProjectPaths() {
+        return projectPaths;
+    }
+
+    /**
+     * Determines if the server path is the root path or one of its descendants, ignoring case like TFVC does.
+     */
+    static boolean isSameOrUnder(final String path, final String root) {
+        final String rootFolder = root.endsWith("/") ? root.substring(0, root.length() - 1) : root;
+        if (!path.regionMatches(true, 0, rootFolder, 0, rootFolder.length())) {
+            return false;
+        }
+        return path.length() == rootFolder.length() || path.charAt(rootFolder.length()) == '/';
+    }
+
+    /**
+     * Removes the paths that are already covered by another one, so their history isn't queried twice.
+     */
+    static List<String> removeNestedPaths(final List<String> paths) {
+        final List<String> result = new ArrayList<String>(paths.size());
+        for (int i = 0; i < paths.size(); i++) {
+            final String candidate = paths.get(i);
+            boolean nested = false;
+            for (int j = 0; j < paths.size() && !nested; j++) {
+                final String other = paths.get(j);
+                if (i != j && isSameOrUnder(candidate, other)) {
+                    // for duplicates, keep the first
+                    nested = !isSameOrUnder(other, candidate) || j < i;
+                }
+            }
+            if (!nested) {
+                result.add(candidate);
+            }
+        }
+        return result;
+    }
+
     static hudson.plugins.tfs.model.ChangeSet.Item convertServerChange
         (com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Change serverChange) {
         final String path = serverChange.getItem().getServerItem();
@@ -79,11 +134,28 @@ public class Project {
      * @return a list of change sets
      */
     public List<ChangeSet> getVCCHistory(VersionSpec fromVersion, VersionSpec toVersion, boolean includeFileDetails, int maxCount) {
+        return getVCCHistory(fromVersion != null ? fromVersion : toVersion, fromVersion, toVersion, includeFileDetails, maxCount);
+    }
+
+    List<ChangeSet> getVCCHistory(VersionSpec itemVersion, VersionSpec fromVersion, VersionSpec toVersion, boolean includeFileDetails, int maxCount) {
+        if (projectPaths.size() == 1) {
+            return queryHistory(projectPath, itemVersion, fromVersion, toVersion, includeFileDetails, maxCount);
+        }
+        // one query per folder lets the server skip everything else under their common parent,
+        // instead of returning (and detailing) the whole tree for the client to filter
+        final List<List<ChangeSet>> histories = new ArrayList<List<ChangeSet>>(projectPaths.size());
+        for (final String path : projectPaths) {
+            histories.add(queryHistory(path, itemVersion, fromVersion, toVersion, includeFileDetails, maxCount));
+        }
+        return mergeHistories(histories, maxCount);
+    }
+
+    private List<ChangeSet> queryHistory(final String path, final VersionSpec itemVersion, final VersionSpec fromVersion, final VersionSpec toVersion, final boolean includeFileDetails, final int maxCount) {
         final UserLookup userLookup = getOrCreateUserLookup();
         final MockableVersionControlClient vcc = server.getVersionControlClient();
         final Changeset[] serverChangesets = vcc.queryHistory(
-                projectPath,
-                fromVersion != null ? fromVersion : toVersion,
+                path,
+                itemVersion,
                 0 /* deletionId */,
                 RecursionType.FULL,
                 null /* user */,
@@ -105,6 +177,76 @@ public class Project {
         return result;
     }
 
+    private static final class HistoryCursor {
+        private final List<ChangeSet> changeSets;
+        private int index;
+        private int changesetNumber;
+
+        HistoryCursor(final List<ChangeSet> changeSets) {
+            this.changeSets = changeSets;
+        }
+
+        boolean advance() {
+            if (index >= changeSets.size()) {
+                return false;
+            }
+            changesetNumber = Integer.parseInt(changeSets.get(index).getVersion(), 10);
+            return true;
+        }
+
+        ChangeSet next() {
+            return changeSets.get(index++);
+        }
+    }
+
+    /**
+     * Merges histories sorted from the latest to the earliest changeset into one, with a k-way merge.
+     * A changeset found in several histories (because it touched several folders) is only returned once,
+     * with the items of all of them.
+     * @param histories the histories, each sorted by decreasing changeset number
+     * @param maxCount the maximum number of changesets to return
+     * @return the merged history, sorted by decreasing changeset number
+     */
+    static List<ChangeSet> mergeHistories(final List<List<ChangeSet>> histories, final int maxCount) {
+        final PriorityQueue<HistoryCursor> queue = new PriorityQueue<HistoryCursor>(Math.max(1, histories.size()), new Comparator<HistoryCursor>() {
+            @Override
+            public int compare(final HistoryCursor a, final HistoryCursor b) {
+                // latest first
+                return Integer.compare(b.changesetNumber, a.changesetNumber);
+            }
+        });
+        for (final List<ChangeSet> history : histories) {
+            final HistoryCursor cursor = new HistoryCursor(history);
+            if (cursor.advance()) {
+                queue.add(cursor);
+            }
+        }
+        final List<ChangeSet> result = new ArrayList<ChangeSet>();
+        int lastChangesetNumber = -1;
+        while (!queue.isEmpty()) {
+            final HistoryCursor cursor = queue.poll();
+            final int changesetNumber = cursor.changesetNumber;
+            final ChangeSet changeSet = cursor.next();
+            if (changesetNumber == lastChangesetNumber) {
+                final ChangeSet previous = result.get(result.size() - 1);
+                for (final Item item : changeSet.getItems()) {
+                    previous.add(item);
+                }
+            }
+            else {
+                if (result.size() >= maxCount) {
+                    break;
+                }
+                result.add(changeSet);
+                lastChangesetNumber = changesetNumber;
+            }
+            if (cursor.advance()) {
+                queue.add(cursor);
+            }
+        }
+        return result;
+    }
+
     @SuppressFBWarnings(value = "DC_DOUBLECHECK", justification = "Only synchronize if not null")
     public UserLookup getOrCreateUserLookup() {
         if (userLookup == null) {
@@ -180,13 +322,83 @@ public class Project {
     public ChangeSet getLatestUncloakedChangeset(final int fromChangeset, final Collection<String> cloakedPaths) {
         final ChangesetVersionSpec fromVersion = new ChangesetVersionSpec(fromChangeset);
         final List<ChangeSet> changeSets = getVCCHistory(fromVersion, LatestVersionSpec.INSTANCE, true, Integer.MAX_VALUE);
+        // the checkout of the build this poll may trigger will need the same history
+        HistoryCache.put(server.getUrl(), projectPaths, fromChangeset, changeSets);
         final ChangeSet result = findLatestUncloakedChangeset(cloakedPaths, changeSets);
         return result;
     }
 
+    /**
+     * Resolves the changeset a build gets and, with the same history query, finds the changesets
+     * committed since the previous build; when polling recently found some of them, only the changesets
+     * committed since the poll are queried.
+     * @param previousChangeset the changeset the previous build got, or 0 to only resolve the changeset
+     * @param toVersion the version the build gets
+     * @return the changeset the build gets, along with the changesets after {@code previousChangeset},
+     *         or {@code null} if the history is empty, like when the previous changeset doesn't touch
+     *         the project's paths anymore
+     */
+    public BuildHistory getHistorySince(final int previousChangeset, final VersionSpec toVersion) {
+        List<ChangeSet> polled = null;
+        int fromChangeset = previousChangeset;
+        if (previousChangeset > 0 && toVersion instanceof DateVersionSpec) {
+            polled = HistoryCache.get(server.getUrl(), projectPaths, previousChangeset);
+            if (polled != null) {
+                polled = committedUpTo(polled, ((DateVersionSpec) toVersion).getDate());
+                if (polled.isEmpty()) {
+                    polled = null;
+                }
+                else {
+                    fromChangeset = Integer.parseInt(polled.get(0).getVersion(), 10);
+                }
+            }
+        }
+
+        final List<ChangeSet> queried;
+        if (fromChangeset > 0) {
+            queried = getVCCHistory(toVersion, new ChangesetVersionSpec(fromChangeset), toVersion, true, Integer.MAX_VALUE);
+        }
+        else {
+            queried = getVCCHistory(toVersion, toVersion, toVersion, true, 1);
+        }
+        final List<ChangeSet> history = new ArrayList<ChangeSet>(queried.size() + (polled != null ? polled.size() : 0));
+        for (final ChangeSet changeSet : queried) {
+            // the query includes the changeset it starts from, which the poll already has
+            if (polled == null || Integer.parseInt(changeSet.getVersion(), 10) > fromChangeset) {
+                history.add(changeSet);
+            }
+        }
+        if (polled != null) {
+            history.addAll(polled);
+        }
+        if (history.isEmpty()) {
+            return null;
+        }
+
+        final int changesetVersion = Integer.parseInt(history.get(0).getVersion(), 10);
+        final List<ChangeSet> changeSets = new ArrayList<ChangeSet>(history.size());
+        for (final ChangeSet changeSet : history) {
+            if (Integer.parseInt(changeSet.getVersion(), 10) > previousChangeset) {
+                changeSets.add(changeSet);
+            }
+        }
+        return new BuildHistory(changesetVersion, changeSets);
+    }
+
+    static List<ChangeSet> committedUpTo(final List<ChangeSet> changeSets, final Calendar timestamp) {
+        final List<ChangeSet> result = new ArrayList<ChangeSet>(changeSets.size());
+        for (final ChangeSet changeSet : changeSets) {
+            if (!changeSet.getDate().after(timestamp.getTime())) {
+                result.add(changeSet);
+            }
+        }
+        return result;
+    }
+
     static ChangeSet findLatestUncloakedChangeset(final Collection<String> cloakedPaths, final List<ChangeSet> changeSets) {
         ChangeSet result = null;
 
+        final CloakedPathMatcher matcher = CloakedPathMatcher.compile(cloakedPaths);
         // We need to search from latest to earliest, otherwise an incorrect result is produced
         int lastChangeSetNumber = Integer.MAX_VALUE;
         for (final ChangeSet s : changeSets) {
@@ -196,9 +408,8 @@ public class Project {
                 throw new IllegalArgumentException("The changeset numbers must be strictly decreasing.");
             }
             lastChangeSetNumber = changeSetNumber;
-            final Collection<String> changes = s.getAffectedPaths();
 
-            final boolean fullyCloaked = isChangesetFullyCloaked(changes, cloakedPaths);
+            final boolean fullyCloaked = matcher != null && matcher.isFullyCloaked(s);
             if (!fullyCloaked) {
                 result = s;
                 break;
@@ -224,9 +435,9 @@ public class Project {
     public List<ChangeSet> getDetailedHistoryWithoutCloakedPaths(final VersionSpec fromVersion, final VersionSpec toVersion, final Collection<String> cloakedPaths) {
         final List<ChangeSet> changeSets = getVCCHistory(fromVersion, toVersion, true, Integer.MAX_VALUE);
         final ArrayList<ChangeSet> changeSetNoCloaked = new ArrayList<ChangeSet>();
+        final CloakedPathMatcher matcher = CloakedPathMatcher.compile(cloakedPaths);
         for (final ChangeSet changeset : changeSets) {
-            final Collection<String> affectedPaths = changeset.getAffectedPaths();
-            final boolean fullyCloaked = isChangesetFullyCloaked(affectedPaths, cloakedPaths);
+            final boolean fullyCloaked = matcher != null && matcher.isFullyCloaked(changeset);
             if (!fullyCloaked) {
                 changeSetNoCloaked.add(changeset);
             }
@@ -235,22 +446,8 @@ public class Project {
     }
 
     static boolean isChangesetFullyCloaked(final Collection<String> changesetPaths, final Collection<String> cloakedPaths) {
-        if (cloakedPaths == null) {
-            return false;
-        }
-        for (final String tfsPath : changesetPaths) {
-            boolean isPathCloaked = false;
-            for (final String cloakedPath : cloakedPaths) {
-                if (tfsPath.regionMatches(true, 0, cloakedPath, 0, cloakedPath.length())) {
-                    isPathCloaked = true;
-                    break;
-                }
-            }
-            if (!isPathCloaked) {
-                return false;
-            }
-        }
-        return true;
+        final CloakedPathMatcher matcher = CloakedPathMatcher.compile(cloakedPaths);
+        return matcher != null && matcher.isFullyCloaked(changesetPaths);
     }
 
     /**
@@ -284,17 +481,27 @@ public class Project {
 
     /**
      * Gets remote changeset version for the project's remote path, as of versionSpec.
+     * When the project spans several folders, this is the latest of their changeset versions:
+     * changeset numbers are global, so getting all the folders at that changeset gives each one
+     * the content it had as of versionSpec, even if the folders are changed in the meantime.
      *
      * @param versionSpec a version specification to convert to a changeset number
-     * @return changeset version for the project's remote path
+     * @return changeset version for the project's remote path(s)
      */
     public int getRemoteChangesetVersion(final VersionSpec versionSpec) {
-        return getRemoteChangesetVersion(projectPath, versionSpec);
+        if (projectPaths.size() == 1) {
+            return getRemoteChangesetVersion(projectPath, versionSpec);
+        }
+        int result = 0;
+        for (final String path : projectPaths) {
+            result = Math.max(result, getRemoteChangesetVersion(path, versionSpec));
+        }
+        return result;
     }
 
     @Override
     public int hashCode() {
-        return new HashCodeBuilder(13, 27).append(projectPath).toHashCode();
+        return new HashCodeBuilder(13, 27).append(projectPaths).toHashCode();
     }
 
     @Override
@@ -305,7 +512,7 @@ public class Project {
             return false;
         final Project other = (Project) obj;
         EqualsBuilder builder = new EqualsBuilder();
-        builder.append(this.projectPath, other.projectPath);
+        builder.append(this.projectPaths, other.projectPaths);
         return builder.isEquals();
     }
 
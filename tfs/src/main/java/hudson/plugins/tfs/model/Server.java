@@ -23,17 +23,21 @@ import hudson.Launcher;
 import hudson.ProxyConfiguration;
 import hudson.model.TaskListener;
 import hudson.plugins.tfs.TeamPluginGlobalConfig;
+import hudson.plugins.tfs.commands.AbstractCallableCommand;
+import hudson.plugins.tfs.commands.CommandMetrics;
 import hudson.plugins.tfs.commands.ServerConfigurationProvider;
 import hudson.remoting.Callable;
 import hudson.remoting.VirtualChannel;
 import hudson.util.Secret;
 import jenkins.model.Jenkins;
 import jenkins.security.MasterToSlaveCallable;
+import org.apache.commons.lang.StringUtils;
 
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.net.URI;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 
@@ -51,7 +55,6 @@ public class Server implements ServerConfigurationProvider, Closable {
     private final WebProxySettings webProxySettings;
     private final ExtraSettings extraSettings;
     private MockableVersionControlClient mockableVcc;
-    private static HashMap<String, PersistenceStoreProvider> persistenceStoreProviderCache = new HashMap<String, PersistenceStoreProvider>();
 
 
     /**
@@ -120,12 +123,7 @@ public class Server implements ServerConfigurationProvider, Closable {
             final PersistenceStoreProvider provider;
             if (this.extraSettings.isConfigFolderPerNode()) {
                 final String hostName = LocalHost.getShortName();
-                if(persistenceStoreProviderCache.containsKey(hostName)) {
-                	provider =  persistenceStoreProviderCache.get(hostName);
-                } else {
-                	provider = new ClonePersistenceStoreProvider(defaultProvider, hostName);
-                	persistenceStoreProviderCache.put(hostName, provider);
-                }
+                provider = ClonePersistenceStoreProvider.forHost(defaultProvider, hostName);
             }
             else {
                 provider = defaultProvider;
@@ -203,6 +201,20 @@ public class Server implements ServerConfigurationProvider, Closable {
         return projects.get(projectPath);
     }
 
+    /**
+     * Gets the project spanning several server folders, such as those mapped by a workspace.
+     */
+    public Project getProject(final List<String> projectPaths) {
+        if (projectPaths.size() == 1) {
+            return getProject(projectPaths.get(0));
+        }
+        final String key = StringUtils.join(projectPaths, '\n');
+        if (! projects.containsKey(key)) {
+            projects.put(key, new Project(this, projectPaths));
+        }
+        return projects.get(key);
+    }
+
     public Workspaces getWorkspaces() {
         if (workspaces == null) {
             workspaces = new Workspaces(this);
@@ -227,10 +239,17 @@ public class Server implements ServerConfigurationProvider, Closable {
         return tpc.getHTTPClient();
     }
 
+    @SuppressWarnings("unchecked")
     public <T, E extends Exception> T execute(final Callable<T, E> callable) {
         try {
             final VirtualChannel channel = launcher.getChannel();
-            final T result = channel.call(callable);
+            final T result;
+            if (callable instanceof AbstractCallableCommand) {
+                result = CommandMetrics.call(channel, (AbstractCallableCommand<T, E>) callable, url);
+            }
+            else {
+                result = channel.call(callable);
+            }
             return result;
         } catch (final Exception e) {
             // convert from checked to unchecked exception
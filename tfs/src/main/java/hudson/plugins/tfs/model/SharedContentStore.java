@@ -0,0 +1,282 @@
+package hudson.plugins.tfs.model;
+
+import hudson.Util;
+import hudson.plugins.tfs.TeamPluginGlobalConfig;
+import hudson.remoting.Channel;
+import hudson.remoting.Future;
+import hudson.remoting.Pipe;
+import jenkins.model.Jenkins;
+import jenkins.security.SlaveToMasterCallable;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The store of TFVC file contents kept on the controller and shared by all agents,
+ * in front of their own {@link ContentStore}.
+ * Files one agent downloaded from the server are uploaded to it, so that other agents getting the same
+ * file versions stream them from the controller, over the channel they already have, instead of from the server.
+ * Contents are addressed by the MD5 hash the server reports for each file version, like in the agents' stores.
+ * An agent can only fetch the contents the controller told it it has, in answer to a query,
+ * and only once per query.
+ */
+public final class SharedContentStore {
+
+    /** The folder, under the controller's root, holding the shared contents. */
+    public static final String FOLDER_NAME = "tfs-content-store";
+
+    private static final Logger LOGGER = Logger.getLogger(SharedContentStore.class.getName());
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+    private static final long EVICTION_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    private static final AtomicLong LAST_EVICTION = new AtomicLong();
+    private static final int MAX_OFFERED_PER_CHANNEL = 100 * 1000;
+    // by agent channel; the keys each agent was told are available and hasn't fetched yet
+    private static final Map<Object, Set<String>> OFFERED = new WeakHashMap<Object, Set<String>>();
+
+    private final Channel channel;
+
+    SharedContentStore(final Channel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Returns the shared store, when running on an agent with the shared store turned on.
+     *
+     * @return the store or {@code null} if it is turned off or this runs on the controller,
+     *         where the shared store would only duplicate the local one
+     */
+    public static SharedContentStore create(final ExtraSettings extraSettings) {
+        final Channel channel = Channel.current();
+        if (extraSettings == null || !extraSettings.isUseSharedContentStore() || channel == null) {
+            return null;
+        }
+        return new SharedContentStore(channel);
+    }
+
+    /**
+     * Returns the hashes, among the provided ones, of the contents the controller has.
+     */
+    public Set<String> query(final Collection<byte[]> hashes) throws IOException, InterruptedException {
+        final List<String> keys = new ArrayList<String>(hashes.size());
+        for (final byte[] hash : hashes) {
+            keys.add(Util.toHexString(hash));
+        }
+        return channel.call(new Query(keys));
+    }
+
+    /**
+     * Streams the contents with the hash from the controller into the agent's store.
+     *
+     * @return {@code true} if they were added to the agent's store
+     */
+    public boolean fetch(final byte[] hash, final ContentStore local) throws IOException, InterruptedException {
+        final Pipe pipe = Pipe.createRemoteToLocal();
+        final Future<Boolean> sent = channel.callAsync(new Fetch(Util.toHexString(hash), pipe));
+        final boolean added;
+        try (InputStream stream = pipe.getIn()) {
+            added = local.add(hash, stream);
+            // whatever wasn't read, so the controller isn't left blocked writing it
+            IOUtils.skip(stream, Long.MAX_VALUE);
+        }
+        return get(sent) && added;
+    }
+
+    /**
+     * Streams the contents with the hash from the agent's store to the controller.
+     *
+     * @return {@code true} if the controller added them to its store
+     */
+    public boolean upload(final byte[] hash, final ContentStore local) throws IOException, InterruptedException {
+        final File file = local.getFile(hash);
+        if (!file.isFile()) {
+            return false;
+        }
+        final Pipe pipe = Pipe.createLocalToRemote();
+        final Future<Boolean> received = channel.callAsync(new Upload(Util.toHexString(hash), pipe));
+        try (OutputStream stream = pipe.getOut()) {
+            Files.copy(file.toPath(), stream);
+        } catch (final NoSuchFileException e) {
+            // evicted in the meantime; the controller gets an empty stream, which won't match the hash
+            LOGGER.log(Level.FINE, "{0} was evicted before it could be uploaded", file);
+        }
+        return get(received);
+    }
+
+    private static boolean get(final Future<Boolean> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (final ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Returns the controller's store.
+     *
+     * @return the store or {@code null} if it is turned off
+     */
+    static ContentStore getControllerStore() {
+        final Jenkins jenkins = Jenkins.getInstance();
+        final int megabytes = TeamPluginGlobalConfig.get().getSharedContentStoreMegabytes();
+        if (jenkins == null || megabytes <= 0) {
+            return null;
+        }
+        return new ContentStore(new File(jenkins.getRootDir(), FOLDER_NAME), megabytes * BYTES_PER_MEGABYTE);
+    }
+
+    /**
+     * Records that the controller told the agent the contents are available.
+     */
+    static void offer(final Object channel, final Collection<String> keys) {
+        synchronized (OFFERED) {
+            Set<String> offered = OFFERED.get(channel);
+            if (offered == null) {
+                offered = Collections.newSetFromMap(new LinkedHashMap<String, Boolean>() {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+                        // queried by a get that never fetched them
+                        return size() > MAX_OFFERED_PER_CHANNEL;
+                    }
+                });
+                OFFERED.put(channel, offered);
+            }
+            offered.addAll(keys);
+        }
+    }
+
+    /**
+     * Determines if the controller told the agent the contents are available, and forgets it.
+     */
+    static boolean takeOffered(final Object channel, final String key) {
+        synchronized (OFFERED) {
+            final Set<String> offered = OFFERED.get(channel);
+            return offered != null && offered.remove(key);
+        }
+    }
+
+    static byte[] toHash(final String key) {
+        if (!key.matches("[0-9a-f]{32}")) {
+            throw new IllegalArgumentException("Not an MD5 hash: " + key);
+        }
+        return Util.fromHexString(key);
+    }
+
+    /**
+     * Trims the controller's store at most once a minute, however many agents upload to it.
+     */
+    static void evictPeriodically(final ContentStore store) {
+        final long now = System.currentTimeMillis();
+        final long last = LAST_EVICTION.get();
+        if (now - last < EVICTION_INTERVAL || !LAST_EVICTION.compareAndSet(last, now)) {
+            return;
+        }
+        try {
+            store.evict();
+        } catch (final IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to trim the content store at " + store.getRoot(), e);
+        }
+    }
+
+    /**
+     * Determines which contents the controller has.
+     */
+    static final class Query extends SlaveToMasterCallable<Set<String>, IOException> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> keys;
+
+        Query(final List<String> keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        public Set<String> call() throws IOException {
+            final Set<String> result = new HashSet<String>();
+            final ContentStore store = getControllerStore();
+            if (store != null) {
+                for (final String key : keys) {
+                    if (store.contains(toHash(key))) {
+                        result.add(key);
+                    }
+                }
+                offer(Channel.current(), result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Writes contents of the controller's store to a pipe read by an agent.
+     */
+    static final class Fetch extends SlaveToMasterCallable<Boolean, IOException> {
+        private static final long serialVersionUID = 1L;
+
+        private final String key;
+        private final Pipe pipe;
+
+        Fetch(final String key, final Pipe pipe) {
+            this.key = key;
+            this.pipe = pipe;
+        }
+
+        @Override
+        public Boolean call() throws IOException {
+            final ContentStore store = getControllerStore();
+            try (OutputStream stream = pipe.getOut()) {
+                // an empty stream won't match the hash on the agent
+                return store != null && takeOffered(Channel.current(), key) && store.copyTo(toHash(key), stream);
+            }
+        }
+    }
+
+    /**
+     * Reads contents an agent writes to a pipe into the controller's store.
+     */
+    static final class Upload extends SlaveToMasterCallable<Boolean, IOException> {
+        private static final long serialVersionUID = 1L;
+
+        private final String key;
+        private final Pipe pipe;
+
+        Upload(final String key, final Pipe pipe) {
+            this.key = key;
+            this.pipe = pipe;
+        }
+
+        @Override
+        public Boolean call() throws IOException {
+            final ContentStore store = getControllerStore();
+            try (InputStream stream = pipe.getIn()) {
+                // the store checks the contents against the hash, so an agent can't poison it
+                final boolean result = store != null && store.add(toHash(key), stream);
+                // whatever wasn't read, so the agent isn't left blocked writing it
+                IOUtils.skip(stream, Long.MAX_VALUE);
+                if (result) {
+                    evictPeriodically(store);
+                }
+                return result;
+            }
+        }
+    }
+}
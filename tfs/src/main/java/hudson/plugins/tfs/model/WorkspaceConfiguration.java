@@ -3,6 +3,8 @@ package hudson.plugins.tfs.model;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 import hudson.model.InvisibleAction;
 
@@ -21,14 +23,20 @@ public class WorkspaceConfiguration extends InvisibleAction implements Serializa
     private final String serverUrl;
     private boolean workspaceExists;
     private Collection<String> cloakedPaths;
+    private List<WorkspaceMapping> additionalMappings;
 
     public WorkspaceConfiguration(String serverUrl, String workspaceName, String projectPath, Collection<String> cloakedPaths, String workfolder) {
+        this(serverUrl, workspaceName, projectPath, cloakedPaths, Collections.<WorkspaceMapping>emptyList(), workfolder);
+    }
+
+    public WorkspaceConfiguration(String serverUrl, String workspaceName, String projectPath, Collection<String> cloakedPaths, List<WorkspaceMapping> additionalMappings, String workfolder) {
         this.workspaceName = workspaceName;
         this.workfolder = workfolder;
         this.projectPath = projectPath;
         this.serverUrl = serverUrl;
         this.workspaceExists = true;
         this.cloakedPaths = cloakedPaths;
+        this.additionalMappings = additionalMappings;
     }
 
     public WorkspaceConfiguration(WorkspaceConfiguration configuration) {
@@ -38,6 +46,7 @@ public class WorkspaceConfiguration extends InvisibleAction implements Serializa
         this.serverUrl = configuration.serverUrl;
         this.workspaceExists = configuration.workspaceExists;
         this.cloakedPaths = configuration.cloakedPaths;
+        this.additionalMappings = configuration.additionalMappings;
     }
 
     public String getWorkspaceName() {
@@ -68,6 +77,24 @@ public class WorkspaceConfiguration extends InvisibleAction implements Serializa
         return cloakedPaths;
     }
 
+    /**
+     * Returns the server folders mapped in addition to the project path;
+     * builds recorded before they were supported have none.
+     */
+    public List<WorkspaceMapping> getAdditionalMappings() {
+        if (additionalMappings == null) {
+            return Collections.emptyList();
+        }
+        return additionalMappings;
+    }
+
+    /**
+     * Returns all the server paths mapped in the workspace, starting with the project path.
+     */
+    public List<String> getProjectPaths() {
+        return WorkspaceMapping.toServerPaths(projectPath, getAdditionalMappings());
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -78,6 +105,7 @@ public class WorkspaceConfiguration extends InvisibleAction implements Serializa
         result = prime * result + (workspaceExists ? 1231 : 1237);
         result = prime * result + ((workspaceName == null) ? 0 : workspaceName.hashCode());
         result = prime * result + ((cloakedPaths == null) ? 0 : cloakedPaths.hashCode());
+        result = prime * result + getAdditionalMappings().hashCode();
         return result;
     }
 
@@ -121,12 +149,14 @@ public class WorkspaceConfiguration extends InvisibleAction implements Serializa
             return false;
         else if (!cloakedPaths.containsAll(other.cloakedPaths))
             return false;
+        if (!getAdditionalMappings().equals(other.getAdditionalMappings()))
+            return false;
         return true;
     }
 
     @Override
     public String toString() {
-        return String.format("WorkspaceConfiguration [projectPath=%s, serverUrl=%s, workfolder=%s, workspaceExists=%s, workspaceName=%s]", 
-                projectPath, serverUrl, workfolder, workspaceExists, workspaceName);
+        return String.format("WorkspaceConfiguration [projectPath=%s, additionalMappings=%s, serverUrl=%s, workfolder=%s, workspaceExists=%s, workspaceName=%s]", 
+                projectPath, getAdditionalMappings(), serverUrl, workfolder, workspaceExists, workspaceName);
     }    
 }
@@ -0,0 +1,176 @@
+package hudson.plugins.tfs.model;
+
+import hudson.XmlFile;
+import hudson.model.AbstractBuild;
+import hudson.model.Job;
+import hudson.model.Node;
+import hudson.model.Run;
+import hudson.plugins.tfs.util.BuildWorkspaceConfigurationRetriever;
+import hudson.plugins.tfs.util.BuildWorkspaceConfigurationRetriever.BuildWorkspaceConfiguration;
+import jenkins.model.Jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Remembers, for a job, the latest build on each node that recorded a {@link WorkspaceConfiguration},
+ * so that finding the TFVC workspace of a node doesn't walk the job's builds, loading each one from disk.
+ * The index is kept in the job's folder; it is built from the job's history the first time it is needed
+ * and then kept up to date by each checkout.
+ */
+public final class WorkspaceIndex {
+
+    /** The file, in the job's folder, holding the index. */
+    public static final String FILE_NAME = "tfs-workspace-index.xml";
+
+    private static final Logger LOGGER = Logger.getLogger(WorkspaceIndex.class.getName());
+    private static final Map<Job<?, ?>, WorkspaceIndex> INDEXES = new WeakHashMap<Job<?, ?>, WorkspaceIndex>();
+
+    private final XmlFile file;
+    private final TreeMap<String, Integer> buildNumbers;
+
+    WorkspaceIndex(final File file, final Map<String, Integer> buildNumbers) {
+        this.file = new XmlFile(file);
+        this.buildNumbers = new TreeMap<String, Integer>(buildNumbers);
+    }
+
+    /**
+     * Returns the index of the job, building it from the job's history if it doesn't exist yet.
+     *
+     * @return the index or {@code null} if this doesn't run on a started controller
+     */
+    public static WorkspaceIndex forJob(final Job<?, ?> job) {
+        if (Jenkins.getInstance() == null) {
+            return null;
+        }
+        final File file = new File(job.getRootDir(), FILE_NAME);
+        synchronized (INDEXES) {
+            final WorkspaceIndex index = INDEXES.get(job);
+            // a renamed job's folder moved along with its index
+            if (index != null && index.file.getFile().equals(file)) {
+                return index;
+            }
+        }
+        final WorkspaceIndex loaded = load(file, job.getLastBuild());
+        synchronized (INDEXES) {
+            // another thread may have loaded it in the meantime
+            final WorkspaceIndex index = INDEXES.get(job);
+            if (index != null && index.file.getFile().equals(file)) {
+                return index;
+            }
+            INDEXES.put(job, loaded);
+            return loaded;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static WorkspaceIndex load(final File file, final Run<?, ?> latestRun) {
+        final XmlFile xmlFile = new XmlFile(file);
+        if (xmlFile.exists()) {
+            try {
+                return new WorkspaceIndex(file, (Map<String, Integer>) xmlFile.read());
+            } catch (final IOException | ClassCastException e) {
+                LOGGER.log(Level.WARNING, "Unable to read " + file + "; rebuilding it from the builds", e);
+            }
+        }
+        final WorkspaceIndex result = new WorkspaceIndex(file, rebuild(latestRun));
+        result.save();
+        return result;
+    }
+
+    /**
+     * Walks the builds, from the latest, to find the latest one on each node.
+     */
+    static Map<String, Integer> rebuild(final Run<?, ?> latestRun) {
+        final Map<String, Integer> result = new TreeMap<String, Integer>();
+        for (Run<?, ?> run = latestRun; run != null; run = run.getPreviousBuild()) {
+            if (!(run instanceof AbstractBuild<?, ?>)) {
+                continue;
+            }
+            // the name is still recorded when the node no longer exists; the master's is empty
+            final String nodeName = ((AbstractBuild<?, ?>) run).getBuiltOnStr();
+            if (nodeName != null && !result.containsKey(nodeName) && run.getAction(WorkspaceConfiguration.class) != null) {
+                result.put(nodeName, run.getNumber());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the names of the nodes the job was built on.
+     */
+    public synchronized Set<String> getNodeNames() {
+        return Collections.unmodifiableSet(new TreeSet<String>(buildNumbers.keySet()));
+    }
+
+    /**
+     * Returns the number of the latest build on the node.
+     *
+     * @return the number or {@code null} if the job wasn't built on the node
+     */
+    public synchronized Integer getBuildNumber(final String nodeName) {
+        return buildNumbers.get(nodeName);
+    }
+
+    /**
+     * Records that a build, which recorded its {@link WorkspaceConfiguration}, ran on a node.
+     */
+    public synchronized void record(final String nodeName, final int buildNumber) {
+        final Integer previous = buildNumbers.get(nodeName);
+        // with concurrent builds, the latest build is the one with the highest number
+        if (previous != null && previous >= buildNumber) {
+            return;
+        }
+        buildNumbers.put(nodeName, buildNumber);
+        save();
+    }
+
+    /**
+     * Returns the configuration of the latest build on the node, like
+     * {@link BuildWorkspaceConfigurationRetriever#getLatestForNode(Node, Run)} but only loading that build.
+     *
+     * @return the configuration or {@code null} if the job wasn't built on the node
+     */
+    public BuildWorkspaceConfiguration getLatestForNode(final Job<?, ?> job, final Node node) {
+        final String nodeName = node.getNodeName();
+        final Integer buildNumber = getBuildNumber(nodeName);
+        if (buildNumber == null) {
+            return null;
+        }
+        final Run<?, ?> run = job.getBuildByNumber(buildNumber);
+        if (run instanceof AbstractBuild<?, ?>) {
+            final WorkspaceConfiguration configuration = run.getAction(WorkspaceConfiguration.class);
+            if (configuration != null) {
+                return new BuildWorkspaceConfiguration(configuration, (AbstractBuild<?, ?>) run);
+            }
+        }
+        // the build was discarded; an older build on the node may still know about the workspace
+        final BuildWorkspaceConfiguration result = new BuildWorkspaceConfigurationRetriever().getLatestForNode(node, job.getLastBuild());
+        synchronized (this) {
+            if (result != null) {
+                buildNumbers.put(nodeName, result.getBuild().getNumber());
+            } else {
+                buildNumbers.remove(nodeName);
+            }
+            save();
+        }
+        return result;
+    }
+
+    private synchronized void save() {
+        try {
+            file.write(buildNumbers);
+        } catch (final IOException e) {
+            // the index is only an optimization
+            LOGGER.log(Level.WARNING, "Unable to write " + file, e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package hudson.plugins.tfs.model;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serializes the gets into each TFVC workspace of each agent, whether they come from
+ * a build's checkout or from a background task, since the controller coordinates both.
+ */
+public final class WorkspaceLocks {
+
+    private static final ConcurrentMap<String, ReentrantLock> LOCKS = new ConcurrentHashMap<String, ReentrantLock>();
+
+    private WorkspaceLocks() {
+    }
+
+    /**
+     * Returns the lock of the workspace on the agent.
+     *
+     * @param nodeName the name of the agent
+     * @param workspaceName the name of the workspace, which TFVC compares ignoring case
+     */
+    public static ReentrantLock get(final String nodeName, final String workspaceName) {
+        final String key = nodeName + "/" + workspaceName.toLowerCase(Locale.ENGLISH);
+        ReentrantLock result = LOCKS.get(key);
+        if (result == null) {
+            final ReentrantLock candidate = new ReentrantLock();
+            result = LOCKS.putIfAbsent(key, candidate);
+            if (result == null) {
+                result = candidate;
+            }
+        }
+        return result;
+    }
+}
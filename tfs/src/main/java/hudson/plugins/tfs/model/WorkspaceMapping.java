@@ -1,9 +1,19 @@
 package hudson.plugins.tfs.model;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
 /**
  * Mapping between a working folder and a project path that exists in a workspace.
+ * The local path of the project paths mapped in addition to the main one is relative to the workfolder.
  */
-public class WorkspaceMapping {
+public class WorkspaceMapping implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final String projectPath;
     private final String localPath;
@@ -13,6 +23,72 @@ public class WorkspaceMapping {
         this.localPath = localPath;
     }
 
+    /**
+     * Parses a mapping written as {@code $/server/path: local/folder}; the local folder defaults
+     * to the last segment of the server path.  Colons can't appear in TFVC paths, so the first one
+     * separates the two parts.
+     *
+     * @throws IllegalArgumentException if the server path doesn't start with {@code $/}
+     *         or the local folder isn't a relative path inside the workfolder
+     */
+    public static WorkspaceMapping parse(final String line) {
+        final String trimmed = line.trim();
+        final int colon = trimmed.indexOf(':');
+        String path = (colon == -1 ? trimmed : trimmed.substring(0, colon)).trim();
+        if (!path.startsWith("$/") || path.length() == 2) {
+            throw new IllegalArgumentException("The server path of the mapping '" + trimmed + "' must begin with '$/'.");
+        }
+        if (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        String folder = colon == -1 ? "" : trimmed.substring(colon + 1).trim();
+        if (folder.length() == 0) {
+            folder = path.substring(path.lastIndexOf('/') + 1);
+        }
+        folder = folder.replace('\\', '/');
+        if (!isInsideWorkfolder(folder)) {
+            throw new IllegalArgumentException("The local folder of the mapping '" + trimmed + "' must be a relative path inside the local workfolder.");
+        }
+        return new WorkspaceMapping(path, folder);
+    }
+
+    /**
+     * Parses one mapping per entry.
+     *
+     * @throws IllegalArgumentException if one of them is invalid
+     */
+    public static List<WorkspaceMapping> parse(final Collection<String> lines) {
+        final List<WorkspaceMapping> result = new ArrayList<WorkspaceMapping>(lines.size());
+        for (final String line : lines) {
+            result.add(parse(line));
+        }
+        return result;
+    }
+
+    static boolean isInsideWorkfolder(final String folder) {
+        if (folder.startsWith("/") || folder.indexOf(':') != -1) {
+            return false;
+        }
+        for (final String segment : folder.split("/")) {
+            if ("..".equals(segment)) {
+                return false;
+            }
+        }
+        return !".".equals(folder);
+    }
+
+    /**
+     * Returns the server paths covered by a workspace: the project path followed by the mapped ones.
+     */
+    public static List<String> toServerPaths(final String mainProjectPath, final Collection<WorkspaceMapping> mappings) {
+        final List<String> result = new ArrayList<String>(mappings.size() + 1);
+        result.add(mainProjectPath);
+        for (final WorkspaceMapping mapping : mappings) {
+            result.add(mapping.projectPath);
+        }
+        return result;
+    }
+
     public String getProjectPath() {
         return projectPath;
     }
@@ -20,4 +96,27 @@ public class WorkspaceMapping {
     public String getLocalPath() {
         return localPath;
     }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof WorkspaceMapping)) {
+            return false;
+        }
+        final WorkspaceMapping other = (WorkspaceMapping) obj;
+        // TFVC server paths are case-insensitive
+        return projectPath.equalsIgnoreCase(other.projectPath) && localPath.equals(other.localPath);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.asList(projectPath.toLowerCase(Locale.ENGLISH), localPath).hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return projectPath + ": " + localPath;
+    }
 }
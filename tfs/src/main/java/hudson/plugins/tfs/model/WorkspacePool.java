@@ -0,0 +1,262 @@
+package hudson.plugins.tfs.model;
+
+import hudson.FilePath;
+import hudson.Util;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A pool of TFVC workspaces shared by the jobs building on an agent.
+ * Jobs mapping the same folders of the same collection lease the same pooled workspace,
+ * which is brought up to date with an incremental get and then copied to the job's workfolder,
+ * so a clean checkout costs a local copy instead of a full download.
+ * A pooled workspace is leased by one build at a time.
+ * Pooled workspaces that no build leased for a while, i.e. because the jobs mapping those folders
+ * were changed or deleted, are removed by the next build of the same collection on the agent.
+ */
+public final class WorkspacePool {
+
+    /** The folder, under the agent's root, holding the pooled workspaces. */
+    public static final String POOL_FOLDER_NAME = "tfs-workspace-pool";
+
+    private static final int KEY_LENGTH = 12;
+    private static final int MAX_WORKSPACE_NAME_LENGTH = 64;
+    private static final String LAST_USE_SUFFIX = ".last-use";
+    private static final long DEFAULT_MAX_IDLE_DAYS = 7;
+
+    private final FilePath root;
+    private final String nodeName;
+
+    /**
+     * Creates the pool of an agent.
+     *
+     * @param agentRoot the agent's root folder
+     * @param nodeName the agent's name, used to tell its pooled workspaces apart from other agents'
+     */
+    public WorkspacePool(final FilePath agentRoot, final String nodeName) {
+        this.root = agentRoot.child(POOL_FOLDER_NAME);
+        this.nodeName = nodeName;
+    }
+
+    /**
+     * Identifies the pooled workspace mapping the folders of a job.
+     */
+    public static String toKey(final String serverUrl, final String projectPath, final Collection<String> cloakedPaths, final List<WorkspaceMapping> additionalMappings) {
+        final StringBuilder sb = new StringBuilder();
+        // TFVC paths are case-insensitive
+        sb.append(normalizeServerUrl(serverUrl));
+        sb.append('\n').append(projectPath.toLowerCase(Locale.ENGLISH));
+        sb.append('\n').append(cloakedPaths == null ? "" : StringUtils.join(cloakedPaths, '|').toLowerCase(Locale.ENGLISH));
+        sb.append('\n').append(StringUtils.join(additionalMappings, '|'));
+        return Util.getDigestOf(sb.toString()).substring(0, KEY_LENGTH);
+    }
+
+    static String normalizeServerUrl(final String serverUrl) {
+        return StringUtils.removeEnd(serverUrl, "/").toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Returns how long a pooled workspace is kept without being leased, set with the
+     * {@code hudson.plugins.tfs.model.WorkspacePool.maxIdleDays} system property.
+     */
+    public static long getMaxIdleMillis() {
+        return TimeUnit.DAYS.toMillis(Long.getLong(WorkspacePool.class.getName() + ".maxIdleDays", DEFAULT_MAX_IDLE_DAYS));
+    }
+
+    /**
+     * Returns the folder where the pooled workspace is mapped.
+     */
+    public FilePath getFolder(final String key) {
+        return root.child(key);
+    }
+
+    /**
+     * Returns the name of the pooled workspace, valid for TFVC.
+     */
+    public String getWorkspaceName(final String key) {
+        String result = "Hudson-Pool-" + key + "-" + nodeName;
+        result = result.replaceAll("[\"/:<>\\|\\*\\?]+", "_");
+        result = result.replaceAll("[\\.\\s]+$", "_");
+        if (result.length() > MAX_WORKSPACE_NAME_LENGTH) {
+            result = result.substring(0, MAX_WORKSPACE_NAME_LENGTH);
+        }
+        return result;
+    }
+
+    /**
+     * Leases the pooled workspace, waiting for the build currently using it, if any, to return it.
+     */
+    public Lease lease(final String key) throws InterruptedException {
+        final ReentrantLock lock = WorkspaceLocks.get(nodeName, getWorkspaceName(key));
+        lock.lockInterruptibly();
+        return new Lease(getFolder(key), lock);
+    }
+
+    /**
+     * Finds the pooled workspaces of the collection that weren't leased for longer than {@code maxIdleMillis}.
+     *
+     * @return their keys
+     */
+    public List<String> findIdle(final String serverUrl, final long maxIdleMillis) throws IOException, InterruptedException {
+        if (!root.exists()) {
+            return Collections.emptyList();
+        }
+        return root.act(new FindIdle(normalizeServerUrl(serverUrl), maxIdleMillis));
+    }
+
+    /**
+     * Deletes the pooled workspace from the server and its folder from the agent,
+     * unless a build or a pre-fetch is using it.
+     *
+     * @return {@code true} if it was removed
+     */
+    public boolean remove(final String key, final Workspaces workspaces) throws IOException, InterruptedException {
+        final String workspaceName = getWorkspaceName(key);
+        final ReentrantLock lock = WorkspaceLocks.get(nodeName, workspaceName);
+        if (!lock.tryLock()) {
+            return false;
+        }
+        try {
+            if (workspaces.exists(workspaceName)) {
+                workspaces.deleteWorkspace(workspaces.getWorkspace(workspaceName));
+            }
+            getFolder(key).deleteRecursive();
+            root.child(key + LAST_USE_SUFFIX).delete();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Exclusive use of a pooled workspace, until it is closed.
+     */
+    public static final class Lease implements Closeable {
+        private final FilePath folder;
+        private final ReentrantLock lock;
+
+        Lease(final FilePath folder, final ReentrantLock lock) {
+            this.folder = folder;
+            this.lock = lock;
+        }
+
+        public FilePath getFolder() {
+            return folder;
+        }
+
+        /**
+         * Records that a build of the collection leased the pooled workspace, so that it isn't removed as idle.
+         */
+        public void recordUse(final String serverUrl) throws IOException, InterruptedException {
+            folder.getParent().child(folder.getName() + LAST_USE_SUFFIX).write(normalizeServerUrl(serverUrl), "UTF-8");
+        }
+
+        /**
+         * Replaces the contents of the target folder, on the same agent, with a copy of the pooled workspace.
+         *
+         * @return the number of files copied
+         */
+        public int copyTo(final FilePath target) throws IOException, InterruptedException {
+            if (target.exists()) {
+                target.deleteContents();
+            }
+            return folder.act(new CopyFolder(target.getRemote()));
+        }
+
+        /**
+         * Returns the pooled workspace to the pool.
+         */
+        @Override
+        public void close() {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lists, on the agent and by its clock, the pooled workspaces of a collection last leased before a cut-off.
+     */
+    static final class FindIdle extends MasterToSlaveFileCallable<List<String>> {
+        private static final long serialVersionUID = 1L;
+
+        private final String serverUrl;
+        private final long maxIdleMillis;
+
+        FindIdle(final String serverUrl, final long maxIdleMillis) {
+            this.serverUrl = serverUrl;
+            this.maxIdleMillis = maxIdleMillis;
+        }
+
+        @Override
+        public List<String> invoke(final File poolRoot, final VirtualChannel channel) throws IOException, InterruptedException {
+            final List<String> result = new ArrayList<String>();
+            final File[] files = poolRoot.listFiles();
+            if (files == null) {
+                return result;
+            }
+            final long cutOff = System.currentTimeMillis() - maxIdleMillis;
+            for (final File file : files) {
+                final String name = file.getName();
+                if (name.endsWith(LAST_USE_SUFFIX) && file.lastModified() < cutOff
+                        && serverUrl.equals(FileUtils.readFileToString(file, "UTF-8").trim())) {
+                    result.add(StringUtils.removeEnd(name, LAST_USE_SUFFIX));
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Copies a folder into another one on the agent, without a round-trip through the controller.
+     */
+    static final class CopyFolder extends MasterToSlaveFileCallable<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final String targetPath;
+
+        CopyFolder(final String targetPath) {
+            this.targetPath = targetPath;
+        }
+
+        @Override
+        public Integer invoke(final File source, final VirtualChannel channel) throws IOException, InterruptedException {
+            final Path sourceRoot = source.toPath();
+            final Path targetRoot = new File(targetPath).toPath();
+            final int[] count = new int[1];
+            Files.walkFileTree(sourceRoot, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+                    Files.createDirectories(targetRoot.resolve(sourceRoot.relativize(dir)));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                    Files.copy(file, targetRoot.resolve(sourceRoot.relativize(file)),
+                            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+                    count[0]++;
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            return count[0];
+        }
+    }
+}
@@ -7,6 +7,7 @@ import hudson.plugins.tfs.commands.ListWorkspacesCommand;
 import hudson.plugins.tfs.commands.NewWorkspaceCommand;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -105,7 +106,20 @@ public class Workspaces implements ListWorkspacesCommand.WorkspaceFactory {
      * @return a workspace
      */
     public Workspace newWorkspace(final String workspaceName, final String serverPath, Collection<String> cloakedPaths, final String localPath) {
-        NewWorkspaceCommand command = new NewWorkspaceCommand(server, workspaceName, serverPath, cloakedPaths, localPath);
+        return newWorkspace(workspaceName, serverPath, cloakedPaths, Collections.<WorkspaceMapping>emptyList(), localPath);
+    }
+
+    /**
+     * Create workspace on server, map several server folders and return a workspace object with the specified name
+     * @param workspaceName the name of the new workspace
+     * @param serverPath the path in TFVC to map at localPath
+     * @param cloakedPaths the paths in TFVC to exclude from mapping
+     * @param additionalMappings the other paths in TFVC to map, at folders relative to localPath
+     * @param localPath the path in the local filesystem to map
+     * @return a workspace
+     */
+    public Workspace newWorkspace(final String workspaceName, final String serverPath, Collection<String> cloakedPaths, final List<WorkspaceMapping> additionalMappings, final String localPath) {
+        NewWorkspaceCommand command = new NewWorkspaceCommand(server, workspaceName, serverPath, cloakedPaths, additionalMappings, localPath);
         server.execute(command.getCallable());
         Workspace workspace = new Workspace(workspaceName);
         workspaces.put(workspaceName, workspace);
@@ -0,0 +1,155 @@
+package hudson.plugins.tfs.rm;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches release definitions per collection and team project, indexed by name,
+ * so that triggering a release does not download every definition in the project
+ * on each build.  Entries are re-used for a short time and then revalidated
+ * against the server with the ETag that came with them.
+ */
+public final class ReleaseDefinitionCache {
+
+    private static final long DEFAULT_TTL_SECONDS = 300;
+    static final String TTL_PROPERTY = ReleaseDefinitionCache.class.getName() + ".ttlSeconds";
+
+    private static final ConcurrentMap<String, ProjectDefinitions> CACHE
+            = new ConcurrentHashMap<String, ProjectDefinitions>();
+
+    private ReleaseDefinitionCache() {
+    }
+
+    /**
+     * Finds the release definition with the given name (case-insensitive) in the team project,
+     * fetching or revalidating it from the server only when the cached copy is missing or expired.
+     *
+     * @return the matching release definition or {@code null} if there is none.
+     */
+    public static ReleaseDefinition getByName(
+            final ReleaseManagementHttpClient client,
+            final String project,
+            final String name) throws ReleaseManagementException {
+        final ProjectDefinitions definitions = forProject(client, project);
+        return definitions.getByName(client, project, name, System.currentTimeMillis());
+    }
+
+    /**
+     * Records release definitions that were obtained by listing the whole team project,
+     * so that a subsequent lookup by name does not need to go back to the server.
+     */
+    public static void index(
+            final ReleaseManagementHttpClient client,
+            final String project,
+            final List<ReleaseDefinition> releaseDefinitions) {
+        final ProjectDefinitions definitions = forProject(client, project);
+        final long now = System.currentTimeMillis();
+        for (final ReleaseDefinition releaseDefinition : releaseDefinitions) {
+            definitions.put(releaseDefinition, null, now);
+        }
+    }
+
+    static void clear() {
+        CACHE.clear();
+    }
+
+    static long getTtlMillis() {
+        final long seconds = Long.getLong(TTL_PROPERTY, DEFAULT_TTL_SECONDS);
+        return TimeUnit.SECONDS.toMillis(seconds);
+    }
+
+    private static ProjectDefinitions forProject(final ReleaseManagementHttpClient client, final String project) {
+        final String key = toKey(client.getAccountUrl()) + "|" + toKey(client.getUsername()) + "|" + toKey(project);
+        ProjectDefinitions definitions = CACHE.get(key);
+        if (definitions == null) {
+            final ProjectDefinitions candidate = new ProjectDefinitions();
+            definitions = CACHE.putIfAbsent(key, candidate);
+            if (definitions == null) {
+                definitions = candidate;
+            }
+        }
+        return definitions;
+    }
+
+    private static String toKey(final String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * The name-indexed release definitions of a single team project.
+     */
+    static final class ProjectDefinitions {
+        private final ConcurrentMap<String, Entry> byName = new ConcurrentHashMap<String, Entry>();
+
+        ReleaseDefinition getByName(
+                final ReleaseManagementHttpClient client,
+                final String project,
+                final String name,
+                final long now) throws ReleaseManagementException {
+            final String key = toKey(name);
+            final long ttlMillis = getTtlMillis();
+            Entry entry = byName.get(key);
+            if (entry != null && entry.isFresh(now, ttlMillis)) {
+                return entry.definition;
+            }
+            // concurrent builds for the same project wait for a single request instead of each issuing one
+            synchronized (this) {
+                entry = byName.get(key);
+                if (entry != null && entry.isFresh(now, ttlMillis)) {
+                    return entry.definition;
+                }
+                final String eTag = entry == null ? null : entry.eTag;
+                final ReleaseManagementHttpClient.DefinitionResponse response
+                        = client.GetReleaseDefinitions(project, name, eTag);
+                if (response == null) {
+                    // 304 Not Modified: the copy we have is still current
+                    put(entry.definition, eTag, now);
+                    return entry.definition;
+                }
+                // the server matches on a substring of the name, so look for the exact one
+                ReleaseDefinition match = null;
+                for (final ReleaseDefinition releaseDefinition : response.getValue()) {
+                    if (name.equalsIgnoreCase(releaseDefinition.getName())) {
+                        match = releaseDefinition;
+                        break;
+                    }
+                }
+                if (match == null) {
+                    byName.remove(key);
+                    return null;
+                }
+                put(match, response.getETag(), now);
+                return match;
+            }
+        }
+
+        void put(final ReleaseDefinition releaseDefinition, final String eTag, final long now) {
+            final String name = releaseDefinition.getName();
+            if (name != null) {
+                byName.put(toKey(name), new Entry(releaseDefinition, eTag, now));
+            }
+        }
+    }
+
+    /**
+     * A cached release definition along with what is needed to revalidate it.
+     */
+    static final class Entry {
+        private final ReleaseDefinition definition;
+        private final String eTag;
+        private final long fetchedAt;
+
+        Entry(final ReleaseDefinition definition, final String eTag, final long fetchedAt) {
+            this.definition = definition;
+            this.eTag = eTag;
+            this.fetchedAt = fetchedAt;
+        }
+
+        boolean isFresh(final long now, final long ttlMillis) {
+            return now - fetchedAt < ttlMillis;
+        }
+    }
+}
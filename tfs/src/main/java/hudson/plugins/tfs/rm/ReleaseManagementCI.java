@@ -3,7 +3,6 @@ package hudson.plugins.tfs.rm;
 
 import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
 import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
-import com.google.gson.Gson;
 import hudson.Launcher;
 import hudson.Extension;
 import hudson.model.AbstractBuild;
@@ -28,8 +27,10 @@ import java.io.Serializable;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -156,16 +157,10 @@ public class ReleaseManagementCI extends Notifier implements Serializable {
             
             try 
             {
-                ReleaseDefinition releaseDefinition = null;
-                List<ReleaseDefinition> releaseDefinitions = releaseManagementHttpClient.GetReleaseDefinitions(this.projectName);
-                for(final ReleaseDefinition rd : releaseDefinitions)
-                {
-                    if(rd.getName().equalsIgnoreCase(this.releaseDefinitionName))
-                    {
-                        releaseDefinition = rd;
-                        break;
-                    }
-                }
+                ReleaseDefinition releaseDefinition = ReleaseDefinitionCache.getByName(
+                        releaseManagementHttpClient,
+                        this.projectName,
+                        this.releaseDefinitionName);
 
                 if(releaseDefinition == null)
                 {
@@ -229,7 +224,7 @@ public class ReleaseManagementCI extends Notifier implements Serializable {
             releaseBody.setDefinitionId(releaseDefinition.getId());
             releaseBody.setArtifacts(releaseArtifacts);
             releaseBody.setIsDraft(false);
-            String body  = new Gson().toJson(releaseBody);
+            String body  = ReleaseManagementHttpClient.GSON.toJson(releaseBody);
 
             listener.getLogger().printf("Triggering release...%n");
             String response = releaseManagementHttpClient.CreateRelease(this.projectName, body);
@@ -243,11 +238,12 @@ public class ReleaseManagementCI extends Notifier implements Serializable {
     }
 
     private List<ReleaseArtifact> PrepareReleaseArtifacts(ReleaseDefinition releaseDefinition, Artifact jenkinsArtifact, String buildNumber, int buildId, BuildListener listener, ReleaseManagementHttpClient releaseManagementHttpClient) throws ReleaseManagementException {
+        Map<String, Version> latestVersions = FetchLatestVersions(releaseDefinition, jenkinsArtifact, listener, releaseManagementHttpClient);
         List<ReleaseArtifact> releaseArtifacts = new ArrayList<ReleaseArtifact>();
-        InstanceReference instanceReference = new InstanceReference();
         for(final Artifact artifact : releaseDefinition.getArtifacts())
         {
             ReleaseArtifact releaseArtifact = new ReleaseArtifact();
+            InstanceReference instanceReference = new InstanceReference();
             if(artifact == jenkinsArtifact)
             {
                 instanceReference.setName(buildNumber);
@@ -255,19 +251,9 @@ public class ReleaseManagementCI extends Notifier implements Serializable {
             }
             else
             {
-                listener.getLogger().printf("Fetching latest version for artifact: %s%n", artifact.getAlias());
-                ReleaseArtifactVersionsResponse response = releaseManagementHttpClient.GetVersions(this.projectName, new ArrayList<Artifact>(Arrays.asList(artifact)));
-                if(response.getArtifactVersions().isEmpty())
-                {
-                    throw new ReleaseManagementException("Could not fetch versions for the linked artifact sources");
-                }
-                if(response.getArtifactVersions().get(0).getVersions().isEmpty())
-                {
-                    throw new ReleaseManagementException("Could not fetch versions for the linked artifact: " + artifact.getAlias());
-                }
-                
-                instanceReference.setName(response.getArtifactVersions().get(0).getVersions().get(0).getName());
-                instanceReference.setId(response.getArtifactVersions().get(0).getVersions().get(0).getId());
+                Version version = latestVersions.get(artifact.getAlias().toLowerCase(Locale.ENGLISH));
+                instanceReference.setName(version.getName());
+                instanceReference.setId(version.getId());
             }
             
             releaseArtifact.setAlias(artifact.getAlias());
@@ -276,6 +262,48 @@ public class ReleaseManagementCI extends Notifier implements Serializable {
         }
         return releaseArtifacts;
     }
+
+    /**
+     * Resolves the latest version of every linked artifact other than the Jenkins one
+     * with a single request, keyed by the (lower-cased) artifact alias.
+     */
+    private Map<String, Version> FetchLatestVersions(ReleaseDefinition releaseDefinition, Artifact jenkinsArtifact, BuildListener listener, ReleaseManagementHttpClient releaseManagementHttpClient) throws ReleaseManagementException {
+        Map<String, Version> latestVersions = new HashMap<String, Version>();
+        List<Artifact> linkedArtifacts = new ArrayList<Artifact>();
+        for(final Artifact artifact : releaseDefinition.getArtifacts())
+        {
+            if(artifact != jenkinsArtifact)
+            {
+                listener.getLogger().printf("Fetching latest version for artifact: %s%n", artifact.getAlias());
+                linkedArtifacts.add(artifact);
+            }
+        }
+        if(linkedArtifacts.isEmpty())
+        {
+            return latestVersions;
+        }
+
+        ReleaseArtifactVersionsResponse response = releaseManagementHttpClient.GetVersions(this.projectName, linkedArtifacts);
+        if(response.getArtifactVersions().isEmpty())
+        {
+            throw new ReleaseManagementException("Could not fetch versions for the linked artifact sources");
+        }
+        for(final ArtifactVersion artifactVersion : response.getArtifactVersions())
+        {
+            if(artifactVersion.getAlias() != null && !artifactVersion.getVersions().isEmpty())
+            {
+                latestVersions.put(artifactVersion.getAlias().toLowerCase(Locale.ENGLISH), artifactVersion.getVersions().get(0));
+            }
+        }
+        for(final Artifact artifact : linkedArtifacts)
+        {
+            if(!latestVersions.containsKey(artifact.getAlias().toLowerCase(Locale.ENGLISH)))
+            {
+                throw new ReleaseManagementException("Could not fetch versions for the linked artifact: " + artifact.getAlias());
+            }
+        }
+        return latestVersions;
+    }
     
     @Extension
     public static final class DescriptorImpl extends BuildStepDescriptor<Publisher>
@@ -383,6 +411,7 @@ public class ReleaseManagementCI extends Notifier implements Serializable {
                                 password);
 
                 List<ReleaseDefinition> releaseDefinitions = releaseManagementHttpClient.GetReleaseDefinitions(projectName);
+                ReleaseDefinitionCache.index(releaseManagementHttpClient, projectName, releaseDefinitions);
                 for (ReleaseDefinition releaseDefinition : releaseDefinitions) {
                     listBoxModel.add(releaseDefinition.getName());
                 }
@@ -4,19 +4,30 @@ package hudson.plugins.tfs.rm;
 import com.google.gson.Gson;
 import hudson.util.Secret;
 
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HeaderElement;
 import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethodBase;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.NameValuePair;
+import org.apache.commons.httpclient.cookie.CookiePolicy;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.methods.PostMethod;
-import org.json.JSONException;
-import org.json.JSONObject;
+import org.apache.commons.httpclient.methods.StringRequestEntity;
+import org.apache.commons.io.IOUtils;
 
 /**
  * @author Ankit Goyal
@@ -24,6 +35,21 @@ import org.json.JSONObject;
 
 public class ReleaseManagementHttpClient
 {
+    private static final int MAX_CONNECTIONS_PER_HOST = 20;
+    private static final int MAX_TOTAL_CONNECTIONS = 100;
+    private static final String UTF_8 = "UTF-8";
+
+    /**
+     * Gson instances are thread-safe, so a single one serves every request.
+     */
+    static final Gson GSON = new Gson();
+
+    /**
+     * Connections are pooled and kept alive across builds; credentials are sent
+     * with each request and cookies are ignored so nothing leaks between callers.
+     */
+    private static final HttpClient SHARED_HTTP_CLIENT = createHttpClient();
+
     private final HttpClient httpClient;
     private final String username;
     private final Secret password;
@@ -35,94 +61,181 @@ public class ReleaseManagementHttpClient
         this.accountUrl = accountUrl;
         this.username = username;
         this.password = password;
-        this.httpClient = new HttpClient();
+        this.httpClient = SHARED_HTTP_CLIENT;
         this.basicAuth = "Basic " + new String(Base64.encodeBase64((this.username + ":" + Secret.toString(this.password)).getBytes(Charset.defaultCharset())), Charset.defaultCharset());
     }
+
+    private static HttpClient createHttpClient()
+    {
+        MultiThreadedHttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
+        connectionManager.getParams().setDefaultMaxConnectionsPerHost(MAX_CONNECTIONS_PER_HOST);
+        connectionManager.getParams().setMaxTotalConnections(MAX_TOTAL_CONNECTIONS);
+        HttpClient result = new HttpClient(connectionManager);
+        result.getParams().setCookiePolicy(CookiePolicy.IGNORE_COOKIES);
+        return result;
+    }
     
     public List<ReleaseDefinition> GetReleaseDefinitions(String project) throws ReleaseManagementException
     {
         String url = this.accountUrl + project + "/_apis/release/definitions?$expand=artifacts";
-        String response = this.ExecuteGetMethod(url);
-        DefinitionResponse definitionResponse = new Gson().fromJson(response, DefinitionResponse.class);
+        DefinitionResponse definitionResponse = this.Execute(new GetMethod(url), DefinitionResponse.class);
         return definitionResponse.getValue();
     }
+
+    /**
+     * Fetches only the release definitions whose name contains {@code searchText}.
+     *
+     * @param eTag
+     * The ETag of a previous response for the same search, or null
+     *
+     * @return
+     * The matching definitions, or null if the server reported that the previous response is still current
+     */
+    DefinitionResponse GetReleaseDefinitions(String project, String searchText, String eTag) throws ReleaseManagementException
+    {
+        String url;
+        try
+        {
+            url = this.accountUrl + project + "/_apis/release/definitions?$expand=artifacts&searchText=" + URLEncoder.encode(searchText, UTF_8);
+        }
+        catch(Exception ex)
+        {
+            throw new ReleaseManagementException(ex);
+        }
+        GetMethod getMethod = new GetMethod(url);
+        if(eTag != null)
+        {
+            getMethod.addRequestHeader("If-None-Match", eTag);
+        }
+        DefinitionResponse definitionResponse = this.Execute(getMethod, DefinitionResponse.class);
+        if(definitionResponse != null)
+        {
+            Header eTagHeader = getMethod.getResponseHeader("ETag");
+            definitionResponse.setETag(eTagHeader == null ? null : eTagHeader.getValue());
+        }
+        return definitionResponse;
+    }
     
     public String CreateRelease(String project, String body) throws ReleaseManagementException
     {
         String url = this.accountUrl + project + "/_apis/release/releases?api-version=3.0-preview.2";
-        return this.ExecutePostmethod(url, body);
+        return this.Execute(CreatePostMethod(url, body), String.class);
     }
     
     public ReleaseArtifactVersionsResponse GetVersions(String project, List<Artifact> artifacts) throws ReleaseManagementException
     {
         String url = this.accountUrl + project + "/_apis/release/artifacts/versions?api-version=3.0-preview.1";
-        final String body = new Gson().toJson(artifacts);
-        String response = this.ExecutePostmethod(url, body);
-        return new Gson().fromJson(response, ReleaseArtifactVersionsResponse.class);
+        final String body = GSON.toJson(artifacts);
+        return this.Execute(CreatePostMethod(url, body), ReleaseArtifactVersionsResponse.class);
     }
 
     public List<Project> GetProjectItems() throws ReleaseManagementException
     {
         String url = this.accountUrl + "/_apis/projects?api-version=1.0";
-        String response = this.ExecuteGetMethod(url);
-        try {
-            String values = new JSONObject(response).getString("value");
-            return Arrays.asList(new Gson().fromJson(values, Project[].class));
-        } catch (JSONException ex) {
-            throw new ReleaseManagementException(ex);
-        }
+        ProjectResponse projectResponse = this.Execute(new GetMethod(url), ProjectResponse.class);
+        return projectResponse.getValue();
     }
-    
-    private String ExecutePostmethod(String url, String body) throws ReleaseManagementException
+
+    private static PostMethod CreatePostMethod(String url, String body) throws ReleaseManagementException
     {
         PostMethod postMethod = new PostMethod(url);
-        postMethod.addRequestHeader("Authorization", this.basicAuth);
-        postMethod.addRequestHeader("Content-Type", "application/json");
-        postMethod.setRequestBody(body);
-        String response;
         try
         {
-            int status = this.httpClient.executeMethod(postMethod);
-            response = postMethod.getResponseBodyAsString();
-            if(status >= 300)
-            {
-                throw new ReleaseManagementException("Error occurred.%nStatus: " + status + "%nResponse: " + response + "%n");
-            }
+            postMethod.setRequestEntity(new StringRequestEntity(body, "application/json", UTF_8));
         }
         catch(Exception ex)
         {
             throw new ReleaseManagementException(ex);
         }
-        
-        return response;
+        return postMethod;
     }
-    
-    private String ExecuteGetMethod(String url) throws ReleaseManagementException
+
+    /**
+     * Executes the method on the pooled client and deserializes the response straight from the
+     * response stream, without first buffering it into a String.
+     *
+     * @return
+     * The deserialized response, or null when the server answered 304 Not Modified
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T Execute(HttpMethodBase method, Type responseType) throws ReleaseManagementException
     {
-        GetMethod getMethod = new GetMethod(url);
-        getMethod.addRequestHeader("Authorization", this.basicAuth);
-        String response;
+        method.addRequestHeader("Authorization", this.basicAuth);
+        Reader reader = null;
         try
         {
-            int status = this.httpClient.executeMethod(getMethod);
-            response = getMethod.getResponseBodyAsString();
+            int status = this.httpClient.executeMethod(method);
+            if(status == HttpStatus.SC_NOT_MODIFIED)
+            {
+                return null;
+            }
             if(status >= 300)
             {
-                throw new ReleaseManagementException("Error occurred.%nStatus: " + status + "%nResponse: " + response + "%n");
+                throw new ReleaseManagementException("Error occurred.%nStatus: " + status + "%nResponse: " + method.getResponseBodyAsString() + "%n");
+            }
+            InputStream stream = method.getResponseBodyAsStream();
+            if(stream == null)
+            {
+                return null;
             }
+            reader = new InputStreamReader(stream, GetResponseCharset(method));
+            if(responseType == String.class)
+            {
+                return (T) IOUtils.toString(reader);
+            }
+            return GSON.fromJson(reader, responseType);
+        }
+        catch(ReleaseManagementException ex)
+        {
+            throw ex;
         }
         catch(Exception ex)
         {
             throw new ReleaseManagementException(ex);
         }
-        
-        return response;
+        finally
+        {
+            IOUtils.closeQuietly(reader);
+            // hands the connection back to the pool
+            method.releaseConnection();
+        }
+    }
+
+    /**
+     * JSON is UTF-8 unless the server says otherwise; commons-httpclient would default to ISO-8859-1.
+     */
+    static String GetResponseCharset(HttpMethodBase method)
+    {
+        Header contentType = method.getResponseHeader("Content-Type");
+        if(contentType != null)
+        {
+            for(final HeaderElement element : contentType.getElements())
+            {
+                NameValuePair charset = element.getParameterByName("charset");
+                if(charset != null && charset.getValue() != null)
+                {
+                    return charset.getValue();
+                }
+            }
+        }
+        return UTF_8;
     }
     
-    private class DefinitionResponse
+    String getAccountUrl()
+    {
+        return accountUrl;
+    }
+
+    String getUsername()
+    {
+        return username;
+    }
+
+    static class DefinitionResponse
     {
 
         private Integer count;
+        private transient String eTag;
         private List<ReleaseDefinition> value = new ArrayList<ReleaseDefinition>();
         private final Map<String, Object> additionalProperties = new HashMap<String, Object>();
 
@@ -166,6 +279,21 @@ public class ReleaseManagementHttpClient
             this.value = value;
         }
 
+        /**
+        * 
+        * @return
+        * The ETag the server sent with the response, if any
+        */
+        public String getETag()
+        {
+            return eTag;
+        }
+
+        public void setETag(String eTag)
+        {
+            this.eTag = eTag;
+        }
+
         public Map<String, Object> getAdditionalProperties()
         {
             return this.additionalProperties;
@@ -176,4 +304,20 @@ public class ReleaseManagementHttpClient
             this.additionalProperties.put(name, value);
         }
     }
+
+    static class ProjectResponse
+    {
+        private Integer count;
+        private List<Project> value = new ArrayList<Project>();
+
+        public Integer getCount()
+        {
+            return count;
+        }
+
+        public List<Project> getValue()
+        {
+            return value;
+        }
+    }
 }
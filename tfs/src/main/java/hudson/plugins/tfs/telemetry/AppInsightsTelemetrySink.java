@@ -0,0 +1,54 @@
+package hudson.plugins.tfs.telemetry;
+
+import com.microsoft.applicationinsights.TelemetryClient;
+import com.microsoft.applicationinsights.telemetry.BaseTelemetry;
+import com.microsoft.applicationinsights.telemetry.EventTelemetry;
+import com.microsoft.applicationinsights.telemetry.ExceptionTelemetry;
+import com.microsoft.applicationinsights.telemetry.MetricTelemetry;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Forwards telemetry to Application Insights, stamped with the time it was captured rather than sent.
+ * The SDK's channel takes care of the transmission, and of retrying it, without reporting failures,
+ * so batches given to this sink are never spooled.
+ */
+final class AppInsightsTelemetrySink implements TelemetrySink {
+
+    private static final String ACTION_NAME_FORMAT = "Action/%s";
+
+    private final TelemetryClient telemetryClient;
+
+    AppInsightsTelemetrySink(final TelemetryClient telemetryClient) {
+        this.telemetryClient = telemetryClient;
+    }
+
+    @Override
+    public void send(final List<TelemetryRecord> batch) {
+        for (final TelemetryRecord record : batch) {
+            final BaseTelemetry<?> telemetry = toTelemetry(record);
+            if (telemetry != null) {
+                telemetry.setTimestamp(new Date(record.getTimestamp()));
+                telemetryClient.track(telemetry);
+            }
+        }
+    }
+
+    static BaseTelemetry<?> toTelemetry(final TelemetryRecord record) {
+        switch (record.getKind()) {
+            case EVENT:
+                final EventTelemetry event = new EventTelemetry(String.format(ACTION_NAME_FORMAT, record.getName()));
+                event.getProperties().putAll(record.getProperties());
+                return event;
+            case METRIC:
+                return new MetricTelemetry(record.getName(), record.getValue());
+            case EXCEPTION:
+                final ExceptionTelemetry exception = new ExceptionTelemetry(record.getException());
+                exception.getProperties().putAll(record.getProperties());
+                return exception;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package hudson.plugins.tfs.telemetry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics for the service hook pipeline, from the request arriving at
+ * {@code TeamEventsEndpoint} or {@code TeamBuildEndpoint} to builds being queued,
+ * so that it's possible to tell whether hook latency comes from JSON parsing,
+ * the scan of the jobs or SCM polling.
+ */
+public final class HookMetrics {
+
+    public static final String TEAM_EVENTS = "team-events";
+    public static final String TEAM_BUILD = "team-build";
+    public static final String PUSH_TRIGGER = "push-trigger";
+    public static final String POST_COMMIT_HOOK = "hook";
+    public static final String SUCCEEDED = "succeeded";
+    public static final String REJECTED = "rejected";
+    public static final String FAILED = "failed";
+
+    private static final double NANOS_TO_SECONDS = 1e-9;
+    private static final long[] DURATION_BUCKETS = {
+            TimeUnit.MICROSECONDS.toNanos(100),
+            TimeUnit.MILLISECONDS.toNanos(1),
+            TimeUnit.MILLISECONDS.toNanos(5),
+            TimeUnit.MILLISECONDS.toNanos(25),
+            TimeUnit.MILLISECONDS.toNanos(100),
+            TimeUnit.MILLISECONDS.toNanos(250),
+            TimeUnit.MILLISECONDS.toNanos(500),
+            TimeUnit.SECONDS.toNanos(1),
+            TimeUnit.SECONDS.toNanos(2),
+            TimeUnit.SECONDS.toNanos(5),
+            TimeUnit.SECONDS.toNanos(10),
+            TimeUnit.SECONDS.toNanos(30),
+            TimeUnit.MINUTES.toNanos(1),
+    };
+    private static final long KIB = 1024;
+    private static final long MIB = 1024 * KIB;
+    private static final long[] SIZE_BUCKETS = {256, KIB, 4 * KIB, 16 * KIB, 64 * KIB, 256 * KIB, MIB, 4 * MIB};
+    private static final long[] COUNT_BUCKETS = {0, 1, 5, 10, 50, 100, 500, 1000, 5000, 10000};
+
+    static final MetricFamily REQUESTS = MetricsRegistry.getDefault().counter(
+            "tfs_hook_requests_total",
+            "Service hook requests received, by endpoint, event or command and outcome.",
+            "endpoint", "event", "outcome");
+    static final MetricFamily REQUEST_DURATION = MetricsRegistry.getDefault().histogram(
+            "tfs_hook_request_duration_seconds",
+            "Time taken to handle a service hook request, end to end.",
+            NANOS_TO_SECONDS, DURATION_BUCKETS, "endpoint", "event");
+    static final MetricFamily PAYLOAD_SIZE = MetricsRegistry.getDefault().histogram(
+            "tfs_hook_payload_bytes",
+            "Size of service hook request bodies.",
+            1, SIZE_BUCKETS, "endpoint", "event");
+    static final MetricFamily DESERIALIZATION = MetricsRegistry.getDefault().histogram(
+            "tfs_hook_deserialization_seconds",
+            "Time taken to parse a service hook payload.",
+            NANOS_TO_SECONDS, DURATION_BUCKETS, "event");
+    static final MetricFamily MATCHING = MetricsRegistry.getDefault().histogram(
+            "tfs_hook_matching_seconds",
+            "Time taken to find the jobs an event applies to, excluding polling and scheduling them.",
+            NANOS_TO_SECONDS, DURATION_BUCKETS, "event");
+    static final MetricFamily ITEMS_SCANNED = MetricsRegistry.getDefault().histogram(
+            "tfs_hook_items_scanned",
+            "Items examined for each event.",
+            1, COUNT_BUCKETS, "event");
+    static final MetricFamily ITEMS_MATCHED = MetricsRegistry.getDefault().histogram(
+            "tfs_hook_items_matched",
+            "Items triggered for each event.",
+            1, COUNT_BUCKETS, "event");
+    static final MetricFamily POLLING = MetricsRegistry.getDefault().histogram(
+            "tfs_hook_polling_seconds",
+            "Time taken to poll a job's SCM in response to an event.",
+            NANOS_TO_SECONDS, DURATION_BUCKETS, "changes");
+    static final MetricFamily SCHEDULE_LATENCY = MetricsRegistry.getDefault().histogram(
+            "tfs_hook_schedule_latency_seconds",
+            "Time from a service hook request arriving to a build of it being put in the queue.",
+            NANOS_TO_SECONDS, DURATION_BUCKETS, "source");
+
+    private static final ThreadLocal<Long> REQUEST_START = new ThreadLocal<Long>();
+
+    private HookMetrics() {
+    }
+
+    /**
+     * Marks the start of a request on the current thread.
+     *
+     * @return the start time, to pass to {@link #endRequest(String, String, long, long, String)}
+     */
+    public static long startRequest() {
+        final long start = System.nanoTime();
+        REQUEST_START.set(start);
+        return start;
+    }
+
+    /**
+     * Records a request that has been handled.
+     *
+     * @param payloadBytes the size of the request body, or -1 if unknown
+     * @param outcome      one of {@link #SUCCEEDED}, {@link #REJECTED} or {@link #FAILED}
+     */
+    public static void endRequest(final String endpoint, final String event, final long start, final long payloadBytes, final String outcome) {
+        REQUEST_START.remove();
+        final String eventName = normalize(event);
+        REQUESTS.labels(endpoint, eventName, outcome).inc();
+        REQUEST_DURATION.labels(endpoint, eventName).observe(System.nanoTime() - start);
+        if (payloadBytes >= 0) {
+            PAYLOAD_SIZE.labels(endpoint, eventName).observe(payloadBytes);
+        }
+    }
+
+    /**
+     * Records the time taken to parse a payload.
+     */
+    public static void recordDeserialization(final String event, final long nanos) {
+        DESERIALIZATION.labels(normalize(event)).observe(nanos);
+    }
+
+    /**
+     * Records one scan of the jobs for an event.
+     *
+     * @param matchingNanos the time spent deciding which items match, without the time spent triggering them
+     */
+    public static void recordMatching(final String event, final long matchingNanos, final int itemsScanned, final int itemsMatched) {
+        final String eventName = normalize(event);
+        MATCHING.labels(eventName).observe(matchingNanos);
+        ITEMS_SCANNED.labels(eventName).observe(itemsScanned);
+        ITEMS_MATCHED.labels(eventName).observe(itemsMatched);
+    }
+
+    /**
+     * Records the polling of one job.
+     */
+    public static void recordPolling(final long nanos, final boolean changesFound) {
+        POLLING.labels(Boolean.toString(changesFound)).observe(nanos);
+    }
+
+    /**
+     * Records that a build was put in the queue; only builds scheduled while
+     * handling a request are recorded, as the latency is measured from its arrival.
+     *
+     * @param source what scheduled the build: {@link #TEAM_BUILD}, {@link #PUSH_TRIGGER} or {@link #POST_COMMIT_HOOK}
+     */
+    public static void recordScheduled(final String source) {
+        final Long start = REQUEST_START.get();
+        if (start != null) {
+            SCHEDULE_LATENCY.labels(source).observe(System.nanoTime() - start);
+        }
+    }
+
+    private static String normalize(final String event) {
+        return event == null || event.isEmpty() ? "unknown" : event;
+    }
+}
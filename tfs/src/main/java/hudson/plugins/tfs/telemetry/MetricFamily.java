@@ -0,0 +1,110 @@
+package hudson.plugins.tfs.telemetry;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A named metric and all of its {@link MetricSeries}, one per combination of label values.
+ */
+public final class MetricFamily {
+
+    private static final Logger LOGGER = Logger.getLogger(MetricFamily.class.getName());
+    static final int MAX_SERIES = 1000;
+    static final String OVERFLOW_LABEL_VALUE = "other";
+
+    /**
+     * The kinds of metrics the registry can hold.
+     */
+    public enum Type {
+        COUNTER,
+        HISTOGRAM
+    }
+
+    private final String name;
+    private final String help;
+    private final Type type;
+    private final double scale;
+    private final long[] bucketBounds;
+    private final String[] labelNames;
+    private final ConcurrentMap<List<String>, MetricSeries> series = new ConcurrentHashMap<List<String>, MetricSeries>();
+
+    MetricFamily(final String name, final String help, final Type type, final double scale, final long[] bucketBounds, final String[] labelNames) {
+        this.name = name;
+        this.help = help;
+        this.type = type;
+        this.scale = scale;
+        this.bucketBounds = bucketBounds.clone();
+        this.labelNames = labelNames.clone();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * The factor that converts recorded values to the exported unit, i.e. 1e-9 for nanoseconds to seconds.
+     */
+    public double getScale() {
+        return scale;
+    }
+
+    public long[] getBucketBounds() {
+        return bucketBounds.clone();
+    }
+
+    public List<String> getLabelNames() {
+        return Collections.unmodifiableList(Arrays.asList(labelNames));
+    }
+
+    /**
+     * Returns the series for the provided label values, in the order of the label names, creating it if needed.
+     * Once a family holds {@value #MAX_SERIES} series, new combinations are folded into a single overflow series
+     * so that unbounded label values (i.e. agent names) can't exhaust memory.
+     */
+    public MetricSeries labels(final String... labelValues) {
+        if (labelValues.length != labelNames.length) {
+            throw new IllegalArgumentException("Expected " + labelNames.length + " label values for " + name);
+        }
+        List<String> key = Arrays.asList(labelValues);
+        MetricSeries result = series.get(key);
+        if (result == null) {
+            if (series.size() >= MAX_SERIES) {
+                LOGGER.log(Level.FINE, "Too many series for {0}; recording {1} as overflow", new Object[]{name, key});
+                final String[] overflow = new String[labelNames.length];
+                Arrays.fill(overflow, OVERFLOW_LABEL_VALUE);
+                key = Arrays.asList(overflow);
+            }
+            final MetricSeries candidate = new MetricSeries(bucketBounds);
+            result = series.putIfAbsent(key, candidate);
+            if (result == null) {
+                result = candidate;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a live, read-only view of the series, keyed by their label values.
+     */
+    public Map<List<String>, MetricSeries> getSeries() {
+        return Collections.unmodifiableMap(series);
+    }
+
+    void clear() {
+        series.clear();
+    }
+}
@@ -0,0 +1,93 @@
+package hudson.plugins.tfs.telemetry;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The values recorded for one combination of label values of a {@link MetricFamily}:
+ * a running total for counters, plus the count and cumulative buckets for histograms.
+ */
+public final class MetricSeries {
+
+    private final long[] bucketBounds;
+    private final AtomicLongArray bucketCounts;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+
+    MetricSeries(final long[] bucketBounds) {
+        this.bucketBounds = bucketBounds;
+        this.bucketCounts = new AtomicLongArray(bucketBounds.length);
+    }
+
+    /**
+     * Increments a counter by one.
+     */
+    public void inc() {
+        inc(1);
+    }
+
+    /**
+     * Increments a counter by the provided amount.
+     */
+    public void inc(final long amount) {
+        count.incrementAndGet();
+        sum.addAndGet(amount);
+    }
+
+    /**
+     * Records a value, in the family's base unit, into a histogram.
+     */
+    public void observe(final long value) {
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        for (int i = 0; i < bucketBounds.length; i++) {
+            if (value <= bucketBounds[i]) {
+                bucketCounts.incrementAndGet(i);
+                break;
+            }
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * Estimates a quantile as the upper bound of the bucket it falls in.
+     *
+     * @return the estimate in the recorded unit, {@link Long#MAX_VALUE} if it is beyond the last bucket,
+     *         or -1 when nothing was recorded
+     */
+    public long estimateQuantile(final double quantile) {
+        final long total = count.get();
+        if (total == 0) {
+            return -1;
+        }
+        final double rank = quantile * total;
+        long seen = 0;
+        for (int i = 0; i < bucketBounds.length; i++) {
+            seen += bucketCounts.get(i);
+            if (seen >= rank) {
+                return bucketBounds[i];
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the number of values less than or equal to each of the bucket bounds, as Prometheus expects.
+     */
+    public long[] getCumulativeBucketCounts() {
+        final long[] result = new long[bucketBounds.length];
+        long total = 0;
+        for (int i = 0; i < result.length; i++) {
+            total += bucketCounts.get(i);
+            result[i] = total;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,152 @@
+package hudson.plugins.tfs.telemetry;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The plugin's local metrics store: counters and histograms kept in memory on the controller
+ * and rendered in the Prometheus text exposition format.
+ * Unlike {@link TelemetryHelper}, nothing recorded here leaves the Jenkins instance unless scraped.
+ */
+public final class MetricsRegistry {
+
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+    private static final String PROMETHEUS_INFINITY = "+Inf";
+
+    private final ConcurrentMap<String, MetricFamily> families = new ConcurrentHashMap<String, MetricFamily>();
+
+    MetricsRegistry() {
+    }
+
+    /**
+     * Returns the registry shared by the whole plugin.
+     */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the counter with the provided name, registering it if needed.
+     */
+    public MetricFamily counter(final String name, final String help, final String... labelNames) {
+        return register(new MetricFamily(name, help, MetricFamily.Type.COUNTER, 1, new long[0], labelNames));
+    }
+
+    /**
+     * Returns the histogram with the provided name, registering it if needed.
+     *
+     * @param scale        the factor that converts recorded values to the exported unit
+     * @param bucketBounds the upper bounds of the buckets, in ascending order, in the recorded unit
+     */
+    public MetricFamily histogram(final String name, final String help, final double scale, final long[] bucketBounds, final String... labelNames) {
+        return register(new MetricFamily(name, help, MetricFamily.Type.HISTOGRAM, scale, bucketBounds, labelNames));
+    }
+
+    private MetricFamily register(final MetricFamily candidate) {
+        final MetricFamily existing = families.putIfAbsent(candidate.getName(), candidate);
+        if (existing == null) {
+            return candidate;
+        }
+        if (existing.getType() != candidate.getType() || !existing.getLabelNames().equals(candidate.getLabelNames())) {
+            throw new IllegalArgumentException("The metric " + candidate.getName() + " was already registered differently");
+        }
+        return existing;
+    }
+
+    /**
+     * Returns the registered metrics, sorted by name.
+     */
+    public List<MetricFamily> getFamilies() {
+        return new ArrayList<MetricFamily>(new TreeMap<String, MetricFamily>(families).values());
+    }
+
+    /**
+     * Forgets every recorded value, keeping the registrations.
+     */
+    public void reset() {
+        for (final MetricFamily family : families.values()) {
+            family.clear();
+        }
+    }
+
+    /**
+     * Writes every metric in the Prometheus text exposition format, version 0.0.4.
+     */
+    public void writePrometheus(final Writer writer) throws IOException {
+        for (final MetricFamily family : getFamilies()) {
+            final String name = family.getName();
+            writer.append("# HELP ").append(name).append(' ').append(escapeHelp(family.getHelp())).append('\n');
+            writer.append("# TYPE ").append(name).append(' ').append(family.getType() == MetricFamily.Type.COUNTER ? "counter" : "histogram").append('\n');
+            final List<String> labelNames = family.getLabelNames();
+            final double scale = family.getScale();
+            final long[] bucketBounds = family.getBucketBounds();
+            for (final Map.Entry<List<String>, MetricSeries> entry : family.getSeries().entrySet()) {
+                final String labels = formatLabels(labelNames, entry.getKey());
+                final MetricSeries series = entry.getValue();
+                if (family.getType() == MetricFamily.Type.COUNTER) {
+                    writeSample(writer, name, labels, null, Long.toString(series.getSum()));
+                    continue;
+                }
+                final long count = series.getCount();
+                final long[] cumulative = series.getCumulativeBucketCounts();
+                for (int i = 0; i < bucketBounds.length; i++) {
+                    writeSample(writer, name + "_bucket", labels, formatValue(bucketBounds[i], scale), Long.toString(cumulative[i]));
+                }
+                writeSample(writer, name + "_bucket", labels, PROMETHEUS_INFINITY, Long.toString(count));
+                writeSample(writer, name + "_sum", labels, null, formatValue(series.getSum(), scale));
+                writeSample(writer, name + "_count", labels, null, Long.toString(count));
+            }
+        }
+        writer.flush();
+    }
+
+    private static void writeSample(final Writer writer, final String name, final String labels, final String le, final String value) throws IOException {
+        writer.append(name);
+        if (labels.length() > 0 || le != null) {
+            writer.append('{').append(labels);
+            if (le != null) {
+                if (labels.length() > 0) {
+                    writer.append(',');
+                }
+                writer.append("le=\"").append(le).append('"');
+            }
+            writer.append('}');
+        }
+        writer.append(' ').append(value).append('\n');
+    }
+
+    static String formatLabels(final List<String> labelNames, final List<String> labelValues) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < labelNames.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(labelNames.get(i)).append("=\"").append(escapeLabelValue(labelValues.get(i))).append('"');
+        }
+        return sb.toString();
+    }
+
+    static String formatValue(final long value, final double scale) {
+        if (scale == 1) {
+            return Long.toString(value);
+        }
+        return Double.toString(value * scale);
+    }
+
+    static String escapeLabelValue(final String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String escapeHelp(final String help) {
+        return help.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,55 @@
+package hudson.plugins.tfs.telemetry;
+
+import java.util.List;
+
+/**
+ * Routes telemetry into the plugin's local {@link MetricsRegistry}, for installations that can't
+ * or don't want to reach Application Insights: events, exceptions and metric values are counted by name.
+ */
+public final class MetricsTelemetrySink implements TelemetrySink {
+
+    private final MetricFamily events;
+    private final MetricFamily exceptions;
+    private final MetricFamily metricSamples;
+
+    /**
+     * Creates a sink that records into the plugin's shared registry.
+     */
+    public MetricsTelemetrySink() {
+        this(MetricsRegistry.getDefault());
+    }
+
+    MetricsTelemetrySink(final MetricsRegistry registry) {
+        events = registry.counter(
+                "tfs_telemetry_events_total",
+                "Telemetry events, by name.",
+                "event");
+        exceptions = registry.counter(
+                "tfs_telemetry_exceptions_total",
+                "Exceptions reported through telemetry, by class.",
+                "exception");
+        metricSamples = registry.counter(
+                "tfs_telemetry_metric_samples_total",
+                "Telemetry metric values reported, by metric.",
+                "metric");
+    }
+
+    @Override
+    public void send(final List<TelemetryRecord> batch) {
+        for (final TelemetryRecord record : batch) {
+            switch (record.getKind()) {
+                case EVENT:
+                    events.labels(record.getName()).inc();
+                    break;
+                case METRIC:
+                    metricSamples.labels(record.getName()).inc();
+                    break;
+                case EXCEPTION:
+                    exceptions.labels(record.getName()).inc();
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
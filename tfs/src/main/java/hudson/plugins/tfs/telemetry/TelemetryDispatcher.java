@@ -0,0 +1,170 @@
+package hudson.plugins.tfs.telemetry;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Decouples the threads reporting telemetry from its delivery: records are added to a
+ * {@link TelemetryRingBuffer} without blocking and a single background thread hands them
+ * to the {@link TelemetrySink} in batches, spooling the batches the sink rejects.
+ */
+final class TelemetryDispatcher {
+
+    private static final Logger LOGGER = Logger.getLogger(TelemetryDispatcher.class.getName());
+
+    static final MetricFamily RECORDS = MetricsRegistry.getDefault().counter(
+            "tfs_telemetry_records_total",
+            "Telemetry records handled by the background flusher, by outcome (sent, dropped, spooled or failed).",
+            "outcome");
+    static final String SENT = "sent";
+    static final String DROPPED = "dropped";
+    static final String SPOOLED = "spooled";
+    static final String FAILED = "failed";
+
+    private final TelemetryRingBuffer<TelemetryRecord> buffer;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final TelemetrySpool spool;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final Object flushLock = new Object();
+    private volatile TelemetrySink sink;
+
+    TelemetryDispatcher(final TelemetrySink sink, final int capacity, final int batchSize, final long flushIntervalMillis, final TelemetrySpool spool) {
+        this.sink = sink;
+        this.buffer = new TelemetryRingBuffer<TelemetryRecord>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.spool = spool;
+    }
+
+    TelemetrySink getSink() {
+        return sink;
+    }
+
+    void setSink(final TelemetrySink sink) {
+        this.sink = sink;
+    }
+
+    TelemetryRingBuffer<TelemetryRecord> getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Queues the record for delivery; never blocks and never throws.
+     */
+    void add(final TelemetryRecord record) {
+        if (sink == null) {
+            return;
+        }
+        final int discarded = buffer.add(record);
+        if (discarded > 0) {
+            RECORDS.labels(DROPPED).inc(discarded);
+        }
+        if (started.compareAndSet(false, true)) {
+            start();
+        }
+    }
+
+    private void start() {
+        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+                new NamingThreadFactory(new DaemonThreadFactory(), "TFS telemetry flusher"));
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread("TFS telemetry final flush") {
+            @Override
+            public void run() {
+                executor.shutdown();
+                flush();
+            }
+        });
+    }
+
+    /**
+     * Delivers everything currently buffered, then whatever was spooled if the sink accepted it.
+     */
+    void flush() {
+        synchronized (flushLock) {
+            final TelemetrySink currentSink = sink;
+            if (currentSink == null) {
+                return;
+            }
+            boolean delivered = true;
+            final List<TelemetryRecord> batch = new ArrayList<TelemetryRecord>(batchSize);
+            // stop after one buffer's worth so that a steady stream of records can't keep the flusher here
+            int remaining = buffer.capacity();
+            while (remaining > 0) {
+                final int drained = buffer.drainTo(batch, Math.min(batchSize, remaining));
+                if (drained == 0) {
+                    break;
+                }
+                remaining -= drained;
+                delivered &= deliver(currentSink, batch);
+                batch.clear();
+            }
+            if (delivered && spool != null && !spool.isEmpty()) {
+                replaySpool(currentSink);
+            }
+        }
+    }
+
+    private void replaySpool(final TelemetrySink currentSink) {
+        final List<TelemetryRecord> spooled;
+        try {
+            spooled = spool.takeAll();
+        } catch (final IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to read the telemetry spool " + spool.getFile(), e);
+            return;
+        }
+        for (int i = 0; i < spooled.size(); i += batchSize) {
+            final List<TelemetryRecord> batch = spooled.subList(i, Math.min(spooled.size(), i + batchSize));
+            if (!deliver(currentSink, batch)) {
+                // the sink is down again: the failed batch went back to the spool, so must the rest
+                final List<TelemetryRecord> remaining = spooled.subList(i + batch.size(), spooled.size());
+                if (!remaining.isEmpty()) {
+                    spoolOrDrop(remaining);
+                }
+                break;
+            }
+        }
+    }
+
+    private boolean deliver(final TelemetrySink currentSink, final List<TelemetryRecord> batch) {
+        try {
+            currentSink.send(batch);
+            RECORDS.labels(SENT).inc(batch.size());
+            return true;
+        } catch (final IOException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "Unable to send " + batch.size() + " telemetry records", e);
+            spoolOrDrop(batch);
+            return false;
+        }
+    }
+
+    private void spoolOrDrop(final List<TelemetryRecord> batch) {
+        if (spool != null) {
+            try {
+                if (spool.append(batch)) {
+                    RECORDS.labels(SPOOLED).inc(batch.size());
+                    return;
+                }
+            } catch (final IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to write to the telemetry spool " + spool.getFile(), e);
+            }
+        }
+        RECORDS.labels(FAILED).inc(batch.size());
+    }
+}
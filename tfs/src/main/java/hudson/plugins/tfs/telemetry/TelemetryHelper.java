@@ -9,6 +9,7 @@ import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.Map;
@@ -16,6 +17,8 @@ import java.util.Map;
 /**
  * The TelemetryHelper class is a singleton that allows the plugin to capture
  * telemetry data when the user initiates events.
+ * Calls never block: the data is buffered in memory and delivered to the {@link TelemetrySink}
+ * in batches by a background thread, dropping the oldest entries if the buffer fills up.
  */
 public final class TelemetryHelper {
     public static final String UNKNOWN = "unknown";
@@ -26,12 +29,18 @@ public final class TelemetryHelper {
     private static final String PROPERTY_VSTS_SERVER_ID = "VSTS.TeamFoundationServer.ServerId";
     private static final String PROPERTY_VSTS_COLLECTION_ID = "VSTS.TeamFoundationServer.CollectionId";
 
-    private static final String ACTION_NAME_FORMAT = "Action/%s";
+    private static final String PROPERTY_PREFIX = "hudson.plugins.tfs.telemetry.";
+    private static final String SINK_APP_INSIGHTS = "appInsights";
+    private static final String SINK_METRICS = "metrics";
+    private static final int DEFAULT_BUFFER_CAPACITY = 1024;
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 5000;
+    private static final long DEFAULT_SPOOL_MAX_BYTES = 10L * 1024 * 1024;
 
     private static final Logger logger = LoggerFactory.getLogger(TelemetryHelper.class);
 
     // Instance members
-    private TelemetryClient telemetryClient;
+    private final TelemetryDispatcher dispatcher;
 
     /**
      * A private static class to allow safe lazy initialization of the singleton.
@@ -50,11 +59,33 @@ public final class TelemetryHelper {
 
     // The private constructor keeps the class from being inherited or misused
     private TelemetryHelper() {
+        final String spoolDirectory = System.getProperty(PROPERTY_PREFIX + "spoolDirectory");
+        final TelemetrySpool spool = StringUtils.isEmpty(spoolDirectory)
+                ? null
+                : new TelemetrySpool(new File(spoolDirectory), Long.getLong(PROPERTY_PREFIX + "spoolMaxBytes", DEFAULT_SPOOL_MAX_BYTES));
+        dispatcher = new TelemetryDispatcher(
+                createSink(),
+                Integer.getInteger(PROPERTY_PREFIX + "bufferCapacity", DEFAULT_BUFFER_CAPACITY),
+                Integer.getInteger(PROPERTY_PREFIX + "batchSize", DEFAULT_BATCH_SIZE),
+                Long.getLong(PROPERTY_PREFIX + "flushIntervalMillis", DEFAULT_FLUSH_INTERVAL_MILLIS),
+                spool);
+    }
+
+    private static TelemetrySink createSink() {
+        final String sinkName = System.getProperty(PROPERTY_PREFIX + "sink", SINK_APP_INSIGHTS);
+        if (StringUtils.equalsIgnoreCase(sinkName, SINK_METRICS)) {
+            return new MetricsTelemetrySink();
+        }
+        if (!StringUtils.equalsIgnoreCase(sinkName, SINK_APP_INSIGHTS)) {
+            logger.debug("Telemetry disabled by sink setting: {}", sinkName);
+            return null;
+        }
+
         final String skip = System.getProperties().getProperty("hudson.plugins.tfs.telemetry.skipClientInitialization");
         if (StringUtils.isNotEmpty(skip) && StringUtils.equalsIgnoreCase(skip, "true")) {
             // this flag is here for testing purposes in which case we do not want to create a telemetry channel
             // or client.
-            return;
+            return null;
         }
 
         // Initialize the internal logger
@@ -76,14 +107,31 @@ public final class TelemetryHelper {
             channel.setDeveloperMode(isDeveloperMode);
         } else {
             logger.error("Failed to load telemetry channel");
-            return;
+            return null;
         }
 
         logger.debug("AppInsights telemetry initialized");
         logger.debug("    Developer Mode: ", channel.isDeveloperMode());
 
         // Create the telemetry client and cache it for later use
-        telemetryClient = new TelemetryClient();
+        return new AppInsightsTelemetrySink(new TelemetryClient());
+    }
+
+    /**
+     * Replaces the destination of telemetry, i.e. to route it to a local store
+     * on installations without access to Application Insights.
+     *
+     * @param sink the new sink, or {@code null} to discard telemetry
+     */
+    public static void setSink(final TelemetrySink sink) {
+        getInstance().dispatcher.setSink(sink);
+    }
+
+    /**
+     * Delivers the telemetry buffered so far, on the calling thread.
+     */
+    public static void flush() {
+        getInstance().dispatcher.flush();
     }
 
     /**
@@ -131,21 +179,16 @@ public final class TelemetryHelper {
         // Log that the event occurred (this log is used in testing)
         logger.debug(String.format("sendMetric(%s, %f)", name, value));
 
-        if (telemetryClient != null) {
-            telemetryClient.trackMetric(name, value);
-        }
+        dispatcher.add(TelemetryRecord.metric(name, value));
     }
 
     protected void sendEventInternal(final String name, final Map<String, String> properties) {
-        final String eventName = String.format(ACTION_NAME_FORMAT, name);
         final PropertyMapBuilder builder = new PropertyMapBuilder(properties);
 
         // Log that the event occurred (this log is used in testing)
         logger.debug(String.format("sendEvent(%s, %s)", name, builder.toString()));
 
-        if (telemetryClient != null) {
-            telemetryClient.trackEvent(eventName, builder.build(), null);
-        }
+        dispatcher.add(TelemetryRecord.event(name, builder.build()));
     }
 
     protected void sendExceptionInternal(final Exception exception, final Map<String, String> properties) {
@@ -154,9 +197,7 @@ public final class TelemetryHelper {
         // Log that the event occurred (this log is used in testing)
         logger.debug(String.format("sendException(%s, %s)", exception.getMessage(), builder.toString()));
 
-        if (telemetryClient != null) {
-            telemetryClient.trackException(exception, builder.build(), null);
-        }
+        dispatcher.add(TelemetryRecord.exception(exception, builder.build()));
     }
 
     /**
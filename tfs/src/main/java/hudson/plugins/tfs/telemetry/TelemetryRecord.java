@@ -0,0 +1,139 @@
+package hudson.plugins.tfs.telemetry;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An event, metric or exception captured by {@link TelemetryHelper}, waiting to be handed to a {@link TelemetrySink}.
+ */
+public final class TelemetryRecord {
+
+    /**
+     * What a record describes.
+     */
+    public enum Kind {
+        EVENT,
+        METRIC,
+        EXCEPTION,
+    }
+
+    private static final String KIND = "kind";
+    private static final String NAME = "name";
+    private static final String VALUE = "value";
+    private static final String TIMESTAMP = "timestamp";
+    private static final String PROPERTIES = "properties";
+
+    private final Kind kind;
+    private final String name;
+    private final double value;
+    private final Map<String, String> properties;
+    private final Exception exception;
+    private final long timestamp;
+
+    TelemetryRecord(final Kind kind, final String name, final double value, final Map<String, String> properties, final Exception exception, final long timestamp) {
+        this.kind = kind;
+        this.name = name;
+        this.value = value;
+        this.properties = properties == null
+                ? Collections.<String, String>emptyMap()
+                : Collections.unmodifiableMap(new HashMap<String, String>(properties));
+        this.exception = exception;
+        this.timestamp = timestamp;
+    }
+
+    static TelemetryRecord event(final String name, final Map<String, String> properties) {
+        return new TelemetryRecord(Kind.EVENT, name, 0, properties, null, System.currentTimeMillis());
+    }
+
+    static TelemetryRecord metric(final String name, final double value) {
+        return new TelemetryRecord(Kind.METRIC, name, value, null, null, System.currentTimeMillis());
+    }
+
+    static TelemetryRecord exception(final Exception exception, final Map<String, String> properties) {
+        return new TelemetryRecord(Kind.EXCEPTION, exception.getClass().getName(), 0, properties, exception, System.currentTimeMillis());
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the name of the event or metric, or the class name of the exception.
+     */
+    public String getName() {
+        return name;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    /**
+     * Returns the exception, or a stand-in carrying its class name and message if the record
+     * was read back from the spool.
+     */
+    public Exception getException() {
+        if (exception == null && kind == Kind.EXCEPTION) {
+            final String message = properties.get(SpooledException.MESSAGE_PROPERTY);
+            return new SpooledException(name, message);
+        }
+        return exception;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    Map<String, Object> toMap() {
+        final Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put(KIND, kind.name());
+        result.put(NAME, name);
+        result.put(VALUE, value);
+        result.put(TIMESTAMP, timestamp);
+        final Map<String, String> spooledProperties = new HashMap<String, String>(properties);
+        if (exception != null) {
+            spooledProperties.put(SpooledException.MESSAGE_PROPERTY, exception.getMessage());
+        }
+        result.put(PROPERTIES, spooledProperties);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    static TelemetryRecord fromMap(final Map<String, Object> map) {
+        final Kind kind = Kind.valueOf((String) map.get(KIND));
+        final String name = (String) map.get(NAME);
+        final Number value = (Number) map.get(VALUE);
+        final Number timestamp = (Number) map.get(TIMESTAMP);
+        final Map<String, String> properties = (Map<String, String>) map.get(PROPERTIES);
+        return new TelemetryRecord(kind, name, value == null ? 0 : value.doubleValue(), properties, null,
+                timestamp == null ? System.currentTimeMillis() : timestamp.longValue());
+    }
+
+    /**
+     * Stands in for an exception that was written to the spool and read back,
+     * which only kept the class name and message of the original.
+     */
+    static final class SpooledException extends Exception {
+        private static final long serialVersionUID = 1L;
+        static final String MESSAGE_PROPERTY = "Exception.Message";
+
+        private final String originalClassName;
+
+        SpooledException(final String originalClassName, final String message) {
+            super(message);
+            this.originalClassName = originalClassName;
+        }
+
+        @Override
+        public String toString() {
+            final String message = getLocalizedMessage();
+            return message == null ? originalClassName : originalClassName + ": " + message;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package hudson.plugins.tfs.telemetry;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free ring buffer that never blocks the thread adding to it:
+ * when it is full, the oldest element is discarded to make room and counted as dropped.
+ * Each slot carries a sequence number (as in Dmitry Vyukov's bounded MPMC queue)
+ * so producers and the consumer claim slots with a single compare-and-set.
+ *
+ * @param <E> the type of the elements
+ */
+final class TelemetryRingBuffer<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong enqueuePosition = new AtomicLong();
+    private final AtomicLong dequeuePosition = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Creates a buffer holding at least {@code minimumCapacity} elements,
+     * rounded up to the next power of two.
+     */
+    TelemetryRingBuffer(final int minimumCapacity) {
+        if (minimumCapacity < 1) {
+            throw new IllegalArgumentException("The capacity must be positive");
+        }
+        final int capacity = Integer.highestOneBit(minimumCapacity) == minimumCapacity
+                ? minimumCapacity
+                : Integer.highestOneBit(minimumCapacity) << 1;
+        this.mask = capacity - 1;
+        this.elements = new AtomicReferenceArray<E>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Adds the element, discarding the oldest ones if the buffer is full.
+     *
+     * @return the number of elements discarded to make room, usually 0
+     */
+    int add(final E element) {
+        int discarded = 0;
+        while (!offer(element)) {
+            if (poll() != null) {
+                discarded++;
+            }
+        }
+        if (discarded > 0) {
+            dropped.addAndGet(discarded);
+        }
+        return discarded;
+    }
+
+    /**
+     * Adds the element if there is room.
+     *
+     * @return {@code true} if the element was added
+     */
+    boolean offer(final E element) {
+        while (true) {
+            final long position = enqueuePosition.get();
+            final int index = (int) (position & mask);
+            final long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (enqueuePosition.compareAndSet(position, position + 1)) {
+                    elements.lazySet(index, element);
+                    // publishes the element to the consumer
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+            // else another producer claimed the slot first; try the next one
+        }
+    }
+
+    /**
+     * Removes the oldest element.
+     *
+     * @return the element or {@code null} if the buffer is empty
+     */
+    E poll() {
+        while (true) {
+            final long position = dequeuePosition.get();
+            final int index = (int) (position & mask);
+            final long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (dequeuePosition.compareAndSet(position, position + 1)) {
+                    final E result = elements.get(index);
+                    elements.lazySet(index, null);
+                    // hands the slot back to the producers, one lap later
+                    sequences.set(index, position + mask + 1);
+                    return result;
+                }
+            } else if (difference < 0) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Moves up to {@code maxElements} of the oldest elements to {@code target}.
+     *
+     * @return the number of elements moved
+     */
+    int drainTo(final List<? super E> target, final int maxElements) {
+        int result = 0;
+        while (result < maxElements) {
+            final E element = poll();
+            if (element == null) {
+                break;
+            }
+            target.add(element);
+            result++;
+        }
+        return result;
+    }
+
+    /**
+     * Returns an estimate of the number of elements in the buffer.
+     */
+    int size() {
+        final long size = enqueuePosition.get() - dequeuePosition.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    /**
+     * Returns the number of elements discarded because the buffer was full, since it was created.
+     */
+    long getDropped() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,20 @@
+package hudson.plugins.tfs.telemetry;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives batches of telemetry from the background flusher of {@link TelemetryHelper}.
+ * The default sink forwards to Application Insights; set
+ * {@code -Dhudson.plugins.tfs.telemetry.sink=metrics} or call {@link TelemetryHelper#setSink(TelemetrySink)}
+ * to keep telemetry on the Jenkins instance instead.
+ */
+public interface TelemetrySink {
+
+    /**
+     * Delivers a batch of records, oldest first.  Only ever called from one thread at a time.
+     *
+     * @throws IOException if the batch could not be delivered and should be spooled, when spooling is enabled
+     */
+    void send(List<TelemetryRecord> batch) throws IOException;
+}
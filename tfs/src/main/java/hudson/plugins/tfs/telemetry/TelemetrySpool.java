@@ -0,0 +1,108 @@
+package hudson.plugins.tfs.telemetry;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import hudson.plugins.tfs.util.EndpointHelper;
+import hudson.plugins.tfs.util.MediaType;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps batches that a {@link TelemetrySink} failed to deliver in a file, one JSON record per line,
+ * so they can be sent once the sink is reachable again.  The file is capped in size; batches that
+ * would exceed the cap are dropped.  Only used from the flusher thread.
+ */
+final class TelemetrySpool {
+
+    private static final Logger LOGGER = Logger.getLogger(TelemetrySpool.class.getName());
+    private static final String FILE_NAME = "telemetry-spool.jsonl";
+    private static final TypeReference<Map<String, Object>> RECORD_TYPE = new TypeReference<Map<String, Object>>() { };
+
+    private final File file;
+    private final long maxBytes;
+
+    TelemetrySpool(final File directory, final long maxBytes) {
+        this.file = new File(directory, FILE_NAME);
+        this.maxBytes = maxBytes;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    boolean isEmpty() {
+        return !file.isFile() || file.length() == 0;
+    }
+
+    /**
+     * Appends the records to the spool.
+     *
+     * @return {@code true} if the records were written, {@code false} if the spool is full
+     */
+    boolean append(final List<TelemetryRecord> records) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        for (final TelemetryRecord record : records) {
+            sb.append(EndpointHelper.MAPPER.writeValueAsString(record.toMap())).append('\n');
+        }
+        final byte[] bytes = sb.toString().getBytes(MediaType.UTF_8);
+        if (file.length() + bytes.length > maxBytes) {
+            return false;
+        }
+        final File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+        final FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+        return true;
+    }
+
+    /**
+     * Reads every spooled record and empties the spool; the caller is responsible for
+     * appending back whatever it then fails to send.
+     */
+    List<TelemetryRecord> takeAll() throws IOException {
+        final List<TelemetryRecord> result = new ArrayList<TelemetryRecord>();
+        if (!file.isFile()) {
+            return result;
+        }
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), MediaType.UTF_8));
+        try {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.length() == 0) {
+                    continue;
+                }
+                try {
+                    final Map<String, Object> map = EndpointHelper.MAPPER.readValue(line, RECORD_TYPE);
+                    result.add(TelemetryRecord.fromMap(map));
+                } catch (final IOException | RuntimeException e) {
+                    // a line truncated by a crash shouldn't prevent replaying the rest
+                    LOGGER.log(Level.FINE, "Skipping unreadable spooled telemetry record", e);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        if (!file.delete()) {
+            // leave nothing behind that would be replayed twice
+            final Writer writer = new OutputStreamWriter(new FileOutputStream(file, false), MediaType.UTF_8);
+            writer.close();
+        }
+        return result;
+    }
+}
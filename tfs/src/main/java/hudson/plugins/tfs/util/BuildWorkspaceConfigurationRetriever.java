@@ -2,6 +2,10 @@
 package hudson.plugins.tfs.util;
 
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 import hudson.model.AbstractBuild;
 import hudson.model.Node;
@@ -43,6 +47,35 @@ public class BuildWorkspaceConfigurationRetriever {
 
         return null;
     }
+
+    /**
+     * Returns the configuration of the latest build on each node, only looking at the builds
+     * started since the specified time, so the whole history isn't loaded.
+     * @param latestRun the run to start looking from
+     * @param since the earliest start time, in milliseconds since the epoch, of the builds to look at
+     * @return the configurations, by node name, from the most to the least recently built node
+     */
+    public Map<String, BuildWorkspaceConfiguration> getLatestPerNodeSince(Run<?,?> latestRun, long since) {
+        final Map<String, BuildWorkspaceConfiguration> result = new LinkedHashMap<String, BuildWorkspaceConfiguration>();
+        final Set<String> seenNodeNames = new HashSet<String>();
+        if (!(latestRun instanceof AbstractBuild<?, ?>)) {
+            return result;
+        }
+
+        AbstractBuild<?, ?> build = (AbstractBuild<?, ?>) latestRun;
+        while (build != null && build.getTimestamp().getTimeInMillis() >= since) {
+            final Node node = build.getBuiltOn();
+            // like getLatestForNode(), only the latest build on the node counts
+            if (node != null && seenNodeNames.add(node.getNodeName())) {
+                final WorkspaceConfiguration configuration = build.getAction(WorkspaceConfiguration.class);
+                if (configuration != null) {
+                    result.put(node.getNodeName(), new BuildWorkspaceConfiguration(configuration, build));
+                }
+            }
+            build = build.getPreviousBuild();
+        }
+        return result;
+    }
     
     public static class BuildWorkspaceConfiguration extends WorkspaceConfiguration {
         private static final long serialVersionUID = 1L;
@@ -53,6 +86,10 @@ public class BuildWorkspaceConfigurationRetriever {
             this.build = build;
         }
 
+        public AbstractBuild<?, ?> getBuild() {
+            return build;
+        }
+
         public void save() throws IOException {
             if (!workspaceExists()) {
                 build.getAction(WorkspaceConfiguration.class).setWorkspaceWasRemoved();
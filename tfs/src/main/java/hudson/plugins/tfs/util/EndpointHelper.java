@@ -1,6 +1,7 @@
 //CHECKSTYLE:OFF
 package hudson.plugins.tfs.util;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.kohsuke.stapler.HttpResponses;
@@ -19,6 +20,8 @@ public class EndpointHelper {
         MAPPER = new ObjectMapper();
         MAPPER.enable(DeserializationFeature.READ_ENUMS_USING_TO_STRING);
         MAPPER.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        // request bodies leave out the fields that aren't set rather than sending them as null
+        MAPPER.setSerializationInclusion(JsonInclude.Include.NON_NULL);
     }
 
     public static void error(final int code, final Throwable cause) {
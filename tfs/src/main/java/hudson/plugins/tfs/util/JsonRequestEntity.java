@@ -0,0 +1,68 @@
+package hudson.plugins.tfs.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.microsoft.tfs.core.httpclient.methods.RequestEntity;
+import net.sf.json.JSON;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A {@link RequestEntity} that renders its body once, as UTF-8 JSON bytes,
+ * so that the request is sent with a Content-Length rather than chunked,
+ * which some proxies in front of on-premises servers reject.
+ */
+public class JsonRequestEntity implements RequestEntity {
+
+    private static final String CHARSET_SUFFIX = "; charset=UTF-8";
+
+    private final byte[] bytes;
+    private final String contentType;
+
+    /**
+     * Creates an entity for the provided body.
+     *
+     * @param body        a {@link JSON} instance or a String, which are written verbatim,
+     *                    or any other object, which is serialized with {@link EndpointHelper#MAPPER}.
+     * @param contentType the media type, without the charset.
+     */
+    public JsonRequestEntity(final Object body, final String contentType) {
+        this.bytes = toBytes(body);
+        this.contentType = contentType + CHARSET_SUFFIX;
+    }
+
+    static byte[] toBytes(final Object body) {
+        if (body instanceof JSON) {
+            return ((JSON) body).toString(0).getBytes(MediaType.UTF_8);
+        }
+        if (body instanceof String) {
+            return ((String) body).getBytes(MediaType.UTF_8);
+        }
+        try {
+            // Jackson always encodes byte output as UTF-8, without an intermediate String
+            return EndpointHelper.MAPPER.writeValueAsBytes(body);
+        } catch (final JsonProcessingException e) {
+            throw new IllegalArgumentException("Unable to serialize " + body.getClass().getName() + " as JSON", e);
+        }
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public void writeRequest(final OutputStream out) throws IOException {
+        out.write(bytes);
+    }
+
+    @Override
+    public long getContentLength() {
+        return bytes.length;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+}
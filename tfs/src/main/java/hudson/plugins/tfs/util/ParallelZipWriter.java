@@ -0,0 +1,543 @@
+package hudson.plugins.tfs.util;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a ZIP archive whose entries are deflated concurrently on a pool of threads,
+ * then written in the order they were added.
+ * {@link java.util.zip.ZipOutputStream} can't do that since it deflates on the caller's thread.
+ * Each compressed entry is kept in memory up to a threshold and spilled to a temporary file beyond it,
+ * and the ZIP64 extensions are only used when sizes, offsets or the number of entries require them.
+ */
+public final class ParallelZipWriter implements Closeable {
+
+    /**
+     * Provides the content of an entry, on one of the compression threads.
+     */
+    public interface EntrySource {
+        /**
+         * Opens the content of the entry; the stream will be closed by the caller.
+         */
+        InputStream open() throws IOException, InterruptedException;
+    }
+
+    static final int DEFAULT_SPILL_THRESHOLD = 1024 * 1024;
+
+    private static final Logger LOGGER = Logger.getLogger(ParallelZipWriter.class.getName());
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+    private static final int LOCAL_FILE_HEADER = 0x04034b50;
+    private static final int CENTRAL_FILE_HEADER = 0x02014b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY = 0x06064b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR = 0x07064b50;
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int LOCAL_FILE_HEADER_SIZE = 30;
+    private static final int CENTRAL_FILE_HEADER_SIZE = 46;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE = 56;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE = 20;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    /** The size of the ZIP64 record, without its leading signature and size fields. */
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_REMAINDER = 44;
+    private static final short ZIP64_EXTRA_FIELD = 0x0001;
+    private static final int EXTRA_FIELD_HEADER_SIZE = 4;
+    private static final int LONG_SIZE = 8;
+    private static final short VERSION_DEFAULT = 20;
+    private static final short VERSION_ZIP64 = 45;
+    private static final short FLAG_UTF8 = 0x0800;
+    private static final short METHOD_STORED = 0;
+    private static final short METHOD_DEFLATED = 8;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+
+    private static final int DOS_EPOCH_YEAR = 1980;
+    private static final int DOS_YEAR_SHIFT = 25;
+    private static final int DOS_MONTH_SHIFT = 21;
+    private static final int DOS_DAY_SHIFT = 16;
+    private static final int DOS_HOUR_SHIFT = 11;
+    private static final int DOS_MINUTE_SHIFT = 5;
+    // January 1st, 1980
+    private static final int DOS_EPOCH = (1 << DOS_MONTH_SHIFT) | (1 << DOS_DAY_SHIFT);
+
+    private final CountingOutputStream out;
+    private final int compressionLevel;
+    private final int maxPending;
+    private final long spillThreshold;
+    private final File spillDirectory;
+    private final ExecutorService executor;
+    private final ArrayDeque<PendingEntry> pending = new ArrayDeque<PendingEntry>();
+    private final List<WrittenEntry> written = new ArrayList<WrittenEntry>();
+    private boolean finished;
+    private volatile boolean closed;
+
+    /**
+     * Creates a writer that compresses on {@code threads} threads and spills large entries
+     * to temporary files in {@code spillDirectory}, or the default temporary directory if it is {@code null}.
+     *
+     * @param compressionLevel {@link Deflater#DEFAULT_COMPRESSION} or 0 to 9, where 0 stores the entries uncompressed
+     */
+    public ParallelZipWriter(final OutputStream out, final int compressionLevel, final int threads, final File spillDirectory) {
+        this(out, compressionLevel, threads, spillDirectory, DEFAULT_SPILL_THRESHOLD);
+    }
+
+    ParallelZipWriter(final OutputStream out, final int compressionLevel, final int threads, final File spillDirectory, final long spillThreshold) {
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("The compression level must be between -1 and 9");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("There must be at least one compression thread");
+        }
+        this.out = new CountingOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        this.compressionLevel = compressionLevel;
+        this.maxPending = 2 * threads;
+        this.spillThreshold = spillThreshold;
+        this.spillDirectory = spillDirectory;
+        this.executor = Executors.newFixedThreadPool(threads,
+                new NamingThreadFactory(new DaemonThreadFactory(), "TFS ZIP compression"));
+    }
+
+    /**
+     * Queues a file for compression; it will be written after all the entries added before it.
+     * Blocks while too many compressed entries are waiting to be written.
+     *
+     * @param name the path of the entry in the archive, with forward slashes
+     * @param lastModified the modification time of the entry, in milliseconds since the epoch
+     */
+    public void addEntry(final String name, final long lastModified, final EntrySource source) throws IOException, InterruptedException {
+        if (finished) {
+            throw new IllegalStateException("The archive was already finished");
+        }
+        final Future<CompressedEntry> future = executor.submit(new Callable<CompressedEntry>() {
+            @Override
+            public CompressedEntry call() throws Exception {
+                final CompressedEntry result = compress(source);
+                // nobody will write nor discard it anymore
+                if (closed) {
+                    result.discard();
+                    throw new CancellationException("The writer was closed");
+                }
+                return result;
+            }
+        });
+        pending.addLast(new PendingEntry(name, lastModified, future));
+        while (pending.size() > maxPending) {
+            writeNext();
+        }
+    }
+
+    /**
+     * Writes the remaining entries and the central directory; the writer must still be closed afterwards.
+     */
+    public void finish() throws IOException, InterruptedException {
+        if (finished) {
+            return;
+        }
+        while (!pending.isEmpty()) {
+            writeNext();
+        }
+        writeCentralDirectory();
+        out.flush();
+        finished = true;
+    }
+
+    /**
+     * Returns the number of bytes written so far.
+     */
+    public long getBytesWritten() {
+        return out.getByteCount();
+    }
+
+    /**
+     * Stops the compression threads, waits for the running ones to end, discards the entries
+     * not yet written, along with their temporary files, and closes the output stream.
+     * The archive is only complete if {@link #finish()} was called first.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        executor.shutdownNow();
+        try {
+            // a compression reading from a stream that ignores interrupts only ends with that stream
+            if (!executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.warning("Some ZIP entries are still being compressed; they will discard their temporary files when done");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (final PendingEntry entry : pending) {
+            // entries whose compression never started aren't done
+            if (entry.future.isDone() && !entry.future.isCancelled()) {
+                try {
+                    entry.future.get().discard();
+                } catch (final InterruptedException | ExecutionException | CancellationException ignored) {
+                    // nothing to clean up
+                }
+            }
+        }
+        pending.clear();
+        out.close();
+    }
+
+    CompressedEntry compress(final EntrySource source) throws IOException, InterruptedException {
+        final boolean stored = compressionLevel == 0;
+        final SpillingOutputStream buffer = new SpillingOutputStream(spillThreshold, spillDirectory);
+        final CRC32 crc = new CRC32();
+        final Deflater deflater = stored ? null : new Deflater(compressionLevel, true);
+        long size = 0;
+        try {
+            final OutputStream target = stored ? buffer : new DeflaterOutputStream(buffer, deflater, BUFFER_SIZE);
+            final InputStream input = source.open();
+            try {
+                final byte[] bytes = new byte[BUFFER_SIZE];
+                while (true) {
+                    final int read = input.read(bytes);
+                    if (read == -1) {
+                        break;
+                    }
+                    crc.update(bytes, 0, read);
+                    target.write(bytes, 0, read);
+                    size += read;
+                }
+            } finally {
+                IOUtils.closeQuietly(input);
+            }
+            target.close();
+        } catch (final IOException | InterruptedException | RuntimeException e) {
+            buffer.discard();
+            throw e;
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+        final short method = stored ? METHOD_STORED : METHOD_DEFLATED;
+        return new CompressedEntry(method, crc.getValue(), size, buffer);
+    }
+
+    private void writeNext() throws IOException, InterruptedException {
+        final PendingEntry entry = pending.removeFirst();
+        final CompressedEntry compressed;
+        try {
+            compressed = entry.future.get();
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Unable to compress " + entry.name, cause);
+        }
+        try {
+            final WrittenEntry result = new WrittenEntry(entry.name.getBytes(UTF_8), toDosTime(entry.lastModified),
+                    compressed, out.getByteCount());
+            writeLocalFileHeader(result);
+            compressed.buffer.writeTo(out);
+            written.add(result);
+        } finally {
+            compressed.discard();
+        }
+    }
+
+    private void writeLocalFileHeader(final WrittenEntry entry) throws IOException {
+        final boolean zip64 = entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC;
+        final int extraLength = zip64 ? EXTRA_FIELD_HEADER_SIZE + 2 * LONG_SIZE : 0;
+        final ByteBuffer header = allocate(LOCAL_FILE_HEADER_SIZE + entry.name.length + extraLength);
+        header.putInt(LOCAL_FILE_HEADER);
+        header.putShort(zip64 ? VERSION_ZIP64 : VERSION_DEFAULT);
+        header.putShort(FLAG_UTF8);
+        header.putShort(entry.method);
+        header.putInt(entry.dosTime);
+        header.putInt((int) entry.crc);
+        header.putInt((int) (zip64 ? ZIP64_MAGIC : entry.compressedSize));
+        header.putInt((int) (zip64 ? ZIP64_MAGIC : entry.size));
+        header.putShort((short) entry.name.length);
+        header.putShort((short) extraLength);
+        header.put(entry.name);
+        if (zip64) {
+            header.putShort(ZIP64_EXTRA_FIELD);
+            header.putShort((short) (2 * LONG_SIZE));
+            header.putLong(entry.size);
+            header.putLong(entry.compressedSize);
+        }
+        out.write(header.array());
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        final long centralDirectoryOffset = out.getByteCount();
+        for (final WrittenEntry entry : written) {
+            writeCentralFileHeader(entry);
+        }
+        final long centralDirectorySize = out.getByteCount() - centralDirectoryOffset;
+        final int count = written.size();
+
+        if (count >= ZIP64_MAGIC_COUNT || centralDirectoryOffset >= ZIP64_MAGIC || centralDirectorySize >= ZIP64_MAGIC) {
+            final long zip64EndOffset = out.getByteCount();
+            final ByteBuffer zip64End = allocate(ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE);
+            zip64End.putInt(ZIP64_END_OF_CENTRAL_DIRECTORY);
+            zip64End.putLong(ZIP64_END_OF_CENTRAL_DIRECTORY_REMAINDER);
+            zip64End.putShort(VERSION_ZIP64);
+            zip64End.putShort(VERSION_ZIP64);
+            zip64End.putInt(0);
+            zip64End.putInt(0);
+            zip64End.putLong(count);
+            zip64End.putLong(count);
+            zip64End.putLong(centralDirectorySize);
+            zip64End.putLong(centralDirectoryOffset);
+            out.write(zip64End.array());
+
+            final ByteBuffer locator = allocate(ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE);
+            locator.putInt(ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR);
+            locator.putInt(0);
+            locator.putLong(zip64EndOffset);
+            locator.putInt(1);
+            out.write(locator.array());
+        }
+
+        final ByteBuffer end = allocate(END_OF_CENTRAL_DIRECTORY_SIZE);
+        end.putInt(END_OF_CENTRAL_DIRECTORY);
+        end.putShort((short) 0);
+        end.putShort((short) 0);
+        end.putShort((short) Math.min(count, ZIP64_MAGIC_COUNT));
+        end.putShort((short) Math.min(count, ZIP64_MAGIC_COUNT));
+        end.putInt((int) Math.min(centralDirectorySize, ZIP64_MAGIC));
+        end.putInt((int) Math.min(centralDirectoryOffset, ZIP64_MAGIC));
+        end.putShort((short) 0);
+        out.write(end.array());
+    }
+
+    private void writeCentralFileHeader(final WrittenEntry entry) throws IOException {
+        final boolean zip64Size = entry.size >= ZIP64_MAGIC;
+        final boolean zip64CompressedSize = entry.compressedSize >= ZIP64_MAGIC;
+        final boolean zip64Offset = entry.offset >= ZIP64_MAGIC;
+        final int zip64Fields = (zip64Size ? 1 : 0) + (zip64CompressedSize ? 1 : 0) + (zip64Offset ? 1 : 0);
+        final int extraLength = zip64Fields > 0 ? EXTRA_FIELD_HEADER_SIZE + zip64Fields * LONG_SIZE : 0;
+        final short version = zip64Fields > 0 ? VERSION_ZIP64 : VERSION_DEFAULT;
+
+        final ByteBuffer header = allocate(CENTRAL_FILE_HEADER_SIZE + entry.name.length + extraLength);
+        header.putInt(CENTRAL_FILE_HEADER);
+        header.putShort(version);
+        header.putShort(version);
+        header.putShort(FLAG_UTF8);
+        header.putShort(entry.method);
+        header.putInt(entry.dosTime);
+        header.putInt((int) entry.crc);
+        header.putInt((int) Math.min(entry.compressedSize, ZIP64_MAGIC));
+        header.putInt((int) Math.min(entry.size, ZIP64_MAGIC));
+        header.putShort((short) entry.name.length);
+        header.putShort((short) extraLength);
+        // comment length, disk number start, internal attributes
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        // external attributes
+        header.putInt(0);
+        header.putInt((int) Math.min(entry.offset, ZIP64_MAGIC));
+        header.put(entry.name);
+        if (zip64Fields > 0) {
+            header.putShort(ZIP64_EXTRA_FIELD);
+            header.putShort((short) (zip64Fields * LONG_SIZE));
+            if (zip64Size) {
+                header.putLong(entry.size);
+            }
+            if (zip64CompressedSize) {
+                header.putLong(entry.compressedSize);
+            }
+            if (zip64Offset) {
+                header.putLong(entry.offset);
+            }
+        }
+        out.write(header.array());
+    }
+
+    private static ByteBuffer allocate(final int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Converts the time to the MS-DOS format used by ZIP files: the date in the upper 16 bits,
+     * the time of day (with a 2-second resolution) in the lower 16 bits.
+     */
+    static int toDosTime(final long time) {
+        final Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        final int year = calendar.get(Calendar.YEAR);
+        if (year < DOS_EPOCH_YEAR) {
+            return DOS_EPOCH;
+        }
+        return (year - DOS_EPOCH_YEAR) << DOS_YEAR_SHIFT
+                | (calendar.get(Calendar.MONTH) + 1) << DOS_MONTH_SHIFT
+                | calendar.get(Calendar.DAY_OF_MONTH) << DOS_DAY_SHIFT
+                | calendar.get(Calendar.HOUR_OF_DAY) << DOS_HOUR_SHIFT
+                | calendar.get(Calendar.MINUTE) << DOS_MINUTE_SHIFT
+                | calendar.get(Calendar.SECOND) >> 1;
+    }
+
+    /**
+     * An entry whose compression was submitted, in the order it will be written.
+     */
+    private static final class PendingEntry {
+        private final String name;
+        private final long lastModified;
+        private final Future<CompressedEntry> future;
+
+        PendingEntry(final String name, final long lastModified, final Future<CompressedEntry> future) {
+            this.name = name;
+            this.lastModified = lastModified;
+            this.future = future;
+        }
+    }
+
+    /**
+     * The compressed data of an entry, in memory or spilled to a temporary file, along with its CRC and size.
+     */
+    static final class CompressedEntry {
+        private final short method;
+        private final long crc;
+        private final long size;
+        private final SpillingOutputStream buffer;
+
+        CompressedEntry(final short method, final long crc, final long size, final SpillingOutputStream buffer) {
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.buffer = buffer;
+        }
+
+        boolean isSpilled() {
+            return buffer.file != null;
+        }
+
+        void discard() {
+            buffer.discard();
+        }
+    }
+
+    /**
+     * What the central directory needs to know about an entry already written.
+     */
+    private static final class WrittenEntry {
+        private final byte[] name;
+        private final int dosTime;
+        private final short method;
+        private final long crc;
+        private final long compressedSize;
+        private final long size;
+        private final long offset;
+
+        WrittenEntry(final byte[] name, final int dosTime, final CompressedEntry compressed, final long offset) {
+            this.name = name;
+            this.dosTime = dosTime;
+            this.method = compressed.method;
+            this.crc = compressed.crc;
+            this.compressedSize = compressed.buffer.count;
+            this.size = compressed.size;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Keeps what is written in memory until it grows beyond a threshold, then moves it to a temporary file.
+     */
+    static final class SpillingOutputStream extends OutputStream {
+        private final long threshold;
+        private final File directory;
+        private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        private File file;
+        private OutputStream fileStream;
+        private long count;
+
+        SpillingOutputStream(final long threshold, final File directory) {
+            this.threshold = threshold;
+            this.directory = directory;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            if (file == null && count + len > threshold) {
+                file = File.createTempFile("zip-entry", ".tmp", directory);
+                fileStream = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+                memory.writeTo(fileStream);
+                memory = null;
+            }
+            if (file == null) {
+                memory.write(b, off, len);
+            } else {
+                fileStream.write(b, off, len);
+            }
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (fileStream != null) {
+                fileStream.close();
+            }
+        }
+
+        void writeTo(final OutputStream target) throws IOException {
+            if (file == null) {
+                memory.writeTo(target);
+            } else {
+                final InputStream input = new FileInputStream(file);
+                try {
+                    IOUtils.copyLarge(input, target);
+                } finally {
+                    input.close();
+                }
+            }
+        }
+
+        void discard() {
+            memory = null;
+            if (file != null) {
+                IOUtils.closeQuietly(fileStream);
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+                file = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package hudson.plugins.tfs.util;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Locale;
+
+/**
+ * Serves files with support for conditional (ETag, If-None-Match, If-Modified-Since)
+ * and single byte-range (Range, If-Range) requests, so that interrupted downloads of large files
+ * can resume where they stopped and repeated downloads of an unchanged file transfer nothing.
+ * The requested range is copied with {@link FileChannel#transferTo(long, long, WritableByteChannel)}
+ * into a channel over the servlet's stream; the JVM still copies it through a heap buffer,
+ * so this saves the seeking and bounding by hand, not the copy.
+ */
+public final class RangeRequestHelper {
+
+    private static final String BYTES_UNIT = "bytes=";
+    private static final long MILLISECONDS_PER_SECOND = 1000L;
+
+    private RangeRequestHelper() {
+    }
+
+    /**
+     * A range of bytes, from {@code first} to {@code last} inclusively, as in the HTTP headers.
+     */
+    public static final class ByteRange {
+        private final long first;
+        private final long last;
+
+        ByteRange(final long first, final long last) {
+            this.first = first;
+            this.last = last;
+        }
+
+        public long getFirst() {
+            return first;
+        }
+
+        public long getLast() {
+            return last;
+        }
+
+        /**
+         * Returns the number of bytes in the range.
+         */
+        public long getLength() {
+            return last - first + 1;
+        }
+
+        /**
+         * Formats the value of the Content-Range header for this range of a file of the provided length.
+         */
+        public String toContentRange(final long totalLength) {
+            return "bytes " + first + "-" + last + "/" + totalLength;
+        }
+    }
+
+    /**
+     * Computes a strong entity tag from the file's length and modification time,
+     * which is enough for files that are written once and then only read.
+     */
+    public static String toETag(final File file) {
+        return "\"" + Long.toHexString(file.length()) + "-" + Long.toHexString(file.lastModified()) + "\"";
+    }
+
+    /**
+     * Parses the value of a Range header.
+     *
+     * @return the range to send, {@code null} to send the whole file
+     *         (no header, a syntax the server may ignore or several ranges)
+     * @throws IllegalArgumentException if the range can't be satisfied
+     */
+    public static ByteRange parseRange(final String rangeHeader, final long length) {
+        if (rangeHeader == null) {
+            return null;
+        }
+        final String value = rangeHeader.trim().toLowerCase(Locale.ENGLISH);
+        if (!value.startsWith(BYTES_UNIT)) {
+            return null;
+        }
+        final String spec = value.substring(BYTES_UNIT.length()).trim();
+        if (spec.indexOf(',') != -1) {
+            // multipart/byteranges responses are optional; the whole file is a valid answer
+            return null;
+        }
+        final int dash = spec.indexOf('-');
+        if (dash == -1) {
+            return null;
+        }
+        final long first;
+        final long last;
+        try {
+            final String firstPart = spec.substring(0, dash).trim();
+            final String lastPart = spec.substring(dash + 1).trim();
+            if (firstPart.length() == 0) {
+                // suffix range: the last N bytes
+                final long suffixLength = Long.parseLong(lastPart);
+                if (suffixLength <= 0 || length == 0) {
+                    throw new IllegalArgumentException("Unsatisfiable range: " + rangeHeader);
+                }
+                first = Math.max(0, length - suffixLength);
+                last = length - 1;
+            } else {
+                first = Long.parseLong(firstPart);
+                last = lastPart.length() == 0 ? length - 1 : Math.min(Long.parseLong(lastPart), length - 1);
+            }
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+        if (first < 0 || first > last) {
+            if (first >= length) {
+                throw new IllegalArgumentException("Unsatisfiable range: " + rangeHeader);
+            }
+            return null;
+        }
+        return new ByteRange(first, last);
+    }
+
+    /**
+     * Determines if the client's copy, as described by its If-None-Match or If-Modified-Since headers, is current.
+     */
+    static boolean isNotModified(final HttpServletRequest request, final String eTag, final long lastModified) {
+        final String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (final String candidate : ifNoneMatch.split(",")) {
+                final String trimmed = candidate.trim();
+                if ("*".equals(trimmed) || eTag.equals(trimmed) || ("W/" + eTag).equals(trimmed)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        final long ifModifiedSince = getDateHeader(request, "If-Modified-Since");
+        return ifModifiedSince != -1 && toSeconds(lastModified) <= toSeconds(ifModifiedSince);
+    }
+
+    /**
+     * Determines if the If-Range header, when present, still describes the file.
+     */
+    static boolean isRangeCurrent(final HttpServletRequest request, final String eTag, final long lastModified) {
+        final String ifRange = request.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        final String trimmed = ifRange.trim();
+        if (trimmed.startsWith("\"") || trimmed.startsWith("W/")) {
+            // weak tags can't be used for ranges
+            return eTag.equals(trimmed);
+        }
+        final long date = getDateHeader(request, "If-Range");
+        return date != -1 && toSeconds(lastModified) == toSeconds(date);
+    }
+
+    private static long getDateHeader(final HttpServletRequest request, final String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (final IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private static long toSeconds(final long milliseconds) {
+        return milliseconds / MILLISECONDS_PER_SECOND;
+    }
+
+    /**
+     * Responds with the file (or the requested part of it) or with one of the status codes
+     * that make that unnecessary: 304 Not Modified and 416 Range Not Satisfiable.
+     */
+    public static void serveFile(final HttpServletRequest request, final HttpServletResponse response, final File file, final String contentType) throws IOException {
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+        final String eTag = toETag(file);
+        response.setHeader("Accept-Ranges", "bytes");
+        response.setHeader("ETag", eTag);
+        response.setDateHeader("Last-Modified", lastModified);
+
+        if (isNotModified(request, eTag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        ByteRange range;
+        try {
+            range = isRangeCurrent(request, eTag, lastModified) ? parseRange(request.getHeader("Range"), length) : null;
+        } catch (final IllegalArgumentException e) {
+            response.setHeader("Content-Range", "bytes */" + length);
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+        if (range == null) {
+            range = new ByteRange(0, length - 1);
+        } else {
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader("Content-Range", range.toContentRange(length));
+        }
+        response.setContentType(contentType);
+        response.setHeader("Content-Length", Long.toString(range.getLength()));
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        final FileInputStream input = new FileInputStream(file);
+        try {
+            final OutputStream output = response.getOutputStream();
+            transfer(input.getChannel(), range.getFirst(), range.getLength(), Channels.newChannel(output));
+            output.flush();
+        } finally {
+            input.close();
+        }
+    }
+
+    static void transfer(final FileChannel source, final long position, final long count, final WritableByteChannel target) throws IOException {
+        long transferred = 0;
+        while (transferred < count) {
+            final long written = source.transferTo(position + transferred, count - transferred, target);
+            if (written <= 0) {
+                throw new IOException("The file was truncated while it was being sent");
+            }
+            transferred += written;
+        }
+    }
+}
@@ -2,11 +2,12 @@
 package hudson.plugins.tfs.util;
 
 import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import com.microsoft.tfs.core.httpclient.Header;
+import com.microsoft.tfs.core.httpclient.HeaderElement;
 import com.microsoft.tfs.core.httpclient.HttpClient;
 import com.microsoft.tfs.core.httpclient.NameValuePair;
 import com.microsoft.tfs.util.StringUtil;
 import com.microsoft.visualstudio.services.webapi.patch.Operation;
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.plugins.tfs.TeamCollectionConfiguration;
 import hudson.plugins.tfs.model.GitCodePushedEventArgs;
 import hudson.plugins.tfs.model.HttpMethod;
@@ -15,17 +16,13 @@ import hudson.plugins.tfs.model.JsonPatchOperation;
 import hudson.plugins.tfs.model.Link;
 import hudson.plugins.tfs.model.ListOfGitRepositories;
 import hudson.plugins.tfs.model.PullRequestMergeCommitCreatedEventArgs;
-import hudson.plugins.tfs.model.Server;
 import hudson.plugins.tfs.model.TeamGitStatus;
 import hudson.plugins.tfs.model.WorkItem;
 import hudson.util.Secret;
-import net.sf.json.JSON;
 import net.sf.json.JSONArray;
-import net.sf.json.JSONObject;
 import org.apache.commons.io.IOUtils;
 
 import javax.xml.bind.DatatypeConverter;
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -36,12 +33,11 @@ public class TeamRestClient {
 
     private static final String AUTHORIZATION = "Authorization";
     private static final String API_VERSION = "api-version";
-    private static final String NEW_LINE = System.getProperty("line.separator");
 
     private final URI collectionUri;
     private final boolean isTeamServices;
     private final String authorization;
-    private final Server server;
+    private final HttpClient httpClient;
 
     public TeamRestClient(final URI collectionUri) throws IOException {
         this(collectionUri, TeamCollectionConfiguration.findCredentialsForCollection(collectionUri));
@@ -50,7 +46,7 @@ public class TeamRestClient {
     public TeamRestClient(final URI collectionUri, final StandardUsernamePasswordCredentials credentials) throws IOException {
         this.collectionUri = collectionUri;
         final String hostName = collectionUri.getHost();
-        this.server = Server.create(null, null, collectionUri.toString(), credentials, null, null);
+        this.httpClient = TeamRestTransport.getHttpClient(collectionUri, credentials);
         isTeamServices = TeamCollectionConfiguration.isTeamServices(hostName);
         if (isTeamServices && credentials != null) {
             authorization = createAuthorization(credentials);
@@ -92,24 +88,7 @@ public class TeamRestClient {
             final NameValuePair[] additionalRequestHeaders
             ) throws IOException {
 
-        final HttpClient httpClient = server.getHttpClient();
-
-        final String stringRequestBody;
-        if (requestBody != null) {
-            final JSON jsonObject;
-            if (requestBody instanceof JSON) {
-                jsonObject = (JSON) requestBody;
-            }
-            else {
-                jsonObject = JSONObject.fromObject(requestBody);
-            }
-            stringRequestBody = jsonObject.toString(0);
-        }
-        else {
-            stringRequestBody = null;
-        }
-
-        final com.microsoft.tfs.core.httpclient.HttpMethod clientMethod = httpMethod.createClientMethod(requestUri.toString(), stringRequestBody);
+        final com.microsoft.tfs.core.httpclient.HttpMethod clientMethod = httpMethod.createClientMethod(requestUri.toString(), requestBody);
         if (authorization != null) {
             clientMethod.addRequestHeader(AUTHORIZATION, authorization);
         }
@@ -120,18 +99,7 @@ public class TeamRestClient {
             }
         }
 
-        final String stringResponseBody = innerRequest(clientMethod, httpClient);
-
-        if (responseClass == Void.class) {
-            return null;
-        }
-
-        if (responseClass == String.class) {
-            return (TResponse) stringResponseBody;
-        }
-
-        final TResponse result = deserialize(responseClass, stringResponseBody);
-        return result;
+        return innerRequest(responseClass, clientMethod, httpClient);
     }
 
     public static <TResponse> TResponse deserialize(final Class<TResponse> responseClass, final String stringResponseBody) {
@@ -143,16 +111,16 @@ public class TeamRestClient {
         }
     }
 
-    static String innerRequest(final com.microsoft.tfs.core.httpclient.HttpMethod clientMethod, final HttpClient httpClient) throws IOException {
+    static <TResponse> TResponse innerRequest(final Class<TResponse> responseClass, final com.microsoft.tfs.core.httpclient.HttpMethod clientMethod, final HttpClient httpClient) throws IOException {
 
         final int httpStatus = httpClient.executeMethod(clientMethod);
 
-        final String stringResult;
         InputStream responseStream = null;
         try {
+            responseStream = clientMethod.getResponseBodyAsStream();
+            final String charset = determineResponseCharset(clientMethod);
             if (httpStatus >= HttpURLConnection.HTTP_BAD_REQUEST) {
-                responseStream = clientMethod.getResponseBodyAsStream();
-                final String responseText = readResponseText(responseStream);
+                final String responseText = readResponseText(responseStream, charset);
                 final StringBuilder sb = new StringBuilder("HTTP ").append(httpStatus);
                 final String statusText = clientMethod.getStatusText();
                 if (statusText != null) {
@@ -163,33 +131,46 @@ public class TeamRestClient {
                 }
                 throw new IOException(sb.toString());
             }
-            responseStream = clientMethod.getResponseBodyAsStream();
-            stringResult = readResponseText(responseStream);
+            if (responseClass == Void.class || responseStream == null) {
+                return null;
+            }
+            if (responseClass == String.class) {
+                return (TResponse) readResponseText(responseStream, charset);
+            }
+            // deserialize straight from the entity so large responses are never held as a String
+            if (charset == null) {
+                // without a declared charset, Jackson detects the JSON encoding (UTF-8/16/32) itself
+                return EndpointHelper.MAPPER.readValue(responseStream, responseClass);
+            }
+            return EndpointHelper.MAPPER.readValue(new InputStreamReader(responseStream, charset), responseClass);
         }
         finally {
             IOUtils.closeQuietly(responseStream);
+            clientMethod.releaseConnection();
         }
-        return stringResult;
     }
 
-    @SuppressFBWarnings(value = "DM_DEFAULT_ENCODING", justification = "Better mot modify charset in case it might raise errors")
-    static String readResponseText(final InputStream inputStream) throws IOException {
-        final InputStreamReader isr = new InputStreamReader(inputStream);
-        final BufferedReader reader = new BufferedReader(isr);
-        final StringBuilder sb = new StringBuilder();
-        try {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                sb.append(line);
-                sb.append(NEW_LINE);
+    /**
+     * Returns the charset parameter of the response's Content-Type header, or {@code null} if there isn't one.
+     */
+    static String determineResponseCharset(final com.microsoft.tfs.core.httpclient.HttpMethod clientMethod) {
+        final Header contentType = clientMethod.getResponseHeader("Content-Type");
+        if (contentType != null) {
+            for (final HeaderElement element : contentType.getElements()) {
+                final NameValuePair charset = element.getParameterByName("charset");
+                if (charset != null && !StringUtil.isNullOrEmpty(charset.getValue())) {
+                    return charset.getValue();
+                }
             }
         }
-        finally {
-            IOUtils.closeQuietly(reader);
-            IOUtils.closeQuietly(isr);
-            IOUtils.closeQuietly(inputStream);
+        return null;
+    }
+
+    static String readResponseText(final InputStream inputStream, final String charset) throws IOException {
+        if (inputStream == null) {
+            return null;
         }
-        return sb.toString();
+        return IOUtils.toString(inputStream, charset == null ? MediaType.UTF_8.name() : charset);
     }
 
     public String ping() throws IOException {
@@ -319,7 +300,8 @@ public class TeamRestClient {
                 "_apis", "public", "hooks", "externalEvents",
                 qs);
 
-        final JSONObject json = JSONObject.fromObject(args.getPayload());
+        // the payload is already JSON and was signed as-is, so send it verbatim
+        final String json = args.getPayload();
 
         final NameValuePair[] headers = new NameValuePair[3];
         headers[0] = new NameValuePair("X-Event-Key", "job:completion");
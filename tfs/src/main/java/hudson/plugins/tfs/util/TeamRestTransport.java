@@ -0,0 +1,143 @@
+package hudson.plugins.tfs.util;
+
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import com.microsoft.tfs.core.config.ConnectionInstanceData;
+import com.microsoft.tfs.core.httpclient.HttpClient;
+import com.microsoft.tfs.core.httpclient.HttpConnectionManager;
+import com.microsoft.tfs.core.httpclient.MultiThreadedHttpConnectionManager;
+import com.microsoft.tfs.core.httpclient.UsernamePasswordCredentials;
+import com.microsoft.tfs.core.httpclient.auth.AuthScope;
+import com.microsoft.tfs.core.httpclient.params.HttpConnectionManagerParams;
+import com.microsoft.tfs.util.GUID;
+import hudson.ProxyConfiguration;
+import hudson.Util;
+import hudson.plugins.tfs.model.ModernHTTPClientFactory;
+import hudson.plugins.tfs.model.ProxyHostEx;
+import hudson.plugins.tfs.model.Server;
+import hudson.plugins.tfs.model.WebProxySettings;
+import hudson.util.Secret;
+import jenkins.model.Jenkins;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Provides the {@link HttpClient} used by {@link TeamRestClient} without going through {@link Server},
+ * so that REST-only code paths (service hooks, statuses, collected results) never load the native
+ * libraries, persistence stores or SOAP clients of the TFS SDK.
+ * Clients are shared per collection, credentials and proxy so that connections are kept alive between
+ * requests, but never between different credentials since NTLM authenticates connections, not requests.
+ * The least recently used client is shut down when too many are kept, i.e. after credentials or proxy
+ * settings were changed many times.
+ */
+public final class TeamRestTransport {
+
+    private static final int MAX_CONNECTIONS_PER_HOST = 20;
+    private static final int MAX_TOTAL_CONNECTIONS = 100;
+    static final int MAX_CLIENTS = 100;
+
+    // guarded by itself; in access order, so that the eldest entry is the least recently used
+    private static final Map<String, HttpClient> CLIENTS = new LinkedHashMap<String, HttpClient>(MAX_CLIENTS, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, HttpClient> eldest) {
+            if (size() <= MAX_CLIENTS) {
+                return false;
+            }
+            shutdown(eldest.getValue());
+            return true;
+        }
+    };
+
+    private TeamRestTransport() {
+    }
+
+    /**
+     * Returns a client that authenticates with the provided credentials.
+     * Without credentials, the platform's default credentials are used, which requires
+     * the SDK's native libraries and therefore a {@link Server}.
+     */
+    public static HttpClient getHttpClient(final URI collectionUri, final StandardUsernamePasswordCredentials credentials) throws IOException {
+        if (credentials == null) {
+            return Server.create(null, null, collectionUri.toString(), null, null, null).getHttpClient();
+        }
+        final ProxyHostEx proxyHost = determineProxyHost(collectionUri.getHost());
+        final String key = toKey(collectionUri, credentials, proxyHost);
+        synchronized (CLIENTS) {
+            HttpClient result = CLIENTS.get(key);
+            if (result == null) {
+                result = createHttpClient(collectionUri, credentials, proxyHost);
+                CLIENTS.put(key, result);
+            }
+            return result;
+        }
+    }
+
+    static void clear() {
+        final List<HttpClient> clients;
+        synchronized (CLIENTS) {
+            clients = new ArrayList<HttpClient>(CLIENTS.values());
+            CLIENTS.clear();
+        }
+        for (final HttpClient client : clients) {
+            shutdown(client);
+        }
+    }
+
+    /**
+     * Closes the connections the client kept alive.
+     */
+    static void shutdown(final HttpClient client) {
+        final HttpConnectionManager connectionManager = client.getHttpConnectionManager();
+        if (connectionManager instanceof MultiThreadedHttpConnectionManager) {
+            ((MultiThreadedHttpConnectionManager) connectionManager).shutdown();
+        }
+    }
+
+    static String toKey(final URI collectionUri, final StandardUsernamePasswordCredentials credentials, final ProxyHostEx proxyHost) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(collectionUri.getScheme()).append("://");
+        sb.append(collectionUri.getHost().toLowerCase(Locale.ENGLISH)).append(':').append(collectionUri.getPort());
+        sb.append('|').append(credentials.getId());
+        sb.append('|').append(credentials.getUsername());
+        // the password may change while the credentials keep their id
+        sb.append('|').append(Util.getDigestOf(Secret.toString(credentials.getPassword())));
+        if (proxyHost != null) {
+            sb.append('|').append(proxyHost.getHostName()).append(':').append(proxyHost.getPort());
+            sb.append('|').append(proxyHost.getProxyUser());
+            sb.append('|').append(Util.getDigestOf(Secret.toString(proxyHost.getProxySecret())));
+        }
+        return sb.toString();
+    }
+
+    static ProxyHostEx determineProxyHost(final String host) {
+        final Jenkins jenkins = Jenkins.getInstance();
+        final ProxyConfiguration proxyConfiguration = jenkins != null ? jenkins.proxy : null;
+        return new WebProxySettings(proxyConfiguration).toProxyHost(host);
+    }
+
+    /**
+     * Creates a client through the SDK's factory, so that it gets the same timeouts, SSL set-up,
+     * user agent and proxy settings as the clients of a {@link Server}.
+     */
+    static HttpClient createHttpClient(final URI collectionUri, final StandardUsernamePasswordCredentials credentials, final ProxyHostEx proxyHost) {
+        final ConnectionInstanceData instanceData = new ConnectionInstanceData(collectionUri, GUID.newGUID());
+        final HttpClient result = new ModernHTTPClientFactory(instanceData, proxyHost).newHTTPClient();
+        final HttpConnectionManager connectionManager = result.getHttpConnectionManager();
+        if (connectionManager instanceof MultiThreadedHttpConnectionManager) {
+            final HttpConnectionManagerParams params = ((MultiThreadedHttpConnectionManager) connectionManager).getParams();
+            params.setDefaultMaxConnectionsPerHost(MAX_CONNECTIONS_PER_HOST);
+            params.setMaxTotalConnections(MAX_TOTAL_CONNECTIONS);
+        }
+
+        final String password = Secret.toString(credentials.getPassword());
+        result.getState().setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(credentials.getUsername(), password));
+        return result;
+    }
+}
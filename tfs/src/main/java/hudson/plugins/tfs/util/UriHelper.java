@@ -12,6 +12,7 @@ import java.net.URISyntaxException;
 import java.net.URLEncoder;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.TreeMap;
@@ -142,6 +143,35 @@ public class UriHelper {
         return true;
     }
 
+    /**
+     * Computes a key such that two Git repository URLs that {@link #areSameGitRepo(URI, URI)}
+     * considers the same produce the same key: the lower-cased host and path segments, with the
+     * first non-final {@code DefaultCollection} segment removed.  The port is left out because it
+     * is only significant when the schemes match, so a key match should be confirmed with
+     * {@link #areSameGitRepo(URI, URI)}.
+     *
+     * @param uri the Git repository URL
+     * @return the key, suitable for hash-based look-ups
+     */
+    public static String toGitRepoKey(final URI uri) {
+        final String host = uri.getHost();
+        final StringBuilder sb = new StringBuilder(host == null ? "" : host.toLowerCase(Locale.ENGLISH));
+        final String[] parts = normalizePath(uri).split("/");
+        boolean seenDefaultCollection = false;
+        for (int i = 0; i < parts.length; i++) {
+            final String part = parts[i];
+            if (part.length() == 0) {
+                continue;
+            }
+            if (!seenDefaultCollection && i < parts.length - 1 && StringHelper.equalIgnoringCase(DEFAULT_COLLECTION, part)) {
+                seenDefaultCollection = true;
+                continue;
+            }
+            sb.append('/').append(part.toLowerCase(Locale.ENGLISH));
+        }
+        return sb.toString();
+    }
+
     static int normalizePort(final URI uri) {
         int port = uri.getPort();
         if (port == -1) {
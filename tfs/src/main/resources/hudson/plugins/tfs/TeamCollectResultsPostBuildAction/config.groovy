@@ -12,3 +12,12 @@ f.entry(title: _("Build results to collect")) {
         }
     }
 }
+
+f.advanced() {
+    f.entry(title: _("Compression level"), field: "compressionLevel") {
+        f.select()
+    }
+    f.entry(title: _("Compress on the agent"), field: "compressOnAgent") {
+        f.checkbox(default: false)
+    }
+}
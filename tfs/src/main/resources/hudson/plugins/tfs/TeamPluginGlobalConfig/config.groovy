@@ -27,6 +27,26 @@ f.section(title: descriptor.displayName) {
         )
     }
     f.advanced() {
+        f.entry(title: _("Pre-fetch TFVC changes on idle nodes"),
+                field: "prefetchOnIdleNodes",
+                description: "Periodically gets the latest version into the TFVC workspaces of recently-built jobs while their nodes are idle, so builds have less to download.") {
+            f.checkbox (default: false)
+        }
+        f.entry(title: _("Remove TFVC workspaces in bulk"),
+                field: "bulkWorkspaceRemoval",
+                description: "When Jenkins deletes workspaces, their TFVC workspaces are removed in the background, many per node and collection with a single connection.") {
+            f.checkbox (default: false)
+        }
+        f.entry(title: _("Size of the TFVC content store on each node (MB)"),
+                field: "contentStoreMegabytes",
+                description: "Files already downloaded on a node are copied from its local store instead of being downloaded again; 0 turns the store off.") {
+            f.textbox (default: 0)
+        }
+        f.entry(title: _("Size of the TFVC content store shared by the nodes (MB)"),
+                field: "sharedContentStoreMegabytes",
+                description: "Nodes copy files other nodes already downloaded from a store on the controller instead of downloading them again; requires the content store on each node. 0 turns the store off.") {
+            f.textbox (default: 0)
+        }
         f.entry(title: _("Store TFVC configuration in computer-specific folders"),
                 field: "configFolderPerNode",
                 description: "Warning: don't turn this on unless you know what you are doing!") {
@@ -0,0 +1,123 @@
+package hudson.plugins.tfs;
+
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.LabelChildOption;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.LabelItemSpec;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.LabelResult;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.VersionControlLabel;
+import hudson.Launcher;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.plugins.tfs.model.MockableVersionControlClient;
+import hudson.plugins.tfs.model.Server;
+import ms.tfs.versioncontrol.clientservices._03._LabelResult;
+import ms.tfs.versioncontrol.clientservices._03._LabelResultStatus;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Matchers;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * A class to test {@link LabelQueue}.
+ */
+public class LabelQueueTest {
+
+    private static LabelQueue.Request createRequest(final TeamFoundationServerScm scm, final String connectionKey, final String labelName) {
+        final Run run = mock(Run.class);
+        when(run.getFullDisplayName()).thenReturn("job #1");
+        when(scm.getServerUrl(run)).thenReturn("https://tfs.example.com/tfs/DefaultCollection");
+        when(scm.getConnectionKey(run)).thenReturn(connectionKey);
+        return new LabelQueue.Request(scm, run, labelName, Collections.singletonList("$/project"), 42);
+    }
+
+    @Test public void groupByConnection() throws Exception {
+        final TeamFoundationServerScm scm = mock(TeamFoundationServerScm.class);
+        final LabelQueue.Request first = createRequest(scm, "a", "first");
+        final LabelQueue.Request second = createRequest(scm, "b", "second");
+        final LabelQueue.Request third = createRequest(scm, "a", "third");
+
+        final Map<String, List<LabelQueue.Request>> actual = LabelQueue.groupByConnection(Arrays.asList(first, second, third));
+
+        Assert.assertEquals(Arrays.asList("a", "b"), Arrays.asList(actual.keySet().toArray()));
+        Assert.assertEquals(Arrays.asList(first, third), actual.get("a"));
+        Assert.assertEquals(Collections.singletonList(second), actual.get("b"));
+    }
+
+    @Test public void drain_nothingQueued() throws Exception {
+        final LabelQueue cut = new LabelQueue();
+
+        Assert.assertEquals(0, cut.drain());
+    }
+
+    @Test public void drain_createsTheLabelsOverOneConnection() throws Exception {
+        final TeamFoundationServerScm scm = mock(TeamFoundationServerScm.class);
+        final Server server = mock(Server.class);
+        final MockableVersionControlClient vcc = mock(MockableVersionControlClient.class);
+        when(server.getVersionControlClient()).thenReturn(vcc);
+        final LabelResult[] labelResults = {new LabelResult(new _LabelResult("label", "scope", _LabelResultStatus.Created))};
+        when(vcc.createLabel(
+                Matchers.<VersionControlLabel>anyObject(),
+                Matchers.<LabelItemSpec[]>anyObject(),
+                Matchers.<LabelChildOption>anyObject())).thenReturn(labelResults);
+        when(scm.createServer(isA(Launcher.class), isA(TaskListener.class), isA(Run.class))).thenReturn(server);
+        final LabelQueue cut = new LabelQueue();
+        final LabelQueue.Request first = createRequest(scm, "a", "first");
+        final LabelQueue.Request second = createRequest(scm, "a", "second");
+        cut.queue(first);
+        cut.queue(second);
+        Assert.assertTrue(first.getAction().isQueued());
+
+        Assert.assertEquals(2, cut.drain());
+
+        verify(scm, times(1)).createServer(isA(Launcher.class), isA(TaskListener.class), isA(Run.class));
+        verify(server).close();
+        Assert.assertTrue(first.getAction().isCreated());
+        Assert.assertTrue(second.getAction().isCreated());
+        Assert.assertEquals("Nothing left to create", 0, cut.drain());
+    }
+
+    @Test public void drain_labelFails() throws Exception {
+        final TeamFoundationServerScm scm = mock(TeamFoundationServerScm.class);
+        final Server server = mock(Server.class);
+        final MockableVersionControlClient vcc = mock(MockableVersionControlClient.class);
+        when(server.getVersionControlClient()).thenReturn(vcc);
+        // LabelCommand reports the label wasn't created when the server returns no results
+        when(vcc.createLabel(
+                Matchers.<VersionControlLabel>anyObject(),
+                Matchers.<LabelItemSpec[]>anyObject(),
+                Matchers.<LabelChildOption>anyObject())).thenReturn(new LabelResult[0]);
+        when(scm.createServer(isA(Launcher.class), isA(TaskListener.class), isA(Run.class))).thenReturn(server);
+        final LabelQueue cut = new LabelQueue();
+        final LabelQueue.Request request = createRequest(scm, "a", "label");
+        cut.queue(request);
+
+        Assert.assertEquals(0, cut.drain());
+
+        final TFSLabelAction action = request.getAction();
+        Assert.assertFalse(action.isQueued());
+        Assert.assertFalse(action.isCreated());
+        Assert.assertEquals("Label creation failed.", action.getError());
+        verify(server).close();
+    }
+
+    @Test public void drain_unableToConnect() throws Exception {
+        final TeamFoundationServerScm scm = mock(TeamFoundationServerScm.class);
+        when(scm.createServer(isA(Launcher.class), isA(TaskListener.class), isA(Run.class))).thenThrow(new IOException("Unreachable"));
+        final LabelQueue cut = new LabelQueue();
+        final LabelQueue.Request first = createRequest(scm, "a", "first");
+        final LabelQueue.Request second = createRequest(scm, "a", "second");
+        cut.queue(first);
+        cut.queue(second);
+
+        Assert.assertEquals(0, cut.drain());
+
+        Assert.assertEquals("Unreachable", first.getAction().getError());
+        Assert.assertEquals("Unreachable", second.getAction().getError());
+    }
+}
@@ -0,0 +1,74 @@
+package hudson.plugins.tfs;
+
+import hudson.EnvVars;
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.BuildListener;
+import hudson.model.Result;
+import hudson.model.TaskListener;
+import hudson.plugins.tfs.model.Server;
+import hudson.remoting.Callable;
+import hudson.tasks.BuildStepMonitor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * A class to test {@link TFSLabeler}.
+ */
+public class TFSLabelerTest {
+
+    @Test public void splitPaths() throws Exception {
+        Assert.assertEquals(Collections.emptyList(), TFSLabeler.splitPaths(null));
+        Assert.assertEquals(
+                Arrays.asList("$/project/a", "$/project/${BRANCH}"),
+                TFSLabeler.splitPaths("$/project/a\r\n\n  $/project/${BRANCH}  \n"));
+    }
+
+    @Test public void getRequiredMonitorService() throws Exception {
+        final TFSLabeler cut = new TFSLabeler("always", "label");
+        Assert.assertEquals(BuildStepMonitor.STEP, cut.getRequiredMonitorService());
+
+        cut.setAsynchronous(true);
+
+        Assert.assertEquals(BuildStepMonitor.NONE, cut.getRequiredMonitorService());
+    }
+
+    @Test public void perform_asynchronousWithoutRevisionState() throws Exception {
+        final TeamFoundationServerScm scm = mock(TeamFoundationServerScm.class);
+        when(scm.getProjectPath()).thenReturn("$/project");
+        final AbstractProject project = mock(AbstractProject.class);
+        when(project.getScm()).thenReturn(scm);
+        final AbstractBuild build = mock(AbstractBuild.class);
+        when(build.getRootBuild()).thenReturn(build);
+        when(build.getProject()).thenReturn(project);
+        when(build.getResult()).thenReturn(Result.SUCCESS);
+        when(build.getEnvironment(TaskListener.NULL)).thenReturn(new EnvVars());
+        final Launcher launcher = mock(Launcher.class);
+        final Server server = mock(Server.class);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final BuildListener listener = mock(BuildListener.class);
+        when(listener.getLogger()).thenReturn(new PrintStream(output, true, "UTF-8"));
+        when(scm.createServer(launcher, listener, build)).thenReturn(server);
+        when(scm.getWorkspaceName(build, null)).thenReturn("Hudson-job-MASTER");
+        final TFSLabeler cut = new TFSLabeler("always", "label");
+        cut.setAsynchronous(true);
+
+        Assert.assertTrue(cut.perform(build, launcher, listener));
+
+        Assert.assertEquals(
+                "The build didn't record which changeset it got; creating the label now." + System.lineSeparator(),
+                new String(output.toByteArray(), StandardCharsets.UTF_8));
+        verify(server).execute(isA(Callable.class));
+        verify(server).close();
+        verify(build, never()).addAction(isA(TFSLabelAction.class));
+    }
+}
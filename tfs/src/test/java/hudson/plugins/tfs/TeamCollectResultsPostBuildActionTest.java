@@ -0,0 +1,84 @@
+package hudson.plugins.tfs;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * A class to test {@link TeamCollectResultsPostBuildAction}.
+ */
+public class TeamCollectResultsPostBuildActionTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private File createWorkspace() throws Exception {
+        final File result = folder.newFolder("workspace");
+        FileUtils.writeStringToFile(new File(result, "target/surefire-reports/TEST-a.xml"), "<testsuite name='a'/>");
+        FileUtils.writeStringToFile(new File(result, "target/surefire-reports/TEST-b.xml"), "<testsuite name='b'/>");
+        FileUtils.writeStringToFile(new File(result, "target/site/cobertura/coverage.xml"), "<coverage/>");
+        FileUtils.writeStringToFile(new File(result, "pom.xml"), "<project/>");
+        return result;
+    }
+
+    @Test public void listResultFiles_relativeWithForwardSlashes() throws Exception {
+        final File workspace = createWorkspace();
+
+        final List<TeamCollectResultsPostBuildAction.ResultFile> actual =
+                TeamCollectResultsPostBuildAction.listResultFiles(workspace, "**/TEST-*.xml");
+
+        final List<String> paths = new ArrayList<String>();
+        for (final TeamCollectResultsPostBuildAction.ResultFile resultFile : actual) {
+            paths.add(resultFile.path);
+        }
+        // the order of the files depends on the file system
+        Collections.sort(paths);
+        Assert.assertEquals(Arrays.asList(
+                "target/surefire-reports/TEST-a.xml",
+                "target/surefire-reports/TEST-b.xml"), paths);
+    }
+
+    @Test public void archiveResults_singleArchiveForAllRequestedResults() throws Exception {
+        final File workspace = createWorkspace();
+        final ArrayList<TeamCollectResultsPostBuildAction.RequestedFiles> requestedFiles =
+                new ArrayList<TeamCollectResultsPostBuildAction.RequestedFiles>();
+        requestedFiles.add(new TeamCollectResultsPostBuildAction.RequestedFiles("junit", "**/TEST-*.xml"));
+        requestedFiles.add(new TeamCollectResultsPostBuildAction.RequestedFiles("cobertura", "**/coverage.xml"));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final TeamCollectResultsPostBuildAction.ArchiveResults cut =
+                new TeamCollectResultsPostBuildAction.ArchiveResults(requestedFiles, Deflater.BEST_SPEED, out);
+
+        final List<Integer> actual = cut.invoke(workspace, null);
+
+        Assert.assertEquals(Arrays.asList(2, 1), actual);
+        final List<String> names = new ArrayList<String>();
+        final ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()));
+        try {
+            ZipEntry entry = zip.getNextEntry();
+            while (entry != null) {
+                names.add(entry.getName());
+                entry = zip.getNextEntry();
+            }
+        } finally {
+            zip.close();
+        }
+        Assert.assertEquals("team-results/cobertura/target/site/cobertura/coverage.xml", names.get(2));
+        Collections.sort(names);
+        Assert.assertEquals(Arrays.asList(
+                "team-results/cobertura/target/site/cobertura/coverage.xml",
+                "team-results/junit/target/surefire-reports/TEST-a.xml",
+                "team-results/junit/target/surefire-reports/TEST-b.xml"), names);
+    }
+}
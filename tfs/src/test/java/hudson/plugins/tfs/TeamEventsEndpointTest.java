@@ -32,6 +32,20 @@ public class TeamEventsEndpointTest {
         Assert.assertEquals("https://fabrikam-fiber-inc.visualstudio.com/", collection.getBaseUrl());
     }
 
+    @Test
+    public void determinePayloadBytes_declared() throws Exception {
+        Assert.assertEquals(42, TeamEventsEndpoint.determinePayloadBytes(42, null, "{}"));
+    }
+
+    @Test
+    public void determinePayloadBytes_chunkedCountsEncodedBytes() throws Exception {
+        final String body = "{\"message\":\"caf\u00e9 \u2713\"}";
+
+        Assert.assertEquals(body.length() + 3, TeamEventsEndpoint.determinePayloadBytes(-1, null, body));
+        Assert.assertEquals(body.length() + 3, TeamEventsEndpoint.determinePayloadBytes(-1, "UTF-8", body));
+        Assert.assertEquals(-1, TeamEventsEndpoint.determinePayloadBytes(-1, null, null));
+    }
+
     @Test
     public void innerDispatch_fakedGitPushEventHandling() throws Exception {
         final Map<String, AbstractHookEvent.Factory> factories = new HashMap<String, AbstractHookEvent.Factory>();
@@ -10,6 +10,7 @@ import hudson.model.Computer;
 import hudson.model.Node;
 import hudson.model.ParametersAction;
 import hudson.plugins.tfs.model.Project;
+import hudson.plugins.tfs.model.WorkspaceMapping;
 import hudson.util.Secret;
 import hudson.util.SecretOverride;
 import hudson.util.XStream2;
@@ -238,6 +239,30 @@ public class TeamFoundationServerScmTest {
         areEqual(actual, "$/foo/", "$/bar/", "$/baz/");
     }
 
+    @Test
+    public void splitMappings_blankLinesAndCarriageReturns() {
+        final String input = "\r\n $/foo/bar : bar \r\n\r\n${ROOT}/baz\n";
+
+        final Collection<String> actual = TeamFoundationServerScm.splitMappings(input);
+
+        areEqual(actual, "$/foo/bar : bar", "${ROOT}/baz");
+    }
+
+    @Test
+    public void getAdditionalMappings_expandsBuildVariables() {
+        final AbstractBuild build = mock(AbstractBuild.class);
+        final AbstractProject project = mock(AbstractProject.class);
+        when(build.getParent()).thenReturn(project);
+        when(project.getName()).thenReturn("Job");
+        final TeamFoundationServerScm scm = new TeamFoundationServerScm(null, null, null);
+        scm.setAdditionalMappings("$/${JOB_NAME}/lib:lib");
+
+        final List<WorkspaceMapping> actual = scm.getAdditionalMappings(build);
+
+        Assert.assertEquals(1, actual.size());
+        Assert.assertEquals("$/Job/lib", actual.get(0).getProjectPath());
+    }
+
     private static <T> void areEqual(final Collection<T> actual, T... expected) {
         final Iterator<T> ai = actual.iterator();
         int ei = 0;
@@ -500,6 +525,14 @@ public class TeamFoundationServerScmTest {
         assertEquals("The workspace name wasnt resolved", "WS-RESOLVED", scm.getWorkspaceName(build, mock(Computer.class)));
     }
     
+    @Test public void toConnectionKey() {
+        assertEquals(
+                TeamFoundationServerScm.toConnectionKey("http://tfs:8080/tfs/DefaultCollection/", "user"),
+                TeamFoundationServerScm.toConnectionKey("http://TFS:8080/tfs/defaultcollection", "user"));
+        assertFalse(TeamFoundationServerScm.toConnectionKey("http://tfs:8080/tfs/DefaultCollection", "user").equals(
+                TeamFoundationServerScm.toConnectionKey("http://tfs:8080/tfs/DefaultCollection", "other")));
+    }
+
     @Test public void assertTfsWorkspaceIsntRemovedIfThereIsNoBuildWhenProcessWorkspaceBeforeDeletion() throws Exception {
         AbstractProject project = mock(AbstractProject.class);
         Node node = mock(Node.class);
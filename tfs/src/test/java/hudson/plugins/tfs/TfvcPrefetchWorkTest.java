@@ -0,0 +1,46 @@
+package hudson.plugins.tfs;
+
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Computer;
+import hudson.model.Node;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * A class to test {@link TfvcPrefetchWork}.
+ */
+public class TfvcPrefetchWorkTest {
+
+    private final AbstractProject job = mock(AbstractProject.class);
+    private final AbstractBuild build = mock(AbstractBuild.class);
+    private final Computer computer = mock(Computer.class);
+    private final Node node = mock(Node.class);
+
+    public TfvcPrefetchWorkTest() {
+        when(build.getProject()).thenReturn(job);
+        when(build.getNumber()).thenReturn(1);
+        when(node.getNodeName()).thenReturn("agent");
+    }
+
+    @Test public void isStillIdle_typical() throws Exception {
+        when(computer.isIdle()).thenReturn(true);
+
+        Assert.assertTrue(TfvcPrefetchWork.isStillIdle(build, computer, node));
+    }
+
+    @Test public void isStillIdle_jobStartedBuilding() throws Exception {
+        when(computer.isIdle()).thenReturn(true);
+        when(job.isBuilding()).thenReturn(true);
+
+        Assert.assertFalse(TfvcPrefetchWork.isStillIdle(build, computer, node));
+    }
+
+    @Test public void isStillIdle_nodeBusy() throws Exception {
+        when(computer.isIdle()).thenReturn(false);
+
+        Assert.assertFalse(TfvcPrefetchWork.isStillIdle(build, computer, node));
+    }
+}
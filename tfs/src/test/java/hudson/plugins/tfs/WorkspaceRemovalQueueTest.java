@@ -0,0 +1,158 @@
+package hudson.plugins.tfs;
+
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Node;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.plugins.tfs.model.Server;
+import hudson.plugins.tfs.model.WorkspaceLocks;
+import hudson.plugins.tfs.util.BuildWorkspaceConfigurationRetriever.BuildWorkspaceConfiguration;
+import hudson.remoting.Callable;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * A class to test {@link WorkspaceRemovalQueue}.
+ */
+public class WorkspaceRemovalQueueTest {
+
+    private final TeamFoundationServerScm scm = mock(TeamFoundationServerScm.class);
+    private final AbstractProject job = mock(AbstractProject.class);
+
+    private static Node createNode(final String nodeName) {
+        final Node result = mock(Node.class);
+        when(result.getNodeName()).thenReturn(nodeName);
+        when(result.createLauncher(isA(TaskListener.class))).thenReturn(mock(Launcher.class));
+        return result;
+    }
+
+    private static BuildWorkspaceConfiguration createConfiguration(final String workspaceName, final int buildNumber) {
+        final AbstractBuild build = mock(AbstractBuild.class);
+        when(build.getNumber()).thenReturn(buildNumber);
+        final BuildWorkspaceConfiguration result = mock(BuildWorkspaceConfiguration.class);
+        when(result.getWorkspaceName()).thenReturn(workspaceName);
+        when(result.getBuild()).thenReturn(build);
+        return result;
+    }
+
+    private WorkspaceRemovalQueue.Request createRequest(final Node node, final String connectionKey, final BuildWorkspaceConfiguration configuration) {
+        final Run run = mock(Run.class);
+        when(run.getParent()).thenReturn(job);
+        when(scm.getConnectionKey(run)).thenReturn(connectionKey);
+        when(scm.getLatestForNode(job, node, null)).thenReturn(configuration);
+        return new WorkspaceRemovalQueue.Request(scm, run, node, configuration);
+    }
+
+    private Server stubServer(final List<String> removed) throws Exception {
+        final Server result = mock(Server.class);
+        when(result.execute(isA(Callable.class))).thenReturn(removed);
+        when(scm.createServer(isA(Launcher.class), isA(TaskListener.class), isA(Run.class))).thenReturn(result);
+        return result;
+    }
+
+    @Test public void groupByNodeAndConnection() throws Exception {
+        final Node agent = createNode("agent");
+        final Node master = createNode("");
+        final WorkspaceRemovalQueue.Request first = createRequest(agent, "a", createConfiguration("ws1", 1));
+        final WorkspaceRemovalQueue.Request second = createRequest(agent, "b", createConfiguration("ws2", 1));
+        final WorkspaceRemovalQueue.Request third = createRequest(master, "a", createConfiguration("ws3", 1));
+        final WorkspaceRemovalQueue.Request fourth = createRequest(agent, "a", createConfiguration("ws4", 1));
+
+        final Map<String, List<WorkspaceRemovalQueue.Request>> actual =
+                WorkspaceRemovalQueue.groupByNodeAndConnection(Arrays.asList(first, second, third, fourth));
+
+        Assert.assertEquals(3, actual.size());
+        Assert.assertEquals(Arrays.asList(first, fourth), actual.get("agent\na"));
+        Assert.assertEquals(Collections.singletonList(second), actual.get("agent\nb"));
+        Assert.assertEquals(Collections.singletonList(third), actual.get("\na"));
+        Assert.assertEquals("master", third.getNodeName());
+    }
+
+    @Test public void remove_partialFailure() throws Exception {
+        final Node node = createNode("agent");
+        final BuildWorkspaceConfiguration removed = createConfiguration("WS1", 1);
+        final BuildWorkspaceConfiguration failed = createConfiguration("ws2", 2);
+        final List<WorkspaceRemovalQueue.Request> group = Arrays.asList(
+                createRequest(node, "a", removed),
+                createRequest(node, "a", failed));
+        final Server server = stubServer(Collections.singletonList("ws1"));
+        final WorkspaceRemovalQueue cut = new WorkspaceRemovalQueue();
+
+        Assert.assertEquals(1, cut.remove(group, 4));
+
+        verify(removed).setWorkspaceWasRemoved();
+        verify(removed).save();
+        verify(failed, never()).setWorkspaceWasRemoved();
+        verify(failed, never()).save();
+        verify(server).close();
+        Assert.assertFalse(WorkspaceLocks.get("agent", "ws1").isLocked());
+        Assert.assertFalse(WorkspaceLocks.get("agent", "ws2").isLocked());
+    }
+
+    @Test public void remove_newerBuildOwnsTheWorkspace() throws Exception {
+        final Node node = createNode("agent");
+        final BuildWorkspaceConfiguration configuration = createConfiguration("ws-newer", 1);
+        final WorkspaceRemovalQueue.Request request = createRequest(node, "a", configuration);
+        final BuildWorkspaceConfiguration newer = createConfiguration("ws-newer", 2);
+        when(scm.getLatestForNode(job, node, null)).thenReturn(newer);
+        stubServer(Collections.singletonList("ws-newer"));
+        final WorkspaceRemovalQueue cut = new WorkspaceRemovalQueue();
+
+        Assert.assertEquals(0, cut.remove(Collections.singletonList(request), 4));
+
+        verify(scm, never()).createServer(isA(Launcher.class), isA(TaskListener.class), isA(Run.class));
+        verify(configuration, never()).setWorkspaceWasRemoved();
+        Assert.assertFalse(WorkspaceLocks.get("agent", "ws-newer").isLocked());
+    }
+
+    @Test public void remove_workspaceInUse() throws Exception {
+        final Node node = createNode("agent");
+        final BuildWorkspaceConfiguration busy = createConfiguration("ws-busy", 1);
+        final BuildWorkspaceConfiguration idle = createConfiguration("ws-idle", 1);
+        final List<WorkspaceRemovalQueue.Request> group = Arrays.asList(
+                createRequest(node, "a", busy),
+                createRequest(node, "a", idle));
+        stubServer(Collections.singletonList("ws-idle"));
+        final WorkspaceRemovalQueue cut = new WorkspaceRemovalQueue();
+        // a build is getting files into the workspace, on another thread
+        final ReentrantLock lock = WorkspaceLocks.get("agent", "ws-busy");
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        final Thread build = new Thread() {
+            @Override public void run() {
+                lock.lock();
+                try {
+                    locked.countDown();
+                    done.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        };
+        build.start();
+        locked.await();
+        try {
+            Assert.assertEquals(1, cut.remove(group, 4));
+        } finally {
+            done.countDown();
+            build.join();
+        }
+
+        verify(busy, never()).setWorkspaceWasRemoved();
+        verify(idle).setWorkspaceWasRemoved();
+        Assert.assertFalse(WorkspaceLocks.get("agent", "ws-idle").isLocked());
+    }
+}
@@ -0,0 +1,143 @@
+package hudson.plugins.tfs.commands;
+
+import hudson.model.TaskListener;
+import hudson.plugins.tfs.model.ExtraSettings;
+import hudson.plugins.tfs.model.WebProxySettings;
+import hudson.plugins.tfs.telemetry.MetricFamily;
+import hudson.plugins.tfs.telemetry.MetricSeries;
+import hudson.plugins.tfs.telemetry.MetricsRegistry;
+import hudson.remoting.Callable;
+import hudson.remoting.VirtualChannel;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Arrays;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A class to test {@link CommandMetrics}.
+ */
+public class CommandMetricsTest {
+
+    private static final String COLLECTION = "https://fabrikam-fiber-inc.visualstudio.com";
+
+    @After public void tearDown() {
+        MetricsRegistry.getDefault().reset();
+    }
+
+    private static ServerConfigurationProvider createServerConfig() {
+        return new ServerConfigurationProvider() {
+            public String getUrl() {
+                return COLLECTION + "/";
+            }
+
+            public String getUserName() {
+                return null;
+            }
+
+            public String getUserPassword() {
+                return null;
+            }
+
+            public TaskListener getListener() {
+                return null;
+            }
+
+            public WebProxySettings getWebProxySettings() {
+                return null;
+            }
+
+            public ExtraSettings getExtraSettings() {
+                return ExtraSettings.DEFAULT;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static VirtualChannel createLocalChannel() throws Exception {
+        final VirtualChannel channel = mock(VirtualChannel.class);
+        when(channel.call((Callable<Object, RuntimeException>) any(Callable.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                final Callable<?, ?> callable = (Callable<?, ?>) invocation.getArguments()[0];
+                return callable.call();
+            }
+        });
+        return channel;
+    }
+
+    private static MetricSeries series(final MetricFamily family, final String operation) {
+        return family.getSeries().get(Arrays.asList(operation, COLLECTION, CommandMetrics.CONTROLLER));
+    }
+
+    @Test public void call_recordsDurationAndItems() throws Exception {
+        final AbstractCallableCommand<String, Exception> command = new AbstractCallableCommand<String, Exception>(createServerConfig()) {
+            @Override
+            public Callable<String, Exception> getCallable() {
+                return this;
+            }
+
+            @Override
+            public String getOperationName() {
+                return "test";
+            }
+
+            @Override
+            public String call() throws Exception {
+                CommandMetrics.current().setItems(42);
+                return "result";
+            }
+        };
+
+        final String actual = CommandMetrics.call(createLocalChannel(), command, COLLECTION + "/");
+
+        Assert.assertEquals("result", actual);
+        Assert.assertEquals(1, series(CommandMetrics.DURATION, "test").getCount());
+        Assert.assertEquals(42, series(CommandMetrics.ITEMS, "test").getSum());
+        Assert.assertNull(series(CommandMetrics.BYTES, "test"));
+        Assert.assertNull(series(CommandMetrics.FAILURES, "test"));
+    }
+
+    @Test public void call_recordsFailure() throws Exception {
+        final AbstractCallableCommand<String, Exception> command = new AbstractCallableCommand<String, Exception>(createServerConfig()) {
+            @Override
+            public Callable<String, Exception> getCallable() {
+                return this;
+            }
+
+            @Override
+            public String getOperationName() {
+                return "failing";
+            }
+
+            @Override
+            public String call() throws Exception {
+                throw new IllegalStateException("boom");
+            }
+        };
+
+        try {
+            CommandMetrics.call(createLocalChannel(), command, COLLECTION);
+            Assert.fail("Expected the command's exception");
+        }
+        catch (final IllegalStateException expected) {
+            Assert.assertEquals("boom", expected.getMessage());
+        }
+
+        Assert.assertEquals(1, series(CommandMetrics.DURATION, "failing").getCount());
+        Assert.assertEquals(1, series(CommandMetrics.FAILURES, "failing").getSum());
+    }
+
+    @Test public void current_outsideOfCall() throws Exception {
+        final CommandMetrics first = CommandMetrics.current();
+        final CommandMetrics second = CommandMetrics.current();
+
+        Assert.assertNotSame(first, second);
+    }
+}
@@ -0,0 +1,84 @@
+package hudson.plugins.tfs.commands;
+
+import com.microsoft.tfs.core.clients.versioncontrol.VersionControlConstants;
+import com.microsoft.tfs.core.clients.versioncontrol.WorkspacePermissions;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Workspace;
+import hudson.plugins.tfs.model.Server;
+import hudson.remoting.Callable;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Matchers;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.isA;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class DeleteWorkspacesCommandTest extends AbstractCallableCommandTest {
+
+    @Test
+    public void assertLogging() throws Exception {
+        when(server.getUserName()).thenReturn("snd\\user_cp");
+        final Workspace[] emptyWorkspaceList = new Workspace[0];
+        when(vcc.queryWorkspaces(Matchers.<String>anyObject(), Matchers.<String>anyObject(), isA(String.class), isA(WorkspacePermissions.class))).thenReturn(emptyWorkspaceList);
+        final DeleteWorkspacesCommand command = new DeleteWorkspacesCommand(server, Arrays.asList("First", "Second"), 4, "computerName") {
+            @Override
+            public Server createServer() {
+                return server;
+            }
+        };
+        final Callable<List<String>, Exception> callable = command.getCallable();
+
+        final List<String> actual = callable.call();
+
+        Assert.assertEquals(0, actual.size());
+        assertLog(
+                "Deleting 2 workspace(s) from computer 'computerName'...",
+                "Deleted 0 workspace(s)."
+        );
+    }
+
+    @Test public void cacheUpdatedOnlyForDeletedWorkspaces() throws Exception {
+        when(server.getUserName()).thenReturn("snd\\user_cp");
+        final Workspace first = mockWorkspace("First");
+        final Workspace second = mockWorkspace("Second");
+        final Workspace[] workspaces = {first, second};
+        when(vcc.queryWorkspaces(Matchers.<String>anyObject(), Matchers.<String>anyObject(), isA(String.class), isA(WorkspacePermissions.class))).thenReturn(workspaces);
+        doThrow(new RuntimeException("Workspace is locked")).when(vcc).deleteServerWorkspace(second);
+        final DeleteWorkspacesCommand command = new DeleteWorkspacesCommand(server, Arrays.asList("First", "Second"), 4, "computerName") {
+            @Override
+            public Server createServer() {
+                return server;
+            }
+        };
+        final Callable<List<String>, Exception> callable = command.getCallable();
+
+        final List<String> actual = callable.call();
+
+        Assert.assertEquals(Arrays.asList("First"), actual);
+        verify(vcc, never()).deleteWorkspace(any(Workspace.class));
+        verify(vcc).removeCachedWorkspace("First", VersionControlConstants.AUTHENTICATED_USER);
+        verify(vcc, never()).removeCachedWorkspace("Second", VersionControlConstants.AUTHENTICATED_USER);
+        assertLog(
+                "Deleting 2 workspace(s) from computer 'computerName'...",
+                "Deleted 1 workspace(s)."
+        );
+    }
+
+    private static Workspace mockWorkspace(final String name) {
+        final Workspace workspace = mock(Workspace.class);
+        when(workspace.getName()).thenReturn(name);
+        return workspace;
+    }
+
+    @Override protected AbstractCallableCommand createCommand(final ServerConfigurationProvider serverConfig) {
+        return new DeleteWorkspacesCommand(serverConfig, Arrays.asList("workspaceName"), 4, "computerName");
+    }
+}
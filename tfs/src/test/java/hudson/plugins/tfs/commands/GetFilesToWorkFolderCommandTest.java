@@ -2,17 +2,37 @@ package hudson.plugins.tfs.commands;
 
 import static org.mockito.Mockito.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 
+import com.microsoft.tfs.core.clients.versioncontrol.GetOptions;
 import com.microsoft.tfs.core.clients.versioncontrol.events.GetEvent;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.GetOperation;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.GetRequest;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.ItemType;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Workspace;
+import com.microsoft.tfs.core.clients.versioncontrol.specs.version.LatestVersionSpec;
+import com.microsoft.tfs.core.clients.versioncontrol.specs.version.VersionSpec;
+import hudson.plugins.tfs.model.ContentStore;
 import hudson.remoting.Callable;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
 import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 
 public class GetFilesToWorkFolderCommandTest extends AbstractCallableCommandTest {
 
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
     @Ignore("Finish test when we have MockableWorkspace and MockableVersionControlEventEngine")
     @Test public void assertLogging() throws Exception {
         when(vcc.queryWorkspace(
@@ -43,6 +63,45 @@ public class GetFilesToWorkFolderCommandTest extends AbstractCallableCommandTest
         );
     }
 
+    @Test public void getFromContentStore_rename() throws Exception {
+        final byte[] contents = "contents".getBytes(StandardCharsets.UTF_8);
+        final byte[] hash = MessageDigest.getInstance("MD5").digest(contents);
+        final ContentStore contentStore = new ContentStore(folder.newFolder("store"), 1024);
+        contentStore.add(hash, new ByteArrayInputStream(contents));
+        final File workFolder = folder.newFolder("workspace");
+        final File source = new File(workFolder, "old.txt");
+        FileUtils.writeByteArrayToFile(source, contents);
+        source.setReadOnly();
+        final File target = new File(workFolder, "new.txt");
+        final GetOperation operation = mock(GetOperation.class);
+        when(operation.getItemType()).thenReturn(ItemType.FILE);
+        when(operation.getHashValue()).thenReturn(hash);
+        when(operation.getSourceLocalItem()).thenReturn(source.getPath());
+        when(operation.getTargetLocalItem()).thenReturn(target.getPath());
+        when(operation.getTargetServerItem()).thenReturn("$/project/new.txt");
+        when(operation.getVersionServer()).thenReturn(42);
+        final GetEvent getEvent = mock(GetEvent.class);
+        when(getEvent.getOperation()).thenReturn(operation);
+        final GetFilesToWorkFolderCommand cut = new GetFilesToWorkFolderCommand(server, workFolder.getPath(), null, true);
+        cut.setLogger(new PrintStream(this.outputStream));
+        cut.setContentStore(contentStore);
+        final Workspace workspace = mock(Workspace.class);
+        // the preview reports the rename
+        doAnswer(new Answer<Void>() {
+            @Override public Void answer(final InvocationOnMock invocation) {
+                cut.onGet(getEvent);
+                return null;
+            }
+        }).when(workspace).get(isA(VersionSpec.class), isA(GetOptions.class));
+
+        final int actual = cut.getFromContentStore(workspace, LatestVersionSpec.INSTANCE, GetOptions.OVERWRITE);
+
+        Assert.assertEquals(1, actual);
+        Assert.assertArrayEquals(contents, FileUtils.readFileToByteArray(target));
+        Assert.assertFalse("The old copy was left behind", source.exists());
+        verify(workspace).get(isA(GetRequest[].class), eq(GetOptions.NO_DISK_UPDATE));
+    }
+
     @Override protected AbstractCallableCommand createCommand(final ServerConfigurationProvider serverConfig) {
         return new GetFilesToWorkFolderCommand(serverConfig, "workFolder", "versionSpec", false);
     }
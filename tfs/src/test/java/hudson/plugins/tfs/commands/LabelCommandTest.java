@@ -8,9 +8,14 @@ import hudson.plugins.tfs.model.Server;
 import hudson.remoting.Callable;
 import ms.tfs.versioncontrol.clientservices._03._LabelResult;
 import ms.tfs.versioncontrol.clientservices._03._LabelResultStatus;
+import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
 
+import java.util.Arrays;
+
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class LabelCommandTest extends AbstractCallableCommandTest {
@@ -40,6 +45,36 @@ public class LabelCommandTest extends AbstractCallableCommandTest {
         );
     }
 
+    @Test public void severalPathsInOneCall() throws Exception {
+        final LabelResult labelResult = new LabelResult(new _LabelResult("label", "scope", _LabelResultStatus.Created));
+        final LabelResult[] labelResults = {labelResult};
+        final ArgumentCaptor<LabelItemSpec[]> items = ArgumentCaptor.forClass(LabelItemSpec[].class);
+
+        when(vcc.createLabel(
+                Matchers.<VersionControlLabel>anyObject(),
+                Matchers.<LabelItemSpec[]>anyObject(),
+                Matchers.<LabelChildOption>anyObject())).thenReturn(labelResults);
+
+        final LabelCommand command = new LabelCommand(server, "labelName", "hudson-createLabel-TFS2013", Arrays.asList("$/project/path", "$/shared/path")) {
+            @Override
+            public Server createServer() {
+                return server;
+            }
+        };
+        final Callable<Void, Exception> callable = command.getCallable();
+
+        callable.call();
+
+        verify(vcc).createLabel(Matchers.<VersionControlLabel>anyObject(), items.capture(), Matchers.eq(LabelChildOption.FAIL));
+        Assert.assertEquals(2, items.getValue().length);
+        Assert.assertEquals("$/project/path", items.getValue()[0].getItemSpec().getItem());
+        Assert.assertEquals("$/shared/path", items.getValue()[1].getItemSpec().getItem());
+        assertLog(
+                "Creating label 'labelName' on '$/project/path, $/shared/path' as of the current version in workspace 'hudson-createLabel-TFS2013'...",
+                "Created label 'labelName'."
+        );
+    }
+
     @Override protected AbstractCallableCommand createCommand(final ServerConfigurationProvider serverConfig) {
         return new LabelCommand(serverConfig, "labelName", "workspaceName", "$/projectPath");
     }
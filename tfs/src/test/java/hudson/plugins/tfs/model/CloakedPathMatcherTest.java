@@ -0,0 +1,59 @@
+package hudson.plugins.tfs.model;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+/**
+ * A class to test {@link CloakedPathMatcher}.
+ */
+public class CloakedPathMatcherTest {
+
+    @After public void tearDown() {
+        CloakedPathMatcher.clear();
+    }
+
+    @Test public void isCloaked_prefixesIgnoringCase() throws Exception {
+        final CloakedPathMatcher cut = CloakedPathMatcher.compile(Arrays.asList(
+                "$/Project/Docs/", "$/Project/Tools/Build", "$/Project/tools/Setup/", "$/Other"));
+
+        Assert.assertTrue(cut.isCloaked("$/project/docs/readme.md"));
+        Assert.assertTrue(cut.isCloaked("$/PROJECT/TOOLS/BUILD.cmd"));
+        Assert.assertTrue(cut.isCloaked("$/Project/Tools/Setup/setup.exe"));
+        Assert.assertTrue(cut.isCloaked("$/OtherProject/file.txt"));
+        Assert.assertFalse(cut.isCloaked("$/Project/Docs"));
+        Assert.assertFalse(cut.isCloaked("$/Project/Tools/Bui"));
+        Assert.assertFalse(cut.isCloaked("$/Project/Source/Program.cs"));
+    }
+
+    @Test public void isCloaked_emptyCloakedPathCloaksEverything() throws Exception {
+        final CloakedPathMatcher cut = CloakedPathMatcher.compile(Collections.singletonList(""));
+
+        Assert.assertTrue(cut.isCloaked("$/Project/file.txt"));
+    }
+
+    @Test public void isFullyCloaked_changeSet() throws Exception {
+        final CloakedPathMatcher cut = CloakedPathMatcher.compile(Collections.singletonList("$/Project/Docs/"));
+        final ChangeSet changeSet = new ChangeSet("42", new Date(), "user", "comment");
+        changeSet.add(new ChangeSet.Item("$/Project/Docs/a.md", "edit"));
+        Assert.assertTrue(cut.isFullyCloaked(changeSet));
+
+        changeSet.add(new ChangeSet.Item("$/Project/Source/a.cs", "edit"));
+
+        Assert.assertFalse(cut.isFullyCloaked(changeSet));
+    }
+
+    @Test public void compile_cachedPerCloakedPaths() throws Exception {
+        final CloakedPathMatcher first = CloakedPathMatcher.compile(Arrays.asList("$/a", "$/b"));
+
+        final CloakedPathMatcher second = CloakedPathMatcher.compile(Arrays.asList("$/a", "$/b"));
+
+        Assert.assertSame(first, second);
+        Assert.assertNotSame(first, CloakedPathMatcher.compile(Collections.singletonList("$/a")));
+        Assert.assertNull(CloakedPathMatcher.compile(null));
+    }
+}
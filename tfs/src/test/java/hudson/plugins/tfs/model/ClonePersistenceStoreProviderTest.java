@@ -0,0 +1,98 @@
+package hudson.plugins.tfs.model;
+
+import com.microsoft.tfs.core.config.persistence.PersistenceStoreProvider;
+import com.microsoft.tfs.core.persistence.FilesystemPersistenceStore;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A class to test {@link ClonePersistenceStoreProvider}.
+ */
+public class ClonePersistenceStoreProviderTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @After public void tearDown() {
+        ClonePersistenceStoreProvider.clear();
+    }
+
+    private PersistenceStoreProvider createSource() throws Exception {
+        final File cache = folder.newFolder("Cache");
+        FileUtils.writeStringToFile(new File(cache, "VersionControl.config"), "<VersionControlServer />");
+        final File configuration = folder.newFolder("Configuration");
+        final File logs = folder.newFolder("Logs");
+        FileUtils.writeStringToFile(new File(logs, "old.log"), "old");
+        final PersistenceStoreProvider result = mock(PersistenceStoreProvider.class);
+        when(result.getCachePersistenceStore()).thenReturn(new FilesystemPersistenceStore(cache));
+        when(result.getConfigurationPersistenceStore()).thenReturn(new FilesystemPersistenceStore(configuration));
+        when(result.getLogPersistenceStore()).thenReturn(new FilesystemPersistenceStore(logs));
+        return result;
+    }
+
+    @Test public void createAndCopy_copiesOnce() throws Exception {
+        final File source = folder.newFolder("Cache");
+        FileUtils.writeStringToFile(new File(source, "VersionControl.config"), "original");
+        final FilesystemPersistenceStore store = new FilesystemPersistenceStore(source);
+
+        final File first = ClonePersistenceStoreProvider.createAndCopy(store, "agent1");
+        FileUtils.writeStringToFile(new File(first, "VersionControl.config"), "updated on agent1");
+        final File second = ClonePersistenceStoreProvider.createAndCopy(store, "agent1");
+
+        Assert.assertEquals(new File(new File(folder.getRoot(), "agent1"), "Cache"), first);
+        Assert.assertEquals(first, second);
+        Assert.assertEquals("updated on agent1", FileUtils.readFileToString(new File(second, "VersionControl.config")));
+        Assert.assertArrayEquals(new String[]{"Cache"}, new File(folder.getRoot(), "agent1").list());
+    }
+
+    @Test public void forHost_skipsLogs() throws Exception {
+        final PersistenceStoreProvider source = createSource();
+
+        final ClonePersistenceStoreProvider actual = ClonePersistenceStoreProvider.forHost(source, "agent1");
+
+        final File cache = actual.getCachePersistenceStore().getStoreFile();
+        Assert.assertTrue(new File(cache, "VersionControl.config").isFile());
+        final File logs = actual.getLogPersistenceStore().getStoreFile();
+        Assert.assertFalse(new File(logs, "old.log").exists());
+    }
+
+    @Test public void forHost_concurrentCallersShareOneClone() throws Exception {
+        final PersistenceStoreProvider source = createSource();
+        final int threadCount = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            @SuppressWarnings("unchecked")
+            final Future<ClonePersistenceStoreProvider>[] futures = new Future[threadCount];
+            for (int i = 0; i < threadCount; i++) {
+                futures[i] = executor.submit(new Callable<ClonePersistenceStoreProvider>() {
+                    @Override
+                    public ClonePersistenceStoreProvider call() throws Exception {
+                        return ClonePersistenceStoreProvider.forHost(source, "agent1");
+                    }
+                });
+            }
+            final ClonePersistenceStoreProvider expected = futures[0].get();
+            for (final Future<ClonePersistenceStoreProvider> future : futures) {
+                Assert.assertSame(expected, future.get());
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+        for (final String name : new File(folder.getRoot(), "agent1").list()) {
+            Assert.assertFalse(name, name.contains(".tmp-"));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package hudson.plugins.tfs.model;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A class to test {@link ContentStore}.
+ */
+public class ContentStoreTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private File createFile(final String name, final String contents) throws Exception {
+        final File result = new File(folder.getRoot(), name);
+        FileUtils.writeStringToFile(result, contents, StandardCharsets.UTF_8);
+        return result;
+    }
+
+    @Test public void add_thenCopyTo() throws Exception {
+        final ContentStore cut = new ContentStore(folder.newFolder("store"), 1024);
+        final File source = createFile("source.txt", "contents");
+        final byte[] hash = ContentStore.digest(source);
+        final File target = new File(folder.getRoot(), "workspace/sub/target.txt");
+
+        Assert.assertFalse(cut.copyTo(hash, target));
+        Assert.assertTrue(cut.add(hash, source));
+        Assert.assertFalse("Already in the store", cut.add(hash, source));
+        Assert.assertTrue(cut.copyTo(hash, target));
+
+        Assert.assertEquals("contents", FileUtils.readFileToString(target, StandardCharsets.UTF_8));
+    }
+
+    @Test public void add_mismatchedHash() throws Exception {
+        final ContentStore cut = new ContentStore(folder.newFolder("store"), 1024);
+        final File source = createFile("source.txt", "contents");
+        final byte[] hash = ContentStore.digest(createFile("other.txt", "other contents"));
+
+        Assert.assertFalse(cut.add(hash, source));
+        Assert.assertFalse(cut.getFile(hash).exists());
+    }
+
+    @Test public void add_streamThenCopyToStream() throws Exception {
+        final ContentStore cut = new ContentStore(folder.newFolder("store"), 1024);
+        final byte[] contents = "streamed contents".getBytes(StandardCharsets.UTF_8);
+        final byte[] hash = ContentStore.digest(createFile("source.txt", "streamed contents"));
+        final ByteArrayOutputStream target = new ByteArrayOutputStream();
+
+        Assert.assertFalse(cut.copyTo(hash, target));
+        Assert.assertFalse("Truncated", cut.add(hash, new ByteArrayInputStream(contents, 0, 8)));
+        Assert.assertTrue(cut.add(hash, new ByteArrayInputStream(contents)));
+        Assert.assertTrue(cut.copyTo(hash, target));
+
+        Assert.assertArrayEquals(contents, target.toByteArray());
+        Assert.assertEquals("No temporary file left behind", 1, cut.getFile(hash).getParentFile().list().length);
+    }
+
+    @Test public void evict_leastRecentlyUsedFirst() throws Exception {
+        final ContentStore cut = new ContentStore(folder.newFolder("store"), 25);
+        final byte[] first = addTenBytes(cut, "first.txt", "0123456789", 1000);
+        final byte[] second = addTenBytes(cut, "second.txt", "abcdefghij", 2000);
+        Assert.assertEquals(0, cut.evict());
+        final byte[] third = addTenBytes(cut, "third.txt", "ABCDEFGHIJ", 3000);
+        // using the first one makes the second one the least recently used
+        Assert.assertTrue(cut.copyTo(first, new File(folder.getRoot(), "copy.txt")));
+
+        Assert.assertEquals(30, cut.getSize());
+
+        Assert.assertEquals(10, cut.evict());
+
+        Assert.assertEquals(20, cut.getSize());
+        Assert.assertTrue(cut.getFile(first).exists());
+        Assert.assertFalse(cut.getFile(second).exists());
+        Assert.assertTrue(cut.getFile(third).exists());
+    }
+
+    @Test public void evict_sizeSharedByTheStoresOfAFolder() throws Exception {
+        final File root = folder.newFolder("existing");
+        final ContentStore previous = new ContentStore(root, 15);
+        addTenBytes(previous, "first.txt", "0123456789", 1000);
+
+        final ContentStore cut = new ContentStore(root, 15);
+
+        Assert.assertEquals("Shared by the stores of the same folder", 10, cut.getSize());
+        addTenBytes(cut, "second.txt", "abcdefghij", 2000);
+        Assert.assertEquals(10, cut.evict());
+        Assert.assertEquals(10, previous.getSize());
+    }
+
+    private byte[] addTenBytes(final ContentStore store, final String name, final String contents, final long lastUsed) throws Exception {
+        final File source = createFile(name, contents);
+        final byte[] hash = ContentStore.digest(source);
+        Assert.assertTrue(store.add(hash, source));
+        Assert.assertTrue(store.getFile(hash).setLastModified(lastUsed));
+        return hash;
+    }
+
+    @Test public void create_turnedOff() throws Exception {
+        Assert.assertNull(ContentStore.create(null));
+        Assert.assertNull(ContentStore.create(ExtraSettings.DEFAULT));
+    }
+}
@@ -0,0 +1,142 @@
+package hudson.plugins.tfs.model;
+
+import com.microsoft.teamfoundation.core.webapi.model.TeamProjectReference;
+import com.microsoft.teamfoundation.sourcecontrol.webapi.model.GitRepository;
+import org.eclipse.jgit.transport.URIish;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * A class to test {@link GitRepositoryCatalog}.
+ */
+public class GitRepositoryCatalogTest {
+
+    private static final URI COLLECTION_URI = URI.create("https://fabrikam-fiber-inc.visualstudio.com/");
+    private static final UUID REPO_ID = UUID.fromString("278d5cd2-584d-4b63-824a-2ba458937249");
+
+    @After public void tearDown() {
+        GitRepositoryCatalog.clear();
+    }
+
+    private static GitRepository createRepository(final UUID id, final String name, final String remoteUrl) {
+        return createRepository(id, "project", name, remoteUrl);
+    }
+
+    private static GitRepository createRepository(final UUID id, final String projectName, final String name, final String remoteUrl) {
+        final TeamProjectReference project = new TeamProjectReference();
+        project.setName(projectName);
+        final GitRepository result = new GitRepository();
+        result.setId(id);
+        result.setProject(project);
+        result.setName(name);
+        result.setRemoteUrl(remoteUrl);
+        return result;
+    }
+
+    // like GitPushEvent.decodeGitPush, the repository's name goes in repoId
+    private static GitCodePushedEventArgs createArgs(final String repoUri) {
+        final GitCodePushedEventArgs result = new GitCodePushedEventArgs();
+        result.collectionUri = COLLECTION_URI;
+        result.repoUri = URI.create(repoUri);
+        result.projectId = "project";
+        result.repoId = "repo";
+        return result;
+    }
+
+    @Test public void forCollection_ignoresTrailingSlashAndCase() throws Exception {
+        final GitRepositoryCatalog a = GitRepositoryCatalog.forCollection(COLLECTION_URI);
+        final GitRepositoryCatalog b = GitRepositoryCatalog.forCollection(
+                URI.create("https://Fabrikam-Fiber-Inc.visualstudio.com"));
+
+        Assert.assertSame(a, b);
+    }
+
+    @Test public void forCollection_limitsTheCataloguesKept() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            GitRepositoryCatalog.forCollection(URI.create("https://tfs" + i + ".example.com/tfs/DefaultCollection"));
+        }
+
+        final GitRepositoryCatalog actual = GitRepositoryCatalog.forCollection(COLLECTION_URI);
+
+        Assert.assertNotNull(actual);
+        Assert.assertNull(GitRepositoryCatalog.find(COLLECTION_URI));
+        Assert.assertEquals(100, GitRepositoryCatalog.all().size());
+    }
+
+    @Test public void update_indexesByIdNameAndUrl() throws Exception {
+        final GitRepository repository = createRepository(REPO_ID, "Fabrikam",
+                "https://fabrikam-fiber-inc.visualstudio.com/DefaultCollection/Fabrikam/_git/Fabrikam");
+        final GitRepositoryCatalog cut = GitRepositoryCatalog.forCollection(COLLECTION_URI);
+
+        cut.update(Arrays.asList(repository));
+
+        Assert.assertEquals(1, cut.size());
+        Assert.assertSame(repository, cut.findById(REPO_ID.toString().toUpperCase()));
+        Assert.assertEquals(Arrays.asList(repository), cut.findByName("fabrikam"));
+        Assert.assertSame(repository, cut.findByUrl(
+                URI.create("https://fabrikam-fiber-inc.visualstudio.com/fabrikam/_git/fabrikam")));
+        Assert.assertNull(cut.findByUrl(
+                URI.create("https://fabrikam-fiber-inc.visualstudio.com/fabrikam/_git/other")));
+    }
+
+    @Test public void matcherFor_eventUrl() throws Exception {
+        final GitCodePushedEventArgs args = createArgs(
+                "https://fabrikam-fiber-inc.visualstudio.com/DefaultCollection/project/_git/repo");
+
+        final GitRepositoryCatalog.RepoMatcher cut = GitRepositoryCatalog.matcherFor(args);
+
+        Assert.assertTrue(cut.matches(new URIish("https://fabrikam-fiber-inc.visualstudio.com/project/_git/repo")));
+        Assert.assertTrue(cut.matches(new URIish("ssh://fabrikam-fiber-inc@fabrikam-fiber-inc.visualstudio.com/project/_git/repo")));
+        Assert.assertFalse(cut.matches(new URIish("https://fabrikam-fiber-inc.visualstudio.com/project/_git/other")));
+    }
+
+    @Test public void matcherFor_differentPorts() throws Exception {
+        final GitCodePushedEventArgs args = createArgs(
+                "http://tfs.example.com:8080/tfs/DefaultCollection/project/_git/repo");
+
+        final GitRepositoryCatalog.RepoMatcher cut = GitRepositoryCatalog.matcherFor(args);
+
+        Assert.assertFalse(cut.matches(new URIish("http://tfs.example.com:8081/tfs/DefaultCollection/project/_git/repo")));
+    }
+
+    @Test public void matcherFor_doesNotCreateCatalogues() throws Exception {
+        final GitCodePushedEventArgs args = createArgs(
+                "https://fabrikam-fiber-inc.visualstudio.com/DefaultCollection/project/_git/repo");
+
+        GitRepositoryCatalog.matcherFor(args);
+
+        Assert.assertNull(GitRepositoryCatalog.find(COLLECTION_URI));
+    }
+
+    @Test public void findForEvent_sameNameInOtherProject() throws Exception {
+        final GitRepository repository = createRepository(REPO_ID, "project", "repo",
+                "https://fabrikam-fiber-inc.visualstudio.com/project/_git/repo");
+        final GitRepository other = createRepository(UUID.randomUUID(), "other", "repo",
+                "https://fabrikam-fiber-inc.visualstudio.com/other/_git/repo");
+        final GitRepositoryCatalog cut = GitRepositoryCatalog.forCollection(COLLECTION_URI);
+        cut.update(Arrays.asList(other, repository));
+        final GitCodePushedEventArgs args = createArgs(
+                "https://fabrikam-fiber-inc.visualstudio.com/_git/repo");
+
+        Assert.assertSame(repository, cut.findForEvent(args));
+
+        args.projectId = "unknown";
+        Assert.assertNull(cut.findForEvent(args));
+    }
+
+    @Test public void matcherFor_catalogueRemoteUrl() throws Exception {
+        GitRepositoryCatalog.forCollection(COLLECTION_URI).update(Arrays.asList(createRepository(REPO_ID, "repo",
+                "https://fabrikam-fiber-inc.visualstudio.com/project/_git/repo")));
+        final GitCodePushedEventArgs args = createArgs(
+                "https://fabrikam-fiber-inc.visualstudio.com/_git/repo");
+
+        final GitRepositoryCatalog.RepoMatcher cut = GitRepositoryCatalog.matcherFor(args);
+
+        Assert.assertTrue(cut.matches(new URIish("https://fabrikam-fiber-inc.visualstudio.com/project/_git/repo")));
+    }
+}
@@ -1,12 +1,18 @@
 package hudson.plugins.tfs.model;
 
 import com.microsoft.tfs.core.persistence.PersistenceStore;
+import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Matchers;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.mockito.Matchers.isA;
 import static org.mockito.Mockito.mock;
@@ -16,6 +22,8 @@ import static org.mockito.Mockito.when;
 
 public class NativeLibraryManagerTest {
 
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
     @Test public void buildPathToNativeFile_threeComponents() throws Exception {
 
         final String actual = NativeLibraryManager.buildPathToNativeFile("win32", "x86", "native_auth.dll");
@@ -61,4 +69,57 @@ public class NativeLibraryManagerTest {
 
         verify(extractor, times(82)).extractFile(isA(String.class), Matchers.<String>anyObject(), isA(String.class));
     }
+
+    @Test public void selectNativeFiles_linux64() throws Exception {
+
+        final List<String> actual = NativeLibraryManager.selectNativeFiles("Linux", "amd64");
+
+        Assert.assertEquals(5, actual.size());
+        Assert.assertEquals("native/linux/x86_64/libnative_auth.so", actual.get(0));
+    }
+
+    @Test public void selectNativeFiles_macosx() throws Exception {
+
+        final List<String> actual = NativeLibraryManager.selectNativeFiles("Mac OS X", "x86_64");
+
+        Assert.assertEquals(6, actual.size());
+        Assert.assertEquals("native/macosx/libnative_auth.jnilib", actual.get(0));
+    }
+
+    @Test public void selectNativeFiles_unknownPlatform() throws Exception {
+
+        final List<String> actual = NativeLibraryManager.selectNativeFiles("Plan 9", "mips");
+
+        Assert.assertEquals(82, actual.size());
+    }
+
+    @Test public void extractToCache_reusesVerifiedCopy() throws Exception {
+        final List<String> paths = Arrays.asList("native/win32/x86/native_auth.dll");
+        final File root = folder.getRoot();
+
+        final File first = NativeLibraryManager.extractToCache(root, paths);
+        final File extracted = new File(first, "win32/x86/native_auth.dll");
+        Assert.assertEquals(67240, extracted.length());
+        Assert.assertTrue(extracted.setLastModified(0));
+
+        final File second = NativeLibraryManager.extractToCache(root, paths);
+
+        Assert.assertEquals(first, second);
+        Assert.assertEquals(0, extracted.lastModified());
+        Assert.assertEquals(1, root.list().length);
+    }
+
+    @Test public void extractToCache_replacesCorruptCopy() throws Exception {
+        final List<String> paths = Arrays.asList("native/win32/x86/native_auth.dll");
+        final File root = folder.getRoot();
+        final File first = NativeLibraryManager.extractToCache(root, paths);
+        final File extracted = new File(first, "win32/x86/native_auth.dll");
+        FileUtils.writeStringToFile(extracted, "truncated");
+
+        final File second = NativeLibraryManager.extractToCache(root, paths);
+
+        Assert.assertEquals(first, second);
+        Assert.assertEquals(67240, extracted.length());
+        Assert.assertEquals(1, root.list().length);
+    }
 }
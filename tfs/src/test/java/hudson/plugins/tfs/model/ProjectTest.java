@@ -8,6 +8,7 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
@@ -15,6 +16,8 @@ import java.util.Date;
 import java.util.List;
 
 import com.microsoft.tfs.core.clients.versioncontrol.specs.version.ChangesetVersionSpec;
+import com.microsoft.tfs.core.clients.versioncontrol.specs.version.DateVersionSpec;
+import com.microsoft.tfs.core.clients.versioncontrol.specs.version.VersionSpec;
 import hudson.model.User;
 import hudson.plugins.tfs.IntegrationTestHelper;
 import hudson.plugins.tfs.IntegrationTests;
@@ -237,6 +240,140 @@ public class ProjectTest extends SwedishLocaleTestCase {
         Assert.assertEquals(true, actual);
     }
 
+    @Test
+    public void removeNestedPaths() {
+        final List<String> paths = Arrays.asList("$/MyProject/A", "$/MyProject/A/2", "$/myproject/a/", "$/MyProject/AB", "$/MyProject/B");
+
+        final List<String> actual = Project.removeNestedPaths(paths);
+
+        assertEquals(Arrays.asList("$/MyProject/A", "$/MyProject/AB", "$/MyProject/B"), actual);
+    }
+
+    @Test
+    public void mergeHistories_latestFirstWithoutDuplicates() {
+        final List<ChangeSet> historyOfA = Arrays.asList(
+                createChangeSet(47, "$/MyProject/A/foo"),
+                createChangeSet(44, "$/MyProject/A/bar"),
+                createChangeSet(42, "$/MyProject/A/foo"));
+        final List<ChangeSet> historyOfB = Arrays.asList(
+                createChangeSet(46, "$/MyProject/B/foo"),
+                createChangeSet(44, "$/MyProject/B/bar"));
+        final List<ChangeSet> historyOfC = Collections.emptyList();
+
+        final List<ChangeSet> actual = Project.mergeHistories(Arrays.asList(historyOfA, historyOfB, historyOfC), Integer.MAX_VALUE);
+
+        assertEquals(4, actual.size());
+        assertEquals("47", actual.get(0).getVersion());
+        assertEquals("46", actual.get(1).getVersion());
+        assertEquals("44", actual.get(2).getVersion());
+        assertEquals(Arrays.asList("$/MyProject/A/bar", "$/MyProject/B/bar"), actual.get(2).getAffectedPaths());
+        assertEquals("42", actual.get(3).getVersion());
+    }
+
+    @Test
+    public void mergeHistories_maxCount() {
+        final List<ChangeSet> historyOfA = Arrays.asList(
+                createChangeSet(44, "$/MyProject/A/bar"),
+                createChangeSet(42, "$/MyProject/A/foo"));
+        final List<ChangeSet> historyOfB = Arrays.asList(
+                createChangeSet(44, "$/MyProject/B/bar"),
+                createChangeSet(43, "$/MyProject/B/foo"));
+
+        final List<ChangeSet> actual = Project.mergeHistories(Arrays.asList(historyOfA, historyOfB), 1);
+
+        assertEquals(1, actual.size());
+        assertEquals("44", actual.get(0).getVersion());
+        assertEquals(2, actual.get(0).getItems().size());
+    }
+
+    /**
+     * A project whose history queries return canned histories and are recorded.
+     */
+    private static class FakeHistoryProject extends Project {
+        private final List<List<ChangeSet>> histories;
+        private final List<VersionSpec> fromVersions = new ArrayList<VersionSpec>();
+
+        @SafeVarargs
+        FakeHistoryProject(final Server server, final List<ChangeSet>... histories) {
+            super(server, "$/MyProject");
+            this.histories = new ArrayList<List<ChangeSet>>(Arrays.asList(histories));
+        }
+
+        @Override
+        List<ChangeSet> getVCCHistory(final VersionSpec itemVersion, final VersionSpec fromVersion, final VersionSpec toVersion, final boolean includeFileDetails, final int maxCount) {
+            fromVersions.add(fromVersion);
+            return histories.remove(0);
+        }
+    }
+
+    private static Server createServer() {
+        final Server server = mock(Server.class);
+        when(server.getUrl()).thenReturn("http://tfs.example.com:8080/tfs/DefaultCollection");
+        return server;
+    }
+
+    @Test
+    public void getHistorySince_oneQueryForChangesetAndChanges() {
+        HistoryCache.clear();
+        final FakeHistoryProject project = new FakeHistoryProject(createServer(), Arrays.asList(
+                createChangeSet(45, "$/MyProject/foo"),
+                createChangeSet(44, "$/MyProject/bar"),
+                createChangeSet(42, "$/MyProject/foo")));
+        final DateVersionSpec buildVersion = new DateVersionSpec(Util.getCalendar(2016, 1, 5, 11, 0, 0));
+
+        final BuildHistory actual = project.getHistorySince(42, buildVersion);
+
+        assertEquals(45, actual.getChangesetVersion());
+        assertEquals(2, actual.getChangeSets().size());
+        assertEquals("44", actual.getChangeSets().get(1).getVersion());
+        assertEquals(1, project.fromVersions.size());
+        assertEquals(42, ((ChangesetVersionSpec) project.fromVersions.get(0)).getChangeset());
+    }
+
+    @Test
+    public void getHistorySince_noChangesSincePreviousBuild() {
+        HistoryCache.clear();
+        final FakeHistoryProject project = new FakeHistoryProject(createServer(), Arrays.asList(
+                createChangeSet(42, "$/MyProject/foo")));
+        final DateVersionSpec buildVersion = new DateVersionSpec(Util.getCalendar(2016, 1, 5, 11, 0, 0));
+
+        final BuildHistory actual = project.getHistorySince(42, buildVersion);
+
+        assertEquals(42, actual.getChangesetVersion());
+        assertEquals(0, actual.getChangeSets().size());
+    }
+
+    @Test
+    public void getHistorySince_previousChangesetOutsideProject() {
+        HistoryCache.clear();
+        final FakeHistoryProject project = new FakeHistoryProject(createServer(), Collections.<ChangeSet>emptyList());
+        final DateVersionSpec buildVersion = new DateVersionSpec(Util.getCalendar(2016, 1, 5, 11, 0, 0));
+
+        assertNull(project.getHistorySince(42, buildVersion));
+    }
+
+    @Test
+    public void getHistorySince_onlyQueriesChangesSincePoll() {
+        HistoryCache.clear();
+        final Server server = createServer();
+        final List<ChangeSet> polled = Arrays.asList(
+                createChangeSet(44, "$/MyProject/bar"),
+                createChangeSet(42, "$/MyProject/foo"));
+        HistoryCache.put(server.getUrl(), Collections.singletonList("$/MyProject"), 42, polled);
+        final FakeHistoryProject project = new FakeHistoryProject(server, Arrays.asList(
+                createChangeSet(45, "$/MyProject/foo"),
+                createChangeSet(44, "$/MyProject/bar")));
+        final DateVersionSpec buildVersion = new DateVersionSpec(Util.getCalendar(2016, 1, 5, 11, 0, 0));
+
+        final BuildHistory actual = project.getHistorySince(42, buildVersion);
+
+        assertEquals(45, actual.getChangesetVersion());
+        assertEquals(2, actual.getChangeSets().size());
+        assertEquals("45", actual.getChangeSets().get(0).getVersion());
+        assertEquals("44", actual.getChangeSets().get(1).getVersion());
+        assertEquals(44, ((ChangesetVersionSpec) project.fromVersions.get(0)).getChangeset());
+    }
+
     @Category(IntegrationTests.class)
     @Test public void getDetailedHistory_singleVersionSpec() throws URISyntaxException, IOException {
         final IntegrationTestHelper helper = new IntegrationTestHelper();
@@ -0,0 +1,35 @@
+package hudson.plugins.tfs.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * A class to test {@link SharedContentStore}.
+ */
+public class SharedContentStoreTest {
+
+    @Test public void toHash_md5() throws Exception {
+        final byte[] actual = SharedContentStore.toHash("0123456789abcdef0123456789abcdef");
+
+        Assert.assertEquals(16, actual.length);
+        Assert.assertEquals((byte) 0xef, actual[15]);
+    }
+
+    @Test public void takeOffered_onlyWhatTheChannelWasToldAbout() throws Exception {
+        final Object channel = new Object();
+        final Object otherChannel = new Object();
+        final String key = "0123456789abcdef0123456789abcdef";
+        SharedContentStore.offer(channel, Arrays.asList(key));
+
+        Assert.assertFalse("Not offered to the other agent", SharedContentStore.takeOffered(otherChannel, key));
+        Assert.assertFalse("Never offered", SharedContentStore.takeOffered(channel, "fedcba9876543210fedcba9876543210"));
+        Assert.assertTrue(SharedContentStore.takeOffered(channel, key));
+        Assert.assertFalse("Only once per query", SharedContentStore.takeOffered(channel, key));
+    }
+
+    @Test(expected = IllegalArgumentException.class) public void toHash_notAPath() throws Exception {
+        SharedContentStore.toHash("../../../secrets/master.key");
+    }
+}
@@ -3,6 +3,7 @@ package hudson.plugins.tfs.model;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -26,4 +27,17 @@ public class WorkspaceConfigurationTest {
         assertThat(one, not(new WorkspaceConfiguration("server", "workspace", "project", cloakList, "aworkfolder")));
         assertThat(one, not(new WorkspaceConfiguration("server", "workspace", "project", EMPTY_CLOAKED_PATHS_LIST, "workfolder")));
     }
+
+    @Test public void assertAdditionalMappingsAreCompared() {
+        final List<String> cloakList = Collections.singletonList("cloak");
+        final List<WorkspaceMapping> mappings = Collections.singletonList(new WorkspaceMapping("$/shared", "shared"));
+        final List<WorkspaceMapping> noMappings = Collections.emptyList();
+
+        WorkspaceConfiguration one = new WorkspaceConfiguration("server", "workspace", "project", cloakList, mappings, "workfolder");
+        assertThat(one, is(new WorkspaceConfiguration("server", "workspace", "project", cloakList, mappings, "workfolder")));
+        assertThat(one, not(new WorkspaceConfiguration("server", "workspace", "project", cloakList, "workfolder")));
+        assertThat(new WorkspaceConfiguration("server", "workspace", "project", cloakList, noMappings, "workfolder"),
+                is(new WorkspaceConfiguration("server", "workspace", "project", cloakList, "workfolder")));
+        assertThat(one.getProjectPaths(), is(Arrays.asList("project", "$/shared")));
+    }
 }
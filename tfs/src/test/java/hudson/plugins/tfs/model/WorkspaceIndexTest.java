@@ -0,0 +1,64 @@
+package hudson.plugins.tfs.model;
+
+import hudson.model.AbstractBuild;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A class to test {@link WorkspaceIndex}.
+ */
+public class WorkspaceIndexTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private static AbstractBuild createBuild(final int number, final String nodeName, final AbstractBuild previous, final boolean hasConfiguration) {
+        final AbstractBuild result = mock(AbstractBuild.class);
+        when(result.getNumber()).thenReturn(number);
+        when(result.getBuiltOnStr()).thenReturn(nodeName);
+        when(result.getPreviousBuild()).thenReturn(previous);
+        if (hasConfiguration) {
+            final WorkspaceConfiguration configuration = new WorkspaceConfiguration("serverUrl", "workspace-" + nodeName, "projectPath", Collections.<String>emptyList(), "workfolder");
+            when(result.getAction(WorkspaceConfiguration.class)).thenReturn(configuration);
+        }
+        return result;
+    }
+
+    @Test public void rebuild_latestPerNode() throws Exception {
+        final AbstractBuild first = createBuild(1, "node1", null, true);
+        final AbstractBuild second = createBuild(2, "", first, true);
+        final AbstractBuild third = createBuild(3, "node1", second, true);
+        final AbstractBuild fourth = createBuild(4, "node2", third, false);
+
+        final Map<String, Integer> actual = WorkspaceIndex.rebuild(fourth);
+
+        Assert.assertEquals(2, actual.size());
+        Assert.assertEquals(Integer.valueOf(3), actual.get("node1"));
+        Assert.assertEquals("The master's name is empty", Integer.valueOf(2), actual.get(""));
+    }
+
+    @Test public void record_keepsLatestAndPersists() throws Exception {
+        final File file = new File(folder.getRoot(), WorkspaceIndex.FILE_NAME);
+        final WorkspaceIndex cut = WorkspaceIndex.load(file, null);
+        Assert.assertTrue(cut.getNodeNames().isEmpty());
+
+        cut.record("node1", 5);
+        cut.record("node1", 4);
+        cut.record("node2", 6);
+
+        Assert.assertEquals(Integer.valueOf(5), cut.getBuildNumber("node1"));
+        final WorkspaceIndex reloaded = WorkspaceIndex.load(file, null);
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("node1", "node2")), reloaded.getNodeNames());
+        Assert.assertEquals(Integer.valueOf(6), reloaded.getBuildNumber("node2"));
+    }
+}
@@ -0,0 +1,62 @@
+package hudson.plugins.tfs.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A class to test {@link WorkspaceMapping}.
+ */
+public class WorkspaceMappingTest {
+
+    private static void assertInvalid(final String line) {
+        try {
+            WorkspaceMapping.parse(line);
+            Assert.fail("An IllegalArgumentException should have been thrown for " + line);
+        } catch (final IllegalArgumentException ignored) {
+            // expected
+        }
+    }
+
+    @Test public void parse_defaultsToLastSegment() throws Exception {
+        final WorkspaceMapping actual = WorkspaceMapping.parse("  $/Example/libraries/common/ ");
+
+        Assert.assertEquals("$/Example/libraries/common", actual.getProjectPath());
+        Assert.assertEquals("common", actual.getLocalPath());
+    }
+
+    @Test public void parse_withLocalFolder() throws Exception {
+        final WorkspaceMapping actual = WorkspaceMapping.parse("$/Shared/build/tools : build\\tools");
+
+        Assert.assertEquals("$/Shared/build/tools", actual.getProjectPath());
+        Assert.assertEquals("build/tools", actual.getLocalPath());
+    }
+
+    @Test public void parse_invalid() throws Exception {
+        assertInvalid("Example/libraries");
+        assertInvalid("$/");
+        assertInvalid("$/Example/libraries: ../outside");
+        assertInvalid("$/Example/libraries: /absolute");
+        assertInvalid("$/Example/libraries: C:\\absolute");
+        assertInvalid("$/Example/libraries: .");
+    }
+
+    @Test public void equals_serverPathIgnoresCase() throws Exception {
+        final WorkspaceMapping one = new WorkspaceMapping("$/Example/Libraries", "libraries");
+        final WorkspaceMapping two = new WorkspaceMapping("$/example/libraries", "libraries");
+
+        Assert.assertEquals(one, two);
+        Assert.assertEquals(one.hashCode(), two.hashCode());
+        Assert.assertNotEquals(one, new WorkspaceMapping("$/Example/Libraries", "Libraries"));
+    }
+
+    @Test public void toServerPaths_projectPathFirst() throws Exception {
+        final List<WorkspaceMapping> mappings = WorkspaceMapping.parse(Arrays.asList("$/Shared/tools", "$/Example/libraries: lib"));
+
+        final List<String> actual = WorkspaceMapping.toServerPaths("$/Example/app", mappings);
+
+        Assert.assertEquals(Arrays.asList("$/Example/app", "$/Shared/tools", "$/Example/libraries"), actual);
+    }
+}
@@ -0,0 +1,167 @@
+package hudson.plugins.tfs.model;
+
+import hudson.FilePath;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * A class to test {@link WorkspacePool}.
+ */
+public class WorkspacePoolTest {
+
+    private static final List<String> NO_CLOAKED_PATHS = Collections.emptyList();
+    private static final List<WorkspaceMapping> NO_MAPPINGS = Collections.emptyList();
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test public void toKey_sameFoldersIgnoringCase() throws Exception {
+        final String key = WorkspacePool.toKey("http://tfs:8080/tfs/", "$/Project/Main", NO_CLOAKED_PATHS, NO_MAPPINGS);
+
+        Assert.assertEquals(key, WorkspacePool.toKey("http://TFS:8080/tfs", "$/project/main", NO_CLOAKED_PATHS, NO_MAPPINGS));
+        Assert.assertNotEquals(key, WorkspacePool.toKey("http://tfs:8080/tfs", "$/Project/Dev", NO_CLOAKED_PATHS, NO_MAPPINGS));
+        Assert.assertNotEquals(key, WorkspacePool.toKey("http://tfs:8080/tfs", "$/Project/Main", Arrays.asList("$/Project/Main/docs"), NO_MAPPINGS));
+        Assert.assertNotEquals(key, WorkspacePool.toKey("http://tfs:8080/tfs", "$/Project/Main",
+                NO_CLOAKED_PATHS, Collections.singletonList(new WorkspaceMapping("$/Shared", "shared"))));
+    }
+
+    @Test public void getWorkspaceName_validForTfvc() throws Exception {
+        final WorkspacePool cut = new WorkspacePool(new FilePath(folder.getRoot()), "agent:1. ");
+
+        final String actual = cut.getWorkspaceName("0123456789ab");
+
+        Assert.assertEquals("Hudson-Pool-0123456789ab-agent_1_", actual);
+        Assert.assertEquals(new File(folder.getRoot(), "tfs-workspace-pool/0123456789ab"),
+                new File(cut.getFolder("0123456789ab").getRemote()));
+    }
+
+    @Test public void lease_oneBuildAtATime() throws Exception {
+        final WorkspacePool cut = new WorkspacePool(new FilePath(folder.getRoot()), "lease_oneBuildAtATime");
+        final WorkspacePool.Lease first = cut.lease("key");
+        final CountDownLatch leased = new CountDownLatch(1);
+        final AtomicBoolean firstReturned = new AtomicBoolean();
+        final Thread other = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    final WorkspacePool.Lease second = cut.lease("key");
+                    try {
+                        Assert.assertTrue(firstReturned.get());
+                    } finally {
+                        second.close();
+                    }
+                    leased.countDown();
+                } catch (final InterruptedException ignored) {
+                    // the test failed
+                }
+            }
+        };
+        other.start();
+
+        Assert.assertFalse(leased.await(200, TimeUnit.MILLISECONDS));
+        firstReturned.set(true);
+        first.close();
+
+        Assert.assertTrue(leased.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test public void findIdle_onlyTheCollectionsWorkspacesLeasedLongAgo() throws Exception {
+        final WorkspacePool cut = new WorkspacePool(new FilePath(folder.getRoot()), "findIdle");
+        for (final String key : Arrays.asList("old", "recent", "other")) {
+            final WorkspacePool.Lease lease = cut.lease(key);
+            try {
+                lease.recordUse("other".equals(key) ? "http://other:8080/tfs" : "http://tfs:8080/tfs/");
+            } finally {
+                lease.close();
+            }
+        }
+        final File poolFolder = new File(folder.getRoot(), WorkspacePool.POOL_FOLDER_NAME);
+        final long longAgo = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(30);
+        Assert.assertTrue(new File(poolFolder, "old.last-use").setLastModified(longAgo));
+        Assert.assertTrue(new File(poolFolder, "other.last-use").setLastModified(longAgo));
+
+        final List<String> actual = cut.findIdle("http://TFS:8080/tfs", TimeUnit.DAYS.toMillis(7));
+
+        Assert.assertEquals(Collections.singletonList("old"), actual);
+    }
+
+    @Test public void remove_deletesTheWorkspaceAndItsFolder() throws Exception {
+        final WorkspacePool cut = new WorkspacePool(new FilePath(folder.getRoot()), "remove");
+        final File pooled = new File(cut.getFolder("key").getRemote());
+        FileUtils.writeStringToFile(new File(pooled, "README"), "read me");
+        final WorkspacePool.Lease lease = cut.lease("key");
+        lease.recordUse("http://tfs:8080/tfs");
+        final Workspaces workspaces = mock(Workspaces.class);
+        final Workspace workspace = mock(Workspace.class);
+        when(workspaces.exists("Hudson-Pool-key-remove")).thenReturn(true);
+        when(workspaces.getWorkspace("Hudson-Pool-key-remove")).thenReturn(workspace);
+        final boolean whileLeased;
+        try {
+            whileLeased = removeFromOtherThread(cut, "key", workspaces);
+        } finally {
+            lease.close();
+        }
+
+        final boolean actual = cut.remove("key", workspaces);
+
+        Assert.assertFalse(whileLeased);
+        Assert.assertTrue(actual);
+        verify(workspaces).deleteWorkspace(workspace);
+        Assert.assertFalse(pooled.exists());
+        Assert.assertFalse(new File(pooled.getParentFile(), "key.last-use").exists());
+    }
+
+    private static boolean removeFromOtherThread(final WorkspacePool pool, final String key, final Workspaces workspaces) throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            return executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    return pool.remove(key, workspaces);
+                }
+            }).get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test public void copyTo_replacesContents() throws Exception {
+        final WorkspacePool cut = new WorkspacePool(new FilePath(folder.getRoot()), "copyTo_replacesContents");
+        final File pooled = new File(cut.getFolder("key").getRemote());
+        FileUtils.writeStringToFile(new File(pooled, "src/Main.java"), "class Main {}");
+        FileUtils.writeStringToFile(new File(pooled, "README"), "read me");
+        new File(pooled, "empty").mkdirs();
+        final File target = folder.newFolder("workspace");
+        FileUtils.writeStringToFile(new File(target, "obj/Main.class"), "stale");
+        final WorkspacePool.Lease lease = cut.lease("key");
+        final int actual;
+        try {
+
+            actual = lease.copyTo(new FilePath(target));
+
+        } finally {
+            lease.close();
+        }
+        Assert.assertEquals(2, actual);
+        Assert.assertEquals("class Main {}", FileUtils.readFileToString(new File(target, "src/Main.java")));
+        Assert.assertTrue(new File(target, "empty").isDirectory());
+        Assert.assertFalse(new File(target, "obj").exists());
+    }
+}
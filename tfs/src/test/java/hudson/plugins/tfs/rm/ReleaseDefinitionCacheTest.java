@@ -0,0 +1,108 @@
+package hudson.plugins.tfs.rm;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * A class to test {@link ReleaseDefinitionCache}.
+ */
+public class ReleaseDefinitionCacheTest {
+
+    private ReleaseManagementHttpClient client;
+
+    @Before public void setUp() {
+        ReleaseDefinitionCache.clear();
+        client = mock(ReleaseManagementHttpClient.class);
+        when(client.getAccountUrl()).thenReturn("https://example.vsrm.visualstudio.com/");
+        when(client.getUsername()).thenReturn("user");
+    }
+
+    @After public void tearDown() {
+        System.clearProperty(ReleaseDefinitionCache.TTL_PROPERTY);
+        ReleaseDefinitionCache.clear();
+    }
+
+    private static ReleaseDefinition createDefinition(final int id, final String name) {
+        final ReleaseDefinition result = new ReleaseDefinition();
+        result.setId(id);
+        result.setName(name);
+        return result;
+    }
+
+    private static ReleaseManagementHttpClient.DefinitionResponse createResponse(
+            final String eTag,
+            final ReleaseDefinition... definitions) {
+        final ReleaseManagementHttpClient.DefinitionResponse result
+                = new ReleaseManagementHttpClient.DefinitionResponse();
+        result.setValue(Arrays.asList(definitions));
+        result.setETag(eTag);
+        return result;
+    }
+
+    @Test public void getByName_picksExactMatchFromSearchResults() throws Exception {
+        final ReleaseDefinition exact = createDefinition(2, "Deploy");
+        when(client.GetReleaseDefinitions("project", "deploy", null)).thenReturn(
+                createResponse("\"1\"", createDefinition(1, "Deploy-Old"), exact));
+
+        final ReleaseDefinition actual = ReleaseDefinitionCache.getByName(client, "project", "deploy");
+
+        Assert.assertSame(exact, actual);
+    }
+
+    @Test public void getByName_noMatch() throws Exception {
+        when(client.GetReleaseDefinitions("project", "Deploy", null)).thenReturn(
+                createResponse(null, createDefinition(1, "Deploy-Old")));
+
+        final ReleaseDefinition actual = ReleaseDefinitionCache.getByName(client, "project", "Deploy");
+
+        Assert.assertNull(actual);
+    }
+
+    @Test public void getByName_secondLookupServedFromCache() throws Exception {
+        final ReleaseDefinition definition = createDefinition(1, "Deploy");
+        when(client.GetReleaseDefinitions("project", "Deploy", null)).thenReturn(
+                createResponse("\"1\"", definition));
+
+        ReleaseDefinitionCache.getByName(client, "project", "Deploy");
+        final ReleaseDefinition actual = ReleaseDefinitionCache.getByName(client, "Project", "DEPLOY");
+
+        Assert.assertSame(definition, actual);
+        verify(client, times(1)).GetReleaseDefinitions(anyString(), anyString(), (String) isNull());
+    }
+
+    @Test public void getByName_expiredEntryRevalidatedWithETag() throws Exception {
+        System.setProperty(ReleaseDefinitionCache.TTL_PROPERTY, "0");
+        final ReleaseDefinition definition = createDefinition(1, "Deploy");
+        when(client.GetReleaseDefinitions("project", "Deploy", null)).thenReturn(
+                createResponse("\"1\"", definition));
+        when(client.GetReleaseDefinitions("project", "Deploy", "\"1\"")).thenReturn(null);
+
+        ReleaseDefinitionCache.getByName(client, "project", "Deploy");
+        final ReleaseDefinition actual = ReleaseDefinitionCache.getByName(client, "project", "Deploy");
+
+        Assert.assertSame(definition, actual);
+        verify(client).GetReleaseDefinitions("project", "Deploy", "\"1\"");
+    }
+
+    @Test public void index_warmsCache() throws Exception {
+        final ReleaseDefinition definition = createDefinition(1, "Deploy");
+        ReleaseDefinitionCache.index(client, "project", Arrays.asList(definition));
+
+        final ReleaseDefinition actual = ReleaseDefinitionCache.getByName(client, "project", "Deploy");
+
+        Assert.assertSame(definition, actual);
+        verify(client, never()).GetReleaseDefinitions(anyString(), anyString(), anyString());
+    }
+}
@@ -0,0 +1,44 @@
+package hudson.plugins.tfs.telemetry;
+
+import com.microsoft.applicationinsights.TelemetryClient;
+import com.microsoft.applicationinsights.telemetry.EventTelemetry;
+import com.microsoft.applicationinsights.telemetry.MetricTelemetry;
+import com.microsoft.applicationinsights.telemetry.Telemetry;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * A class to test {@link AppInsightsTelemetrySink}.
+ */
+public class AppInsightsTelemetrySinkTest {
+
+    @Test public void send_keepsTheTimeTheRecordsWereCaptured() throws Exception {
+        final TelemetryClient telemetryClient = mock(TelemetryClient.class);
+        final AppInsightsTelemetrySink cut = new AppInsightsTelemetrySink(telemetryClient);
+        final TelemetryRecord event = new TelemetryRecord(TelemetryRecord.Kind.EVENT, "team-label", 0,
+                Collections.singletonMap("key", "value"), null, 1000L);
+        final TelemetryRecord metric = new TelemetryRecord(TelemetryRecord.Kind.METRIC, "latency", 2.5, null, null, 2000L);
+
+        cut.send(Arrays.asList(event, metric));
+
+        final ArgumentCaptor<Telemetry> captor = ArgumentCaptor.forClass(Telemetry.class);
+        verify(telemetryClient, times(2)).track(captor.capture());
+        final List<Telemetry> actual = captor.getAllValues();
+        final EventTelemetry actualEvent = (EventTelemetry) actual.get(0);
+        Assert.assertEquals("Action/team-label", actualEvent.getName());
+        Assert.assertEquals("value", actualEvent.getProperties().get("key"));
+        Assert.assertEquals(new Date(1000L), actualEvent.getTimestamp());
+        final MetricTelemetry actualMetric = (MetricTelemetry) actual.get(1);
+        Assert.assertEquals("latency", actualMetric.getName());
+        Assert.assertEquals(2.5, actualMetric.getValue(), 0);
+        Assert.assertEquals(new Date(2000L), actualMetric.getTimestamp());
+    }
+}
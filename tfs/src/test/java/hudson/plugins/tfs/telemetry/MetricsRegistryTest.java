@@ -0,0 +1,90 @@
+package hudson.plugins.tfs.telemetry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+
+/**
+ * A class to test {@link MetricsRegistry}.
+ */
+public class MetricsRegistryTest {
+
+    @Test public void writePrometheus_histogram() throws Exception {
+        final MetricsRegistry cut = new MetricsRegistry();
+        final MetricFamily family = cut.histogram("op_duration_seconds", "How long operations took.", 0.001, new long[]{10, 100}, "operation");
+        family.labels("get").observe(5);
+        family.labels("get").observe(50);
+        family.labels("get").observe(500);
+
+        final StringWriter writer = new StringWriter();
+        cut.writePrometheus(writer);
+
+        Assert.assertEquals(
+                "# HELP op_duration_seconds How long operations took.\n"
+                + "# TYPE op_duration_seconds histogram\n"
+                + "op_duration_seconds_bucket{operation=\"get\",le=\"0.01\"} 1\n"
+                + "op_duration_seconds_bucket{operation=\"get\",le=\"0.1\"} 2\n"
+                + "op_duration_seconds_bucket{operation=\"get\",le=\"+Inf\"} 3\n"
+                + "op_duration_seconds_sum{operation=\"get\"} 0.555\n"
+                + "op_duration_seconds_count{operation=\"get\"} 3\n",
+                writer.toString());
+    }
+
+    @Test public void writePrometheus_counterEscapesLabelValues() throws Exception {
+        final MetricsRegistry cut = new MetricsRegistry();
+        cut.counter("failures_total", "Failures.", "agent").labels("a \"quoted\\name\"").inc(2);
+
+        final StringWriter writer = new StringWriter();
+        cut.writePrometheus(writer);
+
+        Assert.assertEquals(
+                "# HELP failures_total Failures.\n"
+                + "# TYPE failures_total counter\n"
+                + "failures_total{agent=\"a \\\"quoted\\\\name\\\"\"} 2\n",
+                writer.toString());
+    }
+
+    @Test public void histogram_registeredOnce() throws Exception {
+        final MetricsRegistry cut = new MetricsRegistry();
+
+        final MetricFamily first = cut.histogram("items", "Items.", 1, new long[]{1}, "operation");
+        final MetricFamily second = cut.histogram("items", "Items.", 1, new long[]{1}, "operation");
+
+        Assert.assertSame(first, second);
+    }
+
+    @Test(expected = IllegalArgumentException.class) public void counter_conflictingRegistration() throws Exception {
+        final MetricsRegistry cut = new MetricsRegistry();
+        cut.histogram("items", "Items.", 1, new long[]{1}, "operation");
+
+        cut.counter("items", "Items.", "operation");
+    }
+
+    @Test public void labels_overflow() throws Exception {
+        final MetricsRegistry cut = new MetricsRegistry();
+        final MetricFamily family = cut.counter("requests_total", "Requests.", "agent");
+        for (int i = 0; i < MetricFamily.MAX_SERIES; i++) {
+            family.labels("agent" + i).inc();
+        }
+
+        final MetricSeries actual = family.labels("one-too-many");
+
+        Assert.assertSame(family.getSeries().get(Arrays.asList(MetricFamily.OVERFLOW_LABEL_VALUE)), actual);
+    }
+
+    @Test public void estimateQuantile() throws Exception {
+        final MetricsRegistry cut = new MetricsRegistry();
+        final MetricSeries series = cut.histogram("op_duration_seconds", "How long operations took.", 0.001, new long[]{10, 100}, "operation").labels("get");
+        Assert.assertEquals(-1, series.estimateQuantile(0.5));
+
+        series.observe(5);
+        series.observe(50);
+        series.observe(500);
+
+        Assert.assertEquals(10, series.estimateQuantile(0.25));
+        Assert.assertEquals(100, series.estimateQuantile(0.5));
+        Assert.assertEquals(Long.MAX_VALUE, series.estimateQuantile(0.95));
+    }
+}
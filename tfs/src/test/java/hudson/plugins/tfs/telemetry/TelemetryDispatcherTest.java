@@ -0,0 +1,141 @@
+package hudson.plugins.tfs.telemetry;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A class to test {@link TelemetryDispatcher} and its {@link TelemetryRingBuffer}.
+ */
+public class TelemetryDispatcherTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final class RecordingSink implements TelemetrySink {
+        private final List<List<String>> batches = new ArrayList<List<String>>();
+        private boolean offline;
+
+        @Override
+        public void send(final List<TelemetryRecord> batch) throws IOException {
+            if (offline) {
+                throw new IOException("offline");
+            }
+            final List<String> names = new ArrayList<String>();
+            for (final TelemetryRecord record : batch) {
+                names.add(record.getName());
+            }
+            batches.add(names);
+        }
+    }
+
+    @Test public void ringBuffer_roundsCapacityUp() throws Exception {
+        Assert.assertEquals(1, new TelemetryRingBuffer<String>(1).capacity());
+        Assert.assertEquals(4, new TelemetryRingBuffer<String>(3).capacity());
+        Assert.assertEquals(8, new TelemetryRingBuffer<String>(8).capacity());
+    }
+
+    @Test public void ringBuffer_dropsOldestWhenFull() throws Exception {
+        final TelemetryRingBuffer<String> cut = new TelemetryRingBuffer<String>(2);
+        Assert.assertEquals(0, cut.add("a"));
+        Assert.assertEquals(0, cut.add("b"));
+
+        Assert.assertEquals(1, cut.add("c"));
+
+        Assert.assertEquals(1, cut.getDropped());
+        final List<String> actual = new ArrayList<String>();
+        Assert.assertEquals(2, cut.drainTo(actual, 10));
+        Assert.assertEquals(Arrays.asList("b", "c"), actual);
+        Assert.assertNull(cut.poll());
+    }
+
+    @Test public void ringBuffer_concurrentProducers() throws Exception {
+        final TelemetryRingBuffer<Integer> cut = new TelemetryRingBuffer<Integer>(1 << 16);
+        final int threadCount = 4;
+        final int perThread = 10000;
+        final Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        cut.add(i);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        final List<Integer> actual = new ArrayList<Integer>();
+        cut.drainTo(actual, Integer.MAX_VALUE);
+
+        Assert.assertEquals(threadCount * perThread, actual.size());
+        Assert.assertEquals(0, cut.getDropped());
+    }
+
+    @Test public void flush_sendsInBatches() throws Exception {
+        final RecordingSink sink = new RecordingSink();
+        final TelemetryDispatcher cut = new TelemetryDispatcher(sink, 8, 2, Long.MAX_VALUE, null);
+        cut.getBuffer().add(TelemetryRecord.event("a", null));
+        cut.getBuffer().add(TelemetryRecord.event("b", null));
+        cut.getBuffer().add(TelemetryRecord.event("c", null));
+
+        cut.flush();
+
+        Assert.assertEquals(Arrays.asList(Arrays.asList("a", "b"), Collections.singletonList("c")), sink.batches);
+    }
+
+    @Test public void flush_spoolsWhileOfflineThenReplays() throws Exception {
+        final RecordingSink sink = new RecordingSink();
+        final TelemetrySpool spool = new TelemetrySpool(folder.getRoot(), Long.MAX_VALUE);
+        final TelemetryDispatcher cut = new TelemetryDispatcher(sink, 8, 10, Long.MAX_VALUE, spool);
+        sink.offline = true;
+        cut.getBuffer().add(TelemetryRecord.event("a", Collections.singletonMap("key", "value")));
+        cut.getBuffer().add(TelemetryRecord.exception(new IllegalStateException("boom"), null));
+        cut.flush();
+        Assert.assertTrue(sink.batches.isEmpty());
+        Assert.assertFalse(spool.isEmpty());
+
+        sink.offline = false;
+        cut.getBuffer().add(TelemetryRecord.event("b", null));
+        cut.flush();
+
+        Assert.assertEquals(Arrays.asList(
+                Collections.singletonList("b"),
+                Arrays.asList("a", IllegalStateException.class.getName())), sink.batches);
+        Assert.assertTrue(spool.isEmpty());
+    }
+
+    @Test public void spool_roundTrip() throws Exception {
+        final TelemetrySpool cut = new TelemetrySpool(folder.getRoot(), Long.MAX_VALUE);
+        cut.append(Arrays.asList(
+                TelemetryRecord.event("a", Collections.singletonMap("key", "value")),
+                TelemetryRecord.metric("m", 2.5),
+                TelemetryRecord.exception(new IllegalStateException("boom"), null)));
+
+        final List<TelemetryRecord> actual = cut.takeAll();
+
+        Assert.assertEquals(3, actual.size());
+        Assert.assertEquals(TelemetryRecord.Kind.EVENT, actual.get(0).getKind());
+        Assert.assertEquals("value", actual.get(0).getProperties().get("key"));
+        Assert.assertEquals(2.5, actual.get(1).getValue(), 0);
+        Assert.assertEquals("java.lang.IllegalStateException: boom", actual.get(2).getException().toString());
+        Assert.assertTrue(cut.isEmpty());
+    }
+
+    @Test public void spool_full() throws Exception {
+        final TelemetrySpool cut = new TelemetrySpool(folder.getRoot(), 10);
+
+        Assert.assertFalse(cut.append(Collections.singletonList(TelemetryRecord.event("a", null))));
+        Assert.assertTrue(cut.isEmpty());
+    }
+}
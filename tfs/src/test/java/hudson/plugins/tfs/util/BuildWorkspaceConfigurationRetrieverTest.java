@@ -5,8 +5,13 @@ import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import hudson.model.AbstractBuild;
 import hudson.model.Node;
@@ -120,4 +125,39 @@ public class BuildWorkspaceConfigurationRetrieverTest {
 
         assertThat( new BuildWorkspaceConfigurationRetriever().getLatestForNode(needleNode, build), nullValue());  
     }
+
+    @Test
+    public void assertGetLatestPerNodeSinceStopsAtOlderBuilds() {
+        AbstractBuild latest = mock(AbstractBuild.class);
+        AbstractBuild previous = mock(AbstractBuild.class);
+        AbstractBuild older = mock(AbstractBuild.class);
+        AbstractBuild oldest = mock(AbstractBuild.class);
+        Node node1 = mock(Node.class);
+        Node node2 = mock(Node.class);
+        when(node1.getNodeName()).thenReturn("node1");
+        when(node2.getNodeName()).thenReturn("node2");
+        when(latest.getTimestamp()).thenReturn(new GregorianCalendar(2016, 6, 8));
+        when(previous.getTimestamp()).thenReturn(new GregorianCalendar(2016, 6, 7));
+        when(older.getTimestamp()).thenReturn(new GregorianCalendar(2016, 6, 6));
+        when(oldest.getTimestamp()).thenReturn(new GregorianCalendar(2016, 5, 1));
+        when(latest.getPreviousBuild()).thenReturn(previous);
+        when(previous.getPreviousBuild()).thenReturn(older);
+        when(older.getPreviousBuild()).thenReturn(oldest);
+        when(latest.getBuiltOn()).thenReturn(node1);
+        when(previous.getBuiltOn()).thenReturn(node1);
+        when(older.getBuiltOn()).thenReturn(node2);
+        when(oldest.getBuiltOn()).thenReturn(node1);
+        WorkspaceConfiguration configuration = new WorkspaceConfiguration("serverUrl", "workspaceName", "projectPath", EMPTY_CLOAKED_PATHS_LIST, "workfolder");
+        when(latest.getAction(WorkspaceConfiguration.class)).thenReturn(configuration);
+        when(older.getAction(WorkspaceConfiguration.class)).thenReturn(configuration);
+
+        final long since = new GregorianCalendar(2016, 6, 1).getTimeInMillis();
+        Map<String, BuildWorkspaceConfiguration> actual = new BuildWorkspaceConfigurationRetriever().getLatestPerNodeSince(latest, since);
+
+        assertThat(actual.keySet(), is((Set<String>) new LinkedHashSet<String>(Arrays.asList("node1", "node2"))));
+        assertThat(actual.get("node1").getBuild(), is(latest));
+        assertThat(actual.get("node2").getBuild(), is(older));
+        verify(previous, never()).getAction(WorkspaceConfiguration.class);
+        verify(oldest, never()).getBuiltOn();
+    }
  }
@@ -0,0 +1,50 @@
+package hudson.plugins.tfs.util;
+
+import hudson.plugins.tfs.model.GitStatusContext;
+import hudson.plugins.tfs.model.GitStatusState;
+import hudson.plugins.tfs.model.TeamGitStatus;
+import net.sf.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A class to test {@link JsonRequestEntity}.
+ */
+public class JsonRequestEntityTest {
+
+    private static String write(final JsonRequestEntity entity) throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        entity.writeRequest(output);
+        Assert.assertEquals("Sent with its length", output.size(), entity.getContentLength());
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test public void string() throws Exception {
+        final JsonRequestEntity cut = new JsonRequestEntity("{\"name\":\"caf\u00e9\"}", MediaType.APPLICATION_JSON);
+
+        Assert.assertEquals("{\"name\":\"caf\u00e9\"}", write(cut));
+        Assert.assertEquals(16, cut.getContentLength());
+        Assert.assertEquals(MediaType.APPLICATION_JSON + "; charset=UTF-8", cut.getContentType());
+    }
+
+    @Test public void json() throws Exception {
+        final JSONObject body = new JSONObject();
+        body.put("count", 1);
+
+        Assert.assertEquals("{\"count\":1}", write(new JsonRequestEntity(body, MediaType.APPLICATION_JSON)));
+    }
+
+    @Test public void object_leavesOutUnsetFields() throws Exception {
+        final TeamGitStatus status = new TeamGitStatus();
+        status.state = GitStatusState.Pending;
+        status.description = "Pending";
+        status.context = new GitStatusContext("#1", "job");
+
+        Assert.assertEquals(
+                "{\"state\":\"Pending\",\"description\":\"Pending\",\"context\":{\"name\":\"#1\",\"genre\":\"job\"}}",
+                write(new JsonRequestEntity(status, MediaType.APPLICATION_JSON)));
+    }
+}
@@ -0,0 +1,164 @@
+package hudson.plugins.tfs.util;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A class to test {@link ParallelZipWriter}.
+ */
+public class ParallelZipWriterTest {
+
+    private static final long TIME = 1467936000000L; // 2016-07-08T00:00:00Z
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private static ParallelZipWriter.EntrySource source(final String content) {
+        return new ParallelZipWriter.EntrySource() {
+            @Override
+            public InputStream open() throws IOException {
+                return new ByteArrayInputStream(content.getBytes("UTF-8"));
+            }
+        };
+    }
+
+    private File write(final int compressionLevel, final long spillThreshold, final String... namesAndContents) throws Exception {
+        final File result = folder.newFile();
+        final ParallelZipWriter cut = new ParallelZipWriter(new FileOutputStream(result), compressionLevel, 4, folder.getRoot(), spillThreshold);
+        try {
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                cut.addEntry(namesAndContents[i], TIME, source(namesAndContents[i + 1]));
+            }
+            cut.finish();
+        } finally {
+            cut.close();
+        }
+        return result;
+    }
+
+    private static List<String> readNamesAndContents(final File zipFile) throws Exception {
+        final List<String> result = new ArrayList<String>();
+        final ZipFile zip = new ZipFile(zipFile);
+        try {
+            final Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                result.add(entry.getName());
+                result.add(IOUtils.toString(zip.getInputStream(entry), "UTF-8"));
+            }
+        } finally {
+            zip.close();
+        }
+        return result;
+    }
+
+    @Test public void finish_entriesInOrder() throws Exception {
+        final List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 50; i++) {
+            expected.add("team-results/junit/TEST-" + i + ".xml");
+            expected.add(StringUtils.repeat("<testcase name='" + i + "'/>", i * 100));
+        }
+
+        final File actual = write(Deflater.DEFAULT_COMPRESSION, ParallelZipWriter.DEFAULT_SPILL_THRESHOLD,
+                expected.toArray(new String[expected.size()]));
+
+        Assert.assertEquals(expected, readNamesAndContents(actual));
+        final ZipFile zip = new ZipFile(actual);
+        try {
+            final ZipEntry entry = zip.getEntry("team-results/junit/TEST-49.xml");
+            Assert.assertEquals(ZipEntry.DEFLATED, entry.getMethod());
+            Assert.assertTrue(entry.getCompressedSize() < entry.getSize());
+            Assert.assertEquals(TIME, entry.getTime());
+        } finally {
+            zip.close();
+        }
+    }
+
+    @Test public void finish_levelZeroStoresEntries() throws Exception {
+
+        final File actual = write(0, ParallelZipWriter.DEFAULT_SPILL_THRESHOLD, "a.txt", "aaaaaaaaaa");
+
+        final ZipFile zip = new ZipFile(actual);
+        try {
+            final ZipEntry entry = zip.getEntry("a.txt");
+            Assert.assertEquals(ZipEntry.STORED, entry.getMethod());
+            Assert.assertEquals(10, entry.getCompressedSize());
+        } finally {
+            zip.close();
+        }
+    }
+
+    @Test public void finish_spilledEntries() throws Exception {
+        final String content = StringUtils.repeat("0123456789", 1000);
+
+        final File actual = write(Deflater.BEST_SPEED, 16, "big.txt", content, "small.txt", "small");
+
+        Assert.assertEquals(4, readNamesAndContents(actual).size());
+        Assert.assertEquals(content, readNamesAndContents(actual).get(1));
+        final String[] leftovers = folder.getRoot().list();
+        for (final String leftover : leftovers) {
+            Assert.assertFalse(leftover, leftover.startsWith("zip-entry"));
+        }
+    }
+
+    @Test public void compress_spillsBeyondThreshold() throws Exception {
+        final ParallelZipWriter cut = new ParallelZipWriter(new FileOutputStream(folder.newFile()), 0, 1, folder.getRoot(), 16);
+        try {
+            final ParallelZipWriter.CompressedEntry small = cut.compress(source("0123456789"));
+            final ParallelZipWriter.CompressedEntry big = cut.compress(source(StringUtils.repeat("0123456789", 2)));
+
+            Assert.assertFalse(small.isSpilled());
+            Assert.assertTrue(big.isSpilled());
+            big.discard();
+        } finally {
+            cut.close();
+        }
+    }
+
+    @Test public void close_deletesTheSpillFilesOfUnwrittenEntries() throws Exception {
+        final File spillFolder = folder.newFolder();
+        final ParallelZipWriter cut = new ParallelZipWriter(new FileOutputStream(folder.newFile()), 0, 2, spillFolder, 16);
+        try {
+            for (int i = 0; i < 4; i++) {
+                cut.addEntry("entry" + i + ".xml", TIME, source(StringUtils.repeat("<testcase/>", 100)));
+            }
+        } finally {
+            cut.close();
+        }
+
+        Assert.assertArrayEquals(new String[0], spillFolder.list());
+    }
+
+    @Test public void finish_failingSource() throws Exception {
+        final ParallelZipWriter cut = new ParallelZipWriter(new FileOutputStream(folder.newFile()), Deflater.DEFAULT_COMPRESSION, 2, null);
+        try {
+            cut.addEntry("missing.xml", TIME, new ParallelZipWriter.EntrySource() {
+                @Override
+                public InputStream open() throws IOException {
+                    throw new IOException("missing.xml is gone");
+                }
+            });
+            cut.finish();
+            Assert.fail("The IOException should have been propagated");
+        } catch (final IOException e) {
+            Assert.assertEquals("missing.xml is gone", e.getCause().getMessage());
+        } finally {
+            cut.close();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package hudson.plugins.tfs.util;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.channels.Channels;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * A class to test {@link RangeRequestHelper}.
+ */
+public class RangeRequestHelperTest {
+
+    private static final long LAST_MODIFIED = 1467936000000L;
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void assertRange(final long expectedFirst, final long expectedLast, final RangeRequestHelper.ByteRange actual) {
+        Assert.assertEquals(expectedFirst, actual.getFirst());
+        Assert.assertEquals(expectedLast, actual.getLast());
+    }
+
+    private static void assertUnsatisfiable(final String rangeHeader, final long length) {
+        try {
+            RangeRequestHelper.parseRange(rangeHeader, length);
+            Assert.fail("An IllegalArgumentException should have been thrown for " + rangeHeader);
+        } catch (final IllegalArgumentException ignored) {
+            // expected
+        }
+    }
+
+    @Test public void parseRange_satisfiable() throws Exception {
+        assertRange(0, 499, RangeRequestHelper.parseRange("bytes=0-499", 1000));
+        assertRange(500, 999, RangeRequestHelper.parseRange("bytes=500-", 1000));
+        assertRange(900, 999, RangeRequestHelper.parseRange("bytes=-100", 1000));
+        assertRange(0, 999, RangeRequestHelper.parseRange("bytes=-5000", 1000));
+        assertRange(990, 999, RangeRequestHelper.parseRange("Bytes=990-2000", 1000));
+        Assert.assertEquals(10, RangeRequestHelper.parseRange("bytes=990-2000", 1000).getLength());
+        Assert.assertEquals("bytes 990-999/1000", RangeRequestHelper.parseRange("bytes=990-", 1000).toContentRange(1000));
+    }
+
+    @Test public void parseRange_wholeFile() throws Exception {
+        Assert.assertNull(RangeRequestHelper.parseRange(null, 1000));
+        Assert.assertNull(RangeRequestHelper.parseRange("items=0-10", 1000));
+        Assert.assertNull(RangeRequestHelper.parseRange("bytes=0-10,20-30", 1000));
+        Assert.assertNull(RangeRequestHelper.parseRange("bytes=abc-", 1000));
+        Assert.assertNull(RangeRequestHelper.parseRange("bytes=500-100", 1000));
+    }
+
+    @Test public void parseRange_unsatisfiable() throws Exception {
+        assertUnsatisfiable("bytes=1000-", 1000);
+        assertUnsatisfiable("bytes=-0", 1000);
+        assertUnsatisfiable("bytes=0-", 0);
+    }
+
+    @Test public void isNotModified() throws Exception {
+        final HttpServletRequest matching = mock(HttpServletRequest.class);
+        when(matching.getHeader("If-None-Match")).thenReturn("\"other\", \"etag\"");
+        final HttpServletRequest different = mock(HttpServletRequest.class);
+        when(different.getHeader("If-None-Match")).thenReturn("\"other\"");
+        final HttpServletRequest sameDate = mock(HttpServletRequest.class);
+        when(sameDate.getDateHeader("If-Modified-Since")).thenReturn(LAST_MODIFIED);
+        final HttpServletRequest unconditional = mock(HttpServletRequest.class);
+        when(unconditional.getDateHeader("If-Modified-Since")).thenReturn(-1L);
+
+        Assert.assertTrue(RangeRequestHelper.isNotModified(matching, "\"etag\"", LAST_MODIFIED));
+        Assert.assertFalse(RangeRequestHelper.isNotModified(different, "\"etag\"", LAST_MODIFIED));
+        Assert.assertTrue(RangeRequestHelper.isNotModified(sameDate, "\"etag\"", LAST_MODIFIED + 500));
+        Assert.assertFalse(RangeRequestHelper.isNotModified(unconditional, "\"etag\"", LAST_MODIFIED));
+    }
+
+    @Test public void isRangeCurrent() throws Exception {
+        final HttpServletRequest noHeader = mock(HttpServletRequest.class);
+        final HttpServletRequest sameTag = mock(HttpServletRequest.class);
+        when(sameTag.getHeader("If-Range")).thenReturn("\"etag\"");
+        final HttpServletRequest weakTag = mock(HttpServletRequest.class);
+        when(weakTag.getHeader("If-Range")).thenReturn("W/\"etag\"");
+        final HttpServletRequest oldDate = mock(HttpServletRequest.class);
+        when(oldDate.getHeader("If-Range")).thenReturn("Thu, 07 Jul 2016 00:00:00 GMT");
+        when(oldDate.getDateHeader("If-Range")).thenReturn(LAST_MODIFIED - 86400000L);
+
+        Assert.assertTrue(RangeRequestHelper.isRangeCurrent(noHeader, "\"etag\"", LAST_MODIFIED));
+        Assert.assertTrue(RangeRequestHelper.isRangeCurrent(sameTag, "\"etag\"", LAST_MODIFIED));
+        Assert.assertFalse(RangeRequestHelper.isRangeCurrent(weakTag, "\"etag\"", LAST_MODIFIED));
+        Assert.assertFalse(RangeRequestHelper.isRangeCurrent(oldDate, "\"etag\"", LAST_MODIFIED));
+    }
+
+    @Test public void serveFile_unsatisfiableRange() throws Exception {
+        final File file = folder.newFile();
+        FileUtils.writeStringToFile(file, "0123456789");
+        final HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getDateHeader("If-Modified-Since")).thenReturn(-1L);
+        when(request.getHeader("Range")).thenReturn("bytes=20-");
+        final HttpServletResponse response = mock(HttpServletResponse.class);
+
+        RangeRequestHelper.serveFile(request, response, file, MediaType.APPLICATION_ZIP);
+
+        verify(response).setHeader("Content-Range", "bytes */10");
+        verify(response).sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+        verify(response, never()).getOutputStream();
+    }
+
+    @Test public void serveFile_notModified() throws Exception {
+        final File file = folder.newFile();
+        FileUtils.writeStringToFile(file, "0123456789");
+        final HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getHeader("If-None-Match")).thenReturn(RangeRequestHelper.toETag(file));
+        final HttpServletResponse response = mock(HttpServletResponse.class);
+
+        RangeRequestHelper.serveFile(request, response, file, MediaType.APPLICATION_ZIP);
+
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(response, never()).getOutputStream();
+    }
+
+    @Test public void transfer_partOfFile() throws Exception {
+        final File file = folder.newFile();
+        FileUtils.writeStringToFile(file, "0123456789");
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final FileInputStream input = new FileInputStream(file);
+        try {
+
+            RangeRequestHelper.transfer(input.getChannel(), 3, 4, Channels.newChannel(output));
+
+        } finally {
+            input.close();
+        }
+        Assert.assertEquals("3456", output.toString("UTF-8"));
+    }
+}
@@ -0,0 +1,83 @@
+package hudson.plugins.tfs.util;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
+import com.microsoft.tfs.core.httpclient.Credentials;
+import com.microsoft.tfs.core.httpclient.HttpClient;
+import com.microsoft.tfs.core.httpclient.UsernamePasswordCredentials;
+import com.microsoft.tfs.core.httpclient.auth.AuthScope;
+import hudson.util.SecretOverride;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URI;
+
+/**
+ * A class to test {@link TeamRestTransport}.
+ */
+public class TeamRestTransportTest {
+
+    private static final URI COLLECTION_URI = URI.create("http://tfs.example.com:8080/tfs/DefaultCollection");
+
+    private SecretOverride secretOverride = null;
+
+    @Before public void setUp() throws Exception {
+        secretOverride = new SecretOverride();
+        TeamRestTransport.clear();
+    }
+
+    @After public void tearDown() throws Exception {
+        TeamRestTransport.clear();
+        if (secretOverride != null) {
+            secretOverride.close();
+        }
+    }
+
+    private static StandardUsernamePasswordCredentials createCredentials(final String password) {
+        return new UsernamePasswordCredentialsImpl(CredentialsScope.SYSTEM, "buildAccount", null, "DOMAIN\\build", password);
+    }
+
+    @Test public void getHttpClient_sharedForSameCredentials() throws Exception {
+        final HttpClient first = TeamRestTransport.getHttpClient(COLLECTION_URI, createCredentials("secret"));
+
+        final HttpClient second = TeamRestTransport.getHttpClient(
+                URI.create("http://TFS.example.com:8080/tfs/OtherCollection"), createCredentials("secret"));
+
+        Assert.assertSame(first, second);
+    }
+
+    @Test public void getHttpClient_newClientWhenPasswordChanges() throws Exception {
+        final HttpClient first = TeamRestTransport.getHttpClient(COLLECTION_URI, createCredentials("secret"));
+
+        final HttpClient second = TeamRestTransport.getHttpClient(COLLECTION_URI, createCredentials("changed"));
+
+        Assert.assertNotSame(first, second);
+    }
+
+    @Test public void getHttpClient_evictsTheLeastRecentlyUsed() throws Exception {
+        final HttpClient first = TeamRestTransport.getHttpClient(COLLECTION_URI, createCredentials("first"));
+        final HttpClient second = TeamRestTransport.getHttpClient(COLLECTION_URI, createCredentials("second"));
+        for (int i = 2; i < TeamRestTransport.MAX_CLIENTS; i++) {
+            TeamRestTransport.getHttpClient(COLLECTION_URI, createCredentials("password" + i));
+        }
+        Assert.assertSame(first, TeamRestTransport.getHttpClient(COLLECTION_URI, createCredentials("first")));
+
+        TeamRestTransport.getHttpClient(COLLECTION_URI, createCredentials("one too many"));
+
+        Assert.assertSame("Recently used", first, TeamRestTransport.getHttpClient(COLLECTION_URI, createCredentials("first")));
+        Assert.assertNotSame("Evicted", second, TeamRestTransport.getHttpClient(COLLECTION_URI, createCredentials("second")));
+    }
+
+    @Test public void createHttpClient_usesCredentials() throws Exception {
+
+        final HttpClient actual = TeamRestTransport.createHttpClient(COLLECTION_URI, createCredentials("secret"), null);
+
+        final Credentials credentials = actual.getState().getCredentials(AuthScope.ANY);
+        Assert.assertTrue(credentials instanceof UsernamePasswordCredentials);
+        Assert.assertEquals("DOMAIN\\build", ((UsernamePasswordCredentials) credentials).getUserName());
+        Assert.assertNull(actual.getHostConfiguration().getProxyHost());
+    }
+}
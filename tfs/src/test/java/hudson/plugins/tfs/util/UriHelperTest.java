@@ -210,6 +210,47 @@ public class UriHelperTest {
         );
     }
 
+    private static void assertSameGitRepoKey(final String a, final String b) {
+        final String keyA = UriHelper.toGitRepoKey(URI.create(a));
+        final String keyB = UriHelper.toGitRepoKey(URI.create(b));
+        Assert.assertEquals(keyA, keyB);
+    }
+
+    @Test public void toGitRepoKey_typical() throws Exception {
+        final URI input = URI.create("https://Fabrikam-Fiber-Inc.visualstudio.com/DefaultCollection/Project/_git/Repo");
+
+        final String actual = UriHelper.toGitRepoKey(input);
+
+        Assert.assertEquals("fabrikam-fiber-inc.visualstudio.com/project/_git/repo", actual);
+    }
+
+    @Test public void toGitRepoKey_defaultCollectionAsLastSegment() throws Exception {
+        final URI input = URI.create("http://tfs.example.com:8080/tfs/DefaultCollection/");
+
+        final String actual = UriHelper.toGitRepoKey(input);
+
+        Assert.assertEquals("tfs.example.com/tfs/defaultcollection", actual);
+    }
+
+    @Test public void toGitRepoKey_consistentWithAreSameGitRepo() throws Exception {
+        assertSameGitRepoKey(
+                "https://fabrikam-fiber-inc.visualstudio.com/DefaultCollection/Project/_git/Repo",
+                "https://fabrikam-fiber-inc.visualstudio.com/defaultcollection/project/_git/repo"
+        );
+        assertSameGitRepoKey(
+                "http://tfs.example.com:8080/tfs/DefaultCollection/project/_git/repo",
+                "http://tfs.example.com:8080/tfs/project/_git/repo"
+        );
+        assertSameGitRepoKey(
+                "https://fabrikam-fiber-inc.visualstudio.com/DefaultCollection/project/_git/repo",
+                "ssh://fabrikam-fiber-inc@fabrikam-fiber-inc.visualstudio.com/project/_git/repo"
+        );
+        assertSameGitRepoKey(
+                "http://tfs.example.com:8081/tfs/DefaultCollection/project/_git/repo",
+                "ssh://tfs.example.com:22/tfs/project/_git/repo"
+        );
+    }
+
     @Test public void hasPath_hostOnly() throws Exception {
         final URI input = URI.create("https://fabrikam-fiber-inc.visualstudio.com");
 